@@ -0,0 +1,507 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A compact, queryable copy of an {@link ActivityLog}.
+ * Events are held in columns of timestamps, actions and atoms, partitioned by day, with actions and atom ids
+ * encoded as indices into dictionaries. The index is updated from the log incrementally, reading only those
+ * lines which have been appended since the last update, and may be saved to and loaded from a file.
+ * The index answers the most viewed atoms over a period of time, the atoms edited together with a given atom,
+ * and the time of the most recent activity of each atom.
+ */
+public class ActivityIndex {
+
+    private static final int MAGIC = 0x534d5361; // "SMSa"
+    private static final int VERSION = 1;
+
+    private static final long PARTITION_LENGTH = 1000L * 60 * 60 * 24;
+
+    private static final String VIEW = "view";
+    private static final List<String> EDITS = Arrays.asList("create", "set-props", "link", "unlink");
+
+    private static final Charset UTF8 = Charset.forName(SemanticSynchrony.UTF8);
+
+    private final List<String> actions = new ArrayList<>();
+    private final Map<String, Integer> actionIndices = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> idIndices = new HashMap<>();
+    private final List<Partition> partitions = new ArrayList<>();
+    private long[] lastActivity = new long[0];
+
+    // the number of bytes of the log which have been read
+    private long logPosition;
+
+    /**
+     * @return the index saved in the given file, or an empty index if there is no such file
+     */
+    public static ActivityIndex load(final File file) throws IOException {
+        ActivityIndex index = new ActivityIndex();
+        if (file.exists()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                index.read(new DataInputStream(in));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Saves the index to a file, replacing any previous version of the file only once the index has been written
+     */
+    public synchronized void save(final File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            write(out);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds those events of a log which have been appended since the last update.
+     * If the log is shorter than at the last update, it is assumed to have been replaced, and is read in full.
+     *
+     * @return the number of events added
+     */
+    public synchronized int update(final File logFile) throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        if (logFile.length() < logPosition) {
+            clear();
+        }
+
+        int count = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(logFile))) {
+            long skipped = 0;
+            while (skipped < logPosition) {
+                long n = in.skip(logPosition - skipped);
+                if (n <= 0) {
+                    throw new IOException("failed to skip to position " + logPosition + " of log");
+                }
+                skipped += n;
+            }
+
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                if ('\n' == b) {
+                    // a line without its newline may still be being written, and is read at the next update
+                    logPosition += line.size() + 1;
+                    if (addEvent(new String(line.toByteArray(), UTF8))) {
+                        count++;
+                    }
+                    line.reset();
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the total number of events in the index
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Partition p : partitions) {
+            size += p.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the time of the most recent event involving the given atom, or null if there is none
+     */
+    public synchronized Long getLastActivity(final String atomId) {
+        Integer index = idIndices.get(atomId);
+        return null == index ? null : lastActivity[index];
+    }
+
+    /**
+     * @return the atoms with the most views at or after the given time, with their number of views
+     */
+    public synchronized List<Count> getMostViewed(final long since, final int maxResults) {
+        Integer viewIndex = actionIndices.get(VIEW);
+        long[] counts = new long[ids.size()];
+        if (null != viewIndex) {
+            int view = viewIndex;
+            for (Partition p : partitions) {
+                if (p.maxTime < since) {
+                    continue;
+                }
+                for (int i = 0; i < p.size; i++) {
+                    if (p.actions[i] == view && p.times[i] >= since) {
+                        counts[p.firstAtoms[i]]++;
+                    }
+                }
+            }
+        }
+
+        return topCounts(counts, maxResults);
+    }
+
+    /**
+     * @return the atoms which have been edited within the given time window of an edit to the given atom,
+     * with the number of such edits
+     */
+    public synchronized List<Count> getCoEdited(final String atomId, final long window, final int maxResults) {
+        Integer atomIndex = idIndices.get(atomId);
+        if (null == atomIndex) {
+            return Collections.emptyList();
+        }
+        int atom = atomIndex;
+        boolean[] isEdit = findEditActions();
+
+        long[] editTimes = new long[16];
+        int numberOfEdits = 0;
+        for (Partition p : partitions) {
+            for (int i = 0; i < p.size; i++) {
+                if (isEdit[p.actions[i]] && (p.firstAtoms[i] == atom || p.secondAtoms[i] == atom)) {
+                    if (numberOfEdits == editTimes.length) {
+                        editTimes = Arrays.copyOf(editTimes, numberOfEdits * 2);
+                    }
+                    editTimes[numberOfEdits++] = p.times[i];
+                }
+            }
+        }
+        if (0 == numberOfEdits) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(editTimes, 0, numberOfEdits);
+        long from = editTimes[0] - window;
+        long to = editTimes[numberOfEdits - 1] + window;
+
+        long[] counts = new long[ids.size()];
+        for (Partition p : partitions) {
+            if (p.maxTime < from || p.minTime > to) {
+                continue;
+            }
+            for (int i = 0; i < p.size; i++) {
+                if (isEdit[p.actions[i]] && isNear(p.times[i], editTimes, numberOfEdits, window)) {
+                    counts[p.firstAtoms[i]]++;
+                    if (p.secondAtoms[i] >= 0) {
+                        counts[p.secondAtoms[i]]++;
+                    }
+                }
+            }
+        }
+        counts[atom] = 0;
+
+        return topCounts(counts, maxResults);
+    }
+
+    private boolean[] findEditActions() {
+        boolean[] isEdit = new boolean[actions.size()];
+        for (int i = 0; i < isEdit.length; i++) {
+            isEdit[i] = EDITS.contains(actions.get(i));
+        }
+        return isEdit;
+    }
+
+    private boolean isNear(final long time, final long[] sortedTimes, final int length, final long window) {
+        int i = Arrays.binarySearch(sortedTimes, 0, length, time);
+        if (i >= 0) {
+            return true;
+        }
+        int next = -i - 1;
+        return (next < length && sortedTimes[next] - time <= window)
+                || (next > 0 && time - sortedTimes[next - 1] <= window);
+    }
+
+    private List<Count> topCounts(final long[] counts, final int maxResults) {
+        PriorityQueue<Count> top = new PriorityQueue<>(Math.max(1, maxResults),
+                (a, b) -> Long.compare(a.count, b.count));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && maxResults > 0) {
+                if (top.size() < maxResults) {
+                    top.add(new Count(ids.get(i), counts[i]));
+                } else if (counts[i] > top.peek().count) {
+                    top.poll();
+                    top.add(new Count(ids.get(i), counts[i]));
+                }
+            }
+        }
+
+        List<Count> result = new ArrayList<>(top);
+        result.sort((a, b) -> a.count == b.count ? a.id.compareTo(b.id) : Long.compare(b.count, a.count));
+        return result;
+    }
+
+    private boolean addEvent(final String line) {
+        String[] fields = line.split("\t");
+        if (fields.length < 3 || fields.length > 4) {
+            return false;
+        }
+
+        long time;
+        try {
+            time = Long.parseLong(fields[0]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        int action = encode(fields[1], actions, actionIndices);
+        int first = encodeAtom(fields[2], time);
+        int second = 4 == fields.length ? encodeAtom(fields[3], time) : -1;
+        getPartition(time).add(time, action, first, second);
+        return true;
+    }
+
+    private int encodeAtom(final String id, final long time) {
+        int index = encode(id, ids, idIndices);
+        if (index == lastActivity.length) {
+            lastActivity = Arrays.copyOf(lastActivity, Math.max(16, index * 2));
+        }
+        if (time > lastActivity[index]) {
+            lastActivity[index] = time;
+        }
+        return index;
+    }
+
+    private int encode(final String value, final List<String> values, final Map<String, Integer> indices) {
+        Integer index = indices.get(value);
+        if (null == index) {
+            index = values.size();
+            values.add(value);
+            indices.put(value, index);
+        }
+        return index;
+    }
+
+    private Partition getPartition(final long time) {
+        long key = Math.floorDiv(time, PARTITION_LENGTH);
+        // the log is written in order, so an earlier partition is needed only for events out of order
+        for (int i = partitions.size() - 1; i >= 0; i--) {
+            Partition p = partitions.get(i);
+            if (p.key == key) {
+                return p;
+            } else if (p.key < key) {
+                Partition created = new Partition(key);
+                partitions.add(i + 1, created);
+                return created;
+            }
+        }
+
+        Partition created = new Partition(key);
+        partitions.add(0, created);
+        return created;
+    }
+
+    private void clear() {
+        actions.clear();
+        actionIndices.clear();
+        ids.clear();
+        idIndices.clear();
+        partitions.clear();
+        lastActivity = new long[0];
+        logPosition = 0;
+    }
+
+    private void write(final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(logPosition);
+
+        writeStrings(actions, out);
+        writeStrings(ids, out);
+
+        out.writeInt(partitions.size());
+        for (Partition p : partitions) {
+            out.writeLong(p.key);
+            out.writeInt(p.size);
+            long previous = p.key * PARTITION_LENGTH;
+            for (int i = 0; i < p.size; i++) {
+                writeVarLong(zigZag(p.times[i] - previous), out);
+                previous = p.times[i];
+            }
+            for (int i = 0; i < p.size; i++) {
+                writeVarLong(p.actions[i], out);
+            }
+            for (int i = 0; i < p.size; i++) {
+                writeVarLong(p.firstAtoms[i], out);
+            }
+            for (int i = 0; i < p.size; i++) {
+                writeVarLong(p.secondAtoms[i] + 1, out);
+            }
+        }
+    }
+
+    private void read(final DataInputStream in) throws IOException {
+        if (MAGIC != in.readInt()) {
+            throw new IOException("not an activity index");
+        }
+        int version = in.readInt();
+        if (VERSION != version) {
+            throw new IOException("unsupported activity index version: " + version);
+        }
+        logPosition = in.readLong();
+
+        for (String action : readStrings(in)) {
+            encode(action, actions, actionIndices);
+        }
+        for (String id : readStrings(in)) {
+            encode(id, ids, idIndices);
+        }
+        lastActivity = new long[ids.size()];
+
+        int numberOfPartitions = in.readInt();
+        for (int i = 0; i < numberOfPartitions; i++) {
+            Partition p = new Partition(in.readLong());
+            int size = in.readInt();
+            long[] times = new long[size];
+            long previous = p.key * PARTITION_LENGTH;
+            for (int j = 0; j < size; j++) {
+                times[j] = previous + unZigZag(readVarLong(in));
+                previous = times[j];
+            }
+            int[] actionColumn = readIntColumn(size, 0, in);
+            int[] firstColumn = readIntColumn(size, 0, in);
+            int[] secondColumn = readIntColumn(size, -1, in);
+            for (int j = 0; j < size; j++) {
+                p.add(times[j], actionColumn[j], firstColumn[j], secondColumn[j]);
+                updateLastActivity(firstColumn[j], times[j]);
+                if (secondColumn[j] >= 0) {
+                    updateLastActivity(secondColumn[j], times[j]);
+                }
+            }
+            partitions.add(p);
+        }
+    }
+
+    private void updateLastActivity(final int atom, final long time) {
+        if (time > lastActivity[atom]) {
+            lastActivity[atom] = time;
+        }
+    }
+
+    private int[] readIntColumn(final int size, final int offset, final DataInputStream in) throws IOException {
+        int[] column = new int[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = (int) readVarLong(in) + offset;
+        }
+        return column;
+    }
+
+    private void writeStrings(final List<String> strings, final DataOutputStream out) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+    }
+
+    private List<String> readStrings(final DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    private static long zigZag(final long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unZigZag(final long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static void writeVarLong(long n, final DataOutputStream out) throws IOException {
+        while ((n & ~0x7FL) != 0) {
+            out.writeByte((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.writeByte((int) n);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long n = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw new IOException("malformed activity index");
+    }
+
+    /**
+     * An atom id and a number of events
+     */
+    public static class Count {
+        private final String id;
+        private final long count;
+
+        private Count(final String id, final long count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    // the events of one day, one column per field
+    private static class Partition {
+        private final long key;
+        private int size;
+        private long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+        private long[] times = new long[16];
+        private int[] actions = new int[16];
+        private int[] firstAtoms = new int[16];
+        private int[] secondAtoms = new int[16];
+
+        private Partition(final long key) {
+            this.key = key;
+        }
+
+        private void add(final long time, final int action, final int firstAtom, final int secondAtom) {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                actions = Arrays.copyOf(actions, capacity);
+                firstAtoms = Arrays.copyOf(firstAtoms, capacity);
+                secondAtoms = Arrays.copyOf(secondAtoms, capacity);
+            }
+            times[size] = time;
+            actions[size] = action;
+            firstAtoms[size] = firstAtom;
+            secondAtoms[size] = secondAtom;
+            size++;
+
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+    }
+}
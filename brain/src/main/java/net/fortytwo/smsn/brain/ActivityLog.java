@@ -1,16 +1,94 @@
 package net.fortytwo.smsn.brain;
 
+import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * A log of view and edit operations, written as tab-separated lines of a timestamp, an action, and atom ids.
+ * Events are placed in a bounded queue by the logging thread, and written in batches by a background thread,
+ * which flushes the log once enough events have been written, or once enough time has passed.
+ * When the queue is full, an event is either dropped or waits for space, according to the overflow policy.
+ * {@link #flush()} waits until all previously logged events have been written and flushed.
+ * Events still queued when the JVM exits are written by a shutdown hook, unless the log has already been shut down.
+ */
 public class ActivityLog {
-    private final OutputStreamWriter out;
 
-    public ActivityLog(FileWriter out) {
+    /**
+     * What is done with an event when the queue of unwritten events is full
+     */
+    public enum OverflowPolicy {
+        // the logging thread waits until the event can be queued
+        BLOCK,
+        // the event is discarded and counted
+        DROP
+    }
+
+    private static final int
+            DEFAULT_CAPACITY = 8192,
+            DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    private final Writer out;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushInterval;
+    private final OverflowPolicy overflowPolicy;
+
+    private final BlockingQueue<Event> queue;
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private volatile IOException failure;
+    private volatile boolean shutDown;
+
+    public ActivityLog(final Writer out) {
+        this(out, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, OverflowPolicy.DROP);
+    }
+
+    /**
+     * @param out            the destination of the log
+     * @param capacity       the maximum number of events waiting to be written
+     * @param batchSize      the number of written events after which the log is flushed
+     * @param flushInterval  the maximum time, in milliseconds, for which written events remain unflushed
+     * @param overflowPolicy what is done with an event when the queue is full
+     */
+    public ActivityLog(final Writer out,
+                       final int capacity,
+                       final int batchSize,
+                       final long flushInterval,
+                       final OverflowPolicy overflowPolicy) {
+        if (capacity <= 0 || batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException();
+        }
+
         this.out = out;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+
+        queue = new ArrayBlockingQueue<>(capacity);
+        writerThread = new Thread(this::writeEvents, "activity-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        shutdownHook = new Thread(this::closeAtExit, "activity-log-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     public void logCreate(final Atom a) {
@@ -35,31 +113,232 @@ public class ActivityLog {
         log("unlink", tail, head);
     }
 
+    /**
+     * Waits until all events logged before this call have been written and flushed.
+     * A failure to write the log is reported by the first call to this method after the failure,
+     * and then cleared, so that the log remains usable if later writes succeed.
+     */
     public void flush() {
+        Barrier barrier = new Barrier();
         try {
-            out.flush();
-        } catch (IOException e) {
+            if (!shutDown) {
+                queue.put(barrier);
+                // the writer may have stopped before reaching the barrier
+                boolean written = false;
+                while (!written && writerThread.isAlive()) {
+                    written = barrier.written.await(flushInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(new InterruptedIOException("interrupted while flushing activity log"));
+        }
+
+        IOException e = failure;
+        if (null != e) {
+            failure = null;
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Writes all queued events, then closes the log
+     */
     public void shutDown() throws IOException {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is already shutting down, and the hook closes the log
+        }
+        close();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(capacity, queue.size(), written.sum(), dropped.sum(), flushes.sum());
+    }
+
+    private void close() throws IOException {
+        flush();
+        shutDown = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         out.close();
     }
 
-    private void log(final String action, final Atom... a) {
+    private void closeAtExit() {
         try {
-            out.append("")
-                    .append("").append(String.valueOf(System.currentTimeMillis()))
-                    .append("\t").append(action);
+            close();
+        } catch (IOException | RuntimeException e) {
+            SemanticSynchrony.getLogger().warning("failed to close activity log: " + e.getMessage());
+        }
+    }
+
+    private void log(final String action, final Atom... atoms) {
+        // ids are read on the logging thread, which has access to the graph
+        String[] ids = new String[atoms.length];
+        for (int i = 0; i < atoms.length; i++) {
+            ids[i] = atoms[i].getId();
+        }
+        Event event = new Event(System.currentTimeMillis(), action, ids);
+
+        if (shutDown) {
+            dropped.increment();
+        } else if (OverflowPolicy.BLOCK == overflowPolicy) {
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+            }
+        } else if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeEvents() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        List<Barrier> barriers = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int unflushed = 0;
+        long lastFlush = System.currentTimeMillis();
+
+        while (!shutDown || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (null != first) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // shutting down; write whatever remains
+                queue.drainTo(batch);
+            }
+
+            for (Event event : batch) {
+                if (event instanceof Barrier) {
+                    barriers.add((Barrier) event);
+                } else {
+                    write(event, line);
+                    unflushed++;
+                }
+            }
+            batch.clear();
 
-            for (Atom atom : a) {
-                out.append("\t").append(atom.getId());
+            long now = System.currentTimeMillis();
+            if (!barriers.isEmpty() || (unflushed > 0
+                    && (unflushed >= batchSize || now - lastFlush >= flushInterval || shutDown))) {
+                flushWriter();
+                unflushed = 0;
+                lastFlush = now;
             }
 
-            out.append("\n");
+            for (Barrier barrier : barriers) {
+                barrier.written.countDown();
+            }
+            barriers.clear();
+        }
+    }
+
+    private void write(final Event event, final StringBuilder line) {
+        line.setLength(0);
+        line.append(event.time).append('\t').append(event.action);
+        for (String id : event.ids) {
+            line.append('\t').append(id);
+        }
+        line.append('\n');
+
+        try {
+            out.append(line);
+            written.increment();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            fail(e);
+        }
+    }
+
+    private void flushWriter() {
+        try {
+            out.flush();
+            flushes.increment();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(final IOException e) {
+        if (null == failure) {
+            SemanticSynchrony.getLogger().warning("failed to write activity log: " + e.getMessage());
+        }
+        failure = e;
+    }
+
+    private static class Event {
+        private final long time;
+        private final String action;
+        private final String[] ids;
+
+        private Event(final long time, final String action, final String[] ids) {
+            this.time = time;
+            this.action = action;
+            this.ids = ids;
+        }
+    }
+
+    // a marker which is released once all events before it have been written and flushed
+    private static class Barrier extends Event {
+        private final CountDownLatch written = new CountDownLatch(1);
+
+        private Barrier() {
+            super(0, null, null);
+        }
+    }
+
+    public static class Statistics {
+        private final int capacity;
+        private final int queued;
+        private final long written;
+        private final long dropped;
+        private final long flushes;
+
+        private Statistics(final int capacity,
+                           final int queued,
+                           final long written,
+                           final long dropped,
+                           final long flushes) {
+            this.capacity = capacity;
+            this.queued = queued;
+            this.written = written;
+            this.dropped = dropped;
+            this.flushes = flushes;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the number of events waiting to be written
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        /**
+         * @return the number of events which have been discarded because the queue was full
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getFlushes() {
+            return flushes;
         }
     }
 }
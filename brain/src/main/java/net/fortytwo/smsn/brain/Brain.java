@@ -1,12 +1,36 @@
 package net.fortytwo.smsn.brain;
 
+import com.google.common.base.Preconditions;
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.io.BrainReader;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.io.snapshot.SnapshotFormat;
+import net.fortytwo.smsn.brain.io.snapshot.SnapshotReader;
+import net.fortytwo.smsn.brain.io.snapshot.SnapshotWriter;
 import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.pg.MutationJournal;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
 import net.fortytwo.smsn.brain.rdf.KnowledgeBase;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
 
 public class Brain {
 
@@ -26,16 +50,37 @@ public class Brain {
 
     private static final boolean RUN_BACKGROUND_TASKS = false;
 
+    private static final String
+            JOURNAL_FILE = "mutations.journal",
+            CHECKPOINT_FILE = "checkpoint.snapshot",
+            CLASSIFICATION_FILE = "classifications.sidecar";
+
+    // identifies the layout of the classification sidecar
+    private static final int CLASSIFICATION_FORMAT = 2;
+
+    // the checkpoint checksum recorded in the classification sidecar when there is no checkpoint
+    private static final long NO_CHECKPOINT = -1;
+
     private final TopicGraph topicGraph;
 
     private final KnowledgeBase knowledgeBase;
 
     private final ActivityLog activityLog;
+    private final File activityLogFile;
+    private ActivityIndex activityIndex;
 
     private final Priorities priorities;
 
     private final EventStack eventStack;
 
+    private MutationJournal journal;
+    private File checkpointFile;
+
+    private File classificationFile;
+    // the journal position as of which classifications were read, and the atoms then still to be re-classified
+    private long classificationPosition = -1;
+    private Set<String> classificationChanges;
+
     public Brain(final TopicGraph topicGraph) throws BrainException {
         this.topicGraph = topicGraph;
 
@@ -46,18 +91,27 @@ public class Brain {
         } catch (InstantiationException | IllegalAccessException e) {
             throw new BrainException(e);
         }
+        knowledgeBase.setParallelism(SemanticSynchrony.getConfiguration().getInferenceThreads());
+
+        String journalPath = SemanticSynchrony.getConfiguration().getJournalDirectory();
+        if (null != journalPath) {
+            checkpointFile = new File(journalPath, CHECKPOINT_FILE);
+            classificationFile = new File(journalPath, CLASSIFICATION_FILE);
+            readClassifications();
+        }
 
         String filePath = SemanticSynchrony.getConfiguration().getActivityLog();
 
         if (null == filePath) {
             SemanticSynchrony.getLogger().warning("no activity log specified");
             activityLog = null;
+            activityLogFile = null;
         } else {
             SemanticSynchrony.getLogger().fine("using activity log at " + filePath);
             try {
-                File logFile = new File(filePath);
-                createDirectories(logFile);
-                activityLog = new ActivityLog(new FileWriter(logFile, true));
+                activityLogFile = new File(filePath);
+                createDirectories(activityLogFile);
+                activityLog = new ActivityLog(openActivityLog(activityLogFile));
             } catch (IOException e) {
                 throw new BrainException(e);
             }
@@ -68,6 +122,108 @@ public class Brain {
         eventStack = new EventStack(EVENT_STACK_CAPACITY);
     }
 
+    /**
+     * Restores the graph of this brain from the configured journal directory, if any:
+     * the last checkpoint is read into the graph if the graph is empty, then the journal is replayed on top of it.
+     * From then on, each committed transaction is written to the journal.
+     * If classifications were read at construction, only the atoms changed since they were saved remain to be
+     * re-classified.
+     */
+    public void recover() throws BrainException {
+        String dirPath = SemanticSynchrony.getConfiguration().getJournalDirectory();
+        if (null == dirPath) {
+            return;
+        }
+        if (!(topicGraph instanceof PGTopicGraph)) {
+            SemanticSynchrony.getLogger().warning("journal is not supported for graph " + topicGraph);
+            return;
+        }
+        Preconditions.checkState(null == journal, "already recovered");
+
+        PGTopicGraph graph = (PGTopicGraph) topicGraph;
+        File dir = new File(dirPath);
+        checkpointFile = new File(dir, CHECKPOINT_FILE);
+        classificationFile = new File(dir, CLASSIFICATION_FILE);
+        try {
+            if (checkpointFile.exists() && !graph.getAllAtoms().iterator().hasNext()) {
+                readCheckpoint(graph);
+            }
+
+            journal = new MutationJournal(new File(dir, JOURNAL_FILE));
+            journal.replay(graph);
+
+            if (classificationPosition >= 0) {
+                restoreClassificationChanges();
+            }
+        } catch (IOException e) {
+            throw new BrainException(e);
+        }
+        graph.setJournal(journal);
+    }
+
+    /**
+     * Writes the entire graph to a new checkpoint, then discards the journal entries which the checkpoint includes
+     */
+    public synchronized void checkpoint() throws IOException {
+        Preconditions.checkState(null != journal, "no journal");
+
+        long before = System.currentTimeMillis();
+        long position = journal.getPosition();
+
+        File tmpFile = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            BrainWriter.Context context = new BrainWriter.Context();
+            context.setTopicGraph(topicGraph);
+            context.setFormat(SnapshotFormat.getInstance());
+            context.setDestStream(out);
+            new SnapshotWriter().doExport(context);
+            out.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal.truncate(position);
+
+        long after = System.currentTimeMillis();
+        SemanticSynchrony.getLogger().info("checkpointed graph to " + checkpointFile + " in "
+                + (after - before) + " ms");
+
+        saveClassifications();
+    }
+
+    /**
+     * Writes the classifications of all atoms to a sidecar of the checkpoint, stamped with the current position
+     * of the journal, so that a restarted brain need only re-classify the atoms changed since then.
+     * This is done as part of each checkpoint.
+     */
+    public synchronized void saveClassifications() throws IOException {
+        Preconditions.checkState(null != journal, "no journal");
+
+        // the position and the atoms not yet re-classified are read together, while no transaction is committed
+        Map.Entry<Long, Set<String>> stamp = journal.atPosition(
+                position -> new AbstractMap.SimpleImmutableEntry<>(position, knowledgeBase.getChanges()));
+
+        File tmpFile = new File(classificationFile.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(CLASSIFICATION_FORMAT);
+            // the checkpoint on top of which the journal position is valid
+            out.writeLong(getCheckpointChecksum());
+            out.writeLong(stamp.getKey());
+            Set<String> changes = stamp.getValue();
+            out.writeInt(null == changes ? -1 : changes.size());
+            if (null != changes) {
+                for (String id : changes) {
+                    out.writeUTF(id);
+                }
+            }
+            knowledgeBase.writeClassifications(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), classificationFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     public void startBackgroundTasks() {
         if (!RUN_BACKGROUND_TASKS) return;
 
@@ -88,6 +244,27 @@ public class Brain {
         return activityLog;
     }
 
+    /**
+     * @return an index of the activity log, brought up to date with all events logged so far,
+     * or null if there is no activity log
+     */
+    public synchronized ActivityIndex getActivityIndex() throws IOException {
+        if (null == activityLog) {
+            return null;
+        }
+
+        File indexFile = new File(activityLogFile.getPath() + ".index");
+        if (null == activityIndex) {
+            activityIndex = ActivityIndex.load(indexFile);
+        }
+
+        activityLog.flush();
+        if (activityIndex.update(activityLogFile) > 0) {
+            activityIndex.save(indexFile);
+        }
+        return activityIndex;
+    }
+
     public Priorities getPriorities() {
         return priorities;
     }
@@ -102,6 +279,95 @@ public class Brain {
         }
     }
 
+    private void readCheckpoint(final TopicGraph graph) throws IOException {
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            BrainReader.Context context = new BrainReader.Context();
+            context.setTopicGraph(graph);
+            context.setFormat(SnapshotFormat.getInstance());
+            context.setSourceStream(in);
+            new SnapshotReader().doImport(context);
+        }
+        graph.commit();
+    }
+
+    private void readClassifications() {
+        if (!classificationFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(classificationFile)))) {
+            if (CLASSIFICATION_FORMAT != in.readInt()) {
+                SemanticSynchrony.getLogger().warning("ignoring classifications in unknown format: "
+                        + classificationFile);
+                return;
+            }
+            if (getCheckpointChecksum() != in.readLong()) {
+                SemanticSynchrony.getLogger().warning("ignoring classifications saved for another checkpoint: "
+                        + classificationFile);
+                return;
+            }
+            long position = in.readLong();
+            int numberOfChanges = in.readInt();
+            Set<String> changes = null;
+            if (numberOfChanges >= 0) {
+                changes = new HashSet<>();
+                for (int i = 0; i < numberOfChanges; i++) {
+                    changes.add(in.readUTF());
+                }
+            }
+            knowledgeBase.readClassifications(in);
+            knowledgeBase.setChanges(changes);
+
+            classificationPosition = position;
+            classificationChanges = changes;
+        } catch (IOException e) {
+            SemanticSynchrony.getLogger().log(Level.WARNING, "failed to read classifications", e);
+            knowledgeBase.reset();
+        }
+    }
+
+    // identifies the checkpoint by the checksum of its content, which a CRC-32 value cannot confuse with NO_CHECKPOINT
+    private long getCheckpointChecksum() throws IOException {
+        return checkpointFile.exists() ? SnapshotFormat.readChecksum(checkpointFile) : NO_CHECKPOINT;
+    }
+
+    // replaces the changes made by recovery with those made since the classifications were saved
+    private void restoreClassificationChanges() throws IOException {
+        if (classificationPosition > journal.getPosition()) {
+            SemanticSynchrony.getLogger().warning("journal ends before classifications were saved; "
+                    + "all atoms will be re-classified");
+            knowledgeBase.reset();
+        } else if (null == classificationChanges) {
+            knowledgeBase.setChanges(null);
+        } else {
+            Set<String> changes = journal.getChangedIds(classificationPosition);
+            changes.addAll(classificationChanges);
+            knowledgeBase.setChanges(changes);
+            SemanticSynchrony.getLogger().info(changes.size() + " atom(s) changed since classifications were saved");
+        }
+
+        classificationPosition = -1;
+        classificationChanges = null;
+    }
+
+    // appends to an existing log, completing any last line left unterminated by an earlier process
+    private Writer openActivityLog(final File file) throws IOException {
+        boolean terminated = true;
+        if (file.length() > 0) {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                in.seek(in.length() - 1);
+                terminated = '\n' == in.read();
+            }
+        }
+
+        Writer out = new FileWriter(file, true);
+        if (!terminated) {
+            out.write('\n');
+        }
+        return out;
+    }
+
     private void createDirectories(final File file) {
         file.getParentFile().mkdirs();
     }
@@ -4,6 +4,7 @@ public interface Params {
     enum Format{json, wiki}
 
     String
+            ACTIVITY = "activity",
             CONFIGURATION = "configuration",
             DEFAULT_SOURCE = "defaultSource",
             DEFAULT_WEIGHT = "defaultWeight",
@@ -19,6 +20,7 @@ public interface Params {
             QUERY_TYPE = "queryType",
             REQUEST = "request",
             ROOT = "root",
+            STATISTICS = "statistics",
             STYLE = "style",
             TITLE = "title",
             TITLE_CUTOFF = "titleCutoff",
@@ -18,6 +18,14 @@ public abstract class BrainWriter {
 
     public abstract void doExport(Context context) throws IOException;
 
+    /**
+     * @return whether this writer can split its output into a series of files in the destination directory,
+     * as controlled by {@link Context#getChunkSize()}
+     */
+    public boolean supportsChunkedOutput() {
+        return false;
+    }
+
     public static class Context {
         private TopicGraph topicGraph;
         private KnowledgeBase knowledgeBase;
@@ -26,6 +34,8 @@ public abstract class BrainWriter {
         private File destDirectory;
         private OutputStream destStream;
         private Format format;
+        private long chunkSize;
+        private boolean compressed;
 
         private TopicGraph filteredGraph;
 
@@ -85,6 +95,28 @@ public abstract class BrainWriter {
             this.format = format;
         }
 
+        /**
+         * @return the maximum number of records per file, for chunked output, or 0 for a single output stream
+         */
+        public long getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(long chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @return whether files written to the destination directory are to be gzipped
+         */
+        public boolean isCompressed() {
+            return compressed;
+        }
+
+        public void setCompressed(boolean compressed) {
+            this.compressed = compressed;
+        }
+
         public TopicGraph getFilteredGraph() {
             if (null == filter) {
                 return topicGraph;
@@ -2,16 +2,29 @@ package net.fortytwo.smsn.brain.io.json;
 
 import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.model.Note;
+import org.apache.tinkerpop.shaded.jackson.core.JsonFactory;
+import org.apache.tinkerpop.shaded.jackson.core.JsonGenerator;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONString;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
 public class JsonPrinter {
 
+    private static final JsonFactory jsonFactory = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final char[] TITLE_TRUNCATOR = JsonFormat.TITLE_TRUNCATOR.toCharArray();
+
     private int titleLengthCutoff = -1;
 
+    // holds truncated titles while they are written
+    private char[] titleBuffer = new char[0];
+
     public int getTitleLengthCutoff() {
         return titleLengthCutoff;
     }
@@ -28,6 +41,119 @@ public class JsonPrinter {
         }
     }
 
+    /**
+     * Renders a note tree as a JSON string which may be embedded in a JSON object without being parsed.
+     * This is equivalent to {@link #toJson(Note)}, but does not build a tree of JSON objects.
+     */
+    public JSONString toJsonString(final Note note) throws IOException {
+        StringWriter writer = new StringWriter();
+        write(note, writer);
+
+        String json = writer.toString();
+        return () -> json;
+    }
+
+    /**
+     * Writes a note tree as JSON to the given writer, which is not closed
+     */
+    public void write(final Note note, final Writer writer) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            writeInternal(note, generator);
+        }
+    }
+
+    // fields which are null are omitted, and numbers are formatted, as in toJsonInternal
+    private void writeInternal(final Note note, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        writeStringField(JsonFormat.Keys.ID, note.getId(), generator);
+        writeNumberField(SemanticSynchrony.PropertyKeys.WEIGHT, note.getWeight(), generator);
+        writeStringField(SemanticSynchrony.PropertyKeys.SOURCE, note.getSource(), generator);
+        writeNumberField(SemanticSynchrony.PropertyKeys.CREATED, note.getCreated(), generator);
+        generator.writeNumberField(JsonFormat.Keys.NUMBER_OF_CHILDREN, note.getNumberOfChildren());
+        generator.writeNumberField(JsonFormat.Keys.NUMBER_OF_PARENTS, note.getNumberOfParents());
+
+        Float priority = note.getPriority();
+        if (null != priority && priority > 0) {
+            writeNumberField(SemanticSynchrony.PropertyKeys.PRIORITY, priority, generator);
+        }
+
+        writeTitle(note.getTitle(), generator);
+
+        writeStringField(SemanticSynchrony.PropertyKeys.TEXT, note.getText(), generator);
+        writeStringField(SemanticSynchrony.PropertyKeys.ALIAS, note.getAlias(), generator);
+        writeStringField(SemanticSynchrony.PropertyKeys.SHORTCUT, note.getShortcut(), generator);
+
+        if (null != note.getMeta()) {
+            generator.writeArrayFieldStart(JsonFormat.Keys.META);
+            for (String s : note.getMeta()) {
+                generator.writeString(s);
+            }
+            generator.writeEndArray();
+        }
+
+        if (0 < note.getChildren().size()) {
+            generator.writeArrayFieldStart(JsonFormat.Keys.CHILDREN);
+            for (Note child : note.getChildren()) {
+                writeInternal(child, generator);
+            }
+            generator.writeEndArray();
+        }
+
+        generator.writeEndObject();
+    }
+
+    // truncates the title without creating an intermediate string
+    private void writeTitle(final String title, final JsonGenerator generator) throws IOException {
+        if (null == title) {
+            return;
+        }
+
+        generator.writeFieldName(SemanticSynchrony.PropertyKeys.TITLE);
+        if (titleLengthCutoff > 0 && title.length() > titleLengthCutoff) {
+            int length = titleLengthCutoff + TITLE_TRUNCATOR.length;
+            if (titleBuffer.length < length) {
+                titleBuffer = new char[length];
+            }
+            title.getChars(0, titleLengthCutoff, titleBuffer, 0);
+            System.arraycopy(TITLE_TRUNCATOR, 0, titleBuffer, titleLengthCutoff, TITLE_TRUNCATOR.length);
+            generator.writeString(titleBuffer, 0, length);
+        } else {
+            generator.writeString(title);
+        }
+    }
+
+    private void writeStringField(final String name, final String value, final JsonGenerator generator)
+            throws IOException {
+        if (null != value) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private void writeNumberField(final String name, final Long value, final JsonGenerator generator)
+            throws IOException {
+        if (null != value) {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    // as in JSONObject.numberToString, integral values in plain notation have no fractional part
+    private void writeNumberField(final String name, final Float value, final JsonGenerator generator)
+            throws IOException {
+        if (null != value) {
+            if (value.isNaN() || value.isInfinite()) {
+                throw new IOException("non-finite numbers are not allowed in JSON");
+            }
+
+            float f = value;
+            if (f == Math.rint(f) && Math.abs(f) < 1e7f) {
+                generator.writeNumberField(name, (long) f);
+            } else {
+                generator.writeNumberField(name, f);
+            }
+        }
+    }
+
     public JSONObject toJsonInternal(final Note note) throws JSONException {
         JSONObject json = new JSONObject();
 
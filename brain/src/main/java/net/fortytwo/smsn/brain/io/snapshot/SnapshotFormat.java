@@ -0,0 +1,49 @@
+package net.fortytwo.smsn.brain.io.snapshot;
+
+import net.fortytwo.smsn.brain.io.Format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A versioned binary snapshot of all atoms and their children, for fast startup of an in-memory brain.
+ * All values are big-endian. A snapshot consists of:
+ * <ul>
+ * <li>the magic number {@link #MAGIC} and the version {@link #VERSION}</li>
+ * <li>a string table of atom ids and sources: a count, then for each string, a length and UTF-8 bytes</li>
+ * <li>the number of atoms, then one column per property: the table index of each atom's id and source
+ * (-1 for none), weight and priority (NaN for none) and creation time ({@link Long#MIN_VALUE} for none)</li>
+ * <li>the title, text, alias and shortcut of each atom, as a length (-1 for none) and UTF-8 bytes</li>
+ * <li>the number of children of each atom, then the atom index of each child, atom after atom</li>
+ * <li>a CRC-32 checksum of all of the above, as a long</li>
+ * </ul>
+ */
+public class SnapshotFormat extends Format {
+    static final int MAGIC = 0x534d536e; // "SMSn"
+    static final int VERSION = 1;
+
+    private static final SnapshotFormat instance = new SnapshotFormat();
+
+    private SnapshotFormat() {
+        super("Snapshot", Type.FileBased, "snapshot");
+    }
+
+    public static SnapshotFormat getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reads the checksum at the end of a snapshot file, which identifies the snapshot by its content
+     * without reading the rest of the file. The checksum is not verified.
+     */
+    public static long readChecksum(final File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < 8) {
+                throw new IOException("snapshot is too short to contain a checksum: " + file);
+            }
+            in.seek(in.length() - 8);
+            return in.readLong();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.fortytwo.smsn.brain.io.snapshot;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.io.BrainReader;
+import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.apache.commons.io.IOUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a {@link SnapshotFormat snapshot} into a graph, creating or updating each atom in the snapshot.
+ * A snapshot read from a file is memory-mapped rather than copied, and its checksum is verified
+ * before anything is written to the graph.
+ */
+public class SnapshotReader extends BrainReader {
+
+    private static final Charset UTF8 = Charset.forName(SemanticSynchrony.UTF8);
+
+    @Override
+    public List<Format> getFormats() {
+        return Collections.singletonList(SnapshotFormat.getInstance());
+    }
+
+    @Override
+    protected void importInternal(Context context) throws IOException {
+        ByteBuffer buffer = toBuffer(context.getSourceStream());
+        verifyChecksum(buffer);
+
+        try {
+            readSnapshot(buffer, context.getTopicGraph());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("malformed snapshot", e);
+        }
+    }
+
+    private ByteBuffer toBuffer(final InputStream in) throws IOException {
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            long position = channel.position();
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+        } else {
+            return ByteBuffer.wrap(IOUtils.toByteArray(in));
+        }
+    }
+
+    private void verifyChecksum(final ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8) {
+            throw new IOException("snapshot is too short");
+        }
+
+        ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.limit() - 8);
+        CRC32 checksum = new CRC32();
+        checksum.update(content);
+
+        if (checksum.getValue() != buffer.getLong(buffer.limit() - 8)) {
+            throw new IOException("snapshot checksum does not match its content");
+        }
+    }
+
+    private void readSnapshot(final ByteBuffer buffer, final TopicGraph graph) throws IOException {
+        if (SnapshotFormat.MAGIC != buffer.getInt()) {
+            throw new IOException("not a snapshot");
+        }
+        int version = buffer.getInt();
+        if (SnapshotFormat.VERSION != version) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+
+        int numberOfAtoms = buffer.getInt();
+        Atom[] atoms = new Atom[numberOfAtoms];
+        for (int i = 0; i < numberOfAtoms; i++) {
+            String id = strings[buffer.getInt()];
+            Optional<Atom> existing = graph.getAtomById(id);
+            atoms[i] = existing.isPresent() ? existing.get() : graph.createAtom(id);
+        }
+        for (Atom atom : atoms) {
+            int source = buffer.getInt();
+            if (source >= 0) {
+                atom.setSource(strings[source]);
+            }
+        }
+        for (Atom atom : atoms) {
+            float weight = buffer.getFloat();
+            if (!Float.isNaN(weight)) {
+                atom.setWeight(weight);
+            }
+        }
+        for (Atom atom : atoms) {
+            float priority = buffer.getFloat();
+            if (!Float.isNaN(priority)) {
+                atom.setPriority(priority);
+            }
+        }
+        for (Atom atom : atoms) {
+            long created = buffer.getLong();
+            if (Long.MIN_VALUE != created) {
+                atom.setCreated(created);
+            }
+        }
+
+        for (Atom atom : atoms) {
+            setIfPresent(readString(buffer), atom::setTitle);
+            setIfPresent(readString(buffer), atom::setText);
+            setIfPresent(readString(buffer), atom::setAlias);
+            setIfPresent(readString(buffer), atom::setShortcut);
+            checkAndCommit(graph);
+        }
+
+        // the child arrays follow the counts of children
+        ByteBuffer childIndices = buffer.duplicate();
+        childIndices.position(buffer.position() + 4 * numberOfAtoms);
+        for (Atom atom : atoms) {
+            int numberOfChildren = buffer.getInt();
+            if (0 == numberOfChildren) {
+                if (null != atom.getChildren()) {
+                    atom.setChildren(null);
+                }
+                continue;
+            }
+
+            Atom[] children = new Atom[numberOfChildren];
+            for (int i = 0; i < numberOfChildren; i++) {
+                children[i] = atoms[childIndices.getInt()];
+            }
+            atom.setChildren(graph.createListOfAtoms(children));
+            checkAndCommit(graph);
+        }
+
+        logger.info("read a snapshot of " + numberOfAtoms + " atoms");
+    }
+
+    private String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private void setIfPresent(final String value, final Consumer<String> setter) {
+        if (null != value) {
+            setter.accept(value);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.fortytwo.smsn.brain.io.snapshot;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes all atoms of a graph, or of a filtered copy of the graph, as a {@link SnapshotFormat snapshot}
+ */
+public class SnapshotWriter extends BrainWriter {
+
+    private static final Charset UTF8 = Charset.forName(SemanticSynchrony.UTF8);
+
+    @Override
+    public List<Format> getFormats() {
+        return Collections.singletonList(SnapshotFormat.getInstance());
+    }
+
+    @Override
+    public void doExport(Context context) throws IOException {
+        long before = System.currentTimeMillis();
+
+        Filter filter = context.getFilter();
+        TopicGraph graph = null == filter || filter.isTrivial()
+                ? context.getTopicGraph()
+                : context.getFilteredGraph();
+
+        List<Atom> atoms = new ArrayList<>();
+        graph.getAllAtoms().forEach(atoms::add);
+        Map<String, Integer> indexById = new HashMap<>();
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Atom a : atoms) {
+            indexById.put(a.getId(), indexById.size());
+            indexOf(a.getId(), strings);
+            indexOf(a.getSource(), strings);
+        }
+
+        CRC32 checksum = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(context.getDestStream()), checksum));
+        out.writeInt(SnapshotFormat.MAGIC);
+        out.writeInt(SnapshotFormat.VERSION);
+
+        out.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            writeString(s, out);
+        }
+
+        out.writeInt(atoms.size());
+        for (Atom a : atoms) {
+            out.writeInt(strings.get(a.getId()));
+        }
+        for (Atom a : atoms) {
+            out.writeInt(indexOf(a.getSource(), strings));
+        }
+        for (Atom a : atoms) {
+            out.writeFloat(toPrimitive(a.getWeight()));
+        }
+        for (Atom a : atoms) {
+            out.writeFloat(toPrimitive(a.getPriority()));
+        }
+        for (Atom a : atoms) {
+            Long created = a.getCreated();
+            out.writeLong(null == created ? Long.MIN_VALUE : created);
+        }
+
+        for (Atom a : atoms) {
+            writeString(a.getTitle(), out);
+            writeString(a.getText(), out);
+            writeString(a.getAlias(), out);
+            writeString(a.getShortcut(), out);
+        }
+
+        List<List<Atom>> childrenOfAtoms = new ArrayList<>(atoms.size());
+        for (Atom a : atoms) {
+            List<Atom> children = EntityList.toJavaList(a.getChildren());
+            childrenOfAtoms.add(children);
+            out.writeInt(children.size());
+        }
+        for (List<Atom> children : childrenOfAtoms) {
+            for (Atom child : children) {
+                out.writeInt(indexById.get(child.getId()));
+            }
+        }
+
+        out.flush();
+        // the checksum does not include itself
+        new DataOutputStream(context.getDestStream()).writeLong(checksum.getValue());
+        context.getDestStream().flush();
+
+        long after = System.currentTimeMillis();
+        logger.info("wrote a snapshot of " + atoms.size() + " atoms in " + (after - before) + " ms");
+    }
+
+    private int indexOf(final String s, final Map<String, Integer> strings) {
+        return null == s ? -1 : strings.computeIfAbsent(s, k -> strings.size());
+    }
+
+    private float toPrimitive(final Float f) {
+        return null == f ? Float.NaN : f;
+    }
+
+    private void writeString(final String s, final DataOutputStream out) throws IOException {
+        if (null == s) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.entities.EntityList;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class AtomBase implements Atom {
@@ -119,6 +120,10 @@ public class AtomBase implements Atom {
     public void deleteChildAt(int position) {
     }
 
+    @Override
+    public void replaceChildren(List<Atom> children, GraphChanges changes) {
+    }
+
     @Override
     public Collection<EntityList<Atom>> getFirstOf() {
         return null;
@@ -129,6 +134,15 @@ public class AtomBase implements Atom {
         return null;
     }
 
+    @Override
+    public void forEachParent(Consumer<Atom> consumer) {
+    }
+
+    @Override
+    public int getNumberOfParents() {
+        return 0;
+    }
+
     @Override
     public String getSource() {
         return source;
@@ -13,6 +13,16 @@ import java.util.function.Predicate;
 
 public class Filter implements Predicate<Atom>, Serializable {
 
+    /**
+     * The source index of an atom without a source
+     */
+    public static final byte NO_SOURCE = -1;
+
+    /**
+     * The source index of an atom whose source is not one of the configured data sources
+     */
+    public static final byte UNKNOWN_SOURCE = -2;
+
     private static final Map<String, Integer> sourceToIndex;
 
     static {
@@ -20,6 +30,7 @@ public class Filter implements Predicate<Atom>, Serializable {
         List<DataSource> sources = SemanticSynchrony.getConfiguration().getSources();
         Preconditions.checkNotNull(sources);
         Preconditions.checkArgument(sources.size() > 0);
+        Preconditions.checkArgument(sources.size() <= Byte.MAX_VALUE, "too many data sources");
         for (int i = 0; i < sources.size(); i++) {
             DataSource source = sources.get(i);
             sourceToIndex.put(source.getName(), i);
@@ -35,6 +46,9 @@ public class Filter implements Predicate<Atom>, Serializable {
 
     private static final Filter NO_FILTER = new Filter();
 
+    // accepts any atom with a known source and a weight, as does a trivial filter
+    private static final Compiled ACCEPT_VISIBLE = (sourceIndex, weight) -> sourceIndex >= 0 && weight >= 0f;
+
     public static Filter noFilter() {
         return NO_FILTER;
     }
@@ -115,6 +129,41 @@ public class Filter implements Predicate<Atom>, Serializable {
         return minSourceIndex == 0 && minWeight == 0;
     }
 
+    /**
+     * Reduces this filter to a test on an atom's source index and weight, which can be evaluated
+     * against precomputed values without reading the atom itself.
+     * Note that the result does not change with any subsequent change to this filter.
+     */
+    public Compiled compile() {
+        if (isTrivial()) {
+            return ACCEPT_VISIBLE;
+        }
+
+        final int minSourceIndex = this.minSourceIndex;
+        final float minWeight = this.minWeight;
+        if (0 == minWeight) {
+            return (sourceIndex, weight) -> sourceIndex >= minSourceIndex && weight >= 0f;
+        } else if (0 == minSourceIndex) {
+            return (sourceIndex, weight) -> sourceIndex >= 0 && weight >= minWeight;
+        } else {
+            return (sourceIndex, weight) -> sourceIndex >= minSourceIndex && weight >= minWeight;
+        }
+    }
+
+    /**
+     * @param source the name of a data source, or null
+     * @return the index of the source in the configured list of data sources,
+     * or {@link #NO_SOURCE} or {@link #UNKNOWN_SOURCE}
+     */
+    public static byte getSourceIndex(final String source) {
+        if (null == source) {
+            return NO_SOURCE;
+        }
+
+        Integer index = sourceToIndex.get(source);
+        return null == index ? UNKNOWN_SOURCE : index.byteValue();
+    }
+
     @Override
     public boolean test(final Atom atom) {
         Integer sourceIndex = getSourceIndexFor(atom);
@@ -131,4 +180,13 @@ public class Filter implements Predicate<Atom>, Serializable {
         String source = atom.getSource();
         return null == source ? null : sourceToIndex.get(source);
     }
+
+    /**
+     * A filter in terms of primitive atom properties: a source index as given by {@link #getSourceIndex(String)},
+     * and a weight which is NaN for atoms without a weight
+     */
+    @FunctionalInterface
+    public interface Compiled {
+        boolean test(byte sourceIndex, float weight);
+    }
 }
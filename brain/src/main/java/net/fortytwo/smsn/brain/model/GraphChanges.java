@@ -0,0 +1,70 @@
+package net.fortytwo.smsn.brain.model;
+
+/**
+ * A count of the vertices and edges which are created, changed or removed in the course of an update
+ */
+public class GraphChanges {
+    private int verticesCreated;
+    private int verticesRemoved;
+    private int edgesCreated;
+    private int edgesChanged;
+    private int edgesRemoved;
+
+    public void vertexCreated() {
+        verticesCreated++;
+    }
+
+    public void vertexRemoved() {
+        verticesRemoved++;
+    }
+
+    public void edgeCreated() {
+        edgesCreated++;
+    }
+
+    public void edgeChanged() {
+        edgesChanged++;
+    }
+
+    public void edgesRemoved(final int count) {
+        edgesRemoved += count;
+    }
+
+    public int getVerticesCreated() {
+        return verticesCreated;
+    }
+
+    public int getVerticesRemoved() {
+        return verticesRemoved;
+    }
+
+    public int getEdgesCreated() {
+        return edgesCreated;
+    }
+
+    /**
+     * @return the number of edges whose properties have changed
+     */
+    public int getEdgesChanged() {
+        return edgesChanged;
+    }
+
+    public int getEdgesRemoved() {
+        return edgesRemoved;
+    }
+
+    public int getVerticesTouched() {
+        return verticesCreated + verticesRemoved;
+    }
+
+    public int getEdgesTouched() {
+        return edgesCreated + edgesChanged + edgesRemoved;
+    }
+
+    @Override
+    public String toString() {
+        return getVerticesTouched() + " vertices (" + verticesCreated + " created, " + verticesRemoved + " removed) and "
+                + getEdgesTouched() + " edges (" + edgesCreated + " created, " + edgesChanged + " changed, "
+                + edgesRemoved + " removed)";
+    }
+}
@@ -72,13 +72,14 @@ public class Note {
     public Note(final Note copy) {
         this();
 
-        this.title = copy.title;
-        this.text = copy.text;
-        this.id = copy.id;
-        this.weight = copy.weight;
-        this.priority = copy.priority;
-        this.created = copy.created;
-        this.alias = copy.alias;
+        // read through the getters, so that subclasses may provide their properties lazily
+        this.title = copy.getTitle();
+        this.text = copy.getText();
+        this.id = copy.getId();
+        this.weight = copy.getWeight();
+        this.priority = copy.getPriority();
+        this.created = copy.getCreated();
+        this.alias = copy.getAlias();
 
         this.numberOfChildren = copy.numberOfChildren;
         this.numberOfParents = copy.numberOfParents;
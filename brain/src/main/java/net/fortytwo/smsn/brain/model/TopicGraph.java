@@ -8,6 +8,7 @@ import net.fortytwo.smsn.brain.model.entities.Page;
 import net.fortytwo.smsn.brain.model.entities.Topic;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +26,26 @@ public interface TopicGraph {
 
     Iterable<Atom> getAllAtoms();
 
+    /**
+     * @param filter a compiled filter
+     * @return an Iterable of all atoms which pass the filter
+     */
+    Iterable<Atom> getAllAtoms(Filter.Compiled filter);
+
+    /**
+     * @param filter          a compiled filter
+     * @param withoutParents  whether to find only atoms which have no parents
+     * @param withoutChildren whether to find only atoms which have no children
+     * @return all atoms which pass the filter and which have no parents, no children, or neither, as specified
+     */
+    List<Atom> getUnlinkedAtoms(Filter.Compiled filter, boolean withoutParents, boolean withoutChildren);
+
+    /**
+     * @return whether the given atom passes the given compiled filter,
+     * which may be determined without reading the atom's properties
+     */
+    boolean test(Filter.Compiled filter, Atom atom);
+
     Optional<Atom> getAtomById(String id);
 
     List<Atom> getAtomsByAcronym(String acronym, Filter filter);
@@ -60,6 +81,17 @@ public interface TopicGraph {
 
     void notifyOfUpdate();
 
+    /**
+     * Notifies update listeners of changes to atoms.
+     * Changes made through a topic graph are published in this way when the transaction ends,
+     * so that this method need only be called for changes made by other means.
+     *
+     * @param changedIds the ids of the changed atoms, or null if any atom may have changed
+     */
+    void notifyOfUpdate(Collection<String> changedIds);
+
+    void addUpdateListener(UpdateListener listener);
+
     void reindexAtom(Atom a);
 
     long getLastUpdate();
@@ -91,4 +123,14 @@ public interface TopicGraph {
             }
         }
     }
+
+    /**
+     * A receiver of the ids of changed atoms, e.g. for the invalidation of cached views
+     */
+    interface UpdateListener {
+        /**
+         * @param changedIds the ids of the changed atoms, or null if any atom may have changed
+         */
+        void atomsChanged(Collection<String> changedIds);
+    }
 }
@@ -1,6 +1,9 @@
 package net.fortytwo.smsn.brain.model.entities;
 
+import net.fortytwo.smsn.brain.model.GraphChanges;
+
 import java.util.Collection;
+import java.util.List;
 import java.util.function.Consumer;
 
 public interface Atom extends Entity {
@@ -47,8 +50,25 @@ public interface Atom extends Entity {
 
     void deleteChildAt(int position);
 
+    /**
+     * Replaces the children of this atom in a single pass over its list of children.
+     * Unlike {@link #setChildren}, which creates a new list, this keeps the list entry of each atom
+     * which remains a child, so that only those parts of the list which change are written.
+     *
+     * @param children the new children of this atom, in order
+     * @param changes  a count to which the vertices and edges created, changed or removed are added
+     */
+    void replaceChildren(List<Atom> children, GraphChanges changes);
+
     Collection<EntityList<Atom>> getFirstOf();
 
+    /**
+     * Provides each atom of which this atom is a child, once per occurrence of this atom among its children
+     */
+    void forEachParent(Consumer<Atom> consumer);
+
+    int getNumberOfParents();
+
     Atom getSubject(EntityList<Atom> notes);
 
     String getSource();
@@ -0,0 +1,286 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A column store of the atom properties needed to evaluate a filter: a source index and a weight per atom vertex,
+ * in primitive arrays keyed by vertex id.
+ * Values are loaded from the vertex on first access and are subsequently kept in sync by atom setters,
+ * so that filtered scans need not read the properties of atoms they reject.
+ * Only vertices with long ids, such as those of TinkerGraph and Neo4j, are stored;
+ * the values of any other vertex are read from the vertex each time.
+ * In a transactional graph, values written in a transaction are staged per thread, and are stored only when the
+ * transaction is committed, so that other threads never see uncommitted values.
+ */
+class AtomColumns {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final boolean transactional;
+
+    // the values written by the current transaction of each thread, by vertex id
+    private final ThreadLocal<Map<Long, StagedValues>> staged = ThreadLocal.withInitial(HashMap::new);
+
+    private long[] ids;
+    private byte[] sourceIndices;
+    private float[] weights;
+    private int size;
+
+    /**
+     * @param transactional whether written values are to be staged until the transaction is committed
+     */
+    AtomColumns(final boolean transactional) {
+        this.transactional = transactional;
+        clear();
+    }
+
+    /**
+     * @param vertex an atom vertex
+     * @param filter a compiled filter
+     * @return whether the atom passes the filter
+     */
+    boolean test(final Vertex vertex, final Filter.Compiled filter) {
+        Object id = vertex.id();
+        if (!(id instanceof Long)) {
+            return filter.test(loadSourceIndex(vertex), loadWeight(vertex));
+        }
+
+        if (transactional) {
+            Map<Long, StagedValues> values = staged.get();
+            if (!values.isEmpty()) {
+                StagedValues v = values.get(id);
+                if (null != v) {
+                    return filter.test(v.sourceIndex, v.weight);
+                }
+            }
+        }
+
+        return testStored(vertex, (Long) id, filter);
+    }
+
+    private synchronized boolean testStored(final Vertex vertex, final long id, final Filter.Compiled filter) {
+        int slot = findSlot(id);
+        if (EMPTY == ids[slot]) {
+            slot = insert(slot, id, loadSourceIndex(vertex), loadWeight(vertex));
+        }
+
+        return filter.test(sourceIndices[slot], weights[slot]);
+    }
+
+    void setSource(final Vertex vertex, final String source) {
+        StagedValues values = stage(vertex);
+        if (null != values) {
+            values.sourceIndex = Filter.getSourceIndex(source);
+        } else {
+            setStoredSource(vertex, source);
+        }
+    }
+
+    void setWeight(final Vertex vertex, final Float weight) {
+        StagedValues values = stage(vertex);
+        if (null != values) {
+            values.weight = toPrimitive(weight);
+        } else {
+            setStoredWeight(vertex, weight);
+        }
+    }
+
+    /**
+     * Stores the values staged by the current thread. To be called once its transaction has been committed
+     */
+    void commit() {
+        Map<Long, StagedValues> values = staged.get();
+        if (values.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<Long, StagedValues> e : values.entrySet()) {
+                long id = e.getKey();
+                int slot = findSlot(id);
+                if (EMPTY == ids[slot]) {
+                    insert(slot, id, e.getValue().sourceIndex, e.getValue().weight);
+                } else {
+                    sourceIndices[slot] = e.getValue().sourceIndex;
+                    weights[slot] = e.getValue().weight;
+                }
+            }
+        }
+        values.clear();
+    }
+
+    /**
+     * Discards the values staged by the current thread. To be called once its transaction has been rolled back
+     */
+    void rollback() {
+        staged.get().clear();
+    }
+
+    /**
+     * Drops the values of a vertex, e.g. because the vertex has been removed, or because its id may be recycled
+     */
+    void remove(final Vertex vertex) {
+        if (vertex.id() instanceof Long) {
+            staged.get().remove(vertex.id());
+        }
+        removeStored(vertex);
+    }
+
+    private synchronized void removeStored(final Vertex vertex) {
+        int slot = findStoredSlot(vertex);
+        if (slot < 0) {
+            return;
+        }
+
+        // backward-shift deletion keeps every remaining key reachable from its home slot without tombstones
+        int mask = ids.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (EMPTY != ids[next]) {
+            int home = homeSlot(ids[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                ids[hole] = ids[next];
+                sourceIndices[hole] = sourceIndices[next];
+                weights[hole] = weights[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        ids[hole] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Drops all values, which will be reloaded as needed
+     */
+    synchronized void clear() {
+        ids = new long[INITIAL_CAPACITY];
+        Arrays.fill(ids, EMPTY);
+        sourceIndices = new byte[INITIAL_CAPACITY];
+        weights = new float[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // finds or creates the staged values of a vertex in the current transaction, if values are staged at all
+    private StagedValues stage(final Vertex vertex) {
+        Object id = vertex.id();
+        if (!transactional || !(id instanceof Long)) {
+            return null;
+        }
+
+        // the writing thread reads its own uncommitted values from the vertex
+        return staged.get().computeIfAbsent((Long) id,
+                i -> new StagedValues(loadSourceIndex(vertex), loadWeight(vertex)));
+    }
+
+    private synchronized void setStoredSource(final Vertex vertex, final String source) {
+        int slot = findStoredSlot(vertex);
+        if (slot >= 0) {
+            sourceIndices[slot] = Filter.getSourceIndex(source);
+        }
+    }
+
+    private synchronized void setStoredWeight(final Vertex vertex, final Float weight) {
+        int slot = findStoredSlot(vertex);
+        if (slot >= 0) {
+            weights[slot] = toPrimitive(weight);
+        }
+    }
+
+    private int findStoredSlot(final Vertex vertex) {
+        Object id = vertex.id();
+        if (!(id instanceof Long)) {
+            return -1;
+        }
+
+        int slot = findSlot((Long) id);
+        return EMPTY == ids[slot] ? -1 : slot;
+    }
+
+    // finds either the slot of the given id, or the empty slot at which it would be inserted
+    private int findSlot(final long id) {
+        int mask = ids.length - 1;
+        int slot = homeSlot(id);
+        while (EMPTY != ids[slot] && id != ids[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int homeSlot(final long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (ids.length - 1);
+    }
+
+    private int insert(final int slot, final long id, final byte sourceIndex, final float weight) {
+        int target = slot;
+        // keep the load factor at or below one half
+        if ((size + 1) * 2 > ids.length) {
+            grow();
+            target = findSlot(id);
+        }
+
+        ids[target] = id;
+        sourceIndices[target] = sourceIndex;
+        weights[target] = weight;
+        size++;
+        return target;
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        byte[] oldSourceIndices = sourceIndices;
+        float[] oldWeights = weights;
+
+        ids = new long[oldIds.length * 2];
+        Arrays.fill(ids, EMPTY);
+        sourceIndices = new byte[ids.length];
+        weights = new float[ids.length];
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (EMPTY != oldIds[i]) {
+                int slot = findSlot(oldIds[i]);
+                ids[slot] = oldIds[i];
+                sourceIndices[slot] = oldSourceIndices[i];
+                weights[slot] = oldWeights[i];
+            }
+        }
+    }
+
+    private byte loadSourceIndex(final Vertex vertex) {
+        VertexProperty<String> property = vertex.property(SemanticSynchrony.PropertyKeys.SOURCE);
+        return Filter.getSourceIndex(property.isPresent() ? property.value() : null);
+    }
+
+    private float loadWeight(final Vertex vertex) {
+        VertexProperty<Float> property = vertex.property(SemanticSynchrony.PropertyKeys.WEIGHT);
+        return toPrimitive(property.isPresent() ? property.value() : null);
+    }
+
+    private float toPrimitive(final Float weight) {
+        return null == weight ? Float.NaN : weight;
+    }
+
+    private static class StagedValues {
+        private byte sourceIndex;
+        private float weight;
+
+        private StagedValues(final byte sourceIndex, final float weight) {
+            this.sourceIndex = sourceIndex;
+            this.weight = weight;
+        }
+    }
+}
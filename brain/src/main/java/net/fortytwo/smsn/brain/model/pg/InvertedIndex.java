@@ -0,0 +1,347 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory full-text index which maps lower-cased tokens to postings lists and ranks matches using BM25.
+ * The supported query syntax is a subset of Lucene's: space-separated terms (any of which may match),
+ * AND and OR operators, required (+) and prohibited (-) terms, quoted phrases, and * and ? wildcards.
+ *
+ * @param <T> the type of the indexed documents
+ */
+class InvertedIndex<T> {
+
+    private static final float K1 = 1.2f, B = 0.75f;
+
+    private static final String AND = "AND", OR = "OR";
+
+    private final TreeMap<String, Map<T, Integer>> postingsByTerm = new TreeMap<>();
+    private final Map<T, String[]> tokensByDocument = new HashMap<>();
+    private long totalLength;
+
+    public void add(final T document, final String text) {
+        remove(document);
+
+        String[] tokens = tokenize(text);
+        if (0 == tokens.length) {
+            return;
+        }
+
+        tokensByDocument.put(document, tokens);
+        totalLength += tokens.length;
+        for (String token : tokens) {
+            postingsByTerm.computeIfAbsent(token, t -> new HashMap<>()).merge(document, 1, Integer::sum);
+        }
+    }
+
+    public void remove(final T document) {
+        String[] tokens = tokensByDocument.remove(document);
+        if (null == tokens) {
+            return;
+        }
+
+        totalLength -= tokens.length;
+        for (String token : tokens) {
+            Map<T, Integer> postings = postingsByTerm.get(token);
+            if (null != postings && null != postings.remove(document) && postings.isEmpty()) {
+                postingsByTerm.remove(token);
+            }
+        }
+    }
+
+    /**
+     * @return whether the document is indexed with the tokens of the given text
+     */
+    public boolean isIndexedAs(final T document, final String text) {
+        String[] tokens = tokensByDocument.get(document);
+        return null == tokens ? 0 == tokenize(text).length : Arrays.equals(tokens, tokenize(text));
+    }
+
+    public int size() {
+        return tokensByDocument.size();
+    }
+
+    /**
+     * @param query a full-text query
+     * @return all matching documents, mapped to their scores
+     */
+    public Map<T, Float> search(final String query) {
+        List<Clause> required = new LinkedList<>();
+        List<Clause> optional = new LinkedList<>();
+        List<Clause> prohibited = new LinkedList<>();
+        parse(query, required, optional, prohibited);
+
+        Map<T, Float> results;
+        if (required.isEmpty()) {
+            Map<T, Float> union = new HashMap<>();
+            for (Clause clause : optional) {
+                clause.evaluate().forEach((document, score) -> union.merge(document, score, Float::sum));
+            }
+            results = union;
+        } else {
+            results = null;
+            for (Clause clause : required) {
+                Map<T, Float> scores = clause.evaluate();
+                if (null == results) {
+                    results = new HashMap<>(scores);
+                } else {
+                    Iterator<Map.Entry<T, Float>> entries = results.entrySet().iterator();
+                    while (entries.hasNext()) {
+                        Map.Entry<T, Float> e = entries.next();
+                        Float score = scores.get(e.getKey());
+                        if (null == score) {
+                            entries.remove();
+                        } else {
+                            e.setValue(e.getValue() + score);
+                        }
+                    }
+                }
+            }
+
+            // optional clauses contribute to the score of documents which match the required clauses
+            for (Clause clause : optional) {
+                Map<T, Float> matched = results;
+                clause.evaluate().forEach((document, score) -> matched.computeIfPresent(document, (d, s) -> s + score));
+            }
+        }
+
+        for (Clause clause : prohibited) {
+            results.keySet().removeAll(clause.evaluate().keySet());
+        }
+
+        return results;
+    }
+
+    static String[] tokenize(final String text) {
+        if (null == text) {
+            return new String[0];
+        }
+
+        List<String> tokens = new ArrayList<>();
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean isTokenChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (isTokenChar) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    private void parse(final String query,
+                       final List<Clause> required,
+                       final List<Clause> optional,
+                       final List<Clause> prohibited) {
+        Clause previous = null;
+        boolean previousIsRequired = false;
+        boolean afterAnd = false;
+
+        for (String word : splitQuery(query)) {
+            if (word.equals(AND)) {
+                if (null != previous && !previousIsRequired) {
+                    optional.remove(previous);
+                    required.add(previous);
+                    previousIsRequired = true;
+                }
+                afterAnd = true;
+                continue;
+            } else if (word.equals(OR)) {
+                afterAnd = false;
+                continue;
+            }
+
+            char prefix = word.charAt(0);
+            if ('+' == prefix || '-' == prefix) {
+                word = word.substring(1);
+            }
+            Clause clause = toClause(word);
+            if (null == clause) {
+                continue;
+            }
+
+            if ('-' == prefix) {
+                prohibited.add(clause);
+                previous = null;
+            } else if ('+' == prefix || afterAnd) {
+                required.add(clause);
+                previous = clause;
+                previousIsRequired = true;
+            } else {
+                optional.add(clause);
+                previous = clause;
+                previousIsRequired = false;
+            }
+            afterAnd = false;
+        }
+    }
+
+    // splits a query into words, keeping quoted phrases intact (with their quotes)
+    private List<String> splitQuery(final String query) {
+        List<String> words = new LinkedList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (char c : query.toCharArray()) {
+            if ('"' == c) {
+                inQuotes = !inQuotes;
+                current.append(c);
+            } else if (!inQuotes && (Character.isWhitespace(c) || '(' == c || ')' == c)) {
+                if (current.length() > 0) {
+                    words.add(current.toString());
+                    current = new StringBuilder();
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            words.add(current.toString());
+        }
+
+        return words;
+    }
+
+    private Clause toClause(final String word) {
+        if (word.startsWith("\"")) {
+            String[] terms = tokenize(word);
+            return 0 == terms.length ? null : new PhraseClause(terms);
+        } else if (word.contains("*") || word.contains("?")) {
+            String pattern = word.toLowerCase().replaceAll("[^\\p{L}\\p{N}*?]", "");
+            return pattern.replaceAll("[*?]", "").isEmpty() ? null : new WildcardClause(pattern);
+        } else {
+            String[] terms = tokenize(word);
+            return 0 == terms.length
+                    ? null
+                    : 1 == terms.length ? new TermClause(terms[0]) : new PhraseClause(terms);
+        }
+    }
+
+    private float averageLength() {
+        return tokensByDocument.isEmpty() ? 1f : totalLength / (float) tokensByDocument.size();
+    }
+
+    private float idf(final int documentFrequency) {
+        int n = tokensByDocument.size();
+        return (float) Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private float score(final float idf, final int termFrequency, final int documentLength, final float avgLength) {
+        return idf * termFrequency * (K1 + 1)
+                / (termFrequency + K1 * (1 - B + B * documentLength / avgLength));
+    }
+
+    private Map<T, Float> scoreTerm(final Map<T, Integer> postings) {
+        if (null == postings) {
+            return Collections.emptyMap();
+        }
+
+        float idf = idf(postings.size());
+        float avgLength = averageLength();
+        Map<T, Float> scores = new HashMap<>();
+        postings.forEach((document, tf) ->
+                scores.put(document, score(idf, tf, tokensByDocument.get(document).length, avgLength)));
+        return scores;
+    }
+
+    private abstract class Clause {
+        protected abstract Map<T, Float> evaluate();
+    }
+
+    private class TermClause extends Clause {
+        private final String term;
+
+        private TermClause(final String term) {
+            this.term = term;
+        }
+
+        @Override
+        protected Map<T, Float> evaluate() {
+            return scoreTerm(postingsByTerm.get(term));
+        }
+    }
+
+    private class WildcardClause extends Clause {
+        private final Pattern pattern;
+        private final String prefix;
+
+        private WildcardClause(final String wildcard) {
+            int firstWildcard = indexOfWildcard(wildcard);
+            this.prefix = wildcard.substring(0, firstWildcard);
+            this.pattern = Pattern.compile(wildcard.replaceAll("\\*", ".*").replaceAll("\\?", "."));
+        }
+
+        @Override
+        protected Map<T, Float> evaluate() {
+            // only the terms sharing the wildcard's literal prefix need to be examined
+            SortedMap<String, Map<T, Integer>> candidates = prefix.isEmpty()
+                    ? postingsByTerm
+                    : postingsByTerm.subMap(prefix, prefix + Character.MAX_VALUE);
+
+            Map<T, Float> scores = new HashMap<>();
+            candidates.forEach((term, postings) -> {
+                if (pattern.matcher(term).matches()) {
+                    scoreTerm(postings).forEach((document, score) -> scores.merge(document, score, Math::max));
+                }
+            });
+            return scores;
+        }
+
+        private int indexOfWildcard(final String wildcard) {
+            for (int i = 0; i < wildcard.length(); i++) {
+                char c = wildcard.charAt(i);
+                if ('*' == c || '?' == c) return i;
+            }
+            return wildcard.length();
+        }
+    }
+
+    private class PhraseClause extends Clause {
+        private final String[] terms;
+
+        private PhraseClause(final String[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        protected Map<T, Float> evaluate() {
+            Map<T, Float> scores = null;
+            for (String term : terms) {
+                Map<T, Float> termScores = scoreTerm(postingsByTerm.get(term));
+                if (null == scores) {
+                    scores = new HashMap<>(termScores);
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<T, Float> e : scores.entrySet()) {
+                        e.setValue(e.getValue() + termScores.get(e.getKey()));
+                    }
+                }
+            }
+
+            scores.keySet().removeIf(document -> !containsPhrase(tokensByDocument.get(document)));
+            return scores;
+        }
+
+        private boolean containsPhrase(final String[] tokens) {
+            for (int i = 0; i <= tokens.length - terms.length; i++) {
+                int j = 0;
+                while (j < terms.length && tokens[i + j].equals(terms[j])) j++;
+                if (j == terms.length) return true;
+            }
+            return false;
+        }
+    }
+}
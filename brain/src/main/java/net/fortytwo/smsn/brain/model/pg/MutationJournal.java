@@ -0,0 +1,398 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongFunction;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the atoms changed by each committed transaction of a topic graph.
+ * The journal makes an in-memory graph durable between checkpoints:
+ * the graph is restored by reading the last checkpoint, then replaying the journal on top of it.
+ * <p>
+ * Each transaction is written as a single entry, which is forced to disk once the transaction has been committed
+ * to the graph, and before the commit returns. A transaction which fails to commit is therefore never journaled,
+ * even in a graph which cannot roll back the changes of a transaction.
+ * An entry holds the complete state of each changed atom (its properties and the ids of its children),
+ * or the removal of the atom, so replaying an entry more than once, or on top of a checkpoint which already
+ * includes it, has no further effect.
+ * An entry is a length, a CRC-32 checksum, and the changes themselves; an incomplete or corrupted entry at the
+ * end of the journal, as left by a crash during a write, is discarded.
+ * <p>
+ * Changes made to the property graph other than through the topic graph are not journaled.
+ */
+public class MutationJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(MutationJournal.class.getName());
+
+    private static final Charset UTF8 = Charset.forName(SemanticSynchrony.UTF8);
+
+    private static final byte PUT = 0, REMOVE = 1;
+
+    // the length and the checksum of an entry
+    private static final int HEADER_LENGTH = 12;
+
+    private final File file;
+    private FileChannel channel;
+
+    // the end of the last complete entry
+    private long position;
+
+    public MutationJournal(final File file) throws IOException {
+        this.file = file;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (null != dir) {
+            dir.mkdirs();
+        }
+
+        channel = open();
+        position = channel.size();
+    }
+
+    /**
+     * @return the length of the journal, in bytes, as of the last committed transaction
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Calls a function with the current position of the journal, while no transaction may be committed.
+     * As the changes of a transaction are published while the journal is held, the function sees the changes of
+     * exactly those transactions which precede the position.
+     */
+    public synchronized <T> T atPosition(final LongFunction<T> function) {
+        return function.apply(position);
+    }
+
+    /**
+     * @param fromPosition a position of the journal previously obtained through {@link #getPosition()}
+     * @return the ids of the atoms changed or removed by the entries from the given position to the end of the journal
+     */
+    public synchronized Set<String> getChangedIds(final long fromPosition) throws IOException {
+        if (fromPosition > position) {
+            throw new IllegalArgumentException("position is beyond the end of the journal");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (position - fromPosition));
+        channel.read(buffer, fromPosition);
+        buffer.flip();
+
+        Set<String> ids = new HashSet<>();
+        while (buffer.remaining() >= HEADER_LENGTH) {
+            long entryPosition = fromPosition + buffer.position();
+            int length = buffer.getInt();
+            buffer.getLong();
+
+            ByteBuffer entry = buffer.slice();
+            entry.limit(length);
+            try {
+                readChangedIds(entry, ids);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("malformed journal entry at position " + entryPosition, e);
+            }
+
+            buffer.position(buffer.position() + length);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Applies all entries of the journal to a graph, committing each in turn.
+     * This is to be done before the journal is attached to the graph, so that the replayed changes are not
+     * journaled again.
+     *
+     * @return the number of entries replayed
+     */
+    public synchronized int replay(final TopicGraph graph) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.read(buffer, 0);
+        buffer.flip();
+
+        int count = 0;
+        long valid = 0;
+        CRC32 checksum = new CRC32();
+        while (buffer.remaining() >= HEADER_LENGTH) {
+            int length = buffer.getInt();
+            long expected = buffer.getLong();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+
+            ByteBuffer entry = buffer.slice();
+            entry.limit(length);
+            checksum.reset();
+            checksum.update(entry.duplicate());
+            if (checksum.getValue() != expected) {
+                break;
+            }
+
+            try {
+                applyEntry(entry, graph);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("malformed journal entry at position " + valid, e);
+            }
+            graph.commit();
+
+            buffer.position(buffer.position() + length);
+            valid = buffer.position();
+            count++;
+        }
+
+        if (valid < channel.size()) {
+            logger.warning("discarding " + (channel.size() - valid) + " bytes of incomplete journal entries");
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        position = valid;
+
+        logger.info("replayed " + count + " journal entries from " + file);
+        return count;
+    }
+
+    /**
+     * Discards the entries of the journal up to the given position,
+     * once the changes they hold have been written to a checkpoint
+     *
+     * @param checkpointPosition a position of the journal previously obtained through {@link #getPosition()}
+     */
+    public synchronized void truncate(final long checkpointPosition) throws IOException {
+        if (checkpointPosition > position) {
+            throw new IllegalArgumentException("position is beyond the end of the journal");
+        }
+
+        // entries written since the checkpoint began are kept
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileChannel tmp = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long remaining = position - checkpointPosition;
+            long copied = 0;
+            while (copied < remaining) {
+                copied += channel.transferTo(checkpointPosition + copied, remaining - copied, tmp);
+            }
+            tmp.force(true);
+        }
+
+        channel.close();
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel = open();
+        position = channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Commits a transaction, then writes the atoms it has changed as a single entry and publishes its changes.
+     * If the entry cannot be written, the transaction remains committed and its changes are published,
+     * but it is not durable until the next checkpoint.
+     * No entry is written after the journal position is read by a checkpoint but before the transaction
+     * is visible to the checkpoint.
+     */
+    synchronized void commit(final PGTopicGraph graph,
+                             final Collection<String> changedIds,
+                             final Runnable commit,
+                             final Runnable publish) throws IOException {
+        // the entry is made while the changed atoms can still be read in the transaction which changed them
+        byte[] entry = changedIds.isEmpty() ? null : toEntry(graph, changedIds);
+
+        commit.run();
+
+        try {
+            if (null != entry) {
+                append(entry);
+            }
+        } finally {
+            publish.run();
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void append(final byte[] entry) throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(entry);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + entry.length);
+        buffer.putInt(entry.length);
+        buffer.putLong(checksum.getValue());
+        buffer.put(entry);
+        buffer.flip();
+
+        long p = position;
+        try {
+            while (buffer.hasRemaining()) {
+                p += channel.write(buffer, p);
+            }
+            // one forced write per transaction, however many atoms it has changed
+            channel.force(false);
+        } catch (IOException e) {
+            // a partial entry is not left after the end of the journal, even if it would be discarded on replay
+            if (channel.isOpen()) {
+                channel.truncate(position);
+            }
+            throw e;
+        }
+        position = p;
+    }
+
+    private byte[] toEntry(final PGTopicGraph graph, final Collection<String> changedIds) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(changedIds.size());
+        for (String id : changedIds) {
+            Optional<Atom> opt = graph.getAtomById(id);
+            if (opt.isPresent()) {
+                out.writeByte(PUT);
+                writeAtom(opt.get(), out);
+            } else {
+                out.writeByte(REMOVE);
+                writeString(id, out);
+            }
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeAtom(final Atom atom, final DataOutputStream out) throws IOException {
+        writeString(atom.getId(), out);
+        writeString(atom.getTitle(), out);
+        writeString(atom.getText(), out);
+        writeString(atom.getAlias(), out);
+        writeString(atom.getShortcut(), out);
+        writeString(atom.getSource(), out);
+        out.writeFloat(null == atom.getWeight() ? Float.NaN : atom.getWeight());
+        out.writeFloat(null == atom.getPriority() ? Float.NaN : atom.getPriority());
+        out.writeLong(null == atom.getCreated() ? Long.MIN_VALUE : atom.getCreated());
+
+        List<Atom> children = EntityList.toJavaList(atom.getChildren());
+        out.writeInt(children.size());
+        for (Atom child : children) {
+            writeString(child.getId(), out);
+        }
+    }
+
+    private void applyEntry(final ByteBuffer entry, final TopicGraph graph) {
+        int numberOfChanges = entry.getInt();
+        for (int i = 0; i < numberOfChanges; i++) {
+            byte type = entry.get();
+            if (PUT == type) {
+                applyPut(entry, graph);
+            } else if (REMOVE == type) {
+                graph.getAtomById(readString(entry)).ifPresent(Atom::destroy);
+            } else {
+                throw new IndexOutOfBoundsException("no such change type: " + type);
+            }
+        }
+    }
+
+    private void readChangedIds(final ByteBuffer entry, final Set<String> ids) {
+        int numberOfChanges = entry.getInt();
+        for (int i = 0; i < numberOfChanges; i++) {
+            byte type = entry.get();
+            ids.add(readString(entry));
+            if (PUT == type) {
+                // title, text, alias, shortcut and source, then weight, priority and creation time
+                for (int j = 0; j < 5; j++) {
+                    readString(entry);
+                }
+                entry.position(entry.position() + 4 + 4 + 8);
+
+                int numberOfChildren = entry.getInt();
+                for (int j = 0; j < numberOfChildren; j++) {
+                    readString(entry);
+                }
+            } else if (REMOVE != type) {
+                throw new IndexOutOfBoundsException("no such change type: " + type);
+            }
+        }
+    }
+
+    private void applyPut(final ByteBuffer entry, final TopicGraph graph) {
+        Atom atom = getOrCreateAtom(readString(entry), graph);
+
+        String title = readString(entry);
+        if (null != title) {
+            atom.setTitle(title);
+        }
+        atom.setText(readString(entry));
+        atom.setAlias(readString(entry));
+        atom.setShortcut(readString(entry));
+        atom.setSource(readString(entry));
+        float weight = entry.getFloat();
+        atom.setWeight(Float.isNaN(weight) ? null : weight);
+        float priority = entry.getFloat();
+        atom.setPriority(Float.isNaN(priority) ? null : priority);
+        long created = entry.getLong();
+        atom.setCreated(Long.MIN_VALUE == created ? null : created);
+
+        int numberOfChildren = entry.getInt();
+        if (0 == numberOfChildren) {
+            if (null != atom.getChildren()) {
+                atom.setChildren(null);
+            }
+        } else {
+            Atom[] children = new Atom[numberOfChildren];
+            for (int i = 0; i < numberOfChildren; i++) {
+                children[i] = getOrCreateAtom(readString(entry), graph);
+            }
+            atom.setChildren(graph.createListOfAtoms(children));
+        }
+    }
+
+    private Atom getOrCreateAtom(final String id, final TopicGraph graph) {
+        Optional<Atom> opt = graph.getAtomById(id);
+        return opt.isPresent() ? opt.get() : graph.createAtom(id);
+    }
+
+    private void writeString(final String s, final DataOutputStream out) throws IOException {
+        if (null == s) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,134 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import com.google.common.base.Preconditions;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An array-backed list of atoms, each node of which is a position in the array.
+ * This is the form taken by the children of an atom in ordinal storage, in which each child is attached
+ * to its parent by a single edge with an ordinal property, rather than by a chain of list vertices.
+ * The nodes of a list share its state, so that a change made through one node is seen through the others.
+ * A list which is not yet attached to an atom is kept in memory; once attached, changes to the list are written
+ * to the child edges of the atom.
+ */
+class OrdinalChildList implements EntityList<Atom> {
+
+    private final Nodes nodes;
+    private final int index;
+    private final PGTopicGraph graph;
+
+    /**
+     * Creates a list which is not attached to any atom
+     */
+    OrdinalChildList(final Vertex[] children, final PGTopicGraph graph) {
+        this(new Nodes(null, children), 0, graph);
+    }
+
+    /**
+     * Creates a node of the list of children of the given atom
+     */
+    OrdinalChildList(final PGAtom parent, final Vertex[] children, final int index, final PGTopicGraph graph) {
+        this(new Nodes(parent, children), index, graph);
+    }
+
+    private OrdinalChildList(final Nodes nodes, final int index, final PGTopicGraph graph) {
+        this.nodes = nodes;
+        this.index = index;
+        this.graph = graph;
+    }
+
+    @Override
+    public Atom getFirst() {
+        return graph.asAtom(nodes.children.get(index));
+    }
+
+    @Override
+    public boolean setFirst(final Atom first) {
+        Preconditions.checkArgument(null != first);
+
+        List<Vertex> updated = new ArrayList<>(nodes.children);
+        updated.set(index, ((PGAtom) first).asVertex());
+        nodes.update(updated);
+        return true;
+    }
+
+    @Override
+    public EntityList<Atom> getRest() {
+        return index + 1 < nodes.children.size()
+                ? new OrdinalChildList(nodes, index + 1, graph)
+                : null;
+    }
+
+    @Override
+    public boolean setRest(final EntityList<Atom> rest) {
+        boolean changed = index + 1 < nodes.children.size() || null != rest;
+
+        // the rest is read before any change is made, as it may be a node of this list
+        List<Vertex> updated = new ArrayList<>(nodes.children.subList(0, index + 1));
+        for (EntityList<Atom> cur = rest; null != cur; cur = cur.getRest()) {
+            updated.add(((PGAtom) cur.getFirst()).asVertex());
+        }
+        nodes.update(updated);
+        return changed;
+    }
+
+    @Override
+    public EntityList<Atom> getRestOf() {
+        return index > 0
+                ? new OrdinalChildList(nodes, index - 1, graph)
+                : null;
+    }
+
+    @Override
+    public void destroy() {
+        // as in linked storage, a list owns each list element, and the head of a list owns the tail
+        Set<Vertex> removed = new LinkedHashSet<>(nodes.children.subList(index, nodes.children.size()));
+        nodes.update(new ArrayList<>(nodes.children.subList(0, index)));
+        for (Vertex child : removed) {
+            graph.asAtom(child).destroy();
+        }
+    }
+
+    /**
+     * @return the atom of which this list is the list of children, provided that this is the head of the list
+     */
+    Atom getSubject() {
+        return 0 == index ? nodes.parent : null;
+    }
+
+    /**
+     * Attaches a list to the atom which has taken its elements as children,
+     * so that subsequent changes to the list are changes to the children of the atom
+     */
+    void attachTo(final PGAtom parent) {
+        if (null == nodes.parent && 0 == index) {
+            nodes.parent = parent;
+        }
+    }
+
+    private static class Nodes {
+        // the atom whose children these are, or null if the list has not been attached to an atom
+        private PGAtom parent;
+        private List<Vertex> children;
+
+        private Nodes(final PGAtom parent, final Vertex[] children) {
+            this.parent = parent;
+            this.children = Arrays.asList(children);
+        }
+
+        private void update(final List<Vertex> updated) {
+            if (null != parent) {
+                parent.replaceOrdinalChildren(updated.toArray(new Vertex[updated.size()]));
+            }
+            children = updated;
+        }
+    }
+}
@@ -1,18 +1,42 @@
 package net.fortytwo.smsn.brain.model.pg;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.GraphChanges;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.entities.EntityList;
 import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 public abstract class PGAtom extends PGEntity implements Atom {
 
+    private static final String[] SNAPSHOT_KEYS = {
+            SemanticSynchrony.PropertyKeys.CREATED,
+            SemanticSynchrony.PropertyKeys.PRIORITY,
+            SemanticSynchrony.PropertyKeys.SOURCE,
+            SemanticSynchrony.PropertyKeys.TITLE,
+            SemanticSynchrony.PropertyKeys.WEIGHT};
+
+    // the initial spacing of child ordinals, leaving room for insertions between any two children
+    private static final long ORDINAL_GAP = 1L << 16;
+
+    private PropertySnapshot snapshot;
+
     public PGAtom(final Vertex vertex) {
         super(vertex);
     }
@@ -26,6 +50,7 @@ public abstract class PGAtom extends PGEntity implements Atom {
     public void setId(final String id) {
         String atomId = null == id ? SemanticSynchrony.createRandomId() : id;
         setRequiredProperty(SemanticSynchrony.PropertyKeys.ID_V, atomId);
+        notifyOfChange();
 
         getGraph().updateIndex(this, SemanticSynchrony.PropertyKeys.ID_V);
     }
@@ -38,26 +63,29 @@ public abstract class PGAtom extends PGEntity implements Atom {
     @Override
     public void setAlias(String alias) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.ALIAS, alias);
+        notifyOfChange();
     }
 
     @Override
     public Long getCreated() {
-        return getOptionalProperty(SemanticSynchrony.PropertyKeys.CREATED);
+        return getSnapshot().created;
     }
 
     @Override
     public void setCreated(Long created) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.CREATED, created);
+        invalidateSnapshot();
     }
 
     @Override
     public String getTitle() {
-        return (String) getOptionalProperty(SemanticSynchrony.PropertyKeys.TITLE);
+        return getSnapshot().title;
     }
 
     @Override
     public void setTitle(String title) {
         setRequiredProperty(SemanticSynchrony.PropertyKeys.TITLE, title);
+        invalidateSnapshot();
         getGraph().updateIndex(this, SemanticSynchrony.PropertyKeys.TITLE);
 
         updateAcronym();
@@ -71,16 +99,18 @@ public abstract class PGAtom extends PGEntity implements Atom {
     @Override
     public void setText(String text) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.TEXT, text);
+        notifyOfChange();
     }
 
     @Override
     public Float getPriority() {
-        return getOptionalProperty(SemanticSynchrony.PropertyKeys.PRIORITY);
+        return getSnapshot().priority;
     }
 
     @Override
     public void setPriority(Float priority) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.PRIORITY, priority);
+        invalidateSnapshot();
     }
 
     @Override
@@ -91,52 +121,113 @@ public abstract class PGAtom extends PGEntity implements Atom {
     @Override
     public void setShortcut(String shortcut) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.SHORTCUT, shortcut);
+        notifyOfChange();
 
         getGraph().updateIndex(this, SemanticSynchrony.PropertyKeys.SHORTCUT);
     }
 
     @Override
     public Float getWeight() {
-        return getOptionalProperty(SemanticSynchrony.PropertyKeys.WEIGHT);
+        return getSnapshot().weight;
     }
 
     @Override
     public void setWeight(Float weight) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.WEIGHT, weight);
+        invalidateSnapshot();
+        getGraph().getAtomColumns().setWeight(asVertex(), weight);
     }
 
     @Override
     public String getSource() {
-        return getOptionalProperty(SemanticSynchrony.PropertyKeys.SOURCE);
+        return getSnapshot().source;
     }
 
     @Override
     public void setSource(final String source) {
         setOptionalProperty(SemanticSynchrony.PropertyKeys.SOURCE, source);
+        invalidateSnapshot();
+        getGraph().getAtomColumns().setSource(asVertex(), source);
     }
 
     @Override
     public EntityList<Atom> getChildren() {
-        return getAtMostOneEntity(SemanticSynchrony.EdgeLabels.NOTES, Direction.OUT, v -> getGraph().asListOfAtoms(v));
+        EntityList<Atom> linked = getLinkedChildren();
+        return null == linked ? getOrdinalChildren() : linked;
     }
 
     @Override
     public void setChildren(EntityList<Atom> children) {
+        boolean ordinal = usesOrdinalChildren();
+        Vertex[] previousChildren = toVertices(getChildren());
+        Vertex[] newChildren = toVertices(children);
         removeAllChildren();
 
-        setChildrenInternal(children);
+        // a change to the children of an atom is also a change to the parents of each child
+        ParentIndex parentIndex = getGraph().getParentIndex();
+        for (Vertex child : previousChildren) {
+            parentIndex.removeParent(child, asVertex());
+            getGraph().notifyOfChange(child);
+        }
+        for (Vertex child : newChildren) {
+            parentIndex.addParent(child, asVertex());
+            getGraph().notifyOfChange(child);
+        }
+        notifyOfChange();
+
+        if (ordinal) {
+            addOrdinalChildren(newChildren);
+            // this atom takes ownership of the list
+            if (children instanceof PGEntityList) {
+                deleteLinkedList(children);
+            } else if (children instanceof OrdinalChildList) {
+                ((OrdinalChildList) children).attachTo(this);
+            }
+        } else {
+            setChildrenInternal(children instanceof OrdinalChildList
+                    ? getGraph().createLinkedListOfAtoms(newChildren)
+                    : children);
+        }
     }
 
     @Override
     public void forFirstOf(Consumer<EntityList<Atom>> consumer) {
         forEachAdjacentVertex(SemanticSynchrony.EdgeLabels.FIRST, Direction.IN,
                 vertex -> consumer.accept(getGraph().asListOfAtoms(vertex)));
+        forEachOrdinalParentList(consumer);
+    }
+
+    @Override
+    public void forEachParent(final Consumer<Atom> consumer) {
+        for (Vertex parent : getGraph().getParentIndex().getParents(asVertex(), PGAtom::findParents)) {
+            consumer.accept(getGraph().asAtom(parent));
+        }
+    }
+
+    @Override
+    public int getNumberOfParents() {
+        int count = getGraph().getParentIndex().getNumberOfParents(asVertex());
+        if (count < 0) {
+            // counting the parents does not require finding them
+            count = Iterators.size(asVertex().edges(Direction.IN,
+                    SemanticSynchrony.EdgeLabels.FIRST, SemanticSynchrony.EdgeLabels.CHILD));
+        }
+        return count;
     }
 
     @Override
     public void addChildAt(final Atom child, int position) {
+        getGraph().getParentIndex().addParent(((PGAtom) child).asVertex(), asVertex());
+        getGraph().notifyOfChange(((PGAtom) child).asVertex());
+        notifyOfChange();
+
+        if (usesOrdinalChildren()) {
+            addOrdinalChildAt(((PGAtom) child).asVertex(), position);
+            return;
+        }
+
         // create a list node for the atom and insert it
-        EntityList<Atom> list = getGraph().createListOfAtoms(child);
+        EntityList<Atom> list = getGraph().createLinkedListOfAtoms(((PGAtom) child).asVertex());
         if (0 == position) {
             list.setRest(getChildren());
             setChildrenInternal(list);
@@ -153,10 +244,23 @@ public abstract class PGAtom extends PGEntity implements Atom {
 
     @Override
     public void deleteChildAt(int position) {
+        notifyOfChange();
+
+        if (usesOrdinalChildren()) {
+            Edge[] edges = getChildEdges();
+            Preconditions.checkElementIndex(position, edges.length);
+            getGraph().getParentIndex().removeParent(edges[position].inVertex(), asVertex());
+            getGraph().notifyOfChange(edges[position].inVertex());
+            edges[position].remove();
+            return;
+        }
+
         EntityList<Atom> list = getChildren();
 
         // remove the atom's list node
         if (0 == position) {
+            getGraph().getParentIndex().removeParent(((PGAtom) list.getFirst()).asVertex(), asVertex());
+            getGraph().notifyOfChange(((PGAtom) list.getFirst()).asVertex());
             setChildrenInternal(list.getRest());
 
             deleteEntity(list);
@@ -167,11 +271,440 @@ public abstract class PGAtom extends PGEntity implements Atom {
             }
 
             EntityList<Atom> l = prev.getRest();
+            getGraph().getParentIndex().removeParent(((PGAtom) l.getFirst()).asVertex(), asVertex());
+            getGraph().notifyOfChange(((PGAtom) l.getFirst()).asVertex());
             prev.setRest(l.getRest());
             deleteEntity(l);
         }
     }
 
+    @Override
+    public void replaceChildren(final List<Atom> children, final GraphChanges changes) {
+        Vertex[] newChildren = new Vertex[children.size()];
+        for (int i = 0; i < newChildren.length; i++) {
+            newChildren[i] = ((PGAtom) children.get(i)).asVertex();
+        }
+
+        if (usesOrdinalChildren()) {
+            replaceOrdinalChildren(newChildren, changes);
+        } else {
+            replaceLinkedChildren(newChildren, changes);
+        }
+    }
+
+    private void replaceLinkedChildren(final Vertex[] newChildren, final GraphChanges changes) {
+        // the present list nodes, in order, and the positions of the nodes of each child
+        List<EntityList<Atom>> nodes = new ArrayList<>();
+        Map<Vertex, Deque<Integer>> positionsByChild = new HashMap<>();
+        for (EntityList<Atom> cur = getLinkedChildren(); null != cur; cur = cur.getRest()) {
+            positionsByChild.computeIfAbsent(((PGAtom) cur.getFirst()).asVertex(), v -> new ArrayDeque<>())
+                    .add(nodes.size());
+            nodes.add(cur);
+        }
+
+        boolean[] kept = new boolean[nodes.size()];
+        boolean changed = false;
+        EntityList<Atom> prev = null;
+        // the node which follows the previous node in the present list, if any
+        EntityList<Atom> next = nodes.isEmpty() ? null : nodes.get(0);
+        for (Vertex child : newChildren) {
+            Deque<Integer> positions = positionsByChild.get(child);
+            EntityList<Atom> node;
+            int position;
+            if (null == positions || positions.isEmpty()) {
+                node = getGraph().createLinkedListOfAtoms(child);
+                position = -1;
+                changes.vertexCreated();
+                changes.edgeCreated();
+                addParent(child);
+            } else {
+                position = positions.poll();
+                node = nodes.get(position);
+                kept[position] = true;
+            }
+
+            if (!node.equals(next)) {
+                if (null == prev) {
+                    setChildrenInternal(node);
+                } else {
+                    prev.setRest(node);
+                }
+                if (null != next) {
+                    changes.edgesRemoved(1);
+                }
+                changes.edgeCreated();
+                changed = true;
+            }
+
+            prev = node;
+            next = position >= 0 && position + 1 < nodes.size() ? nodes.get(position + 1) : null;
+        }
+
+        if (null != next) {
+            if (null == prev) {
+                setChildrenInternal(null);
+            } else {
+                prev.setRest(null);
+            }
+            changes.edgesRemoved(1);
+            changed = true;
+        }
+
+        for (int i = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                Vertex node = ((PGEntity) nodes.get(i)).asVertex();
+                removeParent(((PGAtom) nodes.get(i).getFirst()).asVertex());
+                changes.vertexRemoved();
+                changes.edgesRemoved(Iterators.size(node.edges(Direction.BOTH)));
+                node.remove();
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            notifyOfChange();
+        }
+    }
+
+    // replaces the children of an atom in ordinal storage, e.g. through a node of its list of children
+    void replaceOrdinalChildren(final Vertex[] newChildren) {
+        replaceOrdinalChildren(newChildren, new GraphChanges());
+    }
+
+    private void replaceOrdinalChildren(final Vertex[] newChildren, final GraphChanges changes) {
+        Edge[] edges = getChildEdges();
+        Map<Vertex, Deque<Edge>> edgesByChild = new HashMap<>();
+        for (Edge edge : edges) {
+            edgesByChild.computeIfAbsent(edge.inVertex(), v -> new ArrayDeque<>()).add(edge);
+        }
+
+        // the edges which are kept, by new position, together with their present ordinals
+        Edge[] keptEdges = new Edge[newChildren.length];
+        long[] ordinals = new long[newChildren.length];
+        int keptCount = 0;
+        for (int i = 0; i < newChildren.length; i++) {
+            Deque<Edge> present = edgesByChild.get(newChildren[i]);
+            if (null != present && !present.isEmpty()) {
+                keptEdges[i] = present.poll();
+                ordinals[i] = ordinalOf(keptEdges[i]);
+                keptCount++;
+            }
+        }
+
+        // the ordinals of the longest run of kept edges which are already in order do not change
+        boolean[] fixed = findIncreasingOrdinals(keptEdges, ordinals);
+        if (!assignOrdinals(fixed, ordinals)) {
+            // there is not enough room between fixed ordinals; re-space all children
+            for (int i = 0; i < ordinals.length; i++) {
+                fixed[i] = false;
+                ordinals[i] = i * ORDINAL_GAP;
+            }
+        }
+
+        boolean changed = keptCount != edges.length || keptCount != newChildren.length;
+        for (int i = 0; i < newChildren.length; i++) {
+            if (null == keptEdges[i]) {
+                addChildEdge(newChildren[i], ordinals[i]);
+                changes.edgeCreated();
+                addParent(newChildren[i]);
+            } else if (ordinalOf(keptEdges[i]) != ordinals[i]) {
+                keptEdges[i].property(SemanticSynchrony.PropertyKeys.ORDINAL, ordinals[i]);
+                changes.edgeChanged();
+                changed = true;
+            }
+        }
+
+        for (Deque<Edge> unused : edgesByChild.values()) {
+            for (Edge edge : unused) {
+                removeParent(edge.inVertex());
+                edge.remove();
+                changes.edgesRemoved(1);
+            }
+        }
+
+        if (changed) {
+            notifyOfChange();
+        }
+    }
+
+    // finds a longest subsequence of kept edges whose ordinals are increasing
+    private static boolean[] findIncreasingOrdinals(final Edge[] keptEdges, final long[] ordinals) {
+        int n = keptEdges.length;
+        // for each length of subsequence, the position of the smallest ordinal which ends such a subsequence
+        int[] tails = new int[n];
+        int[] predecessors = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (null == keptEdges[i]) {
+                continue;
+            }
+
+            int lo = 0, hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ordinals[tails[mid]] < ordinals[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            predecessors[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        boolean[] fixed = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            fixed[i] = true;
+        }
+        return fixed;
+    }
+
+    // spaces the ordinals of all children which are not fixed evenly between those of their fixed neighbors
+    private static boolean assignOrdinals(final boolean[] fixed, final long[] ordinals) {
+        int n = fixed.length;
+        int start = 0;
+        while (start < n) {
+            if (fixed[start]) {
+                start++;
+                continue;
+            }
+
+            int end = start;
+            while (end < n && !fixed[end]) {
+                end++;
+            }
+
+            int count = end - start;
+            long lo, hi;
+            if (start > 0 && end < n) {
+                lo = ordinals[start - 1];
+                hi = ordinals[end];
+            } else if (start > 0) {
+                lo = ordinals[start - 1];
+                hi = lo + (count + 1) * ORDINAL_GAP;
+            } else if (end < n) {
+                hi = ordinals[end];
+                lo = hi - (count + 1) * ORDINAL_GAP;
+            } else {
+                lo = -ORDINAL_GAP;
+                hi = count * ORDINAL_GAP;
+            }
+
+            long step = (hi - lo) / (count + 1);
+            if (step < 1) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                ordinals[start + i] = lo + step * (i + 1);
+            }
+
+            start = end;
+        }
+
+        return true;
+    }
+
+    private void addParent(final Vertex child) {
+        getGraph().getParentIndex().addParent(child, asVertex());
+        getGraph().notifyOfChange(child);
+    }
+
+    private void removeParent(final Vertex child) {
+        getGraph().getParentIndex().removeParent(child, asVertex());
+        getGraph().notifyOfChange(child);
+    }
+
+    /**
+     * Converts the children of this atom to the given storage
+     *
+     * @return whether there were children to convert
+     */
+    boolean migrateChildren(final PGTopicGraph.ChildListStorage storage) {
+        EntityList<Atom> children = PGTopicGraph.ChildListStorage.ORDINAL == storage
+                ? getLinkedChildren()
+                : getOrdinalChildren();
+        if (null == children) {
+            return false;
+        }
+
+        Vertex[] vertices = toVertices(children);
+        removeAllChildren();
+        if (PGTopicGraph.ChildListStorage.ORDINAL == storage) {
+            addOrdinalChildren(vertices);
+        } else {
+            setChildrenInternal(getGraph().createLinkedListOfAtoms(vertices));
+        }
+        return true;
+    }
+
+    private EntityList<Atom> getLinkedChildren() {
+        return getAtMostOneEntity(SemanticSynchrony.EdgeLabels.NOTES, Direction.OUT, v -> getGraph().asListOfAtoms(v));
+    }
+
+    private EntityList<Atom> getOrdinalChildren() {
+        Edge[] edges = getChildEdges();
+        return 0 == edges.length ? null : new OrdinalChildList(this, toChildVertices(edges), 0, getGraph());
+    }
+
+    boolean hasChildren() {
+        return hasAdjacentVertex(SemanticSynchrony.EdgeLabels.NOTES, Direction.OUT)
+                || hasAdjacentVertex(SemanticSynchrony.EdgeLabels.CHILD, Direction.OUT);
+    }
+
+    // an atom with children keeps their storage; an atom without children takes that of the graph
+    private boolean usesOrdinalChildren() {
+        if (hasAdjacentVertex(SemanticSynchrony.EdgeLabels.NOTES, Direction.OUT)) {
+            return false;
+        } else if (hasAdjacentVertex(SemanticSynchrony.EdgeLabels.CHILD, Direction.OUT)) {
+            return true;
+        } else {
+            return PGTopicGraph.ChildListStorage.ORDINAL == getGraph().getChildListStorage();
+        }
+    }
+
+    // the child edges of this atom, in order
+    private Edge[] getChildEdges() {
+        List<Edge> edges = new ArrayList<>();
+        asVertex().edges(Direction.OUT, SemanticSynchrony.EdgeLabels.CHILD).forEachRemaining(edges::add);
+        edges.sort(Comparator.comparingLong(PGAtom::ordinalOf));
+        return edges.toArray(new Edge[edges.size()]);
+    }
+
+    private static long ordinalOf(final Edge edge) {
+        return edge.<Long>value(SemanticSynchrony.PropertyKeys.ORDINAL);
+    }
+
+    private static Vertex[] toChildVertices(final Edge[] edges) {
+        Vertex[] vertices = new Vertex[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            vertices[i] = edges[i].inVertex();
+        }
+        return vertices;
+    }
+
+    private static Vertex[] toVertices(final EntityList<Atom> list) {
+        List<Vertex> vertices = new ArrayList<>();
+        for (EntityList<Atom> cur = list; null != cur; cur = cur.getRest()) {
+            vertices.add(((PGAtom) cur.getFirst()).asVertex());
+        }
+        return vertices.toArray(new Vertex[vertices.size()]);
+    }
+
+    private void addOrdinalChildren(final Vertex[] children) {
+        for (int i = 0; i < children.length; i++) {
+            addChildEdge(children[i], i * ORDINAL_GAP);
+        }
+    }
+
+    private void addOrdinalChildAt(final Vertex child, final int position) {
+        // only the ordinals of the new neighbors of the child are needed, so the edges are not sorted
+        List<Edge> edges = new ArrayList<>();
+        asVertex().edges(Direction.OUT, SemanticSynchrony.EdgeLabels.CHILD).forEachRemaining(edges::add);
+        Preconditions.checkPositionIndex(position, edges.size());
+        long[] ordinals = new long[edges.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = ordinalOf(edges.get(i));
+        }
+
+        long ordinal;
+        if (0 == ordinals.length) {
+            ordinal = 0;
+        } else if (0 == position) {
+            ordinal = Arrays.stream(ordinals).min().getAsLong() - ORDINAL_GAP;
+        } else if (ordinals.length == position) {
+            ordinal = Arrays.stream(ordinals).max().getAsLong() + ORDINAL_GAP;
+        } else {
+            long after = selectOrdinal(ordinals, position);
+            long before = Arrays.stream(ordinals, 0, position).max().getAsLong();
+            // the gap is exhausted only after many insertions at the same position; re-space all children
+            if (after - before < 2) {
+                Edge[] sorted = getChildEdges();
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i].property(SemanticSynchrony.PropertyKeys.ORDINAL, i * ORDINAL_GAP);
+                }
+                before = (position - 1) * ORDINAL_GAP;
+                after = position * ORDINAL_GAP;
+            }
+            ordinal = before + (after - before) / 2;
+        }
+
+        addChildEdge(child, ordinal);
+    }
+
+    // partially orders the given ordinals such that the k-th smallest is at position k,
+    // with no greater ordinal before it and no smaller ordinal after it
+    private static long selectOrdinal(final long[] ordinals, final int k) {
+        int lo = 0, hi = ordinals.length - 1;
+        while (lo < hi) {
+            long pivot = ordinals[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (ordinals[i] < pivot) {
+                    i++;
+                }
+                while (ordinals[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long tmp = ordinals[i];
+                    ordinals[i++] = ordinals[j];
+                    ordinals[j--] = tmp;
+                }
+            }
+
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                break;
+            }
+        }
+        return ordinals[k];
+    }
+
+    private void addChildEdge(final Vertex child, final long ordinal) {
+        asVertex().addEdge(SemanticSynchrony.EdgeLabels.CHILD, child,
+                SemanticSynchrony.PropertyKeys.ORDINAL, ordinal);
+    }
+
+    // finds the parents of an atom vertex by walking each list which contains it back to its head
+    private static List<Vertex> findParents(final Vertex child) {
+        List<Vertex> parents = new ArrayList<>();
+        child.vertices(Direction.IN, SemanticSynchrony.EdgeLabels.FIRST).forEachRemaining(list -> {
+            Vertex head = list;
+            Iterator<Vertex> previous = head.vertices(Direction.IN, SemanticSynchrony.EdgeLabels.REST);
+            while (previous.hasNext()) {
+                head = previous.next();
+                previous = head.vertices(Direction.IN, SemanticSynchrony.EdgeLabels.REST);
+            }
+
+            Iterator<Vertex> subject = head.vertices(Direction.IN, SemanticSynchrony.EdgeLabels.NOTES);
+            if (subject.hasNext()) {
+                parents.add(subject.next());
+            }
+        });
+        child.vertices(Direction.IN, SemanticSynchrony.EdgeLabels.CHILD).forEachRemaining(parents::add);
+        return parents;
+    }
+
+    // provides, for each parent in ordinal storage, the node of the parent's list of children which holds this atom
+    private void forEachOrdinalParentList(final Consumer<EntityList<Atom>> consumer) {
+        asVertex().edges(Direction.IN, SemanticSynchrony.EdgeLabels.CHILD).forEachRemaining(edge -> {
+            PGAtom parent = (PGAtom) getGraph().asAtom(edge.outVertex());
+            Edge[] siblings = parent.getChildEdges();
+            for (int i = 0; i < siblings.length; i++) {
+                if (siblings[i].id().equals(edge.id())) {
+                    consumer.accept(new OrdinalChildList(parent, toChildVertices(siblings), i, getGraph()));
+                    break;
+                }
+            }
+        });
+    }
+
     private void setChildrenInternal(EntityList<Atom> children) {
         removeEdge(SemanticSynchrony.EdgeLabels.NOTES, Direction.OUT);
 
@@ -181,7 +714,12 @@ public abstract class PGAtom extends PGEntity implements Atom {
     }
 
     private void removeAllChildren() {
-        EntityList<Atom> cur = getChildren();
+        deleteLinkedList(getLinkedChildren());
+        removeEdge(SemanticSynchrony.EdgeLabels.CHILD, Direction.OUT);
+    }
+
+    private void deleteLinkedList(final EntityList<Atom> list) {
+        EntityList<Atom> cur = list;
         while (null != cur) {
             EntityList<Atom> rest = cur.getRest();
             deleteEntity(cur);
@@ -192,14 +730,17 @@ public abstract class PGAtom extends PGEntity implements Atom {
     @Override
     public Collection<EntityList<Atom>> getFirstOf() {
         List<EntityList<Atom>> result = new java.util.LinkedList<>();
-        forAllVertices(SemanticSynchrony.EdgeLabels.FIRST, Direction.IN,
-                vertex -> result.add(getGraph().asListOfAtoms(vertex)));
+        forFirstOf(result::add);
 
         return result;
     }
 
     @Override
     public Atom getSubject(EntityList<Atom> notes) {
+        if (notes instanceof OrdinalChildList) {
+            return ((OrdinalChildList) notes).getSubject();
+        }
+
         PGEntity entity = (PGEntity) notes;
         return entity.getAtMostOneEntity(SemanticSynchrony.EdgeLabels.NOTES, Direction.IN,
                 vertex -> getGraph().asAtom(vertex));
@@ -207,7 +748,62 @@ public abstract class PGAtom extends PGEntity implements Atom {
 
     @Override
     public void destroy() {
+        ParentIndex parentIndex = getGraph().getParentIndex();
+        for (Vertex child : toVertices(getChildren())) {
+            parentIndex.removeParent(child, asVertex());
+            getGraph().notifyOfChange(child);
+        }
+        parentIndex.remove(asVertex());
+        getGraph().getAtomColumns().remove(asVertex());
+        notifyOfChange();
+
         destroyInternal();
+        getGraph().releaseAtomHandles();
+    }
+
+    // reads the most frequently accessed properties of the atom in a single pass over the vertex
+    private PropertySnapshot getSnapshot() {
+        long version = getGraph().getPropertyVersion();
+        PropertySnapshot current = snapshot;
+        if (null != current && current.version == version) {
+            getGraph().countSnapshotHit();
+            return current;
+        }
+
+        getGraph().countSnapshotMiss();
+        PropertySnapshot loaded = new PropertySnapshot(version);
+        asVertex().properties(SNAPSHOT_KEYS).forEachRemaining(property -> {
+            switch (property.key()) {
+                case SemanticSynchrony.PropertyKeys.CREATED:
+                    loaded.created = (Long) property.value();
+                    break;
+                case SemanticSynchrony.PropertyKeys.PRIORITY:
+                    loaded.priority = (Float) property.value();
+                    break;
+                case SemanticSynchrony.PropertyKeys.SOURCE:
+                    loaded.source = (String) property.value();
+                    break;
+                case SemanticSynchrony.PropertyKeys.TITLE:
+                    loaded.title = (String) property.value();
+                    break;
+                case SemanticSynchrony.PropertyKeys.WEIGHT:
+                    loaded.weight = (Float) property.value();
+                    break;
+            }
+        });
+
+        snapshot = loaded;
+        return loaded;
+    }
+
+    private void invalidateSnapshot() {
+        snapshot = null;
+        getGraph().notifyOfPropertyChange();
+        notifyOfChange();
+    }
+
+    private void notifyOfChange() {
+        getGraph().notifyOfChange(asVertex());
     }
 
     private void deleteEntity(final EntityList<Atom> l) {
@@ -226,8 +822,10 @@ public abstract class PGAtom extends PGEntity implements Atom {
 
         if (null != acronym) {
             vertex.property(SemanticSynchrony.PropertyKeys.ACRONYM, acronym);
-            getGraph().updateIndex(this, SemanticSynchrony.PropertyKeys.ACRONYM);
         }
+
+        // also clears any previously indexed acronym
+        getGraph().updateIndex(this, SemanticSynchrony.PropertyKeys.ACRONYM);
     }
 
     private String valueToAcronym(final String value) {
@@ -257,4 +855,17 @@ public abstract class PGAtom extends PGEntity implements Atom {
     private String cleanForAcronym(final String value) {
         return value.toLowerCase().replaceAll("[-_\t\n\r]", " ").trim();
     }
+
+    private static class PropertySnapshot {
+        private final long version;
+        private Long created;
+        private Float priority;
+        private String source;
+        private String title;
+        private Float weight;
+
+        private PropertySnapshot(final long version) {
+            this.version = version;
+        }
+    }
 }
@@ -6,12 +6,16 @@ import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.entities.*;
 import org.apache.tinkerpop.gremlin.structure.Direction;
-import org.apache.tinkerpop.gremlin.structure.Element;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -20,6 +24,16 @@ import java.util.stream.StreamSupport;
 
 public class PGTopicGraph implements TopicGraph {
 
+    /**
+     * The ways in which the ordered children of an atom may be stored
+     */
+    public enum ChildListStorage {
+        // a chain of list vertices, each with a "first" edge to a child and a "rest" edge to the next list vertex
+        LINKED,
+        // one "child" edge per child, ordered by a sparse ordinal property of the edge
+        ORDINAL
+    }
+
     private static final String REDACTED_VALUE = "";
 
     private static final String thingNamespace = SemanticSynchrony.getConfiguration().getThingNamespace();
@@ -29,9 +43,41 @@ public class PGTopicGraph implements TopicGraph {
 
     private long lastUpdate;
 
+    // the maximum number of atom handles held by a thread, which bounds threads outside of any transaction
+    private static final int MAX_ATOM_HANDLES = 10000;
+
+    // one atom handle per vertex per transaction; transactions are bound to threads.
+    // Handles are released at the end of the transaction, when any atom is removed (as its vertex id may be
+    // recycled), or when a thread holds too many of them
+    private final ThreadLocal<AtomHandles> atomHandles = ThreadLocal.withInitial(AtomHandles::new);
+    private final AtomicLong handleGeneration = new AtomicLong();
+
+    // incremented upon each change to atom properties made through this topic graph,
+    // invalidating all property snapshots
+    private final AtomicLong propertyVersion = new AtomicLong();
+
+    private final LongAdder snapshotHits = new LongAdder();
+    private final LongAdder snapshotMisses = new LongAdder();
+
+    private final AtomColumns atomColumns;
+    private final ParentIndex parentIndex = new ParentIndex();
+    private final RootIndex rootIndex = new RootIndex(this);
+
+    private final List<UpdateListener> updateListeners = new CopyOnWriteArrayList<>();
+
+    // the ids of the atoms changed in the current transaction, which are published when the transaction ends
+    private final ThreadLocal<Set<String>> changedAtoms = ThreadLocal.withInitial(HashSet::new);
+
+    private ChildListStorage childListStorage;
+
+    private MutationJournal journal;
+
     public PGTopicGraph(final GraphWrapper wrapper) {
         this.wrapper = wrapper;
         this.propertyGraph = wrapper.getGraph();
+        this.atomColumns = new AtomColumns(propertyGraph.features().graph().supportsTransactions());
+        this.childListStorage = ChildListStorage.valueOf(
+                SemanticSynchrony.getConfiguration().getChildLists().toUpperCase());
     }
 
     public Graph getPropertyGraph() {
@@ -59,16 +105,168 @@ public class PGTopicGraph implements TopicGraph {
     @Override
     public void begin() {
         wrapper.begin();
+        endTransaction();
     }
 
     @Override
     public void commit() {
-        wrapper.commit();
+        if (null == journal) {
+            wrapper.commit();
+            atomColumns.commit();
+            endTransaction();
+        } else {
+            try {
+                // changes are published along with the entry, so that they are seen together with the journal position
+                journal.commit(this, changedAtoms.get(), () -> {
+                    wrapper.commit();
+                    atomColumns.commit();
+                }, this::endTransaction);
+            } catch (IOException e) {
+                // the transaction has been committed, and cannot be rolled back
+                throw new IllegalStateException("committed transaction could not be written to the journal,"
+                        + " and is not durable until the next checkpoint", e);
+            }
+        }
     }
 
     @Override
     public void rollback() {
         wrapper.rollback();
+        atomColumns.rollback();
+        endTransaction();
+
+        // the parent index may hold rolled-back values
+        parentIndex.clear();
+    }
+
+    /**
+     * Discards all cached atom properties and parents.
+     * To be called after the property graph has been modified other than through this topic graph.
+     */
+    public void notifyOfBulkUpdate() {
+        notifyOfPropertyChange();
+        releaseAtomHandles();
+        atomColumns.clear();
+        parentIndex.clear();
+        notifyOfUpdate(null);
+
+        if (null != journal) {
+            SemanticSynchrony.getLogger().warning("bulk update is not journaled, and is not durable until checkpointed");
+        }
+    }
+
+    /**
+     * @return the journal to which committed changes are written, if any
+     */
+    public MutationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @param journal a journal to which each transaction is to be written once it has been committed,
+     *                or null for no journal
+     */
+    public void setJournal(final MutationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return the storage of new lists of children.
+     * Atoms which already have children keep the storage of those children.
+     */
+    public ChildListStorage getChildListStorage() {
+        return childListStorage;
+    }
+
+    public void setChildListStorage(final ChildListStorage childListStorage) {
+        this.childListStorage = childListStorage;
+    }
+
+    /**
+     * Converts the children of every atom to the given storage, which also becomes the storage of new child lists
+     *
+     * @return the number of atoms whose children were converted
+     */
+    public int migrateChildLists(final ChildListStorage storage) {
+        Preconditions.checkNotNull(storage, "storage");
+        setChildListStorage(storage);
+
+        // new list vertices are created along the way, so don't convert while iterating
+        List<Atom> atoms = new ArrayList<>();
+        getAllAtoms().forEach(atoms::add);
+
+        int count = 0;
+        for (Atom atom : atoms) {
+            if (((PGAtom) atom).migrateChildren(storage)) {
+                count++;
+            }
+        }
+
+        notifyOfUpdate();
+        return count;
+    }
+
+    /**
+     * @return the number of atom property reads which have been served from a property snapshot
+     */
+    public long getSnapshotHits() {
+        return snapshotHits.sum();
+    }
+
+    /**
+     * @return the number of atom property reads which have required a snapshot to be (re)loaded
+     */
+    public long getSnapshotMisses() {
+        return snapshotMisses.sum();
+    }
+
+    long getPropertyVersion() {
+        return propertyVersion.get();
+    }
+
+    void notifyOfPropertyChange() {
+        propertyVersion.incrementAndGet();
+    }
+
+    void notifyOfChange(final Vertex atomVertex) {
+        changedAtoms.get().add(asAtom(atomVertex).getId());
+    }
+
+    AtomColumns getAtomColumns() {
+        return atomColumns;
+    }
+
+    ParentIndex getParentIndex() {
+        return parentIndex;
+    }
+
+    void countSnapshotHit() {
+        snapshotHits.increment();
+    }
+
+    void countSnapshotMiss() {
+        snapshotMisses.increment();
+    }
+
+    // invalidates the atom handles of all threads
+    void releaseAtomHandles() {
+        handleGeneration.incrementAndGet();
+    }
+
+    private void endTransaction() {
+        atomHandles.get().byVertexId.clear();
+
+        // rolled-back changes are published, as well, as they may already have been read
+        Set<String> changed = changedAtoms.get();
+        if (!changed.isEmpty()) {
+            List<String> ids = new ArrayList<>(changed);
+            changed.clear();
+            notifyOfUpdate(ids);
+
+            // other threads may hold snapshots of uncommitted or rolled-back values.
+            // A transaction which has changed nothing leaves the snapshots of other threads valid
+            notifyOfPropertyChange();
+        }
     }
 
     @Override
@@ -82,6 +280,22 @@ public class PGTopicGraph implements TopicGraph {
         this.lastUpdate = System.currentTimeMillis();
     }
 
+    @Override
+    public void notifyOfUpdate(final Collection<String> changedIds) {
+        notifyOfUpdate();
+        rootIndex.invalidate(changedIds);
+
+        for (UpdateListener listener : updateListeners) {
+            listener.atomsChanged(changedIds);
+        }
+    }
+
+    @Override
+    public void addUpdateListener(final UpdateListener listener) {
+        Preconditions.checkNotNull(listener, "listener");
+        updateListeners.add(listener);
+    }
+
     @Override
     public Optional<Atom> getAtomById(final String id) {
         Vertex v = wrapper.getVertexById(id);
@@ -89,6 +303,21 @@ public class PGTopicGraph implements TopicGraph {
         return null == v ? Optional.empty() : Optional.of(asAtom(v));
     }
 
+    // finds the vertex of an atom, or null if there is no such atom
+    Vertex getAtomVertex(final String id) {
+        Vertex v = wrapper.getVertexById(id);
+
+        return null != v && isAtomVertex(v) ? v : null;
+    }
+
+    void forEachAtomVertex(final Consumer<Vertex> consumer) {
+        getPropertyGraph().vertices().forEachRemaining(v -> {
+            if (isAtomVertex(v)) {
+                consumer.accept(v);
+            }
+        });
+    }
+
     private <T extends Entity> EntityList<T> createListOfEntities(final String vertexLabel,
                                                    final Function<Vertex, EntityList<T>> constructor,
                                                    final T[] elements) {
@@ -125,7 +354,27 @@ public class PGTopicGraph implements TopicGraph {
 
     @Override
     public EntityList<Atom> createListOfAtoms(final Atom... elements) {
-        return createListOfEntities(SemanticSynchrony.VertexLabels.LIST, this::asListOfAtoms, elements);
+        if (ChildListStorage.ORDINAL == childListStorage) {
+            // no vertices are needed until the list is attached to an atom
+            Preconditions.checkArgument(elements.length > 0);
+            Vertex[] vertices = new Vertex[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                vertices[i] = ((PGAtom) elements[i]).asVertex();
+            }
+            return new OrdinalChildList(vertices, this);
+        } else {
+            return createListOfEntities(SemanticSynchrony.VertexLabels.LIST, this::asListOfAtoms, elements);
+        }
+    }
+
+    EntityList<Atom> createLinkedListOfAtoms(final Vertex... elements) {
+        Atom[] atoms = new Atom[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            atoms[i] = asAtom(elements[i]);
+        }
+        return 0 == atoms.length
+                ? null
+                : createListOfEntities(SemanticSynchrony.VertexLabels.LIST, this::asListOfAtoms, atoms);
     }
 
     @Override
@@ -162,7 +411,14 @@ public class PGTopicGraph implements TopicGraph {
 
     @Override
     public Atom createAtom(final String id) {
-        return createEntity(id, SemanticSynchrony.VertexLabels.ATOM, this::asAtom);
+        Atom atom = createEntity(id, SemanticSynchrony.VertexLabels.ATOM, this::asAtom);
+
+        // the vertex may have the recycled id of a removed vertex
+        atomColumns.remove(((PGAtom) atom).asVertex());
+        parentIndex.remove(((PGAtom) atom).asVertex());
+        notifyOfChange(((PGAtom) atom).asVertex());
+
+        return atom;
     }
 
     @Override
@@ -214,12 +470,19 @@ public class PGTopicGraph implements TopicGraph {
     public Atom asAtom(final Vertex vertex) {
         Preconditions.checkNotNull(vertex, "vertex");
 
-        return new PGAtom(vertex) {
+        AtomHandles handles = atomHandles.get();
+        long generation = handleGeneration.get();
+        if (handles.generation != generation || handles.byVertexId.size() >= MAX_ATOM_HANDLES) {
+            handles.byVertexId.clear();
+            handles.generation = generation;
+        }
+
+        return handles.byVertexId.computeIfAbsent(vertex.id(), id -> new PGAtom(vertex) {
             @Override
             protected PGTopicGraph getGraph() {
                 return PGTopicGraph.this;
             }
-        };
+        });
     }
 
     public <T extends Entity> EntityList<T> asEntityList(final Vertex vertex, final Function<Vertex, T> constructor) {
@@ -267,19 +530,26 @@ public class PGTopicGraph implements TopicGraph {
         Preconditions.checkNotNull(filter, "filter");
 
         List<Vertex> toRemove = new LinkedList<>();
+        Filter.Compiled compiled = filter.compile();
 
         propertyGraph.vertices().forEachRemaining(v -> {
             if (isAtomVertex(v)
                     && !v.edges(Direction.IN).hasNext()
                     && !v.edges(Direction.OUT).hasNext()) {
-                if (filter.test(asAtom(v))) {
+                if (atomColumns.test(v, compiled)) {
                     toRemove.add(v);
                 }
             }
         });
 
         // note: we assume from the above that there are no dependent vertices (i.e. list nodes) to remove first
-        toRemove.forEach(Element::remove);
+        toRemove.forEach(v -> {
+            notifyOfChange(v);
+            atomColumns.remove(v);
+            parentIndex.remove(v);
+            v.remove();
+        });
+        releaseAtomHandles();
 
         notifyOfUpdate();
     }
@@ -308,6 +578,33 @@ public class PGTopicGraph implements TopicGraph {
                 .map(this::asAtom).iterator();
     }
 
+    /**
+     * @return an Iterable of all atoms which pass the given filter.
+     * Rejected atoms are neither materialized nor read from the property graph,
+     * their source and weight having been cached in primitive columns.
+     */
+    @Override
+    public Iterable<Atom> getAllAtoms(final Filter.Compiled filter) {
+        return () -> asFilteredStream(
+                getPropertyGraph().vertices(),
+                v -> isAtomVertex(v) && atomColumns.test(v, filter))
+                .map(this::asAtom).iterator();
+    }
+
+    @Override
+    public List<Atom> getUnlinkedAtoms(final Filter.Compiled filter,
+                                       final boolean withoutParents,
+                                       final boolean withoutChildren) {
+        Preconditions.checkArgument(withoutParents || withoutChildren);
+
+        return rootIndex.find(filter, withoutParents, withoutChildren, changedAtoms.get());
+    }
+
+    @Override
+    public boolean test(final Filter.Compiled filter, final Atom atom) {
+        return atomColumns.test(((PGAtom) atom).asVertex(), filter);
+    }
+
     @Override
     public List<Atom> getAtomsByTitleQuery(final String query, final Filter filter) {
         return filterAndSort(wrapper.getVerticesByTitle(query), filter);
@@ -335,7 +632,7 @@ public class PGTopicGraph implements TopicGraph {
         for (Atom originalAtom : getAllAtoms()) {
             if (filter.test(originalAtom)) {
                 PGAtom newAtom = findOrCopyAtom(originalAtom, filter, newGraph);
-                PGEntityList<Atom> children = (PGEntityList<Atom>) originalAtom.getChildren();
+                EntityList<Atom> children = originalAtom.getChildren();
                 if (null != children) {
                     newAtom.setChildren(copyAtomList(children, filter, newGraph));
                 }
@@ -394,25 +691,15 @@ public class PGTopicGraph implements TopicGraph {
         return newAtom;
     }
 
-    private EntityList<Atom> copyAtomList(final PGEntityList<Atom> original, final Filter filter, final PGTopicGraph newGraph) {
-        PGEntityList<Atom> originalCur = original;
-        PGEntityList<Atom> newHead = null, newCur, newPrev = null;
+    private EntityList<Atom> copyAtomList(final EntityList<Atom> original, final Filter filter, final PGTopicGraph newGraph) {
+        List<Atom> copies = new ArrayList<>();
+        EntityList<Atom> originalCur = original;
         while (null != originalCur) {
-            Atom originalFirst = originalCur.getFirst();
-            PGAtom newAtom = findOrCopyAtom(originalFirst, filter, newGraph);
-            newCur = (PGEntityList<Atom>) newGraph.createListOfAtoms(newAtom);
-
-            if (null == newPrev) {
-                newHead = newCur;
-            } else {
-                newPrev.setRest(newCur);
-            }
-
-            newPrev = newCur;
-            originalCur = (PGEntityList<Atom>) originalCur.getRest();
+            copies.add(findOrCopyAtom(originalCur.getFirst(), filter, newGraph));
+            originalCur = originalCur.getRest();
         }
 
-        return newHead;
+        return newGraph.createListOfAtoms(copies.toArray(new Atom[copies.size()]));
     }
 
     private <A> Stream<A> asFilteredStream(Iterator<A> sourceIterator, Predicate<A> filter) {
@@ -421,4 +708,9 @@ public class PGTopicGraph implements TopicGraph {
 
         return stream.filter(filter);
     }
+
+    private static class AtomHandles {
+        private final Map<Object, PGAtom> byVertexId = new HashMap<>();
+        private long generation;
+    }
 }
@@ -0,0 +1,79 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A memo of the parents of each atom, keyed by the vertex id of the child.
+ * Finding the parent which owns a list of children otherwise requires walking the list back to its head,
+ * so the parents of an atom are found once, on first access, and are subsequently kept up to date
+ * as children are added to and removed from atoms.
+ * A parent appears once for each occurrence of the child among its children.
+ */
+class ParentIndex {
+
+    private final Map<Object, List<Vertex>> parentsByChildId = new HashMap<>();
+
+    /**
+     * @param child  an atom vertex
+     * @param loader a function which finds the parents of an atom vertex in the graph
+     * @return the parents of the atom
+     */
+    synchronized List<Vertex> getParents(final Vertex child, final Function<Vertex, List<Vertex>> loader) {
+        List<Vertex> parents = parentsByChildId.get(child.id());
+        if (null == parents) {
+            parents = new ArrayList<>(loader.apply(child));
+            parentsByChildId.put(child.id(), parents);
+        }
+
+        return new ArrayList<>(parents);
+    }
+
+    /**
+     * @return the number of parents of the given atom, or -1 if they are not yet known
+     */
+    synchronized int getNumberOfParents(final Vertex child) {
+        List<Vertex> parents = parentsByChildId.get(child.id());
+        return null == parents ? -1 : parents.size();
+    }
+
+    synchronized void addParent(final Vertex child, final Vertex parent) {
+        // parents which are not yet known will be found on first access
+        List<Vertex> parents = parentsByChildId.get(child.id());
+        if (null != parents) {
+            parents.add(parent);
+        }
+    }
+
+    synchronized void removeParent(final Vertex child, final Vertex parent) {
+        List<Vertex> parents = parentsByChildId.get(child.id());
+        if (null != parents) {
+            for (int i = 0; i < parents.size(); i++) {
+                if (parents.get(i).id().equals(parent.id())) {
+                    parents.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the parents of a vertex, e.g. because the vertex has been removed, or because its id may be recycled
+     */
+    synchronized void remove(final Vertex child) {
+        parentsByChildId.remove(child.id());
+    }
+
+    synchronized void clear() {
+        parentsByChildId.clear();
+    }
+
+    synchronized int size() {
+        return parentsByChildId.size();
+    }
+}
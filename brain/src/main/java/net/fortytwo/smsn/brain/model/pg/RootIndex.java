@@ -0,0 +1,119 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the atoms without parents and of the atoms without children, keyed by atom id.
+ * The index is built by a single scan of the graph on first access. Subsequently, only those atoms which have
+ * changed since the last access are examined again, so that root and isolated atoms are found without a scan.
+ */
+class RootIndex {
+
+    private final PGTopicGraph graph;
+
+    private final Map<String, Vertex> withoutParents = new HashMap<>();
+    private final Map<String, Vertex> withoutChildren = new HashMap<>();
+
+    // the ids of atoms which have changed since they were last examined
+    private final Set<String> stale = new HashSet<>();
+    private boolean built;
+
+    RootIndex(final PGTopicGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @param changedIds the ids of atoms which have changed, or null if any atom may have changed
+     */
+    synchronized void invalidate(final Collection<String> changedIds) {
+        if (null == changedIds) {
+            built = false;
+            withoutParents.clear();
+            withoutChildren.clear();
+            stale.clear();
+        } else if (built) {
+            stale.addAll(changedIds);
+        }
+    }
+
+    /**
+     * @param filter             a compiled filter
+     * @param requireNoParents   whether to find only atoms without parents
+     * @param requireNoChildren  whether to find only atoms without children
+     * @param uncommittedChanges the ids of atoms changed in the current transaction, which are examined anew
+     *                           but are not stored, as the transaction may yet be rolled back
+     * @return the matching atoms
+     */
+    synchronized List<Atom> find(final Filter.Compiled filter,
+                                 final boolean requireNoParents,
+                                 final boolean requireNoChildren,
+                                 final Collection<String> uncommittedChanges) {
+        if (!built) {
+            graph.forEachAtomVertex(v -> examine(graph.asAtom(v).getId(), v));
+            stale.clear();
+            built = true;
+        } else if (!stale.isEmpty()) {
+            for (String id : stale) {
+                examine(id, graph.getAtomVertex(id));
+            }
+            stale.clear();
+        }
+
+        List<Atom> results = new ArrayList<>();
+        Map<String, Vertex> candidates = requireNoParents ? withoutParents : withoutChildren;
+        for (Map.Entry<String, Vertex> e : candidates.entrySet()) {
+            if (!uncommittedChanges.contains(e.getKey())
+                    && (!requireNoChildren || withoutChildren.containsKey(e.getKey()))
+                    && graph.getAtomColumns().test(e.getValue(), filter)) {
+                results.add(graph.asAtom(e.getValue()));
+            }
+        }
+
+        for (String id : uncommittedChanges) {
+            Vertex v = graph.getAtomVertex(id);
+            if (null != v
+                    && (!requireNoParents || !hasParents(v))
+                    && (!requireNoChildren || !hasChildren(v))
+                    && graph.getAtomColumns().test(v, filter)) {
+                results.add(graph.asAtom(v));
+            }
+        }
+
+        return results;
+    }
+
+    private void examine(final String id, final Vertex vertex) {
+        withoutParents.remove(id);
+        withoutChildren.remove(id);
+
+        // the atom has been removed
+        if (null == vertex) {
+            return;
+        }
+
+        if (!hasParents(vertex)) {
+            withoutParents.put(id, vertex);
+        }
+        if (!hasChildren(vertex)) {
+            withoutChildren.put(id, vertex);
+        }
+    }
+
+    private boolean hasParents(final Vertex vertex) {
+        return graph.asAtom(vertex).getNumberOfParents() > 0;
+    }
+
+    private boolean hasChildren(final Vertex vertex) {
+        return ((PGAtom) graph.asAtom(vertex)).hasChildren();
+    }
+}
@@ -1,19 +1,39 @@
 package net.fortytwo.smsn.brain.model.pg;
 
 import com.google.common.collect.Iterators;
+import net.fortytwo.smsn.SemanticSynchrony;
+import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class TinkerGraphWrapper extends GraphWrapper {
+
+    // The in-memory indices of each graph, by key. More than one wrapper may wrap the same graph,
+    // e.g. one created by a test and one created by the server, so the indices are shared among them.
+    // Indices refer to vertices by id only, so that they do not keep the graph from being collected.
+    private static final Map<Graph, Map<String, Object>> indicesByGraph = new WeakHashMap<>();
+
     public TinkerGraphWrapper(TinkerGraph graph) {
         super(graph);
     }
 
     @Override
     protected IndexWrapper createFullTextIndex(String key) {
-        return new TinkerIndexWrapper(key);
+        return new TinkerFullTextIndexWrapper(key);
     }
 
     @Override
@@ -21,13 +41,21 @@ public class TinkerGraphWrapper extends GraphWrapper {
         if (!hasVertexIndex(key)) {
             createVertexIndex(key);
         }
-        
-        return new TinkerIndexWrapper(key);
+
+        // ids are looked up far more often than any other key, so they get a dedicated hash index
+        return key.equals(SemanticSynchrony.PropertyKeys.ID_V)
+                ? new TinkerIdIndexWrapper(key)
+                : new TinkerIndexWrapper(key);
     }
 
     @Override
     protected void updateIndex(Vertex updatedVertex, String key, Object value) {
-        // do nothing
+        IndexWrapper index = getIndex(key);
+        if (null == value) {
+            index.remove(updatedVertex, key);
+        } else {
+            index.add(updatedVertex, key, value);
+        }
     }
 
     @Override
@@ -58,6 +86,38 @@ public class TinkerGraphWrapper extends GraphWrapper {
         ((TinkerGraph) graph).createIndex(key, Vertex.class);
     }
 
+    // vertices may be removed from the graph without notice to the indices
+    private Vertex getVertex(final Object vertexId) {
+        Iterator<Vertex> vertices = graph.vertices(vertexId);
+        return vertices.hasNext() ? vertices.next() : null;
+    }
+
+    // the current value of an indexed property, which may have been changed other than through a wrapper
+    private Object getValue(final Vertex vertex, final String key) {
+        VertexProperty<Object> property = vertex.property(key);
+        return property.isPresent() ? property.value() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getSharedIndex(final String key,
+                                 final Supplier<T> constructor,
+                                 final BiConsumer<T, Vertex> addVertex) {
+        synchronized (indicesByGraph) {
+            Map<String, Object> indices = indicesByGraph.computeIfAbsent(graph, g -> new HashMap<>());
+            T index = (T) indices.get(key);
+            if (null == index) {
+                index = constructor.get();
+                indices.put(key, index);
+
+                // the wrapped graph may already contain vertices, e.g. if it was loaded by Gremlin Server
+                for (Iterator<Vertex> iter = graph.vertices(); iter.hasNext(); ) {
+                    addVertex.accept(index, iter.next());
+                }
+            }
+            return index;
+        }
+    }
+
     private class TinkerIndexWrapper extends IndexWrapper {
 
         public TinkerIndexWrapper(String key) {
@@ -80,4 +140,157 @@ public class TinkerGraphWrapper extends GraphWrapper {
             // do nothing
         }
     }
+
+    /**
+     * An index of unique property values which maps each value directly to its vertex,
+     * avoiding the construction of a traversal for each lookup
+     */
+    private class TinkerIdIndexWrapper extends IndexWrapper {
+        private final IdIndex index;
+
+        public TinkerIdIndexWrapper(String key) {
+            super(key);
+
+            index = getSharedIndex(key, IdIndex::new, (idIndex, vertex) -> {
+                Object value = getValue(vertex, key);
+                if (null != value) {
+                    idIndex.put(value, vertex.id());
+                }
+            });
+        }
+
+        @Override
+        public Iterator<Sortable<Vertex, Float>> get(String value) {
+            Object vertexId = index.vertexIdByValue.get(value);
+            Vertex vertex = null == vertexId ? null : getVertex(vertexId);
+
+            // the vertex may have been removed, or its value changed, other than through a wrapper
+            if (null != vertexId && (null == vertex || !value.equals(getValue(vertex, key)))) {
+                index.remove(vertexId);
+                vertex = null;
+            }
+            if (null == vertex) {
+                vertex = findInGraphIndex(value);
+                if (null == vertex) {
+                    return Collections.emptyIterator();
+                }
+            }
+
+            return Iterators.singletonIterator(new Sortable<>(vertex, 1f));
+        }
+
+        // TinkerGraph answers a has() step on an indexed key from its own property index
+        private Vertex findInGraphIndex(final String value) {
+            Iterator<Vertex> vertices = graph.traversal().V().has(key, value);
+            if (!vertices.hasNext()) {
+                return null;
+            }
+
+            Vertex vertex = vertices.next();
+            add(vertex, key, value);
+            return vertex;
+        }
+
+        @Override
+        public void add(Vertex vertex, String key, Object value) {
+            index.put(value, vertex.id());
+        }
+
+        @Override
+        public void remove(Vertex vertex, String key) {
+            index.remove(vertex.id());
+        }
+    }
+
+    private static class IdIndex {
+        private final Map<Object, Object> vertexIdByValue = new ConcurrentHashMap<>();
+        private final Map<Object, Object> valueByVertexId = new ConcurrentHashMap<>();
+
+        private synchronized void put(final Object value, final Object vertexId) {
+            Object previousValue = valueByVertexId.put(vertexId, value);
+            if (null != previousValue && !previousValue.equals(value)) {
+                vertexIdByValue.remove(previousValue, vertexId);
+            }
+
+            vertexIdByValue.put(value, vertexId);
+        }
+
+        private synchronized void remove(final Object vertexId) {
+            Object previousValue = valueByVertexId.remove(vertexId);
+            if (null != previousValue) {
+                vertexIdByValue.remove(previousValue, vertexId);
+            }
+        }
+    }
+
+    /**
+     * A full-text index which tokenizes property values into an in-memory inverted index,
+     * producing BM25 scores for ranking
+     */
+    private class TinkerFullTextIndexWrapper extends IndexWrapper {
+        private final InvertedIndex<Object> index;
+
+        public TinkerFullTextIndexWrapper(String key) {
+            super(key);
+
+            index = getSharedIndex(key, InvertedIndex::new, (invertedIndex, vertex) -> {
+                Object value = getValue(vertex, key);
+                if (null != value) {
+                    invertedIndex.add(vertex.id(), value.toString());
+                }
+            });
+        }
+
+        @Override
+        public Iterator<Sortable<Vertex, Float>> get(String value) {
+            List<Sortable<Vertex, Float>> results = new LinkedList<>();
+            synchronized (index) {
+                Map<Object, Float> matches = index.search(value);
+                // if any match is stale, the search is repeated against the corrected entries
+                if (updateStaleEntries(matches.keySet())) {
+                    matches = index.search(value);
+                }
+                matches.forEach((vertexId, score) -> {
+                    Vertex vertex = getVertex(vertexId);
+                    if (null != vertex) {
+                        results.add(new Sortable<>(vertex, score));
+                    }
+                });
+            }
+
+            return results.iterator();
+        }
+
+        // the vertex may have been removed, or its value changed, other than through a wrapper,
+        // in which case its entry is dropped or re-indexed
+        private boolean updateStaleEntries(final Collection<Object> vertexIds) {
+            boolean updated = false;
+            for (Object vertexId : new ArrayList<>(vertexIds)) {
+                Vertex vertex = getVertex(vertexId);
+                Object current = null == vertex ? null : getValue(vertex, key);
+                if (null == current) {
+                    index.remove(vertexId);
+                    updated = true;
+                } else if (!index.isIndexedAs(vertexId, current.toString())) {
+                    index.add(vertexId, current.toString());
+                    updated = true;
+                }
+            }
+            return updated;
+        }
+
+        @Override
+        public void add(Vertex vertex, String key, Object value) {
+            synchronized (index) {
+                index.add(vertex.id(), value.toString());
+            }
+        }
+
+        @Override
+        public void remove(Vertex vertex, String key) {
+            synchronized (index) {
+                index.remove(vertex.id());
+            }
+        }
+    }
 }
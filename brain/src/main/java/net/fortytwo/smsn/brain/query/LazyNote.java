@@ -0,0 +1,198 @@
+package net.fortytwo.smsn.brain.query;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+
+import java.util.Collection;
+
+/**
+ * A note whose properties are read from its atom only when first requested,
+ * and only if they belong to a given projection of properties.
+ * Properties outside of the projection are null, unless they are explicitly set.
+ * Such a note must be read within the transaction in which it was created.
+ */
+class LazyNote extends Note {
+
+    private static final int
+            ALIAS = 1,
+            CREATED = 1 << 1,
+            PRIORITY = 1 << 2,
+            SHORTCUT = 1 << 3,
+            SOURCE = 1 << 4,
+            TEXT = 1 << 5,
+            TITLE = 1 << 6,
+            WEIGHT = 1 << 7;
+
+    // as in TreeViews#toNote, the title and text of invisible notes are left blank
+    private static final int INVISIBLE_PROPERTIES = TEXT | TITLE;
+
+    private final Atom atom;
+
+    // the projected properties which have not yet been read from the atom
+    private int unread;
+
+    /**
+     * @param properties a bit mask of properties, as given by {@link #toProjection}
+     */
+    LazyNote(final Atom atom, final boolean isVisible, final int properties) {
+        this.atom = atom;
+        this.unread = isVisible ? properties : properties & ~INVISIBLE_PROPERTIES;
+
+        setId(atom.getId());
+    }
+
+    /**
+     * @param propertyKeys the keys of properties, as in {@link Note#propertiesByKey}
+     * @return a bit mask of the properties
+     */
+    static int toProjection(final Collection<String> propertyKeys) {
+        int mask = 0;
+        for (String key : propertyKeys) {
+            mask |= flagOf(key);
+        }
+        return mask;
+    }
+
+    private static int flagOf(final String key) {
+        switch (key) {
+            case SemanticSynchrony.PropertyKeys.ALIAS:
+                return ALIAS;
+            case SemanticSynchrony.PropertyKeys.CREATED:
+                return CREATED;
+            case SemanticSynchrony.PropertyKeys.PRIORITY:
+                return PRIORITY;
+            case SemanticSynchrony.PropertyKeys.SHORTCUT:
+                return SHORTCUT;
+            case SemanticSynchrony.PropertyKeys.SOURCE:
+                return SOURCE;
+            case SemanticSynchrony.PropertyKeys.TEXT:
+                return TEXT;
+            case SemanticSynchrony.PropertyKeys.TITLE:
+                return TITLE;
+            case SemanticSynchrony.PropertyKeys.WEIGHT:
+                return WEIGHT;
+            default:
+                throw new IllegalArgumentException("not a note property: " + key);
+        }
+    }
+
+    // returns whether the property is yet to be read, and marks it as read
+    private boolean read(final int flag) {
+        boolean isUnread = 0 != (unread & flag);
+        unread &= ~flag;
+        return isUnread;
+    }
+
+    @Override
+    public String getAlias() {
+        if (read(ALIAS)) {
+            super.setAlias(atom.getAlias());
+        }
+        return super.getAlias();
+    }
+
+    @Override
+    public void setAlias(final String alias) {
+        unread &= ~ALIAS;
+        super.setAlias(alias);
+    }
+
+    @Override
+    public Long getCreated() {
+        if (read(CREATED)) {
+            super.setCreated(atom.getCreated());
+        }
+        return super.getCreated();
+    }
+
+    @Override
+    public void setCreated(final Long created) {
+        unread &= ~CREATED;
+        super.setCreated(created);
+    }
+
+    @Override
+    public Float getPriority() {
+        if (read(PRIORITY)) {
+            super.setPriority(atom.getPriority());
+        }
+        return super.getPriority();
+    }
+
+    @Override
+    public void setPriority(final Float priority) {
+        unread &= ~PRIORITY;
+        super.setPriority(priority);
+    }
+
+    @Override
+    public String getShortcut() {
+        if (read(SHORTCUT)) {
+            super.setShortcut(atom.getShortcut());
+        }
+        return super.getShortcut();
+    }
+
+    @Override
+    public void setShortcut(final String shortcut) {
+        unread &= ~SHORTCUT;
+        super.setShortcut(shortcut);
+    }
+
+    @Override
+    public String getSource() {
+        if (read(SOURCE)) {
+            super.setSource(atom.getSource());
+        }
+        return super.getSource();
+    }
+
+    @Override
+    public void setSource(final String source) {
+        unread &= ~SOURCE;
+        super.setSource(source);
+    }
+
+    @Override
+    public String getText() {
+        if (read(TEXT)) {
+            super.setText(atom.getText());
+        }
+        return super.getText();
+    }
+
+    @Override
+    public void setText(final String text) {
+        unread &= ~TEXT;
+        super.setText(text);
+    }
+
+    @Override
+    public String getTitle() {
+        if (read(TITLE)) {
+            super.setTitle(atom.getTitle());
+        }
+        return super.getTitle();
+    }
+
+    @Override
+    public void setTitle(final String title) {
+        unread &= ~TITLE;
+        super.setTitle(title);
+    }
+
+    @Override
+    public Float getWeight() {
+        if (read(WEIGHT)) {
+            super.setWeight(atom.getWeight());
+        }
+        return super.getWeight();
+    }
+
+    @Override
+    public void setWeight(final Float weight) {
+        unread &= ~WEIGHT;
+        super.setWeight(weight);
+    }
+}
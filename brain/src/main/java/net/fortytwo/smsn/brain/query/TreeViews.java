@@ -5,6 +5,7 @@ import net.fortytwo.smsn.brain.Priorities;
 import net.fortytwo.smsn.brain.error.InvalidGraphException;
 import net.fortytwo.smsn.brain.error.InvalidUpdateException;
 import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.GraphChanges;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.entities.EntityList;
@@ -12,13 +13,18 @@ import net.fortytwo.smsn.brain.rdf.KnowledgeBase;
 import net.fortytwo.smsn.brain.util.ListDiff;
 import org.parboiled.common.Preconditions;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -61,6 +67,26 @@ public class TreeViews {
                      final int height,
                      final Filter filter,
                      final ViewStyle style) {
+        return view(root, height, filter, style, null, null);
+    }
+
+    /**
+     * Generates a view of the graph with a subset of note properties, also finding the atoms on which the view depends
+     *
+     * @param properties   the keys of the properties to include in each note, as in {@link Note#propertiesByKey},
+     *                     or null for all properties.
+     *                     If given, properties are read from the graph only as they are requested from each note,
+     *                     which must therefore happen within the current transaction.
+     * @param dependencies a collection to which the ids of all atoms read in generating the view will be added,
+     *                     or null. A change to any other atom does not change the view.
+     * @see #view(Atom, int, Filter, ViewStyle)
+     */
+    public Note view(final Atom root,
+                     final int height,
+                     final Filter filter,
+                     final ViewStyle style,
+                     final Collection<String> properties,
+                     final Collection<String> dependencies) {
         checkRootArg(root);
         checkHeightArg(height, 0);
         checkFilterArg(filter);
@@ -70,7 +96,14 @@ public class TreeViews {
             brain.getActivityLog().logView(root);
         }
 
-        return viewInternal(root, height, filter, style, true, null);
+        ViewBuilder builder = null == properties
+                ? new ViewBuilder(filter, style, true, null)
+                : new ViewBuilder(filter, style, LazyNote.toProjection(properties));
+        Note note = builder.build(root, height);
+        if (null != dependencies) {
+            builder.addDependencies(dependencies);
+        }
+        return note;
     }
 
     public Note customView(final Iterable<Atom> atoms,
@@ -99,12 +132,13 @@ public class TreeViews {
      * @param filter a collection of criteria for atoms and links.
      *               Atoms and links which do not meet the criteria are not to be affected by the update.
      * @param style  the adjacency style of the view
+     * @return the numbers of vertices and edges of lists of children which were created, changed or removed
      * @throws InvalidUpdateException if the update cannot be performed as specified
      */
-    public void update(final Note root,
-                       final int height,
-                       final Filter filter,
-                       final ViewStyle style) {
+    public GraphChanges update(final Note root,
+                               final int height,
+                               final Filter filter,
+                               final ViewStyle style) {
 
         checkRootArg(root);
         checkHeightArg(height, 0);
@@ -112,10 +146,13 @@ public class TreeViews {
         checkStyleArg(style, true);
 
         Map<String, Atom> cache = createCache();
+        GraphChanges changes = new GraphChanges();
 
-        updateInternal(root, height, filter, style, cache);
+        updateInternal(root, height, filter, style, cache, changes);
 
         brain.getTopicGraph().notifyOfUpdate();
+
+        return changes;
     }
 
     /**
@@ -282,21 +319,6 @@ public class TreeViews {
         return cmp;
     };
 
-    private int countChildren(final Atom root,
-                              final Filter filter,
-                              final ViewStyle style) {
-        // If the note is invisible, we can't see whether it has children.
-        if (!filter.test(root)) {
-            return 0;
-        }
-
-        // If the note is visible, we can see its children (although we will not be able to read the titles of any
-        // children which are themselves invisible).
-        int count = 0;
-        for (Atom ignored : style.getLinked(root, filter)) count++;
-        return count;
-    }
-
     private Note viewInternal(final Atom root,
                               final int height,
                               final Filter filter,
@@ -305,37 +327,108 @@ public class TreeViews {
                               final Map<String, Atom> cache) {
         Preconditions.checkNotNull(root);
 
-        Note note = toNote(root, filter.test(root), getProperties);
+        return new ViewBuilder(filter, style, getProperties, cache).build(root, height);
+    }
+
+    private static final int NO_PROJECTION = -1;
+
+    /**
+     * Builds a single view, finding the linked atoms of each atom in the view just once, and testing each atom
+     * against the filter just once, however many times it appears in the view.
+     * Atoms are compared by identity, which is sufficient for a view built within a single transaction.
+     */
+    private class ViewBuilder {
+        private final Filter filter;
+        private final ViewStyle style;
+        private final ViewStyle inverseStyle;
+        private final boolean getProperties;
+        // a bit mask of the properties of lazily read notes, or NO_PROJECTION for notes read up front
+        private final int projection;
+        private final Map<String, Atom> cache;
+        private final Map<Atom, Boolean> visibility = new IdentityHashMap<>();
+        private final Predicate<Atom> isVisible = this::isVisible;
+
+        private ViewBuilder(final Filter filter,
+                            final ViewStyle style,
+                            final boolean getProperties,
+                            final Map<String, Atom> cache) {
+            this.filter = filter;
+            this.style = style;
+            this.inverseStyle = style.getInverse();
+            this.getProperties = getProperties;
+            this.projection = NO_PROJECTION;
+            this.cache = cache;
+        }
+
+        private ViewBuilder(final Filter filter,
+                            final ViewStyle style,
+                            final int projection) {
+            this.filter = filter;
+            this.style = style;
+            this.inverseStyle = style.getInverse();
+            this.getProperties = true;
+            this.projection = projection;
+            this.cache = null;
+        }
+
+        private Note build(final Atom root, final int height) {
+            boolean visible = isVisible(root);
+            Note note = NO_PROJECTION == projection
+                    ? toNote(root, visible, getProperties)
+                    : toLazyNote(root, visible, projection);
 
-        if (height > 0) {
-            for (Atom target : style.getLinked(root, filter)) {
-                if (filter.test(target)) {
+            // linked atoms are read as they are needed, and only counted beyond the height of the view
+            int numberOfLinked = 0;
+            if (height > 0) {
+                for (Atom target : style.getLinked(root, isVisible)) {
                     addToCache(target, cache);
-                    Note cn = viewInternal(target, height - 1, filter, style, getProperties, cache);
-                    note.addChild(cn);
+                    note.addChild(build(target, height - 1));
+                    numberOfLinked++;
                 }
+            } else if (visible) {
+                numberOfLinked = style.countLinked(root, isVisible);
             }
+
+            // If the note is invisible, we can't see whether it has children or parents.
+            // If the note is visible, we can see them (although we will not be able to read the titles of any
+            // which are themselves invisible).
+            note.setNumberOfChildren(visible ? numberOfLinked : 0);
+            note.setNumberOfParents(visible ? inverseStyle.countLinked(root, isVisible) : 0);
+
+            return note;
         }
 
-        // note: some duplicated work
-        note.setNumberOfChildren(countChildren(root, filter, style));
-        note.setNumberOfParents(countChildren(root, filter, style.getInverse()));
+        // every atom read in building the view has been tested against the filter
+        private void addDependencies(final Collection<String> dependencies) {
+            for (Atom atom : visibility.keySet()) {
+                dependencies.add(atom.getId());
+            }
+        }
 
-        return note;
+        private boolean isVisible(final Atom atom) {
+            Boolean visible = visibility.get(atom);
+            if (null == visible) {
+                visible = filter.test(atom);
+                visibility.put(atom, visible);
+            }
+
+            return visible;
+        }
     }
 
     private void updateInternal(final Note rootNote,
                                 final int height,
                                 final Filter filter,
                                 final ViewStyle style,
-                                final Map<String, Atom> cache) {
+                                final Map<String, Atom> cache,
+                                final GraphChanges changes) {
 
         Atom rootAtom = getRequiredAtomForNote(rootNote, cache);
 
         // we are pre-ordered w.r.t. setting of properties
         setProperties(rootAtom, rootNote);
 
-        updateChildren(rootNote, rootAtom, height, filter, style, cache);
+        updateChildren(rootNote, rootAtom, height, filter, style, cache, changes);
     }
 
     public static <T> int indexOfNthVisible(final EntityList<T> list, final int position, final Predicate<T> filter) {
@@ -352,20 +445,13 @@ public class TreeViews {
         return index;
     }
 
-    private void addAtomAt(final Atom parent, final Atom child, final int position, final Filter filter) {
-        parent.addChildAt(child, indexOfNthVisible(parent.getChildren(), position, filter));
-    }
-
-    private void removeAtomAt(final Atom parent, final int position, final Filter filter) {
-        parent.deleteChildAt(indexOfNthVisible(parent.getChildren(), position, filter));
-    }
-
     private void updateChildren(final Note rootNote,
                                 final Atom rootAtom,
                                 final int height,
                                 final Filter filter,
                                 final ViewStyle style,
-                                final Map<String, Atom> cache) {
+                                final Map<String, Atom> cache,
+                                final GraphChanges changes) {
 
         if (0 >= height || !filter.test(rootAtom)) {
             return;
@@ -373,6 +459,8 @@ public class TreeViews {
 
         Set<String> childrenAdded = new HashSet<>();
         Set<String> childrenCreated = new HashSet<>();
+        // the edits are made to a copy of the list of children, which is written back in a single pass
+        EditedChildren children = new EditedChildren(rootAtom, filter);
 
         ListDiff.DiffEditor<Note> editor = new ListDiff.DiffEditor<Note>() {
             @Override
@@ -384,7 +472,7 @@ public class TreeViews {
 
                 Atom atom = getAtomForNote(note, filter, childrenCreated, cache);
 
-                addAtomAt(rootAtom, atom, position, filter);
+                children.add(position, atom);
 
                 childrenAdded.add(atom.getId());
 
@@ -401,7 +489,7 @@ public class TreeViews {
                     return;
                 }
 
-                removeAtomAt(rootAtom, position, filter);
+                children.remove(position);
 
                 // log this activity
                 if (null != brain.getActivityLog()) {
@@ -411,14 +499,30 @@ public class TreeViews {
                     }
                 }
             }
+
+            @Override
+            public void move(final int from,
+                             final int to,
+                             final Note note) {
+                if (!style.addOnUpdate() || !style.deleteOnUpdate()) {
+                    ListDiff.DiffEditor.super.move(from, to, note);
+                    return;
+                }
+
+                // the atom remains a child, so there is nothing to create or to log
+                children.move(from, to);
+
+                // as when a child is deleted and added again, its own children are not updated
+                childrenAdded.add(note.getId());
+            }
         };
 
         List<Note> before = viewInternal(rootAtom, 1, filter, style, false, cache).getChildren();
         List<Note> after = rootNote.getChildren();
-        List<Note> lcs = ListDiff.longestCommonSubsequence(before, after, compareById);
 
         // we are pre-ordered w.r.t. updating lists of children
-        ListDiff.applyDiff(before, after, lcs, compareById, editor);
+        ListDiff.applyDiff(before, after, compareById, editor);
+        children.write(changes);
 
         for (Note n : rootNote.getChildren()) {
             // upon adding children:
@@ -434,7 +538,69 @@ public class TreeViews {
                     : height - 1;
 
             // TODO: verify that this can result in multiple log events per call to update()
-            updateInternal(n, h, filter, style, cache);
+            updateInternal(n, h, filter, style, cache, changes);
+        }
+    }
+
+    // a copy of the children of an atom, edited in terms of the positions of visible children
+    private static class EditedChildren {
+        private final Atom parent;
+        private final Filter filter;
+        // the children and their visibility, which are read upon the first edit
+        private List<Atom> atoms;
+        private List<Boolean> visible;
+
+        private EditedChildren(final Atom parent, final Filter filter) {
+            this.parent = parent;
+            this.filter = filter;
+        }
+
+        private void add(final int position, final Atom atom) {
+            int index = indexOfNthVisible(position);
+            atoms.add(index, atom);
+            visible.add(index, filter.test(atom));
+        }
+
+        private void remove(final int position) {
+            int index = indexOfNthVisible(position);
+            atoms.remove(index);
+            visible.remove(index);
+        }
+
+        private void move(final int from, final int to) {
+            int index = indexOfNthVisible(from);
+            Atom atom = atoms.remove(index);
+            visible.remove(index);
+
+            index = indexOfNthVisible(to);
+            atoms.add(index, atom);
+            visible.add(index, true);
+        }
+
+        private void write(final GraphChanges changes) {
+            if (null != atoms) {
+                parent.replaceChildren(atoms, changes);
+            }
+        }
+
+        private int indexOfNthVisible(final int position) {
+            if (null == atoms) {
+                atoms = new ArrayList<>();
+                visible = new ArrayList<>();
+                for (EntityList<Atom> cur = parent.getChildren(); null != cur; cur = cur.getRest()) {
+                    atoms.add(cur.getFirst());
+                    visible.add(filter.test(cur.getFirst()));
+                }
+            }
+
+            int index = 0, count = 0;
+            for (boolean v : visible) {
+                if (v && count++ == position) {
+                    break;
+                }
+                index++;
+            }
+            return index;
         }
     }
 
@@ -503,11 +669,6 @@ public class TreeViews {
         return a;
     }
 
-    private boolean isAdjacent(final Atom a, final boolean includeChildren, final boolean includeParents) {
-        return (includeChildren && null != a.getChildren())
-                || (includeParents && a.getFirstOf().size() > 0);
-    }
-
     private Note findAtoms(final Filter filter,
                            final boolean includeChildren,
                            final boolean includeParents,
@@ -519,11 +680,9 @@ public class TreeViews {
 
         Note result = new Note();
 
-        for (Atom a : brain.getTopicGraph().getAllAtoms()) {
-            if (filter.test(a) && !isAdjacent(a, includeChildren, includeParents)) {
-                Note n = viewInternal(a, height, filter, style, true, null);
-                result.addChild(n);
-            }
+        for (Atom a : brain.getTopicGraph().getUnlinkedAtoms(filter.compile(), includeParents, includeChildren)) {
+            Note n = viewInternal(a, height, filter, style, true, null);
+            result.addChild(n);
         }
 
         Collections.sort(result.getChildren(), compareByProperties);
@@ -571,22 +730,34 @@ public class TreeViews {
                 note.setText(atom.getText());
             }
 
-            if (null != brain.getKnowledgeBase()) {
-                List<KnowledgeBase.AtomClassEntry> entries = brain.getKnowledgeBase().getClassInfo(atom);
-                if (null != entries && entries.size() > 0) {
-                    List<String> meta = new java.util.LinkedList();
-                    for (KnowledgeBase.AtomClassEntry e : entries) {
-                        String ann = "class " + e.getInferredClassName()
-                                + " " + e.getScore() + "=" + e.getOutScore() + "+" + e.getInScore();
-                        meta.add(ann);
-                    }
+            addClassInfo(atom, note);
+        }
 
-                    note.setMeta(meta);
+        return note;
+    }
+
+    private Note toLazyNote(final Atom atom,
+                            final boolean isVisible,
+                            final int projection) throws InvalidGraphException {
+        Note note = new LazyNote(atom, isVisible, projection);
+        addClassInfo(atom, note);
+        return note;
+    }
+
+    private void addClassInfo(final Atom atom, final Note note) {
+        if (null != brain.getKnowledgeBase()) {
+            List<KnowledgeBase.AtomClassEntry> entries = brain.getKnowledgeBase().getClassInfo(atom);
+            if (null != entries && entries.size() > 0) {
+                List<String> meta = new LinkedList<>();
+                for (KnowledgeBase.AtomClassEntry e : entries) {
+                    String ann = "class " + e.getInferredClassName()
+                            + " " + e.getScore() + "=" + e.getOutScore() + "+" + e.getInScore();
+                    meta.add(ann);
                 }
+
+                note.setMeta(meta);
             }
         }
-
-        return note;
     }
 
     private String rewriteQuery(final String original) {
@@ -615,19 +786,62 @@ public class TreeViews {
         return !token.equals("AND") && !token.equals("OR");
     }
 
-    // TODO: switch to a true linked-list model so that we won't have to create temporary collections for iteration
-    // TODO: see also BrainGraph.toList
-    public static Iterable<Atom> toFilteredIterable(final EntityList<Atom> list, final Filter filter) {
-        EntityList<Atom> cur = list;
-        List<Atom> javaList = new LinkedList<>();
-        while (null != cur) {
+    /**
+     * @return a view of those atoms in the list which pass the filter.
+     * The list is read, and the filter applied, only as the view is iterated.
+     */
+    public static Iterable<Atom> toFilteredIterable(final EntityList<Atom> list, final Predicate<Atom> filter) {
+        return () -> new FilteredIterator(list, filter);
+    }
+
+    /**
+     * @return the number of atoms in the list which pass the filter
+     */
+    public static int countFiltered(final EntityList<Atom> list, final Predicate<Atom> filter) {
+        int count = 0;
+        for (EntityList<Atom> cur = list; null != cur; cur = cur.getRest()) {
             if (filter.test(cur.getFirst())) {
-                javaList.add(cur.getFirst());
+                count++;
             }
-            cur = cur.getRest();
         }
 
-        return javaList;
+        return count;
+    }
+
+    private static class FilteredIterator implements Iterator<Atom> {
+        private final Predicate<Atom> filter;
+        private EntityList<Atom> cur;
+        // the next atom which passes the filter, if it has been found
+        private Atom next;
+
+        private FilteredIterator(final EntityList<Atom> list, final Predicate<Atom> filter) {
+            this.filter = filter;
+            this.cur = list;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (null == next && null != cur) {
+                Atom atom = cur.getFirst();
+                cur = cur.getRest();
+                if (filter.test(atom)) {
+                    next = atom;
+                }
+            }
+
+            return null != next;
+        }
+
+        @Override
+        public Atom next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Atom result = next;
+            next = null;
+            return result;
+        }
     }
 
 }
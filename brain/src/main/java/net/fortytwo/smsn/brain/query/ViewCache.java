@@ -0,0 +1,270 @@
+package net.fortytwo.smsn.brain.query;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import org.parboiled.common.Preconditions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A bounded, least-recently-used cache of rendered views.
+ * Each view is stored together with the ids of the atoms on which it depends,
+ * and is discarded as soon as any of those atoms is reported as changed,
+ * whether by the topic graph or by the knowledge base, upon a change to its inferred classes.
+ *
+ * @param <V> the type of a rendered view
+ */
+public class ViewCache<V> implements TopicGraph.UpdateListener {
+
+    private final int capacity;
+
+    // in order of access, least recently used first
+    private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> keysByDependency = new HashMap<>();
+
+    // incremented upon each change, so that views generated before the change are not added afterwards
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param capacity the maximum number of views to keep. If 0, no views are kept.
+     */
+    public ViewCache(final int capacity) {
+        Preconditions.checkArgument(capacity >= 0, "negative capacity");
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the cached view for the given key, or null if there is none
+     */
+    public synchronized V get(final Key key) {
+        Entry<V> entry = entries.get(key);
+        if (null == entry) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.view;
+    }
+
+    /**
+     * @return a number to be passed to {@link #put} together with a view generated after this call
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Adds a view to the cache, provided that no atom has changed since it was generated
+     *
+     * @param key          the key of the view
+     * @param view         the rendered view
+     * @param dependencies the ids of all atoms read in generating the view
+     * @param generation   the generation of the cache before the view was generated
+     */
+    public synchronized void put(final Key key,
+                                 final V view,
+                                 final Collection<String> dependencies,
+                                 final long generation) {
+        if (0 == capacity || generation != this.generation) {
+            return;
+        }
+
+        Entry<V> previous = entries.remove(key);
+        if (null != previous) {
+            unindex(key, previous);
+        }
+
+        Entry<V> entry = new Entry<>(view, new HashSet<>(dependencies));
+        entries.put(key, entry);
+        for (String id : entry.dependencies) {
+            keysByDependency.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+        }
+
+        while (entries.size() > capacity) {
+            Iterator<Map.Entry<Key, Entry<V>>> eldest = entries.entrySet().iterator();
+            Map.Entry<Key, Entry<V>> e = eldest.next();
+            eldest.remove();
+            unindex(e.getKey(), e.getValue());
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized void atomsChanged(final Collection<String> changedIds) {
+        generation++;
+
+        if (null == changedIds) {
+            invalidations += entries.size();
+            entries.clear();
+            keysByDependency.clear();
+            return;
+        }
+
+        for (String id : changedIds) {
+            Set<Key> keys = keysByDependency.remove(id);
+            if (null != keys) {
+                for (Key key : keys) {
+                    Entry<V> entry = entries.remove(key);
+                    if (null != entry) {
+                        unindex(key, entry);
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        atomsChanged(null);
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(capacity, entries.size(), hits, misses, evictions, invalidations);
+    }
+
+    private void unindex(final Key key, final Entry<V> entry) {
+        for (String id : entry.dependencies) {
+            Set<Key> keys = keysByDependency.get(id);
+            if (null != keys) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByDependency.remove(id);
+                }
+            }
+        }
+    }
+
+    private static class Entry<V> {
+        private final V view;
+        private final Set<String> dependencies;
+
+        private Entry(final V view, final Set<String> dependencies) {
+            this.view = view;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * The parameters of a view.
+     * Of the filter, only the minimum weight and source are significant, as the defaults do not affect the view.
+     */
+    public static class Key {
+        private final String rootId;
+        private final int height;
+        private final float minWeight;
+        private final String minSource;
+        private final String styleName;
+        private final Set<String> properties;
+
+        public Key(final String rootId,
+                   final int height,
+                   final Filter filter,
+                   final ViewStyle style) {
+            this(rootId, height, filter, style, null);
+        }
+
+        /**
+         * @param properties the properties included in the view, or null for all properties
+         */
+        public Key(final String rootId,
+                   final int height,
+                   final Filter filter,
+                   final ViewStyle style,
+                   final Collection<String> properties) {
+            this.rootId = rootId;
+            this.height = height;
+            this.minWeight = filter.getMinWeight();
+            this.minSource = filter.getMinSource();
+            this.styleName = style.getName();
+            this.properties = null == properties ? null : new HashSet<>(properties);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key k = (Key) other;
+            return rootId.equals(k.rootId)
+                    && height == k.height
+                    && minWeight == k.minWeight
+                    && Objects.equals(minSource, k.minSource)
+                    && styleName.equals(k.styleName)
+                    && Objects.equals(properties, k.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rootId, height, minWeight, minSource, styleName, properties);
+        }
+    }
+
+    public static class Statistics {
+        private final int capacity;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+
+        private Statistics(final int capacity,
+                           final int size,
+                           final long hits,
+                           final long misses,
+                           final long evictions,
+                           final long invalidations) {
+            this.capacity = capacity;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the fraction of requests which have been served from the cache, or 0 if there have been none
+         */
+        public double getHitRate() {
+            long requests = hits + misses;
+            return 0 == requests ? 0 : hits / (double) requests;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package net.fortytwo.smsn.brain.query;
 
-import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.entities.Atom;
-import net.fortytwo.smsn.brain.model.entities.EntityList;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 public interface ViewStyle {
 
@@ -45,10 +44,16 @@ public interface ViewStyle {
 
                 @Override
                 public Iterable<Atom> getLinked(final Atom root,
-                                                final Filter filter) {
+                                                final Predicate<Atom> filter) {
                     return TreeViews.toFilteredIterable(root.getChildren(), filter);
                 }
 
+                @Override
+                public int countLinked(final Atom root,
+                                       final Predicate<Atom> filter) {
+                    return TreeViews.countFiltered(root.getChildren(), filter);
+                }
+
                 @Override
                 public boolean addOnUpdate() {
                     return true;
@@ -80,10 +85,16 @@ public interface ViewStyle {
 
                 @Override
                 public Iterable<Atom> getLinked(final Atom root,
-                                                final Filter filter) {
+                                                final Predicate<Atom> filter) {
                     return TreeViews.toFilteredIterable(root.getChildren(), filter);
                 }
 
+                @Override
+                public int countLinked(final Atom root,
+                                       final Predicate<Atom> filter) {
+                    return TreeViews.countFiltered(root.getChildren(), filter);
+                }
+
                 @Override
                 public boolean addOnUpdate() {
                     return true;
@@ -115,17 +126,9 @@ public interface ViewStyle {
 
                 @Override
                 public Iterable<Atom> getLinked(final Atom root,
-                                                final Filter filter) {
-                    List<Atom> results = new LinkedList<>();
-                    root.forFirstOf(list -> {
-                        EntityList<Atom> cur = list;
-                        EntityList<Atom> prev = null;
-                        while (null != cur) {
-                            prev = cur;
-                            cur = cur.getRestOf();
-                        }
-
-                        Atom a = root.getSubject(prev);
+                                                final Predicate<Atom> filter) {
+                    List<Atom> results = new ArrayList<>();
+                    root.forEachParent(a -> {
                         if (filter.test(a)) {
                             results.add(a);
                         }
@@ -134,6 +137,19 @@ public interface ViewStyle {
                     return results;
                 }
 
+                @Override
+                public int countLinked(final Atom root,
+                                       final Predicate<Atom> filter) {
+                    int[] count = {0};
+                    root.forEachParent(a -> {
+                        if (filter.test(a)) {
+                            count[0]++;
+                        }
+                    });
+
+                    return count[0];
+                }
+
                 @Override
                 public boolean addOnUpdate() {
                     return false;
@@ -159,7 +175,27 @@ public interface ViewStyle {
 
     String getName();
 
-    Iterable<Atom> getLinked(Atom root, Filter filter);
+    /**
+     * @param root   the atom whose linked atoms are to be found
+     * @param filter a test of atom visibility; in practice, either a {@link net.fortytwo.smsn.brain.model.Filter}
+     *               or a memo of one
+     * @return the visible atoms linked from the root in this style
+     */
+    Iterable<Atom> getLinked(Atom root, Predicate<Atom> filter);
+
+    /**
+     * @param root   the atom whose linked atoms are to be counted
+     * @param filter a test of atom visibility, as in {@link #getLinked}
+     * @return the number of visible atoms linked from the root in this style,
+     * which styles may count without collecting the atoms
+     */
+    default int countLinked(final Atom root, final Predicate<Atom> filter) {
+        int count = 0;
+        for (Atom ignored : getLinked(root, filter)) {
+            count++;
+        }
+        return count;
+    }
 
     boolean addOnUpdate();
 
@@ -0,0 +1,136 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An RDF handler which writes statements to a series of files in a directory, starting a new file once a file
+ * holds a given number of statements. Each file is a complete document in the given format, and may be gzipped.
+ * Files are named after a prefix, a sequence number and the default file extension of the format,
+ * e.g. <code>brain-00000.nt.gz</code>.
+ */
+public class ChunkedRDFWriter implements RDFHandler {
+
+    private final File directory;
+    private final String prefix;
+    private final RDFFormat format;
+    private final long statementsPerChunk;
+    private final boolean gzip;
+
+    private final Map<String, String> namespaces = new HashMap<>();
+
+    private OutputStream currentStream;
+    private RDFHandler currentWriter;
+    private long statementsInChunk;
+    private int chunks;
+
+    public ChunkedRDFWriter(final File directory,
+                            final String prefix,
+                            final RDFFormat format,
+                            final long statementsPerChunk,
+                            final boolean gzip) {
+        if (statementsPerChunk <= 0) {
+            throw new IllegalArgumentException("number of statements per chunk must be positive");
+        }
+
+        this.directory = directory;
+        this.prefix = prefix;
+        this.format = format;
+        this.statementsPerChunk = statementsPerChunk;
+        this.gzip = gzip;
+    }
+
+    /**
+     * @return the number of files written so far
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    public File getChunkFile(final int index) {
+        String name = String.format("%s-%05d.%s", prefix, index, format.getDefaultFileExtension());
+        return new File(directory, gzip ? name + ".gz" : name);
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        namespaces.clear();
+        chunks = 0;
+        startChunk();
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        endChunk();
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException {
+        // namespaces are repeated at the head of each chunk, so that every file can be read on its own
+        namespaces.put(prefix, uri);
+        currentWriter.handleNamespace(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException {
+        if (statementsInChunk >= statementsPerChunk) {
+            endChunk();
+            startChunk();
+        }
+
+        currentWriter.handleStatement(statement);
+        statementsInChunk++;
+    }
+
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException {
+        currentWriter.handleComment(comment);
+    }
+
+    private void startChunk() throws RDFHandlerException {
+        File file = getChunkFile(chunks);
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            currentStream = gzip ? new GZIPOutputStream(out) : out;
+        } catch (IOException e) {
+            throw new RDFHandlerException("could not open " + file.getAbsolutePath(), e);
+        }
+
+        chunks++;
+        statementsInChunk = 0;
+        currentWriter = Rio.createWriter(format, currentStream);
+        currentWriter.startRDF();
+        for (Map.Entry<String, String> e : namespaces.entrySet()) {
+            currentWriter.handleNamespace(e.getKey(), e.getValue());
+        }
+    }
+
+    private void endChunk() throws RDFHandlerException {
+        if (null == currentWriter) {
+            return;
+        }
+
+        try {
+            currentWriter.endRDF();
+        } finally {
+            currentWriter = null;
+            try {
+                currentStream.close();
+            } catch (IOException e) {
+                throw new RDFHandlerException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An RDF handler which drops statements already seen within a sliding window of recently handled statements.
+ * Memory use is bounded by the size of the window, so duplicates further apart than the window are passed on.
+ * RDFization produces most of its duplicates close together (e.g. the type and label of an atom which is matched
+ * several times in a pass), and a repeated statement is harmless in any case, so no statement is ever lost.
+ */
+public class DeduplicatingRDFHandler extends RDFHandlerWrapper {
+
+    public static final int DEFAULT_WINDOW_SIZE = 100000;
+
+    private final Map<Statement, Boolean> window;
+
+    private long duplicates;
+
+    public DeduplicatingRDFHandler(final RDFHandler handler) {
+        this(handler, DEFAULT_WINDOW_SIZE);
+    }
+
+    public DeduplicatingRDFHandler(final RDFHandler handler, final int windowSize) {
+        super(handler);
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("window size must be positive");
+        }
+
+        // an access-ordered map, so that a statement seen again moves to the end of the window
+        window = new LinkedHashMap<Statement, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Statement, Boolean> eldest) {
+                return size() > windowSize;
+            }
+        };
+    }
+
+    /**
+     * @return the number of statements dropped as duplicates since the handler was created
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        window.clear();
+        super.startRDF();
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        window.clear();
+        super.endRDF();
+    }
+
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException {
+        if (null == window.put(statement, Boolean.TRUE)) {
+            super.handleStatement(statement);
+        } else {
+            duplicates++;
+        }
+    }
+}
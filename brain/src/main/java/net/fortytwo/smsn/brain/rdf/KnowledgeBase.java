@@ -1,6 +1,5 @@
 package net.fortytwo.smsn.brain.rdf;
 
-import info.aduna.iteration.CloseableIteration;
 import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.TopicGraph;
@@ -9,20 +8,23 @@ import net.fortytwo.smsn.brain.model.entities.EntityList;
 import net.fortytwo.smsn.brain.rdf.classes.*;
 import net.fortytwo.smsn.brain.rdf.classes.Date;
 import net.fortytwo.smsn.brain.rdf.classes.collections.*;
-import org.openrdf.model.Statement;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.SimpleValueFactory;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.Rio;
-import org.openrdf.sail.Sail;
-import org.openrdf.sail.SailConnection;
-import org.openrdf.sail.SailException;
-import org.openrdf.sail.memory.MemoryStore;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Level;
 
 /**
@@ -30,18 +32,57 @@ import java.util.logging.Level;
  */
 public class KnowledgeBase {
 
+    // the maximum number of passes of an incremental inference step
+    private static final int MAX_INCREMENTAL_PASSES = 16;
+
+    // the number of atoms below which a parallel scoring task is not split further
+    private static final int SCORING_THRESHOLD = 1024;
+
     private final TopicGraph topicGraph;
 
     private final Map<Class<? extends AtomClass>, AtomClass> classes;
 
-    private final Map<Atom, List<AtomClassEntry>> atomClassifications;
+    // finds the classes whose value regex may match a title
+    private TitlePrefilter titlePrefilter = new TitlePrefilter(Collections.emptyList());
+
+    // classifications by atom id
+    private final Map<String, List<AtomClassEntry>> atomClassifications;
+
+    // the class entries of members to whose in-scores each atom has contributed, by atom id
+    private final Map<String, List<AtomClassEntry>> contributions = new HashMap<>();
+
+    // the ids of the atoms whose collection memories refer to each atom, and the converse
+    private final Map<String, Set<String>> memoryReferences = new HashMap<>();
+    private final Map<String, Set<String>> referencedIds = new HashMap<>();
+
+    // the ids of the member atoms of collection memories which have been read from a stream,
+    // and which are looked up in the topic graph at the next inference step
+    private final Map<AtomCollectionMemory, List<String>> unresolvedMembers = new IdentityHashMap<>();
+
+    // the ids of atoms changed since the last inference step
+    private final Set<String> changedAtoms = new HashSet<>();
+    private boolean fullInferenceRequired = true;
+
+    private List<Integer> lastPassCounts = Collections.emptyList();
+
+    // a pool for the parallel scoring of atoms, or null if atoms are scored sequentially
+    private ForkJoinPool pool;
 
     private ValueFactory valueFactory = SimpleValueFactory.getInstance();
 
+    // incremented whenever the classifications of atoms have changed
+    private volatile long version;
+
+    // a digest of each classification as last published to listeners, by atom id
+    private final Map<String, Integer> publishedDigests = new HashMap<>();
+    private final List<TopicGraph.UpdateListener> classificationListeners = new CopyOnWriteArrayList<>();
+
     public KnowledgeBase(final TopicGraph topicGraph) {
         this.topicGraph = topicGraph;
         this.atomClassifications = new HashMap<>();
         this.classes = new HashMap<>();
+
+        topicGraph.addUpdateListener(this::atomsChanged);
     }
 
     /**
@@ -53,9 +94,56 @@ public class KnowledgeBase {
         this.valueFactory = valueFactory;
     }
 
+    /**
+     * Sets the number of threads among which the atoms are divided in each full inference step.
+     * Every atom is scored against the classifications of the previous pass, and the atoms are classified only once
+     * all have been scored, so that the classifications of a pass are the same for any number of threads.
+     * Each thread of the pool reads the topic graph in a transaction of its own, which it closes when its atoms
+     * are scored.
+     *
+     * @param parallelism the number of threads. If 1, atoms are scored sequentially, in the calling thread.
+     */
+    public synchronized void setParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be a positive integer");
+        }
+
+        if (null != pool) {
+            pool.shutdown();
+        }
+        pool = 1 == parallelism ? null : new ForkJoinPool(parallelism);
+    }
+
+    public synchronized int getParallelism() {
+        return null == pool ? 1 : pool.getParallelism();
+    }
+
     // note: graph and vocabulary are not affected by this operation
     public synchronized void reset() {
         atomClassifications.clear();
+        contributions.clear();
+        memoryReferences.clear();
+        referencedIds.clear();
+        unresolvedMembers.clear();
+        synchronized (changedAtoms) {
+            fullInferenceRequired = true;
+        }
+        publishAllClassifications();
+    }
+
+    /**
+     * @return a number which changes whenever the classifications of atoms have changed
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds a listener to be notified of the ids of the atoms whose classifications, including scores,
+     * have changed in an inference step. A null collection of ids means that any classification may have changed.
+     */
+    public void addClassificationListener(final TopicGraph.UpdateListener listener) {
+        classificationListeners.add(listener);
     }
 
     /**
@@ -67,13 +155,13 @@ public class KnowledgeBase {
      * or a list of classifications of the given atom, sorted in descending order by score
      */
     public List<AtomClassEntry> getClassInfo(final Atom a) {
-        List<AtomClassEntry> entries = atomClassifications.get(a);
+        List<AtomClassEntry> entries = atomClassifications.get(a.getId());
 
         if (null == entries || 0 == entries.size()) {
             return entries;
         } else {
             // sort in descending order by total score, putting the top-ranked class first
-            List<KnowledgeBase.AtomClassEntry> helper = new java.util.LinkedList<>();
+            List<KnowledgeBase.AtomClassEntry> helper = new LinkedList<>();
             helper.addAll(entries);
             Collections.sort(helper, KnowledgeBase.AtomClassificationComparator.INSTANCE);
             return helper;
@@ -134,11 +222,12 @@ public class KnowledgeBase {
         for (Class<? extends AtomClass> atomClass : vocabulary) {
             classes.put(atomClass, atomClass.newInstance());
         }
+
+        titlePrefilter = new TitlePrefilter(classes.values());
     }
 
 
     public void inferAutomatically(final long initialWait, final long interval) {
-        final int totalSteps = 4;
         new Thread(() -> {
             try {
                 Thread.sleep(initialWait);
@@ -146,6 +235,11 @@ public class KnowledgeBase {
                 SemanticSynchrony.getLogger().log(Level.WARNING, "interrupted", e);
             }
 
+            // classifications read from a previous run need no warm-up; changed atoms are re-classified below
+            final int totalSteps;
+            synchronized (changedAtoms) {
+                totalSteps = fullInferenceRequired ? 4 : 0;
+            }
             for (int i = 0; i < totalSteps; i++) {
                 try {
                     SemanticSynchrony.getLogger().info("performing warm-up inference step #" + (i + 1) + "/" + totalSteps);
@@ -154,9 +248,9 @@ public class KnowledgeBase {
                     SemanticSynchrony.getLogger().log(Level.WARNING, "error in warm-up inference", e);
                 }
             }
-            SemanticSynchrony.getLogger().info("completed warm-up inference");
-
-            long lastUpdate = topicGraph.getLastUpdate();
+            if (totalSteps > 0) {
+                SemanticSynchrony.getLogger().info("completed warm-up inference");
+            }
 
             while (true) {
                 try {
@@ -165,16 +259,15 @@ public class KnowledgeBase {
                     break;
                 }
 
-                // only repeat the inference step if there have been updates in the meantime
-                long u = topicGraph.getLastUpdate();
-                if (u > lastUpdate) {
+                // only repeat the inference step if there have been updates in the meantime,
+                // and then only for the changed atoms and those which depend on them
+                if (hasChanges()) {
                     try {
                         SemanticSynchrony.getLogger().info("performing class inference");
-                        inferClasses(null, null);
+                        inferClassesIncrementally();
                     } catch (RDFHandlerException e) {
                         SemanticSynchrony.getLogger().log(Level.WARNING, "class inference failed. Will keep trying", e);
                     }
-                    lastUpdate = u;
                 }
             }
         }).start();
@@ -228,7 +321,7 @@ public class KnowledgeBase {
         if (atom.asVertex().getId().equals("ynyUshJ")) {
             System.out.println("break here");
         }*/
-        List<AtomClassEntry> entries = atomClassifications.get(atom);
+        List<AtomClassEntry> entries = atomClassifications.get(atom.getId());
         return isClassified(entries);
     }
 
@@ -244,7 +337,8 @@ public class KnowledgeBase {
                               final Filter filter) throws RDFHandlerException {
         Set<Class<? extends AtomClass>> alts = el.getAlternatives();
 
-        final List<AtomClassEntry> entries = atomClassifications.get(childAtom);
+        // note: the child atom is null once the input has been exhausted
+        final List<AtomClassEntry> entries = null == childAtom ? null : atomClassifications.get(childAtom.getId());
         if (null == entries) { // unclassified
             // The unclassified atom matches if the element has no alternatives, i.e. accepts everything.
             // note: (as yet) unclassified atoms are only allowed to be trivial matches;
@@ -321,233 +415,634 @@ public class KnowledgeBase {
     public synchronized void inferClasses(final RDFHandler handler, final Filter filter) throws RDFHandlerException {
         long startTime = System.currentTimeMillis();
 
+        resolveMemories();
+
+        // every atom is re-classified, including those changed so far
+        synchronized (changedAtoms) {
+            changedAtoms.clear();
+            fullInferenceRequired = false;
+        }
+        contributions.clear();
+
         RDFizationContext context = new RDFizationContext(topicGraph, handler, valueFactory);
 
-        // class entries are sorted in descending order based on out-score rather than total score so as to avoid
-        // feedback -- see match().  The final score for a class and atom is the sum of out-score and in-score.
-        Comparator outScoreDescending = Collections.reverseOrder();
         Comparator totalScoreDescending = new AtomClassificationComparator();
 
-        // classify or re-classify each atom
+        List<Atom> subjects = new ArrayList<>();
         for (Atom subject : topicGraph.getAllAtoms()) {
-            context.setSubject(subject);
+            subjects.add(subject);
+        }
+
+        // score each atom against the classifications of the previous pass, which are not modified until all
+        // atoms have been scored. The scores are therefore the same whether or not atoms are scored in parallel.
+        List<Scoring> scorings = null == pool
+                ? scoreAll(subjects, 0, subjects.size(), context, null != handler, filter)
+                : pool.invoke(new ScoringTask(subjects, 0, subjects.size(), context, null != handler, filter));
+
+        // classify or re-classify each atom, in order
+        for (Scoring scoring : scorings) {
+            classify(scoring, context, handler, filter, totalScoreDescending);
+        }
 
-            String value = subject.getTitle();
-            String alias = subject.getAlias();
+        // update all in-scores, globally, and clear future in-scores in preparation for the next iteration
+        for (List<AtomClassEntry> l : atomClassifications.values()) {
+            for (AtomClassEntry e : l) {
+                e.inScore = e.futureInScore;
+                e.futureInScore = 0;
+                // also clear callbacks to free memory
+                e.callbacks = null;
+            }
+        }
 
-            List<AtomClassEntry> oldEntries = atomClassifications.get(subject);
-            List<AtomClassEntry> newEntries = new java.util.LinkedList<>();
+        Set<String> classified = new HashSet<>(atomClassifications.keySet());
+        classified.addAll(publishedDigests.keySet());
+        publishClassifications(classified);
 
-            for (AtomClass clazz : classes.values()) {
-                /* DO NOT REMOVE
-                if (subject.asVertex().getId().equals("0rYY9z0") && clazz.name.equals("person")) {// && null != handler) {
-                    System.out.println("break point here");
-                }//*/
+        long typed = atomClassifications.size();
+        long total = countAtoms();
 
-                List<AtomClassEntry> evidenceEntries = new java.util.LinkedList<>();
+        long endTime = System.currentTimeMillis();
+        SemanticSynchrony.getLogger().info("classified " + typed + " of " + total + " atoms ("
+                + (total - typed) + " remaining) in " + (endTime - startTime) + "ms");
+    }
 
-                Collection<RdfizationCallback> callbacks = null == handler
-                        ? null : new java.util.LinkedList();
+    /**
+     * Re-classifies only those atoms which have changed since the last inference step, and the atoms whose
+     * classifications depend on them, in a series of passes.
+     * The first pass re-evaluates the changed atoms; each later pass re-evaluates the parents of those atoms
+     * whose classifications changed in the previous pass, together with any atoms whose collection memories
+     * referred to them. Passes continue until no classification changes, or until a maximum number of passes,
+     * in which case the remaining atoms are left for the next step.
+     * If no full inference step has yet been performed, or if any atom may have changed, the first pass
+     * re-evaluates all atoms.
+     *
+     * @return the number of atoms re-evaluated in each pass, which is empty if nothing has changed
+     * @throws org.openrdf.rio.RDFHandlerException if a downstream error occurs
+     */
+    public synchronized List<Integer> inferClassesIncrementally() throws RDFHandlerException {
+        long startTime = System.currentTimeMillis();
 
-                AtomCollectionMemory memory = clazz.isCollectionClass()
-                        ? new AtomCollectionMemory(subject.getId())
-                        : null;
+        resolveMemories();
 
-                if (null != clazz.valueRegex) {
-                    if (null == value || !clazz.valueRegex.matcher(value).matches()) {
-                        continue;
-                    }
+        Set<String> frontier = new HashSet<>();
+        synchronized (changedAtoms) {
+            if (fullInferenceRequired) {
+                for (Atom a : topicGraph.getAllAtoms()) {
+                    frontier.add(a.getId());
                 }
+                // also re-evaluate any atoms which no longer exist
+                frontier.addAll(atomClassifications.keySet());
+                fullInferenceRequired = false;
+            } else {
+                frontier.addAll(changedAtoms);
+            }
+            changedAtoms.clear();
+        }
+
+        RDFizationContext context = new RDFizationContext(topicGraph, null, valueFactory);
+
+        // the atoms whose classifications or in-scores may have changed
+        Set<String> touched = new HashSet<>();
+        List<Integer> counts = new LinkedList<>();
+        while (!frontier.isEmpty()) {
+            if (counts.size() == MAX_INCREMENTAL_PASSES) {
+                // classifications have not settled, possibly due to a cycle; continue in the next step
+                SemanticSynchrony.getLogger().warning("class inference did not settle after "
+                        + MAX_INCREMENTAL_PASSES + " passes (" + frontier.size() + " atoms remaining)");
+                synchronized (changedAtoms) {
+                    changedAtoms.addAll(frontier);
+                }
+                break;
+            }
 
-                if (null != clazz.aliasRegex) {
-                    if (null == alias || !clazz.aliasRegex.matcher(alias).matches()) {
-                        continue;
+            Set<String> next = new HashSet<>();
+            for (String id : frontier) {
+                Optional<Atom> opt = topicGraph.getAtomById(id);
+                Set<String> referrers = memoryReferences.get(id);
+                if (opt.isPresent()) {
+                    Atom subject = opt.get();
+                    context.setSubject(subject);
+                    if (reclassify(subject, context, touched)) {
+                        subject.forEachParent(parent -> next.add(parent.getId()));
+                        if (null != referrers) {
+                            next.addAll(referrers);
+                        }
                     }
+                } else if (removeClassification(id, touched) && null != referrers) {
+                    next.addAll(referrers);
                 }
+            }
+            counts.add(frontier.size());
+            frontier = next;
+        }
 
-                // out-score is the number of ways in which the member regex of the atom matches
-                // out-score is not affected by the value or alias regex, as these are considered necessary
-                // but not sufficient for classification
-                int outScore = 0;
-
-                if (null != clazz.memberRegex) {
-                    EntityList<Atom> cur = subject.getChildren();
-                    Atom first = null;
-                    int eli = 0;
-                    AtomRegex.El el = null;
-                    AtomRegex.Modifier mod = null;
-                    boolean advanceInput = true;
-                    boolean advanceRegex = true;
-                    boolean matched;
-                    boolean fail = false;
-
-                    // break out on failure or exhaustion of the regex
-                    while (!fail) {
-                        if (advanceRegex) {
-                            if (clazz.memberRegex.getElements().size() > eli) {
-                                el = clazz.memberRegex.getElements().get(eli++);
-                                mod = el.getModifier();
-                            } else {
-                                // we need to have exhausted the input
-                                if (null != cur) {
-                                    fail = true;
-                                }
+        lastPassCounts = counts;
+        if (counts.size() > 0) {
+            publishClassifications(touched);
 
-                                break;
-                            }
+            long endTime = System.currentTimeMillis();
+            SemanticSynchrony.getLogger().info("re-classified atoms in " + counts.size() + " passes "
+                    + counts + " in " + (endTime - startTime) + "ms");
+        }
 
-                            advanceRegex = false;
-                        }
+        return counts;
+    }
 
-                        if (advanceInput) {
-                            if (null == cur) {
-                                // we have exhausted the input
-                                if (AtomRegex.Modifier.One == mod || AtomRegex.Modifier.OneOrMore == mod) {
-                                    // additional input is required by the regex; fail
-                                    fail = true;
-                                    break;
-                                } else {
-                                    // try to exhaust the regex without further input
-                                    advanceRegex = true;
-                                    advanceInput = false;
-                                    continue;
-                                }
-                            } else {
-                                first = cur.getFirst();
-                                cur = cur.getRest();
-                                advanceInput = false;
-                            }
-                        }
+    /**
+     * @return the number of atoms re-evaluated in each pass of the most recent incremental inference step
+     */
+    public synchronized List<Integer> getLastPassCounts() {
+        return lastPassCounts;
+    }
 
-                        MatchResult matchResult = match(first, el, evidenceEntries, memory, context, callbacks, filter);
+    /**
+     * @return whether any atoms have changed since the last inference step
+     */
+    public boolean hasChanges() {
+        synchronized (changedAtoms) {
+            return fullInferenceRequired || !changedAtoms.isEmpty();
+        }
+    }
 
-                        // assign points per matched input element (rather than only per regex element)
-                        switch (matchResult) {
-                            case Unsupported:
-                                // Assign a point only if the regex element matches a specific class, not a wildcard,
-                                // and the current element has not been marked to score as a wildcard.
-                                // Particularly significant elements may score extra points.
-                                outScore += el.getWeight();
-                                break;
-                            case Supported:
-                                // Members supported by internal evidence (i.e. having non-zero out-scores)
-                                // in turn support the parent more strongly than members which merely satisfy
-                                // the property constraints.
-                                outScore += el.getWeight() * 2;
-                                break;
-                            case Unclassified: // fall through
-                            case NoMatch:
-                                break;
+    /**
+     * @return the ids of the atoms changed since the last inference step,
+     * or null if all atoms are to be re-classified in the next step
+     */
+    public Set<String> getChanges() {
+        synchronized (changedAtoms) {
+            return fullInferenceRequired ? null : new HashSet<>(changedAtoms);
+        }
+    }
+
+    /**
+     * Replaces the set of atoms to be re-classified in the next inference step,
+     * e.g. with those changed since classifications were saved
+     *
+     * @param changedIds the ids of the changed atoms, or null if all atoms are to be re-classified
+     */
+    public void setChanges(final Collection<String> changedIds) {
+        synchronized (changedAtoms) {
+            changedAtoms.clear();
+            fullInferenceRequired = null == changedIds;
+            if (null != changedIds) {
+                changedAtoms.addAll(changedIds);
+            }
+        }
+    }
+
+    private void atomsChanged(final Collection<String> changedIds) {
+        synchronized (changedAtoms) {
+            if (null == changedIds) {
+                fullInferenceRequired = true;
+            } else {
+                changedAtoms.addAll(changedIds);
+            }
+        }
+    }
+
+    // re-classifies a single atom, immediately replacing its contributions to the in-scores of its members
+    private boolean reclassify(final Atom subject,
+                               final RDFizationContext context,
+                               final Set<String> touched) throws RDFHandlerException {
+        String id = subject.getId();
+        touched.add(id);
+        List<AtomClassEntry> oldEvidence = contributions.remove(id);
+        if (null != oldEvidence) {
+            for (AtomClassEntry e : oldEvidence) {
+                e.inScore -= 1;
+                touched.add(e.atomId);
+            }
+        }
+
+        Scoring scoring = score(subject, context, false, null);
+        boolean changed = merge(scoring);
+
+        for (AtomClassEntry e : scoring.evidenceEntries) {
+            e.inScore += 1;
+            touched.add(e.atomId);
+        }
+        if (scoring.evidenceEntries.size() > 0) {
+            contributions.put(id, scoring.evidenceEntries);
+        }
+
+        return changed;
+    }
+
+    // drops the classification of an atom which no longer exists
+    private boolean removeClassification(final String id, final Set<String> touched) {
+        touched.add(id);
+        List<AtomClassEntry> oldEvidence = contributions.remove(id);
+        if (null != oldEvidence) {
+            for (AtomClassEntry e : oldEvidence) {
+                e.inScore -= 1;
+                touched.add(e.atomId);
+            }
+        }
+        indexMemoryReferences(id, null);
+
+        return null != atomClassifications.remove(id);
+    }
+
+    // notifies listeners of those of the given atoms whose classifications have changed since last published
+    private void publishClassifications(final Collection<String> ids) {
+        List<String> changed = new ArrayList<>();
+        for (String id : ids) {
+            int digest = digestOf(atomClassifications.get(id));
+            Integer previous = 0 == digest ? publishedDigests.remove(id) : publishedDigests.put(id, digest);
+            if (digest != (null == previous ? 0 : previous)) {
+                changed.add(id);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            version++;
+            for (TopicGraph.UpdateListener listener : classificationListeners) {
+                listener.atomsChanged(changed);
+            }
+        }
+    }
+
+    // notifies listeners that any classification may have changed
+    private void publishAllClassifications() {
+        publishedDigests.clear();
+        for (Map.Entry<String, List<AtomClassEntry>> e : atomClassifications.entrySet()) {
+            int digest = digestOf(e.getValue());
+            if (0 != digest) {
+                publishedDigests.put(e.getKey(), digest);
+            }
+        }
+
+        version++;
+        for (TopicGraph.UpdateListener listener : classificationListeners) {
+            listener.atomsChanged(null);
+        }
+    }
+
+    // a digest of the classes and scores of an atom, regardless of the order of its entries
+    private static int digestOf(final List<AtomClassEntry> entries) {
+        int digest = 0;
+        if (null != entries) {
+            for (AtomClassEntry e : entries) {
+                digest += Objects.hash(e.inferredClass.getName(), e.outScore, e.inScore);
+            }
+        }
+        return digest;
+    }
+
+    // merges a scored atom into the knowledge base, and generates RDF for it if there is a handler
+    private void classify(final Scoring scoring,
+                          final RDFizationContext context,
+                          final RDFHandler handler,
+                          final Filter filter,
+                          final Comparator totalScoreDescending) throws RDFHandlerException {
+        Atom subject = scoring.subject;
+        context.setSubject(subject);
+
+        merge(scoring);
+
+        // augment relevant in-scores of member atoms
+        List<AtomClassEntry> evidenceEntries = scoring.evidenceEntries;
+        for (AtomClassEntry e : evidenceEntries) {
+            e.futureInScore += 1;
+        }
+        if (evidenceEntries.size() > 0) {
+            contributions.put(subject.getId(), evidenceEntries);
+        }
+
+        // perform rdfization, choosing at most one classification
+        List<AtomClassEntry> newEntries = atomClassifications.get(subject.getId());
+        if (null != handler && (null == filter || filter.test(subject))) {
+            if (null != newEntries) {
+                List<AtomClassEntry> helper = new LinkedList<>();
+                helper.addAll(newEntries);
+                Collections.sort(helper, totalScoreDescending);
+                AtomClassEntry best = helper.get(0);
+                if (best.isNonTrivial()) {
+                    AtomClass clazz = classes.get(best.getInferredClass());
+                    clazz.toRDF(subject, context);
+                    best.callbacks.forEach(RdfizationCallback::execute);
+                }
+            }
+        }
+    }
+
+    private List<Scoring> scoreAll(final List<Atom> subjects,
+                                   final int from,
+                                   final int to,
+                                   final RDFizationContext context,
+                                   final boolean rdfize,
+                                   final Filter filter) throws RDFHandlerException {
+        List<Scoring> scorings = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            scorings.add(score(subjects.get(i), context, rdfize, filter));
+        }
+        return scorings;
+    }
+
+    /*
+    Scores a single atom against each class, collecting the class entries of members which support each
+    matching class. The classifications of the knowledge base are read, but not modified,
+    so that any number of atoms may be scored concurrently against the same classifications.
+     */
+    private Scoring score(final Atom subject,
+                          final RDFizationContext context,
+                          final boolean rdfize,
+                          final Filter filter) throws RDFHandlerException {
+        String value = subject.getTitle();
+        String alias = subject.getAlias();
+
+        Scoring scoring = new Scoring(subject);
+
+        // only those classes whose value regex may match the title are considered,
+        // in the same order as the classes themselves
+        for (AtomClass clazz : titlePrefilter.getCandidates(value)) {
+            /* DO NOT REMOVE
+            if (subject.asVertex().getId().equals("0rYY9z0") && clazz.name.equals("person")) {// && null != handler) {
+                System.out.println("break point here");
+            }//*/
+
+            List<AtomClassEntry> classEvidence = new LinkedList<>();
+
+            Collection<RdfizationCallback> callbacks = rdfize
+                    ? new LinkedList<>() : null;
+
+            AtomCollectionMemory memory = clazz.isCollectionClass()
+                    ? new AtomCollectionMemory(subject.getId())
+                    : null;
+
+            if (null != clazz.valueRegex) {
+                if (null == value || !clazz.valueRegex.matcher(value).matches()) {
+                    continue;
+                }
+            }
+
+            if (null != clazz.aliasRegex) {
+                if (null == alias || !clazz.aliasRegex.matcher(alias).matches()) {
+                    continue;
+                }
+            }
+
+            // out-score is the number of ways in which the member regex of the atom matches
+            // out-score is not affected by the value or alias regex, as these are considered necessary
+            // but not sufficient for classification
+            int outScore = 0;
+
+            if (null != clazz.memberRegex) {
+                EntityList<Atom> cur = subject.getChildren();
+                Atom first = null;
+                int eli = 0;
+                AtomRegex.El el = null;
+                AtomRegex.Modifier mod = null;
+                boolean advanceInput = true;
+                boolean advanceRegex = true;
+                boolean matched;
+                boolean fail = false;
+
+                // break out on failure or exhaustion of the regex
+                while (!fail) {
+                    if (advanceRegex) {
+                        if (clazz.memberRegex.getElements().size() > eli) {
+                            el = clazz.memberRegex.getElements().get(eli++);
+                            mod = el.getModifier();
+                        } else {
+                            // we need to have exhausted the input
+                            if (null != cur) {
+                                fail = true;
+                            }
+
+                            break;
                         }
 
-                        matched = matchResult != MatchResult.NoMatch;
+                        advanceRegex = false;
+                    }
 
-                        switch (mod) {
-                            case ZeroOrOne:
-                                if (matched) {
-                                    advanceRegex = true;
-                                    advanceInput = true;
-                                } else {
-                                    advanceRegex = true;
-                                }
-                                break;
-                            case ZeroOrMore:
-                                if (matched) {
-                                    advanceInput = true;
-                                } else {
-                                    advanceRegex = true;
-                                }
-                                break;
-                            case One:
-                                if (matched) {
-                                    advanceRegex = true;
-                                    advanceInput = true;
-                                } else {
-                                    fail = true;
-                                }
-                                break;
-                            case OneOrMore:
-                                if (matched) {
-                                    mod = AtomRegex.Modifier.ZeroOrMore;
-                                    advanceInput = true;
-                                } else {
-                                    fail = true;
-                                }
+                    if (advanceInput) {
+                        if (null == cur) {
+                            // we have exhausted the input
+                            if (AtomRegex.Modifier.One == mod || AtomRegex.Modifier.OneOrMore == mod) {
+                                // additional input is required by the regex; fail
+                                fail = true;
                                 break;
+                            } else {
+                                // try to exhaust the regex without further input
+                                advanceRegex = true;
+                                advanceInput = false;
+                                continue;
+                            }
+                        } else {
+                            first = cur.getFirst();
+                            cur = cur.getRest();
+                            advanceInput = false;
                         }
                     }
 
-                    if (fail) {
-                        continue;
+                    MatchResult matchResult = match(first, el, classEvidence, memory, context, callbacks, filter);
+
+                    // assign points per matched input element (rather than only per regex element)
+                    switch (matchResult) {
+                        case Unsupported:
+                            // Assign a point only if the regex element matches a specific class, not a wildcard,
+                            // and the current element has not been marked to score as a wildcard.
+                            // Particularly significant elements may score extra points.
+                            outScore += el.getWeight();
+                            break;
+                        case Supported:
+                            // Members supported by internal evidence (i.e. having non-zero out-scores)
+                            // in turn support the parent more strongly than members which merely satisfy
+                            // the property constraints.
+                            outScore += el.getWeight() * 2;
+                            break;
+                        case Unclassified: // fall through
+                        case NoMatch:
+                            break;
                     }
-                }
 
-                // at this point, we have classified the atom
-
-                // update or create the atom's entry for this class.
-                // It is necessary to preserve an existing entry, if any, for the sake of the in-score
-                AtomClassEntry classEntry = null;
-                if (null != oldEntries) {
-                    for (AtomClassEntry e : oldEntries) {
-                        if (e.getInferredClass() == clazz.getClass()) {
-                            e.outScore = outScore;
-                            e.memory = memory;
-                            classEntry = e;
+                    matched = matchResult != MatchResult.NoMatch;
+
+                    switch (mod) {
+                        case ZeroOrOne:
+                            if (matched) {
+                                advanceRegex = true;
+                                advanceInput = true;
+                            } else {
+                                advanceRegex = true;
+                            }
+                            break;
+                        case ZeroOrMore:
+                            if (matched) {
+                                advanceInput = true;
+                            } else {
+                                advanceRegex = true;
+                            }
+                            break;
+                        case One:
+                            if (matched) {
+                                advanceRegex = true;
+                                advanceInput = true;
+                            } else {
+                                fail = true;
+                            }
+                            break;
+                        case OneOrMore:
+                            if (matched) {
+                                mod = AtomRegex.Modifier.ZeroOrMore;
+                                advanceInput = true;
+                            } else {
+                                fail = true;
+                            }
                             break;
-                        }
                     }
                 }
-                if (null == classEntry) {
-                    classEntry = new AtomClassEntry(clazz.getClass(), outScore, memory);
-                }
-                classEntry.callbacks = callbacks;
-                newEntries.add(classEntry);
 
-                // augment relevant in-scores of member atoms
-                for (AtomClassEntry e : evidenceEntries) {
-                    e.futureInScore += 1;
+                if (fail) {
+                    continue;
                 }
             }
 
-            // remove old classification (if any) and replace with the new one (if any)
-            atomClassifications.remove(subject);
-            if (newEntries.size() > 0) {
-                Collections.sort(newEntries, outScoreDescending);
-                atomClassifications.put(subject, newEntries);
-            }
-
-            // perform rdfization, choosing at most one classification
-            if (null != handler && (null == filter || filter.test(subject))) {
-                if (newEntries.size() > 0) {
-                    List<AtomClassEntry> helper = new java.util.LinkedList<>();
-                    helper.addAll(newEntries);
-                    Collections.sort(helper, totalScoreDescending);
-                    AtomClassEntry best = helper.get(0);
-                    if (best.isNonTrivial()) {
-                        AtomClass clazz = classes.get(best.getInferredClass());
-                        clazz.toRDF(subject, context);
-                        best.callbacks.forEach(RdfizationCallback::execute);
+            // at this point, we have classified the atom
+            scoring.matches.add(new ClassMatch(clazz.getClass(), outScore, memory, callbacks));
+            scoring.evidenceEntries.addAll(classEvidence);
+        }
+
+        return scoring;
+    }
+
+    /*
+    Replaces the classification of a scored atom.
+    Returns whether the classification has changed in a way which may affect the classification of other atoms:
+    a class has been gained or lost, an out-score has changed, or a collection has gained or lost members.
+     */
+    private boolean merge(final Scoring scoring) {
+        // class entries are sorted in descending order based on out-score rather than total score so as to avoid
+        // feedback -- see match().  The final score for a class and atom is the sum of out-score and in-score.
+        Comparator outScoreDescending = Collections.reverseOrder();
+
+        String id = scoring.subject.getId();
+        List<AtomClassEntry> oldEntries = atomClassifications.get(id);
+        List<AtomClassEntry> newEntries = new LinkedList<>();
+        boolean changed = false;
+
+        for (ClassMatch match : scoring.matches) {
+            // update or create the atom's entry for this class.
+            // It is necessary to preserve an existing entry, if any, for the sake of the in-score
+            AtomClassEntry classEntry = null;
+            if (null != oldEntries) {
+                for (AtomClassEntry e : oldEntries) {
+                    if (e.getInferredClass() == match.inferredClass) {
+                        if (e.outScore != match.outScore) {
+                            changed = true;
+                        }
+                        e.outScore = match.outScore;
+                        // an existing memory is updated in place, as other memories may refer to it
+                        if (null != match.memory && null != e.memory) {
+                            if (updateMemory(e.memory, match.memory)) {
+                                changed = true;
+                            }
+                        } else {
+                            e.memory = match.memory;
+                        }
+                        classEntry = e;
+                        break;
                     }
                 }
             }
+            if (null == classEntry) {
+                classEntry = new AtomClassEntry(id, match.inferredClass, match.outScore, match.memory);
+                changed = true;
+            }
+            classEntry.callbacks = match.callbacks;
+            newEntries.add(classEntry);
         }
 
-        // update all in-scores, globally, and clear future in-scores in preparation for the next iteration
-        for (List<AtomClassEntry> l : atomClassifications.values()) {
-            for (AtomClassEntry e : l) {
-                e.inScore = e.futureInScore;
-                e.futureInScore = 0;
-                // also clear callbacks to free memory
-                e.callbacks = null;
+        if (null != oldEntries && oldEntries.size() != newEntries.size()) {
+            // one or more classes have been lost
+            changed = true;
+        }
+
+        // remove old classification (if any) and replace with the new one (if any)
+        atomClassifications.remove(id);
+        if (newEntries.size() > 0) {
+            Collections.sort(newEntries, outScoreDescending);
+            atomClassifications.put(id, newEntries);
+        }
+        indexMemoryReferences(id, newEntries);
+
+        return changed;
+    }
+
+    // replaces the members of a collection memory, returning whether they have changed
+    private boolean updateMemory(final AtomCollectionMemory memory, final AtomCollectionMemory newMemory) {
+        boolean changed = !memberIds(memory).equals(memberIds(newMemory));
+
+        memory.getMemberAtoms().clear();
+        memory.getMemberAtoms().addAll(newMemory.getMemberAtoms());
+        memory.getMemberCollections().clear();
+        memory.getMemberCollections().addAll(newMemory.getMemberCollections());
+
+        return changed;
+    }
+
+    private List<String> memberIds(final AtomCollectionMemory memory) {
+        List<String> ids = new LinkedList<>(memberAtomIds(memory));
+        for (AtomCollectionMemory m : memory.getMemberCollections()) {
+            ids.add(m.getAtomId());
+        }
+        return ids;
+    }
+
+    private List<String> memberAtomIds(final AtomCollectionMemory memory) {
+        List<String> unresolved = unresolvedMembers.get(memory);
+        if (null != unresolved) {
+            return unresolved;
+        }
+
+        List<String> ids = new LinkedList<>();
+        for (Atom a : memory.getMemberAtoms()) {
+            ids.add(a.getId());
+        }
+        return ids;
+    }
+
+    // adds the member atoms of memories read from a stream, now that the topic graph has been restored.
+    // Atoms which no longer exist are left out; their removal re-evaluates the atoms which referred to them
+    private void resolveMemories() {
+        for (Map.Entry<AtomCollectionMemory, List<String>> e : unresolvedMembers.entrySet()) {
+            for (String id : e.getValue()) {
+                topicGraph.getAtomById(id).ifPresent(e.getKey().getMemberAtoms()::add);
             }
         }
+        unresolvedMembers.clear();
+    }
 
-        long typed = atomClassifications.size();
-        long total = countAtoms();
+    // records which atoms are referred to by the collection memories of the given atom
+    private void indexMemoryReferences(final String id, final List<AtomClassEntry> entries) {
+        Set<String> oldIds = referencedIds.remove(id);
+        if (null != oldIds) {
+            for (String member : oldIds) {
+                Set<String> referrers = memoryReferences.get(member);
+                if (null != referrers) {
+                    referrers.remove(id);
+                    if (referrers.isEmpty()) {
+                        memoryReferences.remove(member);
+                    }
+                }
+            }
+        }
 
-        long endTime = System.currentTimeMillis();
-        SemanticSynchrony.getLogger().info("classified " + typed + " of " + total + " atoms ("
-                + (total - typed) + " remaining) in " + (endTime - startTime) + "ms");
+        if (null != entries) {
+            Set<String> newIds = new HashSet<>();
+            for (AtomClassEntry e : entries) {
+                if (null != e.memory) {
+                    newIds.addAll(memberIds(e.memory));
+                }
+            }
+            if (newIds.size() > 0) {
+                referencedIds.put(id, newIds);
+                for (String member : newIds) {
+                    memoryReferences.computeIfAbsent(member, k -> new HashSet<>()).add(id);
+                }
+            }
+        }
     }
 
     private long countAtoms() {
@@ -578,9 +1073,9 @@ public class KnowledgeBase {
                 ? value.substring(0, 50)
                 : value;
         System.out.println("* :" + a.getId() + ": " + value50);
-        List<AtomClassEntry> entries = atomClassifications.get(a);
+        List<AtomClassEntry> entries = atomClassifications.get(a.getId());
         if (null != entries) {
-            List<AtomClassEntry> helper = new java.util.LinkedList();
+            List<AtomClassEntry> helper = new LinkedList<>();
             helper.addAll(entries);
             Collections.sort(helper, AtomClassificationComparator.INSTANCE);
             for (AtomClassEntry e : helper) {
@@ -602,50 +1097,278 @@ public class KnowledgeBase {
         }
     }
 
+    /**
+     * Infers classes and writes the resulting RDF to a stream as it is generated.
+     * Only a bounded window of recent statements is kept for deduplication, so memory use is independent of the
+     * number of statements written.
+     */
     public void exportRDF(final OutputStream out,
                           final RDFFormat format,
-                          final Filter filter) throws SailException, RDFHandlerException {
+                          final Filter filter) throws RDFHandlerException {
         SemanticSynchrony.getLogger().info("exporting RDF in format " + format);
-        long startTime, endTime;
-        Sail dedupSail = new MemoryStore();
-        dedupSail.initialize();
-        try {
-            SailConnection sc = dedupSail.getConnection();
-            try {
-                sc.begin();
+        exportRDF(Rio.createWriter(format, out), filter);
+    }
 
-                startTime = System.currentTimeMillis();
-                RDFHandler h0 = new SailAdder(sc);
-                h0.startRDF();
+    /**
+     * Infers classes and passes the resulting RDF, with nearby duplicate statements removed, to a handler
+     */
+    public void exportRDF(final RDFHandler handler,
+                          final Filter filter) throws RDFHandlerException {
+        long startTime = System.currentTimeMillis();
+        DeduplicatingRDFHandler h = new DeduplicatingRDFHandler(handler);
+        h.startRDF();
+        inferClasses(h, filter);
+        h.endRDF();
+        long endTime = System.currentTimeMillis();
+        SemanticSynchrony.getLogger().info("inferred classes and wrote RDF in " + (endTime - startTime)
+                + "ms (" + h.getDuplicates() + " duplicate statements dropped)");
+    }
+
+    /**
+     * Writes the classifications of all atoms, including their in-scores, in a compact binary form.
+     * The classifications may later be restored with {@link #readClassifications(InputStream)},
+     * provided that the vocabulary of classes is the same.
+     * Collection memories are written along with the classifications, with member atoms identified by id.
+     */
+    public synchronized void writeClassifications(final OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DataOutputStream data = new DataOutputStream(out);
+
+        Map<Class<? extends AtomClass>, Integer> classIndex = new HashMap<>();
+        data.writeInt(classes.size());
+        for (AtomClass c : classes.values()) {
+            classIndex.put(c.getClass(), classIndex.size());
+            data.writeUTF(c.getName());
+        }
+
+        // each collection memory is written once, and referred to by index, as memories may contain one another
+        Map<AtomCollectionMemory, Integer> memoryIndex = new IdentityHashMap<>();
+        List<AtomCollectionMemory> memories = new ArrayList<>();
+        for (List<AtomClassEntry> entries : atomClassifications.values()) {
+            for (AtomClassEntry entry : entries) {
+                if (null != entry.memory && !memoryIndex.containsKey(entry.memory)) {
+                    memoryIndex.put(entry.memory, memories.size());
+                    memories.add(entry.memory);
+                }
+            }
+        }
+        for (int i = 0; i < memories.size(); i++) {
+            for (AtomCollectionMemory m : memories.get(i).getMemberCollections()) {
+                if (!memoryIndex.containsKey(m)) {
+                    memoryIndex.put(m, memories.size());
+                    memories.add(m);
+                }
+            }
+        }
+        data.writeInt(memories.size());
+        for (AtomCollectionMemory memory : memories) {
+            data.writeUTF(memory.getAtomId());
+            List<String> atomIds = memberAtomIds(memory);
+            data.writeInt(atomIds.size());
+            for (String id : atomIds) {
+                data.writeUTF(id);
+            }
+            data.writeInt(memory.getMemberCollections().size());
+            for (AtomCollectionMemory m : memory.getMemberCollections()) {
+                data.writeInt(memoryIndex.get(m));
+            }
+        }
+
+        // evidence is written as the id of the classified atom together with the class
+        Map<AtomClassEntry, String> owners = new IdentityHashMap<>();
+        data.writeInt(atomClassifications.size());
+        for (Map.Entry<String, List<AtomClassEntry>> e : atomClassifications.entrySet()) {
+            data.writeUTF(e.getKey());
+            data.writeInt(e.getValue().size());
+            for (AtomClassEntry entry : e.getValue()) {
+                data.writeShort(classIndex.get(entry.inferredClass));
+                data.writeInt(entry.outScore);
+                data.writeInt(entry.inScore);
+                data.writeInt(null == entry.memory ? -1 : memoryIndex.get(entry.memory));
+                owners.put(entry, e.getKey());
+            }
+        }
 
-                inferClasses(h0, filter);
+        data.writeInt(contributions.size());
+        for (Map.Entry<String, List<AtomClassEntry>> e : contributions.entrySet()) {
+            // entries which have since been dropped from a classification no longer count toward any score
+            List<AtomClassEntry> live = new LinkedList<>();
+            for (AtomClassEntry entry : e.getValue()) {
+                if (owners.containsKey(entry)) {
+                    live.add(entry);
+                }
+            }
+            data.writeUTF(e.getKey());
+            data.writeInt(live.size());
+            for (AtomClassEntry entry : live) {
+                data.writeUTF(owners.get(entry));
+                data.writeShort(classIndex.get(entry.inferredClass));
+            }
+        }
 
-                h0.endRDF();
-                endTime = System.currentTimeMillis();
-                SemanticSynchrony.getLogger().info("inferred classes and generated RDF in " + (endTime - startTime) + "ms");
+        data.writeInt(referencedIds.size());
+        for (Map.Entry<String, Set<String>> e : referencedIds.entrySet()) {
+            data.writeUTF(e.getKey());
+            data.writeInt(e.getValue().size());
+            for (String id : e.getValue()) {
+                data.writeUTF(id);
+            }
+        }
+        data.flush();
+
+        long endTime = System.currentTimeMillis();
+        SemanticSynchrony.getLogger().info("wrote classifications of " + atomClassifications.size()
+                + " atoms in " + (endTime - startTime) + "ms");
+    }
+
+    /**
+     * Replaces all classifications with those previously written by {@link #writeClassifications(OutputStream)}.
+     * The set of changed atoms is not affected; see {@link #setChanges(Collection)}.
+     *
+     * @throws IOException if the classifications cannot be read, or refer to a class which is not in the vocabulary.
+     *                     The classifications are then unchanged.
+     */
+    public synchronized void readClassifications(final InputStream in) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DataInputStream data = new DataInputStream(in);
 
-                sc.commit();
-                sc.begin();
+        Map<String, Class<? extends AtomClass>> classesByName = new HashMap<>();
+        for (AtomClass c : classes.values()) {
+            classesByName.put(c.getName(), c.getClass());
+        }
+        int numberOfClasses = data.readInt();
+        List<Class<? extends AtomClass>> classTable = new ArrayList<>(numberOfClasses);
+        for (int i = 0; i < numberOfClasses; i++) {
+            String name = data.readUTF();
+            Class<? extends AtomClass> c = classesByName.get(name);
+            if (null == c) {
+                throw new IOException("no such class: " + name);
+            }
+            classTable.add(c);
+        }
 
-                startTime = System.currentTimeMillis();
-                RDFHandler h = Rio.createWriter(format, out);
-                h.startRDF();
-                try (CloseableIteration<? extends Statement, SailException> iter
-                             = sc.getStatements(null, null, null, false)) {
-                    while (iter.hasNext()) {
-                        h.handleStatement(iter.next());
+        // member atoms are found in the topic graph only at the next inference step,
+        // as the graph may not yet have been restored
+        int numberOfMemories = data.readInt();
+        List<AtomCollectionMemory> memories = new ArrayList<>(numberOfMemories);
+        Map<AtomCollectionMemory, List<String>> newUnresolvedMembers = new IdentityHashMap<>();
+        List<int[]> memberCollections = new ArrayList<>(numberOfMemories);
+        for (int i = 0; i < numberOfMemories; i++) {
+            AtomCollectionMemory memory = new AtomCollectionMemory(data.readUTF());
+            int numberOfMemberAtoms = data.readInt();
+            List<String> atomIds = new LinkedList<>();
+            for (int j = 0; j < numberOfMemberAtoms; j++) {
+                atomIds.add(data.readUTF());
+            }
+            int[] collectionIndices = new int[data.readInt()];
+            for (int j = 0; j < collectionIndices.length; j++) {
+                collectionIndices[j] = data.readInt();
+            }
+            memories.add(memory);
+            newUnresolvedMembers.put(memory, atomIds);
+            memberCollections.add(collectionIndices);
+        }
+        for (int i = 0; i < numberOfMemories; i++) {
+            for (int index : memberCollections.get(i)) {
+                memories.get(i).getMemberCollections().add(readMemory(index, memories));
+            }
+        }
+
+        Map<String, List<AtomClassEntry>> newClassifications = new HashMap<>();
+        int numberOfAtoms = data.readInt();
+        for (int i = 0; i < numberOfAtoms; i++) {
+            String id = data.readUTF();
+            int numberOfEntries = data.readInt();
+            List<AtomClassEntry> entries = new LinkedList<>();
+            for (int j = 0; j < numberOfEntries; j++) {
+                Class<? extends AtomClass> c = readClass(data, classTable);
+                int outScore = data.readInt();
+                int inScore = data.readInt();
+                int index = data.readInt();
+                AtomClassEntry entry = new AtomClassEntry(
+                        id, c, outScore, index < 0 ? null : readMemory(index, memories));
+                entry.inScore = inScore;
+                entries.add(entry);
+            }
+            newClassifications.put(id, entries);
+        }
+
+        Map<String, List<AtomClassEntry>> newContributions = new HashMap<>();
+        int numberOfContributors = data.readInt();
+        for (int i = 0; i < numberOfContributors; i++) {
+            String id = data.readUTF();
+            int numberOfEntries = data.readInt();
+            List<AtomClassEntry> evidence = new LinkedList<>();
+            for (int j = 0; j < numberOfEntries; j++) {
+                String owner = data.readUTF();
+                Class<? extends AtomClass> c = readClass(data, classTable);
+                AtomClassEntry entry = null;
+                List<AtomClassEntry> entries = newClassifications.get(owner);
+                if (null != entries) {
+                    for (AtomClassEntry e : entries) {
+                        if (e.inferredClass == c) {
+                            entry = e;
+                            break;
+                        }
                     }
                 }
-                h.endRDF();
-                endTime = System.currentTimeMillis();
-                SemanticSynchrony.getLogger().info("wrote triples to disk in " + (endTime - startTime) + "ms");
-            } finally {
-                sc.rollback();
-                sc.close();
+                if (null == entry) {
+                    throw new IOException("evidence refers to a missing classification of " + owner);
+                }
+                evidence.add(entry);
+            }
+            newContributions.put(id, evidence);
+        }
+
+        Map<String, Set<String>> newReferencedIds = new HashMap<>();
+        int numberOfReferrers = data.readInt();
+        for (int i = 0; i < numberOfReferrers; i++) {
+            String id = data.readUTF();
+            int numberOfMembers = data.readInt();
+            Set<String> members = new HashSet<>();
+            for (int j = 0; j < numberOfMembers; j++) {
+                members.add(data.readUTF());
             }
-        } finally {
-            dedupSail.shutDown();
+            newReferencedIds.put(id, members);
         }
+
+        atomClassifications.clear();
+        atomClassifications.putAll(newClassifications);
+        contributions.clear();
+        contributions.putAll(newContributions);
+        referencedIds.clear();
+        referencedIds.putAll(newReferencedIds);
+        unresolvedMembers.clear();
+        unresolvedMembers.putAll(newUnresolvedMembers);
+        memoryReferences.clear();
+        for (Map.Entry<String, Set<String>> e : referencedIds.entrySet()) {
+            for (String member : e.getValue()) {
+                memoryReferences.computeIfAbsent(member, k -> new HashSet<>()).add(e.getKey());
+            }
+        }
+        publishAllClassifications();
+
+        long endTime = System.currentTimeMillis();
+        SemanticSynchrony.getLogger().info("read classifications of " + atomClassifications.size()
+                + " atoms in " + (endTime - startTime) + "ms");
+    }
+
+    private AtomCollectionMemory readMemory(final int index,
+                                            final List<AtomCollectionMemory> memories) throws IOException {
+        if (index < 0 || index >= memories.size()) {
+            throw new IOException("no such memory index: " + index);
+        }
+        return memories.get(index);
+    }
+
+    private Class<? extends AtomClass> readClass(final DataInputStream data,
+                                                 final List<Class<? extends AtomClass>> classTable)
+            throws IOException {
+        int index = data.readShort();
+        if (index < 0 || index >= classTable.size()) {
+            throw new IOException("no such class index: " + index);
+        }
+        return classTable.get(index);
     }
 
     private static class AtomClassificationComparator implements Comparator<KnowledgeBase.AtomClassEntry> {
@@ -659,44 +1382,101 @@ public class KnowledgeBase {
         }
     }
 
-    private static class SailAdder implements RDFHandler {
-        private final SailConnection sc;
-
-        private SailAdder(SailConnection sc) {
-            this.sc = sc;
+    // a class matched by an atom, not yet merged into the atom's classification
+    private static class ClassMatch {
+        private final Class<? extends AtomClass> inferredClass;
+        private final int outScore;
+        private final AtomCollectionMemory memory;
+        private final Collection<RdfizationCallback> callbacks;
+
+        private ClassMatch(final Class<? extends AtomClass> inferredClass,
+                           final int outScore,
+                           final AtomCollectionMemory memory,
+                           final Collection<RdfizationCallback> callbacks) {
+            this.inferredClass = inferredClass;
+            this.outScore = outScore;
+            this.memory = memory;
+            this.callbacks = callbacks;
         }
+    }
 
-        @Override
-        public void startRDF() throws RDFHandlerException {
-        }
+    // the classes matched by an atom, and the class entries of members which support them
+    private static class Scoring {
+        private final Atom subject;
+        private final List<ClassMatch> matches = new LinkedList<>();
+        private final List<AtomClassEntry> evidenceEntries = new LinkedList<>();
 
-        @Override
-        public void endRDF() throws RDFHandlerException {
+        private Scoring(final Atom subject) {
+            this.subject = subject;
         }
+    }
 
-        @Override
-        public void handleNamespace(String s, String s2) throws RDFHandlerException {
+    // scores a range of atoms, splitting it among the threads of the pool and joining the results in order
+    private class ScoringTask extends RecursiveTask<List<Scoring>> {
+        private final List<Atom> subjects;
+        private final int from;
+        private final int to;
+        private final RDFizationContext context;
+        private final boolean rdfize;
+        private final Filter filter;
+
+        private ScoringTask(final List<Atom> subjects,
+                            final int from,
+                            final int to,
+                            final RDFizationContext context,
+                            final boolean rdfize,
+                            final Filter filter) {
+            this.subjects = subjects;
+            this.from = from;
+            this.to = to;
+            this.context = context;
+            this.rdfize = rdfize;
+            this.filter = filter;
         }
 
         @Override
-        public void handleStatement(Statement statement) throws RDFHandlerException {
-            try {
-                sc.addStatement(
-                        statement.getSubject(),
-                        statement.getPredicate(),
-                        statement.getObject(),
-                        statement.getContext());
-            } catch (SailException e) {
-                throw new RDFHandlerException(e);
+        protected List<Scoring> compute() {
+            if (to - from <= SCORING_THRESHOLD) {
+                return scoreInTransaction();
             }
+
+            int middle = (from + to) >>> 1;
+            ScoringTask left = new ScoringTask(subjects, from, middle, context, rdfize, filter);
+            ScoringTask right = new ScoringTask(subjects, middle, to, context, rdfize, filter);
+            left.fork();
+            List<Scoring> rightScorings = right.compute();
+            List<Scoring> scorings = left.join();
+            scorings.addAll(rightScorings);
+            return scorings;
         }
 
-        @Override
-        public void handleComment(String s) throws RDFHandlerException {
+        // the graph is read in a transaction which is closed before the thread returns to the pool,
+        // so that no transaction, nor any cached atom, outlives the task in a worker thread.
+        // A task run by the calling thread reads in the transaction of the caller, which is left open.
+        private List<Scoring> scoreInTransaction() {
+            if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+                return scoreAll(subjects, from, to, context, rdfize, filter);
+            }
+
+            topicGraph.begin();
+            boolean success = false;
+            try {
+                List<Scoring> scorings = scoreAll(subjects, from, to, context, rdfize, filter);
+                success = true;
+                return scorings;
+            } finally {
+                if (success) {
+                    topicGraph.commit();
+                } else {
+                    topicGraph.rollback();
+                }
+            }
         }
     }
 
     public class AtomClassEntry implements Comparable<AtomClassEntry> {
+        // the id of the classified atom
+        private final String atomId;
         private final Class<? extends AtomClass> inferredClass;
         private int outScore;
         private int inScore;
@@ -704,7 +1484,11 @@ public class KnowledgeBase {
         private AtomCollectionMemory memory;
         private Collection<RdfizationCallback> callbacks;
 
-        public AtomClassEntry(Class<? extends AtomClass> inferredClass, int outScore, AtomCollectionMemory memory) {
+        public AtomClassEntry(String atomId,
+                              Class<? extends AtomClass> inferredClass,
+                              int outScore,
+                              AtomCollectionMemory memory) {
+            this.atomId = atomId;
             this.inferredClass = inferredClass;
             this.outScore = outScore;
             this.memory = memory;
@@ -0,0 +1,447 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A prefilter which finds the classes whose value regex may match a given atom title.
+ * Each value regex is analyzed once for the characters with which a matching title may begin and end,
+ * and for the minimum and maximum length of a match. The classes are then indexed by possible first character,
+ * so that the candidates for a title are found with a single lookup, followed by a length and last-character
+ * check of each class in the bucket. A title which is not a candidate for a class cannot match its value regex,
+ * so neither the regex itself nor the member regex of the class needs to be tried.
+ * A regex using a construct which is not analyzed, such as a lookaround or a flag, is a candidate for every title.
+ * Candidates are returned in the order in which the classes were given.
+ */
+public class TitlePrefilter {
+
+    // the index of all non-ASCII characters in a character set
+    private static final int NON_ASCII = 128;
+    private static final int SET_SIZE = NON_ASCII + 1;
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    // for each possible first character, the classes whose value regex may match a title beginning with it
+    private final Candidate[][] candidatesByFirstChar = new Candidate[SET_SIZE][];
+    private final List<AtomClass> candidatesForEmptyTitle = new ArrayList<>();
+    private final List<AtomClass> candidatesForNullTitle = new ArrayList<>();
+
+    public TitlePrefilter(final Collection<AtomClass> classes) {
+        List<List<Candidate>> buckets = new ArrayList<>();
+        for (int i = 0; i < SET_SIZE; i++) {
+            buckets.add(new ArrayList<>());
+        }
+
+        for (AtomClass clazz : classes) {
+            // a class without a value regex matches any title, or no title at all
+            Guard guard = null == clazz.valueRegex ? null : analyze(clazz.valueRegex);
+            Candidate candidate = new Candidate(clazz, guard);
+
+            for (int i = 0; i < SET_SIZE; i++) {
+                if (null == guard || guard.first[i]) {
+                    buckets.get(i).add(candidate);
+                }
+            }
+            if (null == guard || 0 == guard.min) {
+                candidatesForEmptyTitle.add(clazz);
+            }
+            if (null == guard) {
+                candidatesForNullTitle.add(clazz);
+            }
+        }
+
+        for (int i = 0; i < SET_SIZE; i++) {
+            candidatesByFirstChar[i] = buckets.get(i).toArray(new Candidate[buckets.get(i).size()]);
+        }
+    }
+
+    /**
+     * @param title the title of an atom. May be null.
+     * @return those classes whose value regex may match the title, in their original order,
+     * including all classes without a value regex
+     */
+    public List<AtomClass> getCandidates(final String title) {
+        if (null == title) {
+            return candidatesForNullTitle;
+        }
+
+        int length = title.length();
+        if (0 == length) {
+            return candidatesForEmptyTitle;
+        }
+
+        int last = indexOf(title.charAt(length - 1));
+        Candidate[] bucket = candidatesByFirstChar[indexOf(title.charAt(0))];
+        List<AtomClass> candidates = new ArrayList<>(bucket.length);
+        for (Candidate candidate : bucket) {
+            if (null == candidate.guard || candidate.guard.accepts(title, length, last)) {
+                candidates.add(candidate.atomClass);
+            }
+        }
+
+        return candidates;
+    }
+
+    private static int indexOf(final char c) {
+        return c < NON_ASCII ? c : NON_ASCII;
+    }
+
+    private static Guard analyze(final Pattern pattern) {
+        if (0 != pattern.flags()) {
+            return Guard.ANY;
+        }
+
+        Parser parser = new Parser(pattern.pattern());
+        try {
+            Guard guard = parser.parseAlternation();
+            if (parser.pos < parser.regex.length()) {
+                // an unbalanced parenthesis
+                return Guard.ANY;
+            }
+            return guard;
+        } catch (UnsupportedSyntaxException e) {
+            return Guard.ANY;
+        }
+    }
+
+    private static class Candidate {
+        private final AtomClass atomClass;
+        private final Guard guard;
+
+        private Candidate(final AtomClass atomClass, final Guard guard) {
+            this.atomClass = atomClass;
+            this.guard = guard;
+        }
+    }
+
+    /*
+    The characters with which a match may begin and end, and the range of the length of a match in code points.
+     */
+    private static class Guard {
+        private static final Guard ANY = new Guard(allChars(), allChars(), 0, UNBOUNDED);
+
+        private final boolean[] first;
+        private final boolean[] last;
+        private final int min;
+        private final int max;
+
+        private Guard(final boolean[] first, final boolean[] last, final int min, final int max) {
+            this.first = first;
+            this.last = last;
+            this.min = min;
+            this.max = max;
+        }
+
+        private boolean accepts(final String title, final int length, final int lastChar) {
+            // a title has at least as many chars as code points
+            return length >= min
+                    && last[lastChar]
+                    && (length <= max || title.codePointCount(0, length) <= max);
+        }
+
+        private static Guard empty() {
+            return new Guard(new boolean[SET_SIZE], new boolean[SET_SIZE], 0, 0);
+        }
+
+        private static Guard of(final boolean[] chars) {
+            return new Guard(chars, chars, 1, 1);
+        }
+
+        private Guard concat(final Guard next) {
+            boolean[] f = 0 == min ? union(first, next.first) : first;
+            boolean[] l = 0 == next.min ? union(last, next.last) : next.last;
+            return new Guard(f, l, add(min, next.min), add(max, next.max));
+        }
+
+        private Guard or(final Guard other) {
+            return new Guard(union(first, other.first), union(last, other.last),
+                    Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        private Guard repeat(final int lo, final int hi) {
+            if (0 == hi) {
+                return empty();
+            }
+            return new Guard(first, last, multiply(min, lo),
+                    UNBOUNDED == hi ? (0 == max ? 0 : UNBOUNDED) : multiply(max, hi));
+        }
+
+        private static int add(final int a, final int b) {
+            return (int) Math.min((long) a + b, UNBOUNDED);
+        }
+
+        private static int multiply(final int a, final int b) {
+            return (int) Math.min((long) a * b, UNBOUNDED);
+        }
+
+        private static boolean[] union(final boolean[] a, final boolean[] b) {
+            boolean[] u = new boolean[SET_SIZE];
+            for (int i = 0; i < SET_SIZE; i++) {
+                u[i] = a[i] || b[i];
+            }
+            return u;
+        }
+    }
+
+    private static boolean[] allChars() {
+        boolean[] chars = new boolean[SET_SIZE];
+        Arrays.fill(chars, true);
+        return chars;
+    }
+
+    private static class UnsupportedSyntaxException extends Exception {
+    }
+
+    /*
+    A recursive-descent parser for the subset of java.util.regex syntax used by value regexes: literals, escaped
+    punctuation, predefined and bracketed character classes, the wildcard, groups, alternation and quantifiers.
+    Character sets are approximated conservatively, with all non-ASCII characters treated as one.
+     */
+    private static class Parser {
+        private final String regex;
+        private int pos;
+
+        private Parser(final String regex) {
+            this.regex = regex;
+        }
+
+        private Guard parseAlternation() throws UnsupportedSyntaxException {
+            Guard guard = parseSequence();
+            while (pos < regex.length() && '|' == regex.charAt(pos)) {
+                pos++;
+                guard = guard.or(parseSequence());
+            }
+            return guard;
+        }
+
+        private Guard parseSequence() throws UnsupportedSyntaxException {
+            Guard guard = Guard.empty();
+            while (pos < regex.length() && '|' != regex.charAt(pos) && ')' != regex.charAt(pos)) {
+                guard = guard.concat(parseQuantifier(parseAtom()));
+            }
+            return guard;
+        }
+
+        private Guard parseAtom() throws UnsupportedSyntaxException {
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case '(':
+                    if (pos < regex.length() && '?' == regex.charAt(pos)) {
+                        // only non-capturing groups are supported
+                        if (pos + 1 < regex.length() && ':' == regex.charAt(pos + 1)) {
+                            pos += 2;
+                        } else {
+                            throw new UnsupportedSyntaxException();
+                        }
+                    }
+                    Guard group = parseAlternation();
+                    expect(')');
+                    return group;
+                case '[':
+                    return Guard.of(parseClass());
+                case '.':
+                    return Guard.of(allChars());
+                case '\\':
+                    return Guard.of(parseEscape());
+                case '^':
+                case '$':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new UnsupportedSyntaxException();
+                default:
+                    if (Character.isHighSurrogate(c) && pos < regex.length()
+                            && Character.isLowSurrogate(regex.charAt(pos))) {
+                        pos++;
+                    }
+                    return Guard.of(single(c));
+            }
+        }
+
+        private Guard parseQuantifier(final Guard atom) throws UnsupportedSyntaxException {
+            if (pos == regex.length()) {
+                return atom;
+            }
+
+            Guard guard;
+            switch (regex.charAt(pos)) {
+                case '?':
+                    pos++;
+                    guard = atom.repeat(0, 1);
+                    break;
+                case '*':
+                    pos++;
+                    guard = atom.repeat(0, UNBOUNDED);
+                    break;
+                case '+':
+                    pos++;
+                    guard = atom.repeat(1, UNBOUNDED);
+                    break;
+                case '{':
+                    pos++;
+                    int lo = parseNumber();
+                    int hi = lo;
+                    if (pos < regex.length() && ',' == regex.charAt(pos)) {
+                        pos++;
+                        hi = pos < regex.length() && '}' == regex.charAt(pos) ? UNBOUNDED : parseNumber();
+                    }
+                    expect('}');
+                    guard = atom.repeat(lo, hi);
+                    break;
+                default:
+                    return atom;
+            }
+
+            // reluctant and possessive quantifiers match the same strings
+            if (pos < regex.length() && ('?' == regex.charAt(pos) || '+' == regex.charAt(pos))) {
+                pos++;
+            }
+            return guard;
+        }
+
+        private int parseNumber() throws UnsupportedSyntaxException {
+            int start = pos;
+            while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos || pos - start > 9) {
+                throw new UnsupportedSyntaxException();
+            }
+            return Integer.valueOf(regex.substring(start, pos));
+        }
+
+        private boolean[] parseClass() throws UnsupportedSyntaxException {
+            boolean negated = pos < regex.length() && '^' == regex.charAt(pos);
+            if (negated) {
+                pos++;
+            }
+
+            boolean[] chars = new boolean[SET_SIZE];
+            boolean empty = true;
+            while (true) {
+                if (pos == regex.length()) {
+                    throw new UnsupportedSyntaxException();
+                }
+                char c = regex.charAt(pos++);
+                if (']' == c) {
+                    if (empty) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    break;
+                } else if ('[' == c || ('&' == c && pos < regex.length() && '&' == regex.charAt(pos))) {
+                    // nested classes, unions and intersections
+                    throw new UnsupportedSyntaxException();
+                }
+                empty = false;
+
+                boolean[] item;
+                if ('\\' == c) {
+                    item = parseEscape();
+                } else if (pos + 1 < regex.length() && '-' == regex.charAt(pos) && ']' != regex.charAt(pos + 1)) {
+                    pos++;
+                    char to = regex.charAt(pos++);
+                    if ('\\' == to || '[' == to || to < c) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    item = range(c, to);
+                } else {
+                    item = single(c);
+                }
+                chars = Guard.union(chars, item);
+            }
+
+            if (negated) {
+                for (int i = 0; i < NON_ASCII; i++) {
+                    chars[i] = !chars[i];
+                }
+                chars[NON_ASCII] = true;
+            }
+            return chars;
+        }
+
+        private boolean[] parseEscape() throws UnsupportedSyntaxException {
+            if (pos == regex.length()) {
+                throw new UnsupportedSyntaxException();
+            }
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case 'd':
+                    return range('0', '9');
+                case 'D':
+                    return complement(range('0', '9'));
+                case 'w':
+                    return wordChars();
+                case 'W':
+                    return complement(wordChars());
+                case 's':
+                    return whitespace();
+                case 'S':
+                    return complement(whitespace());
+                case 'n':
+                    return single('\n');
+                case 'r':
+                    return single('\r');
+                case 't':
+                    return single('\t');
+                case 'f':
+                    return single('\f');
+                default:
+                    // any other escaped letter or digit has a special meaning
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedSyntaxException();
+                    }
+                    return single(c);
+            }
+        }
+
+        private void expect(final char c) throws UnsupportedSyntaxException {
+            if (pos == regex.length() || c != regex.charAt(pos)) {
+                throw new UnsupportedSyntaxException();
+            }
+            pos++;
+        }
+
+        private static boolean[] single(final char c) {
+            boolean[] chars = new boolean[SET_SIZE];
+            chars[indexOf(c)] = true;
+            return chars;
+        }
+
+        private static boolean[] range(final char from, final char to) {
+            boolean[] chars = new boolean[SET_SIZE];
+            for (int c = from; c <= to && c < NON_ASCII; c++) {
+                chars[c] = true;
+            }
+            if (to >= NON_ASCII) {
+                chars[NON_ASCII] = true;
+            }
+            return chars;
+        }
+
+        private static boolean[] wordChars() {
+            return Guard.union(Guard.union(range('a', 'z'), range('A', 'Z')),
+                    Guard.union(range('0', '9'), single('_')));
+        }
+
+        private static boolean[] whitespace() {
+            boolean[] chars = new boolean[SET_SIZE];
+            for (char c : " \t\n\u000B\f\r".toCharArray()) {
+                chars[c] = true;
+            }
+            return chars;
+        }
+
+        private static boolean[] complement(final boolean[] chars) {
+            boolean[] result = new boolean[SET_SIZE];
+            for (int i = 0; i < NON_ASCII; i++) {
+                result[i] = !chars[i];
+            }
+            result[NON_ASCII] = true;
+            return result;
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package net.fortytwo.smsn.brain.util;
 
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Note: the LCS algorithm is probably not optimal in the sense of minimizing vertex and edge churn
- * e.g. ab to ba destroys one vertex and one edge, and creates one vertex and one edge.
- * A better algorithm would use a swap operation, merely deleting one edge and creating one edge.
+ * Finds the differences between two lists using Myers' O((n+m)d) algorithm in linear space,
+ * where d is the number of added and deleted elements.
+ * An element which is deleted from one position and added at another is treated as a move,
+ * so that e.g. ab to ba changes only the position of one element,
+ * rather than destroying and re-creating it.
  */
 public class ListDiff {
 
@@ -30,35 +37,16 @@ public class ListDiff {
     }
 
     public static <T> List<T> longestCommonSubsequence(List<T> a, List<T> b, Comparator<T> comp) {
-        int[][] lengths = new int[a.size() + 1][b.size() + 1];
-
-        // row 0 and column 0 are initialized to 0 already
-        for (int i = 0; i < a.size(); i++)
-            for (int j = 0; j < b.size(); j++)
-                if (0 == comp.compare(a.get(i), b.get(j)))
-                    lengths[i + 1][j + 1] = lengths[i][j] + 1;
-                else
-                    lengths[i + 1][j + 1] =
-                            Math.max(lengths[i + 1][j], lengths[i][j + 1]);
-
-        // read the substring out from the matrix
-        List<T> result = new LinkedList<>();
-        for (int x = a.size(), y = b.size();
-             x != 0 && y != 0; ) {
-            if (lengths[x][y] == lengths[x - 1][y])
-                x--;
-            else if (lengths[x][y] == lengths[x][y - 1])
-                y--;
-            else {
-                assert 0 == comp.compare(a.get(x - 1), b.get(y - 1));
-                result.add(a.get(x - 1));
-                x--;
-                y--;
+        List<T> as = new ArrayList<>(a);
+        Matching matching = match(as, new ArrayList<>(b), comp);
+
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < as.size(); i++) {
+            if (matching.targetOfA[i] >= 0) {
+                result.add(as.get(i));
             }
         }
 
-        Collections.reverse(result);
-
         return result;
     }
 
@@ -68,51 +56,294 @@ public class ListDiff {
         }
     }
 
+    /**
+     * Transforms one list into another by adding and deleting elements, given a common subsequence of the lists
+     */
     public static <T> void applyDiff(final List<T> a,
                                      final List<T> b,
                                      final List<T> l,
                                      final Comparator<T> cmp,
                                      final DiffEditor<T> ed) {
-        int acur = 0;
-        int bcur = 0;
-        int lcur = 0;
+        Iterator<T> ai = a.iterator();
+        Iterator<T> bi = b.iterator();
         int ecur = 0;
 
-        while (lcur < l.size()) {
-            if (0 != cmp.compare(l.get(lcur), a.get(acur))) {
-                // absent in the subsequence but present in the original
-                ed.delete(ecur, a.get(acur));
-                acur++;
-            } else if (0 != cmp.compare(l.get(lcur), b.get(bcur))) {
-                // absent in the subsequence but present in the second sequence
-                ed.add(ecur, b.get(bcur));
-                bcur++;
+        // the lists are read sequentially, as they may not support random access
+        for (T common : l) {
+            T next;
+            // absent in the subsequence but present in the original
+            while (0 != cmp.compare(common, next = ai.next())) {
+                ed.delete(ecur, next);
+            }
+            // absent in the subsequence but present in the second sequence
+            while (0 != cmp.compare(common, next = bi.next())) {
+                ed.add(ecur, next);
                 ecur++;
+            }
+            ecur++;
+        }
+
+        while (ai.hasNext()) {
+            ed.delete(ecur, ai.next());
+        }
+        while (bi.hasNext()) {
+            ed.add(ecur, bi.next());
+            ecur++;
+        }
+    }
+
+    /**
+     * Transforms one list into another with a minimal number of additions and deletions,
+     * followed by as few moves as possible of elements which are present in both lists but out of order.
+     * All deletions are made first, with positions relative to the list as it is at the time of each edit.
+     *
+     * @param a   the original list
+     * @param b   the list to transform the original into
+     * @param cmp a comparator which identifies equal elements
+     * @param ed  an editor which receives each edit in turn
+     */
+    public static <T> void applyDiff(final List<T> a,
+                                     final List<T> b,
+                                     final Comparator<T> cmp,
+                                     final DiffEditor<T> ed) {
+        List<T> as = new ArrayList<>(a);
+        List<T> bs = new ArrayList<>(b);
+        Matching matching = match(as, bs, cmp);
+        int n = as.size(), m = bs.size();
+
+        // pair each deleted element with an added element equal to it, if any, and treat the pair as a move
+        int[] sourceOfB = matching.sourceOfB;
+        boolean[] moved = new boolean[m];
+        Map<Integer, Deque<Integer>> deletedByCode = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            if (matching.targetOfA[i] < 0) {
+                deletedByCode.computeIfAbsent(matching.a[i], k -> new ArrayDeque<>()).add(i);
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            if (sourceOfB[j] < 0) {
+                Deque<Integer> sources = deletedByCode.get(matching.b[j]);
+                if (null != sources && !sources.isEmpty()) {
+                    int i = sources.poll();
+                    matching.targetOfA[i] = j;
+                    sourceOfB[j] = i;
+                    moved[j] = true;
+                }
+            }
+        }
+
+        // delete the remaining elements; the list is then represented by the positions in b of its elements
+        int[] work = new int[Math.max(n, m)];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (matching.targetOfA[i] < 0) {
+                ed.delete(size, as.get(i));
             } else {
-                lcur++;
-                acur++;
-                bcur++;
-                ecur++;
+                work[size++] = matching.targetOfA[i];
             }
         }
 
-        int aleftover = a.size() - acur;
-        int bleftover = b.size() - bcur;
+        // build b from left to right. A moved element which has not yet been placed is "floating",
+        // while all other elements appear in the order of their positions in b.
+        for (int j = 0; j < m; j++) {
+            if (sourceOfB[j] < 0) {
+                System.arraycopy(work, j, work, j + 1, size - j);
+                work[j] = j;
+                size++;
+                ed.add(j, bs.get(j));
+                continue;
+            }
+
+            if (moved[j]) {
+                // a floating element which belongs here
+                int from = j;
+                while (work[from] != j) {
+                    from++;
+                }
+                if (from != j) {
+                    System.arraycopy(work, j, work, j + 1, from - j);
+                    work[j] = j;
+                    ed.move(from, j, bs.get(j));
+                }
+                moved[j] = false;
+                continue;
+            }
 
-        for (int i = 0; i < aleftover; i++) {
-            ed.delete(ecur, a.get(acur));
-            acur++;
+            // move any floating elements out of the way, directly to their places among the other elements
+            while (work[j] != j) {
+                int t = work[j];
+                moved[t] = false;
+                System.arraycopy(work, j + 1, work, j, size - j - 1);
+                int to = j + 1;
+                while (to < size - 1 && (moved[work[to]] || work[to] < t)) {
+                    to++;
+                }
+                System.arraycopy(work, to, work, to + 1, size - 1 - to);
+                work[to] = t;
+                ed.move(j, to, bs.get(t));
+            }
         }
-        for (int i = 0; i < bleftover; i++) {
-            ed.add(ecur, b.get(bcur));
-            bcur++;
-            ecur++;
+    }
+
+    // the elements of the lists, coded as integers, and the longest common subsequence as an alignment of the codes
+    private static class Matching {
+        private final int[] a;
+        private final int[] b;
+        private final int[] targetOfA;
+        private final int[] sourceOfB;
+
+        private Matching(final int[] a, final int[] b) {
+            this.a = a;
+            this.b = b;
+            targetOfA = new int[a.length];
+            sourceOfB = new int[b.length];
+            java.util.Arrays.fill(targetOfA, -1);
+            java.util.Arrays.fill(sourceOfB, -1);
+        }
+
+        private void add(final int i, final int j) {
+            targetOfA[i] = j;
+            sourceOfB[j] = i;
+        }
+    }
+
+    private static <T> Matching match(final List<T> a, final List<T> b, final Comparator<T> cmp) {
+        // code equal elements with equal integers, so that elements are compared only once
+        Map<T, Integer> codes = new TreeMap<>(cmp);
+        Matching matching = new Matching(encode(a, codes), encode(b, codes));
+
+        int max = (a.size() + b.size() + 1) / 2 + 1;
+        int[] forward = new int[2 * max + 2];
+        int[] backward = new int[2 * max + 2];
+        match(matching, 0, a.size(), 0, b.size(), forward, backward, max);
+        return matching;
+    }
+
+    private static <T> int[] encode(final List<T> list, final Map<T, Integer> codes) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = codes.computeIfAbsent(list.get(i), k -> codes.size());
+        }
+        return result;
+    }
+
+    // aligns a[aLo, aHi) with b[bLo, bHi) by splitting both at a point on the middle snake of an optimal edit path
+    private static void match(final Matching matching,
+                              int aLo, int aHi,
+                              int bLo, int bHi,
+                              final int[] forward,
+                              final int[] backward,
+                              final int offset) {
+        int[] a = matching.a, b = matching.b;
+
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            matching.add(aLo++, bLo++);
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            matching.add(--aHi, --bHi);
         }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+
+        int n = aHi - aLo, m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        // -1 marks a diagonal which has not been reached
+        java.util.Arrays.fill(forward, offset - maxD - 1, offset + maxD + 2, -1);
+        java.util.Arrays.fill(backward, offset - maxD - 1, offset + maxD + 2, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        int delta = n - m;
+        // if the difference in length is odd, the forward path will overlap the reverse path, and vice versa
+        boolean front = 0 != (delta & 1);
+        // diagonals which have run off the edge of the edit graph are no longer followed
+        int forwardStart = 0, forwardEnd = 0, backwardStart = 0, backwardEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+
+                if (x > n) {
+                    forwardEnd += 2;
+                } else if (y > m) {
+                    forwardStart += 2;
+                } else if (front) {
+                    int reverse = offset + delta - k;
+                    if (Math.abs(delta - k) <= maxD && -1 != backward[reverse] && x >= n - backward[reverse]) {
+                        split(matching, aLo, aHi, bLo, bHi, x, y, forward, backward, offset);
+                        return;
+                    }
+                }
+            }
+
+            // diagonals are visited in reverse order, so that of two equally good alignments,
+            // the one which keeps earlier elements of the first list in place is found first (e.g. ab to ba keeps a)
+            for (int k = d - backwardEnd; k >= -d + backwardStart; k -= 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+
+                if (x > n) {
+                    backwardEnd += 2;
+                } else if (y > m) {
+                    backwardStart += 2;
+                } else if (!front) {
+                    int diagonal = delta - k;
+                    int f = offset + diagonal;
+                    if (Math.abs(diagonal) <= maxD && -1 != forward[f] && forward[f] >= n - x) {
+                        split(matching, aLo, aHi, bLo, bHi,
+                                forward[f], forward[f] - diagonal, forward, backward, offset);
+                        return;
+                    }
+                }
+            }
+        }
+
+        // there is nothing in common
+    }
+
+    private static void split(final Matching matching,
+                              final int aLo, final int aHi,
+                              final int bLo, final int bHi,
+                              final int x, final int y,
+                              final int[] forward,
+                              final int[] backward,
+                              final int offset) {
+        match(matching, aLo, aLo + x, bLo, bLo + y, forward, backward, offset);
+        match(matching, aLo + x, aHi, bLo + y, bHi, forward, backward, offset);
     }
 
     public interface DiffEditor<T> {
         void add(int position, T letter);
 
         void delete(int position, T letter);
+
+        /**
+         * Moves an element from one position to another
+         *
+         * @param from   the position of the element
+         * @param to     the position of the element after the move,
+         *               i.e. its position in the list from which the element has been removed
+         * @param letter the element, as it appears in the target list
+         */
+        default void move(int from, int to, T letter) {
+            delete(from, letter);
+            add(to, letter);
+        }
     }
 }
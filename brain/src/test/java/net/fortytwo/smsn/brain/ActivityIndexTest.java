@@ -0,0 +1,127 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityIndexTest {
+    private static final long DAY = 1000L * 60 * 60 * 24;
+    private static final long START = 1500000000000L;
+
+    private File logFile;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("smsn-testing-").toFile();
+        dir.deleteOnExit();
+        logFile = new File(dir, "activity.log");
+        indexFile = new File(dir, "activity.log.index");
+    }
+
+    @Test
+    public void mostViewedAtomsAreCountedOverAPeriod() throws Exception {
+        append(line(START, "view", "a"),
+                line(START + 1, "view", "b"),
+                line(START + DAY, "view", "b"),
+                line(START + 2 * DAY, "view", "c"),
+                line(START + 2 * DAY + 1, "view", "c"),
+                line(START + 2 * DAY + 2, "set-props", "a"),
+                line(START + 3 * DAY, "view", "b"));
+        ActivityIndex index = new ActivityIndex();
+        assertEquals(7, index.update(logFile));
+
+        assertEquals(Arrays.asList("b:3", "c:2", "a:1"), toStrings(index.getMostViewed(0, 10)));
+        assertEquals(Arrays.asList("b:2", "c:2"), toStrings(index.getMostViewed(START + DAY, 10)));
+        assertEquals(Arrays.asList("b:3"), toStrings(index.getMostViewed(0, 1)));
+        assertEquals(0, index.getMostViewed(START + 4 * DAY, 10).size());
+    }
+
+    @Test
+    public void atomsEditedTogetherAreFound() throws Exception {
+        long window = 1000L * 60;
+        append(line(START, "create", "a"),
+                line(START + 1000, "set-props", "b"),
+                line(START + 2000, "link", "a", "c"),
+                line(START + 3000, "view", "d"),
+                line(START + 2 * window, "set-props", "b"),
+                line(START + DAY, "set-props", "e"),
+                line(START + DAY + 10, "set-props", "a"),
+                line(START + DAY + 20, "set-props", "e"));
+        ActivityIndex index = new ActivityIndex();
+        index.update(logFile);
+
+        // views are not edits, and edits long after any edit of the atom are not counted
+        assertEquals(Arrays.asList("e:2", "b:1", "c:1"), toStrings(index.getCoEdited("a", window, 10)));
+        assertEquals(0, index.getCoEdited("z", window, 10).size());
+    }
+
+    @Test
+    public void indexIsUpdatedIncrementallyAndSaved() throws Exception {
+        append(line(START, "view", "a"), line(START + DAY, "link", "a", "b"));
+        // a line which is still being written
+        FileUtils.writeStringToFile(logFile, START + 2 * DAY + "\tview", SemanticSynchrony.UTF8, true);
+
+        ActivityIndex index = ActivityIndex.load(indexFile);
+        assertEquals(2, index.update(logFile));
+        assertEquals(START + DAY, (long) index.getLastActivity("b"));
+        assertNull(index.getLastActivity("c"));
+        index.save(indexFile);
+
+        FileUtils.writeStringToFile(logFile, "\tc\n", SemanticSynchrony.UTF8, true);
+        index = ActivityIndex.load(indexFile);
+        assertEquals(2, index.size());
+        assertEquals(START + DAY, (long) index.getLastActivity("a"));
+        assertEquals(1, index.update(logFile));
+        assertEquals(0, index.update(logFile));
+        assertEquals(3, index.size());
+        assertEquals(START + 2 * DAY, (long) index.getLastActivity("c"));
+        assertEquals(Arrays.asList("a:1", "c:1"), sorted(toStrings(index.getMostViewed(0, 10))));
+
+        // a log which has been replaced is read from the beginning
+        assertTrue(logFile.delete());
+        append(line(START, "view", "d"));
+        assertEquals(1, index.update(logFile));
+        assertEquals(1, index.size());
+        assertNull(index.getLastActivity("a"));
+    }
+
+    private String line(final long time, final String action, final String... ids) {
+        StringBuilder sb = new StringBuilder().append(time).append('\t').append(action);
+        for (String id : ids) {
+            sb.append('\t').append(id);
+        }
+        return sb.append('\n').toString();
+    }
+
+    private void append(final String... lines) throws IOException {
+        for (String line : lines) {
+            FileUtils.writeStringToFile(logFile, line, SemanticSynchrony.UTF8, true);
+        }
+    }
+
+    private List<String> toStrings(final List<ActivityIndex.Count> counts) {
+        List<String> strings = new ArrayList<>();
+        for (ActivityIndex.Count count : counts) {
+            strings.add(count.getId() + ":" + count.getCount());
+        }
+        return strings;
+    }
+
+    private List<String> sorted(final List<String> strings) {
+        strings.sort(String::compareTo);
+        return strings;
+    }
+}
@@ -0,0 +1,174 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ActivityLogTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void eventsAreWrittenInOrderByFlush() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        StringWriter out = new StringWriter();
+        ActivityLog log = new ActivityLog(out, 16, 1000, 60000L, ActivityLog.OverflowPolicy.BLOCK);
+
+        long before = System.currentTimeMillis();
+        log.logCreate(arthur);
+        log.logLink(arthur, ford);
+        log.logView(ford);
+        log.flush();
+        long after = System.currentTimeMillis();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        String[] fields = lines[1].split("\t");
+        assertEquals(4, fields.length);
+        long time = Long.valueOf(fields[0]);
+        assertTrue(time >= before && time <= after);
+        assertEquals("link", fields[1]);
+        assertEquals(ARTHUR_ID, fields[2]);
+        assertEquals(FORD_ID, fields[3]);
+        assertTrue(lines[0].endsWith("\tcreate\t" + ARTHUR_ID));
+        assertTrue(lines[2].endsWith("\tview\t" + FORD_ID));
+
+        ActivityLog.Statistics statistics = log.getStatistics();
+        assertEquals(3, statistics.getWritten());
+        assertEquals(0, statistics.getDropped());
+        assertEquals(0, statistics.getQueued());
+        log.shutDown();
+    }
+
+    @Test
+    public void eventsAreFlushedInBatches() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        StringWriter out = new StringWriter();
+        ActivityLog log = new ActivityLog(out, 16, 2, 60000L, ActivityLog.OverflowPolicy.BLOCK);
+
+        log.logView(arthur);
+        log.logView(arthur);
+        waitFor(() -> log.getStatistics().getFlushes() > 0);
+        assertEquals(2, out.toString().split("\n").length);
+        log.shutDown();
+    }
+
+    @Test
+    public void eventsAreDroppedWhenQueueIsFull() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        CountDownLatch released = new CountDownLatch(1);
+        StringWriter out = new StringWriter() {
+            @Override
+            public StringWriter append(final CharSequence csq) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.append(csq);
+            }
+        };
+        ActivityLog log = new ActivityLog(out, 4, 1000, 60000L, ActivityLog.OverflowPolicy.DROP);
+
+        // the writer holds at most one event, and the queue at most four more
+        int total = 20;
+        for (int i = 0; i < total; i++) {
+            log.logView(arthur);
+        }
+        long dropped = log.getStatistics().getDropped();
+        assertTrue(dropped >= total - 5);
+
+        released.countDown();
+        log.flush();
+        assertEquals(total - dropped, log.getStatistics().getWritten());
+        assertEquals(total - dropped, out.toString().split("\n").length);
+        log.shutDown();
+    }
+
+    @Test
+    public void writeFailureIsReportedOnce() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        boolean[] failing = {true};
+        StringWriter out = new StringWriter();
+        Writer failingOut = new Writer() {
+            @Override
+            public void write(final char[] buffer, final int offset, final int length) {
+                out.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (failing[0]) {
+                    throw new IOException("disk full");
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ActivityLog log = new ActivityLog(failingOut, 16, 1000, 60000L, ActivityLog.OverflowPolicy.BLOCK);
+
+        log.logView(arthur);
+        try {
+            log.flush();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+
+        // once the disk has recovered, the log is usable again
+        failing[0] = false;
+        log.logView(arthur);
+        log.flush();
+        assertEquals(2, out.toString().split("\n").length);
+        log.shutDown();
+    }
+
+    @Test
+    public void unterminatedLineIsCompletedBeforeAppending() throws Exception {
+        File logFile = new File(createTempDirectory(), "activity.log");
+        Files.write(logFile.toPath(), "1792348150396\tvi".getBytes(StandardCharsets.UTF_8));
+        SemanticSynchrony.getConfiguration().setActivityLog(logFile.getPath());
+
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        ActivityLog log = new Brain(topicGraph).getActivityLog();
+        log.logView(arthur);
+        log.shutDown();
+
+        List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("1792348150396\tvi", lines.get(0));
+        assertTrue(lines.get(1).endsWith("\tview\t" + ARTHUR_ID));
+    }
+
+    private void waitFor(final Condition condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000L;
+        while (!condition.holds()) {
+            assertTrue("timed out", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+}
@@ -20,8 +20,10 @@ import org.junit.Before;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -68,8 +70,58 @@ public abstract class BrainTestBase {
         return new PGTopicGraph(graphWrapper);
     }
 
+    /**
+     * Populates a graph with groups of atoms, each made up of a person, a web page about the person,
+     * a collection of people known to the person, and a number of notes, then commits.
+     */
+    public static void createSyntheticGraph(final TopicGraph topicGraph,
+                                            final int numberOfAtoms,
+                                            final Random random) {
+        final int notesPerPerson = 7;
+        Filter filter = Filter.noFilter();
+        List<Atom> people = new ArrayList<>();
+
+        for (int i = 0; people.size() * (notesPerPerson + 3) < numberOfAtoms; i++) {
+            Atom person = topicGraph.createAtomWithProperties(filter, null);
+            person.setTitle("Person " + i);
+
+            Atom page = topicGraph.createAtomWithProperties(filter, null);
+            page.setTitle("Person " + i + " (web page)");
+            page.setAlias("http://example.org/people/" + i);
+
+            Atom known = topicGraph.createAtomWithProperties(filter, null);
+            known.setTitle("some people known to Person " + i);
+            for (int j = 0; j < 3 && j < people.size(); j++) {
+                known.addChildAt(people.get(random.nextInt(people.size())), j);
+            }
+
+            person.addChildAt(page, 0);
+            person.addChildAt(known, 1);
+            for (int j = 0; j < notesPerPerson; j++) {
+                Atom note = topicGraph.createAtomWithProperties(filter, null);
+                note.setTitle("note #" + j + " about Person " + i);
+                person.addChildAt(note, 2 + j);
+            }
+
+            people.add(person);
+        }
+
+        topicGraph.commit();
+    }
+
+    /**
+     * Directs the activity log of any brain created from now on to a new temporary file,
+     * rather than to the configured location
+     */
+    public static void useTemporaryActivityLog() throws IOException {
+        File logFile = File.createTempFile("smsn-activity-", ".log");
+        logFile.deleteOnExit();
+        SemanticSynchrony.getConfiguration().setActivityLog(logFile.getPath());
+    }
+
     @Before
     public void setUp() throws Exception {
+        useTemporaryActivityLog();
         topicGraph = createAtomGraph();
         brain = new Brain(topicGraph);
         queries = new TreeViews(brain);
@@ -78,6 +130,9 @@ public abstract class BrainTestBase {
 
     @After
     public void tearDown() throws Exception {
+        if (null != brain && null != brain.getActivityLog()) {
+            brain.getActivityLog().shutDown();
+        }
         if (null != graphWrapper) {
             graphWrapper.shutdown();
         }
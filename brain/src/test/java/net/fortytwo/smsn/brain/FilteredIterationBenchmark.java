@@ -0,0 +1,167 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import net.fortytwo.smsn.brain.query.TreeViews;
+import net.fortytwo.smsn.brain.query.ViewStyle;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Compares views of a wide tree in which the children of each atom are read lazily, and counted without being
+ * collected, with the former views in which each list of children or parents was first copied into a linked list.
+ * The root has many children, each of which has a few children of its own; about one atom in five is invisible.
+ * The GC profiler reports the bytes allocated per view as gc.alloc.rate.norm.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FilteredIterationBenchmark {
+
+    private static final int NUMBER_OF_GRANDCHILDREN = 5;
+
+    @Param({"100", "1000"})
+    public int width;
+
+    @Param({"1", "2"})
+    public int height;
+
+    private final ViewStyle lazyStyle = ViewStyle.Basic.Forward.getStyle();
+    private final ViewStyle materializedStyle = new MaterializedStyle(lazyStyle);
+
+    private TreeViews queries;
+    private Filter filter;
+    private Atom root;
+
+    @Setup
+    public void setUp() throws Brain.BrainException, IOException {
+        BrainTestBase.useTemporaryActivityLog();
+        PGTopicGraph topicGraph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        queries = new TreeViews(new Brain(topicGraph));
+        filter = new Filter(0.5f, 0.5f, "private", "private");
+
+        Random random = new Random(42);
+        root = createAtom(topicGraph, "root", 0.75f);
+        Atom[] children = new Atom[width];
+        for (int i = 0; i < width; i++) {
+            children[i] = createAtom(topicGraph, "child " + i, 0 == random.nextInt(5) ? 0.25f : 0.75f);
+            Atom[] grandchildren = new Atom[NUMBER_OF_GRANDCHILDREN];
+            for (int j = 0; j < NUMBER_OF_GRANDCHILDREN; j++) {
+                grandchildren[j] = createAtom(topicGraph, "grandchild " + j + " of " + i,
+                        0 == random.nextInt(5) ? 0.25f : 0.75f);
+            }
+            children[i].setChildren(topicGraph.createListOfAtoms(grandchildren));
+        }
+        root.setChildren(topicGraph.createListOfAtoms(children));
+
+        topicGraph.commit();
+    }
+
+    @Benchmark
+    public Note lazy() {
+        return queries.view(root, height, filter, lazyStyle);
+    }
+
+    @Benchmark
+    public Note materialized() {
+        return queries.view(root, height, filter, materializedStyle);
+    }
+
+    private Atom createAtom(final PGTopicGraph topicGraph, final String title, final float weight) {
+        Atom atom = topicGraph.createAtomWithProperties(filter, null);
+        atom.setTitle(title);
+        atom.setWeight(weight);
+        return atom;
+    }
+
+    // the former iteration, in which linked atoms are collected before they are read, and collected again when counted
+    private static class MaterializedStyle implements ViewStyle {
+        private final ViewStyle base;
+        private final MaterializedStyle inverse;
+
+        private MaterializedStyle(final ViewStyle base) {
+            this(base, null);
+        }
+
+        private MaterializedStyle(final ViewStyle base, final MaterializedStyle inverse) {
+            this.base = base;
+            this.inverse = null == inverse ? new MaterializedStyle(base.getInverse(), this) : inverse;
+        }
+
+        @Override
+        public String getName() {
+            return base.getName();
+        }
+
+        @Override
+        public Iterable<Atom> getLinked(final Atom root, final Predicate<Atom> filter) {
+            List<Atom> results = new LinkedList<>();
+            if (Direction.Forward == base.getDirection()) {
+                for (EntityList<Atom> cur = root.getChildren(); null != cur; cur = cur.getRest()) {
+                    if (filter.test(cur.getFirst())) {
+                        results.add(cur.getFirst());
+                    }
+                }
+            } else {
+                root.forEachParent(a -> {
+                    if (filter.test(a)) {
+                        results.add(a);
+                    }
+                });
+            }
+
+            // the view then copied the list before reading it
+            return new LinkedList<>(results);
+        }
+
+        @Override
+        public boolean addOnUpdate() {
+            return base.addOnUpdate();
+        }
+
+        @Override
+        public boolean deleteOnUpdate() {
+            return base.deleteOnUpdate();
+        }
+
+        @Override
+        public Direction getDirection() {
+            return base.getDirection();
+        }
+
+        @Override
+        public ViewStyle getInverse() {
+            return inverse;
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FilteredIterationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,18 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+
+import java.io.IOException;
+
+/**
+ * Runs the tree view tests against atoms whose children are in ordinal storage
+ */
+public class OrdinalTreeViewsTest extends TreeViewsTest {
+    @Override
+    protected TopicGraph createAtomGraph() throws IOException {
+        PGTopicGraph graph = (PGTopicGraph) createTinkerAtomGraph();
+        graph.setChildListStorage(PGTopicGraph.ChildListStorage.ORDINAL);
+        return graph;
+    }
+}
@@ -0,0 +1,14 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.TopicGraph;
+
+/**
+ * Runs the search tests against the in-memory full-text index of the TinkerGraph backend
+ */
+public class TinkerSearchTest extends SearchTest {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+}
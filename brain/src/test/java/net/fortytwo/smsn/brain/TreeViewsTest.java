@@ -1,8 +1,10 @@
 package net.fortytwo.smsn.brain;
 
+import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.error.InvalidUpdateException;
 import net.fortytwo.smsn.brain.io.json.JsonPrinter;
 import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.GraphChanges;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.entities.Atom;
@@ -14,12 +16,19 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TreeViewsTest extends BrainTestBase {
     private final JsonPrinter jsonPrinter = new JsonPrinter();
@@ -501,6 +510,52 @@ public class TreeViewsTest extends BrainTestBase {
         assertEquals("this is a public child of a public note", n3.getTitle());
     }
 
+    @Test
+    public void projectedViewsReadOnlyTheRequestedProperties() throws Exception {
+        Filter readFilter = new Filter(0f, 0.5f, DefaultSources.PUBLIC, DefaultSources.PUBLIC);
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        arthur.setText("a man who has lost his planet");
+        arthur.setWeight(0.75f);
+        arthur.setSource(DefaultSources.PUBLIC);
+        arthur.setAlias("http://example.org/arthur");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        ford.setSource(DefaultSources.PUBLIC);
+        ford.setText("a researcher for the Guide");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        zaphod.setSource(DefaultSources.PERSONAL);
+        arthur.setChildren(topicGraph.createListOfAtoms(ford, zaphod));
+        List<String> properties = Arrays.asList(
+                SemanticSynchrony.PropertyKeys.TITLE,
+                SemanticSynchrony.PropertyKeys.WEIGHT,
+                SemanticSynchrony.PropertyKeys.SOURCE);
+
+        Note view = queries.view(arthur, 1, readFilter, viewStyle, properties, null);
+
+        // properties are read when requested, not when the view is generated
+        arthur.setTitle("Arthur Philip Dent");
+        assertEquals("Arthur Philip Dent", view.getTitle());
+        assertEquals(0.75f, view.getWeight());
+        assertEquals(DefaultSources.PUBLIC, view.getSource());
+        assertNull(view.getText());
+        assertNull(view.getAlias());
+        assertNull(view.getCreated());
+        assertEquals(1, view.getNumberOfChildren());
+        Note child = view.getChildren().get(0);
+        assertEquals("Ford Prefect", child.getTitle());
+        assertNull(child.getText());
+
+        // as in a full view, the title of an invisible note is left blank
+        Note invisible = queries.view(zaphod, 1, readFilter, viewStyle, properties, null);
+        assertNull(invisible.getTitle());
+        assertEquals(DefaultSources.PERSONAL, invisible.getSource());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void projectionOfUnknownPropertyIsRejected() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        queries.view(arthur, 1, filter, viewStyle, Collections.singletonList("color"), null);
+    }
+
     @Test
     public void invisibleAtomsAreSkippedDuringWrites() throws Exception {
         Filter readFilter = Filter.noFilter();
@@ -567,6 +622,69 @@ public class TreeViewsTest extends BrainTestBase {
         assertEquals("note 8", rootNote.getChildren().get(2).getTitle());
     }
 
+    @Test
+    public void reorderedChildrenAreMovedAmongInvisibleChildren() throws Exception {
+        Filter publicFilter = new Filter(0f, 0.5f, DefaultSources.PUBLIC, DefaultSources.PUBLIC);
+        ViewStyle style = ViewStyle.Basic.Forward.getStyle();
+        Atom root = createAtom("0000000", "root");
+        root.setSource(DefaultSources.PUBLIC);
+        Atom a = createAtom("0000001", "a"), p = createAtom("0000002", "p"),
+                b = createAtom("0000003", "b"), c = createAtom("0000004", "c");
+        for (Atom atom : new Atom[]{a, b, c}) {
+            atom.setSource(DefaultSources.PUBLIC);
+        }
+        p.setSource(DefaultSources.PERSONAL);
+        c.setChildren(topicGraph.createListOfAtoms(createAtom("0000005", "grandchild")));
+        root.setChildren(topicGraph.createListOfAtoms(a, p, b, c));
+
+        Note rootNote = queries.view(root, 1, publicFilter, style);
+        rootNote.getChildren().add(0, rootNote.getChildren().remove(2));
+        GraphChanges changes = queries.update(rootNote, 1, publicFilter, style);
+
+        assertEquals(Arrays.asList(c, a, p, b), EntityList.toJavaList(root.getChildren()));
+        // the list is relinked in place
+        assertEquals(0, changes.getVerticesTouched());
+        assertTrue(changes.getEdgesTouched() > 0);
+        assertEquals(1, countNotes(c));
+        assertEquals(1, c.getNumberOfParents());
+    }
+
+    @Test
+    public void linkedAtomsAreReadOnlyAsTheyAreIterated() throws Exception {
+        Filter publicFilter = new Filter(0f, 0.5f, DefaultSources.PUBLIC, DefaultSources.PUBLIC);
+        Atom root = createAtom("0000000", "root");
+        Atom a = createAtom("0000001", "a"), p = createAtom("0000002", "p"), b = createAtom("0000003", "b");
+        for (Atom atom : new Atom[]{root, a, b}) {
+            atom.setSource(DefaultSources.PUBLIC);
+        }
+        p.setSource(DefaultSources.PERSONAL);
+        root.setChildren(topicGraph.createListOfAtoms(a, p, b));
+
+        int[] tests = {0};
+        Predicate<Atom> countingFilter = atom -> {
+            tests[0]++;
+            return publicFilter.test(atom);
+        };
+
+        ViewStyle forward = ViewStyle.Basic.Forward.getStyle();
+        Iterable<Atom> linked = forward.getLinked(root, countingFilter);
+        assertEquals(0, tests[0]);
+        Iterator<Atom> iterator = linked.iterator();
+        assertEquals(a, iterator.next());
+        assertEquals(1, tests[0]);
+        assertEquals(b, iterator.next());
+        assertEquals(3, tests[0]);
+        assertFalse(iterator.hasNext());
+
+        // the view may be iterated again
+        List<Atom> again = new ArrayList<>();
+        linked.forEach(again::add);
+        assertEquals(Arrays.asList(a, b), again);
+        assertEquals(2, forward.countLinked(root, publicFilter));
+        assertEquals(1, forward.getInverse().countLinked(b, publicFilter));
+        assertEquals(0, forward.getInverse().countLinked(root, publicFilter));
+    }
+
     @Test
     public void testDontOverwriteNotesWithEmptyValues() throws Exception {
         ViewStyle style = ViewStyle.Basic.Forward.getStyle();
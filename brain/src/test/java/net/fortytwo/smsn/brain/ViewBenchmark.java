@@ -0,0 +1,222 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import net.fortytwo.smsn.brain.query.TreeViews;
+import net.fortytwo.smsn.brain.query.ViewStyle;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Compares single-pass view construction, as in {@link TreeViews#view}, with the former construction of a view
+ * in which the children and parents of each atom were found, and each atom tested against the filter,
+ * once for the tree itself and once again for each count.
+ * The atoms form layers in which each atom has several children in the next layer, some of which are invisible,
+ * and several parents in the previous layer.
+ * The auxiliary counters give the number of atom property reads and the number of linked atoms read
+ * for each view.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ViewBenchmark {
+
+    private static final int LAYER_SIZE = 100;
+
+    @Param({"3", "5"})
+    public int height;
+
+    @Param({"10"})
+    public int numberOfChildren;
+
+    private PGTopicGraph topicGraph;
+    private TreeViews queries;
+    private Filter filter;
+    private Atom root;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Reads {
+        public long views;
+        public long propertyReads;
+        public long linkedAtomReads;
+
+        private long propertyReadsBefore;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            views = 0;
+            propertyReads = 0;
+            linkedAtomReads = 0;
+        }
+
+        private void begin(final PGTopicGraph topicGraph) {
+            propertyReadsBefore = topicGraph.getSnapshotHits() + topicGraph.getSnapshotMisses();
+        }
+
+        private void end(final PGTopicGraph topicGraph) {
+            views++;
+            propertyReads += topicGraph.getSnapshotHits() + topicGraph.getSnapshotMisses() - propertyReadsBefore;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Brain.BrainException, IOException {
+        BrainTestBase.useTemporaryActivityLog();
+        topicGraph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        queries = new TreeViews(new Brain(topicGraph));
+        filter = new Filter(0.5f, 0.5f, "private", "private");
+
+        Random random = new Random(42);
+        Atom[] previousLayer = null;
+        for (int layer = 0; layer <= height; layer++) {
+            Atom[] currentLayer = new Atom[LAYER_SIZE];
+            for (int i = 0; i < LAYER_SIZE; i++) {
+                currentLayer[i] = topicGraph.createAtomWithProperties(filter, null);
+                currentLayer[i].setTitle("atom " + i + " of layer " + layer);
+                // about one atom in five is invisible
+                currentLayer[i].setWeight(0 == random.nextInt(5) ? 0.25f : 0.75f);
+            }
+            if (null == previousLayer) {
+                root = currentLayer[0];
+                root.setWeight(0.75f);
+            } else {
+                for (Atom parent : previousLayer) {
+                    Atom[] children = new Atom[numberOfChildren];
+                    for (int i = 0; i < numberOfChildren; i++) {
+                        children[i] = currentLayer[random.nextInt(LAYER_SIZE)];
+                    }
+                    parent.setChildren(topicGraph.createListOfAtoms(children));
+                }
+            }
+            previousLayer = currentLayer;
+        }
+
+        topicGraph.commit();
+    }
+
+    @Benchmark
+    public Note singlePassView(final Reads reads) {
+        CountingStyle style = new CountingStyle(ViewStyle.Basic.Forward.getStyle(), reads);
+        reads.begin(topicGraph);
+        Note view = queries.view(root, height, filter, style);
+        reads.end(topicGraph);
+        return view;
+    }
+
+    @Benchmark
+    public Note multiPassView(final Reads reads) {
+        CountingStyle style = new CountingStyle(ViewStyle.Basic.Forward.getStyle(), reads);
+        reads.begin(topicGraph);
+        Note view = multiPassView(root, height, style);
+        reads.end(topicGraph);
+        return view;
+    }
+
+    private Note multiPassView(final Atom root, final int height, final ViewStyle style) {
+        Note note = new Note();
+        note.setId(root.getId());
+        note.setWeight(root.getWeight());
+        note.setSource(root.getSource());
+        if (filter.test(root)) {
+            note.setTitle(root.getTitle());
+        }
+
+        if (height > 0) {
+            for (Atom target : style.getLinked(root, filter)) {
+                if (filter.test(target)) {
+                    note.addChild(multiPassView(target, height - 1, style));
+                }
+            }
+        }
+
+        note.setNumberOfChildren(countLinked(root, style));
+        note.setNumberOfParents(countLinked(root, style.getInverse()));
+        return note;
+    }
+
+    private int countLinked(final Atom root, final ViewStyle style) {
+        if (!filter.test(root)) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Atom ignored : style.getLinked(root, filter)) count++;
+        return count;
+    }
+
+    // counts the linked atoms read through a style, and through its inverse
+    private static class CountingStyle implements ViewStyle {
+        private final ViewStyle base;
+        private final Reads reads;
+        private final CountingStyle inverse;
+
+        private CountingStyle(final ViewStyle base, final Reads reads) {
+            this(base, reads, null);
+        }
+
+        private CountingStyle(final ViewStyle base, final Reads reads, final CountingStyle inverse) {
+            this.base = base;
+            this.reads = reads;
+            this.inverse = null == inverse ? new CountingStyle(base.getInverse(), reads, this) : inverse;
+        }
+
+        @Override
+        public String getName() {
+            return base.getName();
+        }
+
+        @Override
+        public Iterable<Atom> getLinked(final Atom root, final Predicate<Atom> filter) {
+            return base.getLinked(root, atom -> {
+                reads.linkedAtomReads++;
+                return filter.test(atom);
+            });
+        }
+
+        @Override
+        public boolean addOnUpdate() {
+            return base.addOnUpdate();
+        }
+
+        @Override
+        public boolean deleteOnUpdate() {
+            return base.deleteOnUpdate();
+        }
+
+        @Override
+        public Direction getDirection() {
+            return base.getDirection();
+        }
+
+        @Override
+        public ViewStyle getInverse() {
+            return inverse;
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ViewBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.query.ViewCache;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ViewCacheTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void viewsAreCachedUntilADependencyChanges() throws Exception {
+        ViewCache<String> cache = new ViewCache<>(10);
+        ViewCache.Key key = new ViewCache.Key(ARTHUR_ID, 2, filter, viewStyle);
+        assertNull(cache.get(key));
+
+        cache.put(key, "view", Arrays.asList(ARTHUR_ID, FORD_ID), cache.getGeneration());
+        assertSame("view", cache.get(new ViewCache.Key(ARTHUR_ID, 2, filter, viewStyle)));
+        assertNull(cache.get(new ViewCache.Key(ARTHUR_ID, 3, filter, viewStyle)));
+
+        cache.atomsChanged(Collections.singleton(ZAPHOD_ID));
+        assertSame("view", cache.get(key));
+        cache.atomsChanged(Collections.singleton(FORD_ID));
+        assertNull(cache.get(key));
+
+        ViewCache.Statistics stats = cache.getStatistics();
+        assertEquals(2, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(1, stats.getInvalidations());
+        assertEquals(0, stats.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedViewsAreEvicted() throws Exception {
+        ViewCache<String> cache = new ViewCache<>(2);
+        ViewCache.Key a = new ViewCache.Key(ARTHUR_ID, 1, filter, viewStyle);
+        ViewCache.Key f = new ViewCache.Key(FORD_ID, 1, filter, viewStyle);
+        ViewCache.Key z = new ViewCache.Key(ZAPHOD_ID, 1, filter, viewStyle);
+
+        cache.put(a, "a", Collections.singleton(ARTHUR_ID), cache.getGeneration());
+        cache.put(f, "f", Collections.singleton(FORD_ID), cache.getGeneration());
+        cache.get(a);
+        cache.put(z, "z", Collections.singleton(ZAPHOD_ID), cache.getGeneration());
+
+        assertSame("a", cache.get(a));
+        assertNull(cache.get(f));
+        assertSame("z", cache.get(z));
+        assertEquals(1, cache.getStatistics().getEvictions());
+        assertEquals(2, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void viewsGeneratedBeforeAChangeAreNotAdded() throws Exception {
+        ViewCache<String> cache = new ViewCache<>(10);
+        ViewCache.Key key = new ViewCache.Key(ARTHUR_ID, 1, filter, viewStyle);
+
+        long generation = cache.getGeneration();
+        cache.atomsChanged(Collections.singleton(ZAPHOD_ID));
+        cache.put(key, "stale", Collections.singleton(ARTHUR_ID), generation);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void dependenciesIncludeCountedChildrenAndParents() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        Atom earth = createAtom("Earth");
+        arthur.setChildren(topicGraph.createListOfAtoms(ford));
+        ford.setChildren(topicGraph.createListOfAtoms(zaphod));
+        earth.setChildren(topicGraph.createListOfAtoms(arthur));
+
+        Set<String> dependencies = new HashSet<>();
+        Note view = queries.view(arthur, 1, filter, viewStyle, null, dependencies);
+        assertEquals(1, view.getNumberOfParents());
+        assertEquals(1, view.getChildren().get(0).getNumberOfChildren());
+        assertEquals(new HashSet<>(Arrays.asList(ARTHUR_ID, FORD_ID, ZAPHOD_ID, earth.getId())), dependencies);
+    }
+
+    @Test
+    public void changesArePublishedOnCommit() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        topicGraph.commit();
+
+        List<Collection<String>> published = new LinkedList<>();
+        topicGraph.addUpdateListener(published::add);
+
+        arthur.setChildren(topicGraph.createListOfAtoms(ford));
+        zaphod.setWeight(0.25f);
+        assertTrue(published.isEmpty());
+        topicGraph.commit();
+        assertEquals(1, published.size());
+        assertEquals(new HashSet<>(Arrays.asList(ARTHUR_ID, FORD_ID, ZAPHOD_ID)), new HashSet<>(published.get(0)));
+
+        published.clear();
+        topicGraph.commit();
+        assertTrue(published.isEmpty());
+
+        ford.setTitle("Ix");
+        topicGraph.rollback();
+        assertEquals(Collections.singletonList(FORD_ID), new LinkedList<>(published.get(0)));
+    }
+}
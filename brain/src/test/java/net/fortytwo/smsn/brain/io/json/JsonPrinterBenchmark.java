@@ -0,0 +1,82 @@
+package net.fortytwo.smsn.brain.io.json;
+
+import net.fortytwo.smsn.brain.model.Note;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Compares the rendering of a view as a tree of JSON objects with streaming output,
+ * in each case producing the text of a response which contains the view.
+ * The GC profiler reports the bytes allocated per view as gc.alloc.rate.norm.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JsonPrinterBenchmark {
+
+    private static final int NUMBER_OF_CHILDREN = 6;
+
+    @Param({"2", "5"})
+    public int height;
+
+    private final JsonPrinter printer = new JsonPrinter();
+    private Note view;
+
+    @Setup
+    public void setUp() {
+        printer.setTitleLengthCutoff(50);
+        view = createNote(height, "0");
+    }
+
+    @Benchmark
+    public String tree() throws IOException {
+        return new JSONObject(Collections.singletonMap("view", printer.toJson(view))).toString();
+    }
+
+    @Benchmark
+    public String streaming() throws IOException {
+        return new JSONObject(Collections.singletonMap("view", printer.toJsonString(view))).toString();
+    }
+
+    private Note createNote(final int height, final String path) {
+        Note note = new Note();
+        note.setId("id" + path);
+        note.setWeight(0.5f);
+        note.setSource("public");
+        note.setCreated(1490000000000L + path.hashCode());
+        note.setTitle("a note with a moderately long title, some of which will be truncated, at " + path);
+        note.setNumberOfParents(1);
+
+        if (height > 0) {
+            for (int i = 0; i < NUMBER_OF_CHILDREN; i++) {
+                note.addChild(createNote(height - 1, path + "." + i));
+            }
+        }
+        note.setNumberOfChildren(height > 0 ? NUMBER_OF_CHILDREN : 0);
+
+        return note;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonPrinterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
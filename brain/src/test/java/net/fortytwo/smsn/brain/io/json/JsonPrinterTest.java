@@ -8,6 +8,11 @@ import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -93,4 +98,64 @@ public class JsonPrinterTest {
         assertEquals("Arthur Dent", j.getString(SemanticSynchrony.PropertyKeys.TITLE));
         assertEquals("12345", j.getString(SemanticSynchrony.PropertyKeys.TEXT));
     }
+
+    @Test
+    public void streamedOutputMatchesTreeOutput() throws Exception {
+        Note note = wikiParser.parse("" +
+                "* foo\n" +
+                "   * bar \"quoted\" \\ and \u00e9\n" +
+                "   * quux\n");
+        Note child = note.getChildren().get(0);
+        child.setId("12345");
+        child.setWeight(1f);
+        child.setSource("public");
+        child.setCreated(1490000000000L);
+        child.setPriority(0.25f);
+        child.setNumberOfChildren(2);
+        child.setNumberOfParents(1);
+        child.setAlias("http://example.org/foo");
+        child.setShortcut("f");
+        child.setText("line one\nline two");
+        child.getChildren().get(0).setWeight(0.75f);
+        child.getChildren().get(0).setMeta(Arrays.asList("class person 3=2+1", "class date 1=1+0"));
+
+        jsonPrinter.setTitleLengthCutoff(4);
+        JSONObject expected = jsonPrinter.toJson(note);
+        JSONObject actual = new JSONObject(jsonPrinter.toJsonString(note).toJSONString());
+        assertJsonEquals(expected, actual);
+        assertEquals("bar  [...]", actual.getJSONArray(JsonFormat.Keys.CHILDREN).getJSONObject(0)
+                .getJSONArray(JsonFormat.Keys.CHILDREN).getJSONObject(0).getString(SemanticSynchrony.PropertyKeys.TITLE));
+        assertEquals("1", actual.getJSONArray(JsonFormat.Keys.CHILDREN).getJSONObject(0)
+                .get(SemanticSynchrony.PropertyKeys.WEIGHT).toString());
+    }
+
+    private void assertJsonEquals(final Object expected, final Object actual) throws Exception {
+        if (expected instanceof JSONObject) {
+            JSONObject e = (JSONObject) expected, a = (JSONObject) actual;
+            assertEquals(keysOf(e), keysOf(a));
+            for (String key : keysOf(e)) {
+                assertJsonEquals(e.get(key), a.get(key));
+            }
+        } else if (expected instanceof JSONArray) {
+            JSONArray e = (JSONArray) expected, a = (JSONArray) actual;
+            assertEquals(e.length(), a.length());
+            for (int i = 0; i < e.length(); i++) {
+                assertJsonEquals(e.get(i), a.get(i));
+            }
+        } else if (expected instanceof Number) {
+            // compare numbers as they are written
+            assertEquals(JSONObject.numberToString((Number) expected), JSONObject.numberToString((Number) actual));
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    private Set<String> keysOf(final JSONObject json) {
+        Set<String> keys = new HashSet<>();
+        Iterator iter = json.keys();
+        while (iter.hasNext()) {
+            keys.add((String) iter.next());
+        }
+        return keys;
+    }
 }
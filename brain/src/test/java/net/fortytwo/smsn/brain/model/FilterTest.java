@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -59,6 +60,27 @@ public class FilterTest extends BrainTestBase {
         assertTrue(filter.test(createAtom(DefaultSources.UNIVERSAL, 1.0f)));
     }
 
+    @Test
+    public void compiledFilterAgreesWithFilter() throws Exception {
+        String[] sources = {null, "nonexistent", DefaultSources.PRIVATE, DefaultSources.PERSONAL,
+                DefaultSources.PUBLIC, DefaultSources.UNIVERSAL};
+        Float[] weights = {null, 0f, 0.25f, 0.5f, 0.75f, 1f};
+        Filter[] filters = {Filter.noFilter(),
+                new Filter(0.5f, 0.5f, DefaultSources.PRIVATE, DefaultSources.PERSONAL),
+                new Filter(0f, 0.5f, DefaultSources.PUBLIC, DefaultSources.PUBLIC),
+                new Filter(0.75f, 0.75f, DefaultSources.PUBLIC, DefaultSources.PUBLIC)};
+
+        for (Filter filter : filters) {
+            Filter.Compiled compiled = filter.compile();
+            for (String source : sources) {
+                for (Float weight : weights) {
+                    assertEquals(filter.test(createAtom(source, weight)),
+                            compiled.test(Filter.getSourceIndex(source), null == weight ? Float.NaN : weight));
+                }
+            }
+        }
+    }
+
     private Atom createAtom(final String source, final Float weight) {
         Atom atom = new AtomBase();
         atom.setSource(source);
@@ -3,11 +3,16 @@ package net.fortytwo.smsn.brain.model;
 import net.fortytwo.smsn.brain.BrainTestBase;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.entities.EntityList;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.junit.Test;
 
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class GetAtomsByIdTest extends BrainTestBase {
 
@@ -32,6 +37,42 @@ public class GetAtomsByIdTest extends BrainTestBase {
         }
     }
 
+    @Test
+    public void changedAndRemovedIdsAreNotFound() throws Exception {
+        Atom atom = topicGraph.createAtomWithProperties(filter, "aaaaaaa");
+        atom.setTitle("renamed");
+        assertTrue(topicGraph.getAtomById("aaaaaaa").isPresent());
+
+        atom.setId("bbbbbbb");
+        assertFalse(topicGraph.getAtomById("aaaaaaa").isPresent());
+        assertEquals("renamed", topicGraph.getAtomById("bbbbbbb").get().getTitle());
+
+        atom.destroy();
+        assertFalse(topicGraph.getAtomById("bbbbbbb").isPresent());
+    }
+
+    @Test
+    public void atomsCreatedThroughAnotherWrapperAreFound() throws Exception {
+        TopicGraph other = new PGTopicGraph(new TinkerGraphWrapper((TinkerGraph) graph));
+        Atom atom = other.createAtomWithProperties(filter, "ccccccc");
+        atom.setTitle("elsewhere");
+
+        assertEquals("elsewhere", topicGraph.getAtomById("ccccccc").get().getTitle());
+    }
+
+    @Test
+    public void idsChangedThroughAnotherWrapperAreNotFound() throws Exception {
+        Atom atom = topicGraph.createAtomWithProperties(filter, "ddddddd");
+        atom.setTitle("moved");
+        assertTrue(topicGraph.getAtomById("ddddddd").isPresent());
+
+        TopicGraph other = new PGTopicGraph(new TinkerGraphWrapper((TinkerGraph) graph));
+        other.getAtomById("ddddddd").get().setId("eeeeeee");
+
+        assertFalse(topicGraph.getAtomById("ddddddd").isPresent());
+        assertEquals("moved", topicGraph.getAtomById("eeeeeee").get().getTitle());
+    }
+
     @Test
     public void testGetAtoms() throws Exception {
         Atom chaos = topicGraph.createAtomWithProperties(filter, null);
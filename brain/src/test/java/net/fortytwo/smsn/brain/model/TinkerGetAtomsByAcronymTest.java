@@ -0,0 +1,12 @@
+package net.fortytwo.smsn.brain.model;
+
+/**
+ * Runs the acronym tests against the in-memory full-text index of the TinkerGraph backend
+ */
+public class TinkerGetAtomsByAcronymTest extends GetAtomsByAcronymTest {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+}
@@ -0,0 +1,33 @@
+package net.fortytwo.smsn.brain.model;
+
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the title query tests against the in-memory full-text index of the TinkerGraph backend
+ */
+public class TinkerGetAtomsByValueTest extends GetAtomsByValueTest {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void titlesSetThroughAnotherWrapperAreFound() throws Exception {
+        TopicGraph other = new PGTopicGraph(new TinkerGraphWrapper((TinkerGraph) graph));
+        Atom atom = other.createAtomWithProperties(filter, null);
+        atom.setTitle("Slartibartfast");
+
+        List<Atom> result = topicGraph.getAtomsByTitleQuery("Slartibartfast", filter);
+        assertEquals(1, result.size());
+        assertEquals(atom.getId(), result.get(0).getId());
+    }
+}
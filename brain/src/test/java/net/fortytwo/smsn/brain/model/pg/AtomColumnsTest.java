@@ -0,0 +1,134 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import com.google.common.collect.Iterables;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AtomColumnsTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void filteredScanAgreesWithFilter() throws Exception {
+        String[] sources = {DefaultSources.PRIVATE, DefaultSources.PERSONAL,
+                DefaultSources.PUBLIC, DefaultSources.UNIVERSAL};
+        for (int i = 0; i < 100; i++) {
+            Atom atom = createAtom("atom #" + i);
+            atom.setSource(sources[i % sources.length]);
+            atom.setWeight(0 == i % 7 ? null : (i % 5) / 4f);
+        }
+        topicGraph.commit();
+
+        Filter filter = new Filter(0.5f, 0.5f, DefaultSources.PERSONAL, DefaultSources.PERSONAL);
+        Set<Atom> expected = new HashSet<>();
+        for (Atom a : topicGraph.getAllAtoms()) {
+            if (filter.test(a)) {
+                expected.add(a);
+            }
+        }
+
+        Set<Atom> actual = new HashSet<>();
+        Iterables.addAll(actual, topicGraph.getAllAtoms(filter.compile()));
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void settersUpdateColumns() throws Exception {
+        Filter.Compiled filter = new Filter(0.5f, 0.5f, DefaultSources.PUBLIC, DefaultSources.PUBLIC).compile();
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        arthur.setSource(DefaultSources.PUBLIC);
+        arthur.setWeight(0.75f);
+        assertTrue(topicGraph.test(filter, arthur));
+
+        arthur.setWeight(0.25f);
+        assertFalse(topicGraph.test(filter, arthur));
+        arthur.setWeight(1f);
+        assertTrue(topicGraph.test(filter, arthur));
+        arthur.setSource(DefaultSources.PERSONAL);
+        assertFalse(topicGraph.test(filter, arthur));
+        arthur.setSource(null);
+        assertFalse(topicGraph.test(Filter.noFilter().compile(), arthur));
+    }
+
+    @Test
+    public void destroyedAtomsAreEvicted() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        topicGraph.test(Filter.noFilter().compile(), arthur);
+        topicGraph.test(Filter.noFilter().compile(), ford);
+        AtomColumns columns = ((PGTopicGraph) topicGraph).getAtomColumns();
+        assertEquals(2, columns.size());
+
+        arthur.destroy();
+        assertEquals(1, columns.size());
+    }
+
+    @Test
+    public void uncommittedValuesAreNotSeenByOtherThreads() throws Exception {
+        Filter.Compiled filter = new Filter(0.5f, 0.5f, DefaultSources.PRIVATE, DefaultSources.PRIVATE).compile();
+        AtomColumns columns = new AtomColumns(true);
+        Vertex vertex = ((PGAtom) createAtom(ARTHUR_ID, "Arthur Dent")).asVertex();
+        assertTrue(columns.test(vertex, filter));
+
+        columns.setWeight(vertex, 0f);
+        assertFalse(columns.test(vertex, filter));
+        assertTrue(testInOtherThread(columns, vertex, filter));
+
+        columns.commit();
+        assertFalse(columns.test(vertex, filter));
+        assertFalse(testInOtherThread(columns, vertex, filter));
+
+        columns.setWeight(vertex, 1f);
+        assertTrue(columns.test(vertex, filter));
+        columns.rollback();
+        assertFalse(columns.test(vertex, filter));
+    }
+
+    @Test
+    public void manyAtomsAreStoredAndRemoved() throws Exception {
+        int total = 5000;
+        for (int i = 0; i < total; i++) {
+            Atom atom = createAtom("atom #" + i);
+            atom.setWeight(0 == i % 2 ? 0.25f : 0.75f);
+        }
+
+        Filter filter = new Filter(0.5f, 0.5f, DefaultSources.PRIVATE, DefaultSources.PRIVATE);
+        assertEquals(total / 2, Iterables.size(topicGraph.getAllAtoms(filter.compile())));
+        AtomColumns columns = ((PGTopicGraph) topicGraph).getAtomColumns();
+        assertEquals(total, columns.size());
+
+        // all of the atoms are isolated
+        topicGraph.removeIsolatedAtoms(filter);
+        assertEquals(total / 2, columns.size());
+        assertEquals(total / 2, countAtoms(topicGraph));
+        assertEquals(0, Iterables.size(topicGraph.getAllAtoms(filter.compile())));
+        assertEquals(total / 2, Iterables.size(topicGraph.getAllAtoms(Filter.noFilter().compile())));
+    }
+
+    private boolean testInOtherThread(final AtomColumns columns, final Vertex vertex, final Filter.Compiled filter)
+            throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(() -> columns.test(vertex, filter)).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
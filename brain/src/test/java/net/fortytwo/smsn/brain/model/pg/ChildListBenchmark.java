@@ -0,0 +1,86 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares linked and ordinal child list storage for insertions, deletions and traversals
+ * of the children of an atom with many children.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ChildListBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int numberOfChildren;
+
+    @Param({"LINKED", "ORDINAL"})
+    public PGTopicGraph.ChildListStorage storage;
+
+    private Atom parent;
+    private Atom extraChild;
+
+    @Setup
+    public void setUp() {
+        PGTopicGraph topicGraph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        topicGraph.setChildListStorage(storage);
+
+        parent = createAtom(topicGraph, "parent");
+        extraChild = createAtom(topicGraph, "extra child");
+        Atom[] children = new Atom[numberOfChildren];
+        for (int i = 0; i < numberOfChildren; i++) {
+            children[i] = createAtom(topicGraph, "child #" + i);
+        }
+        parent.setChildren(topicGraph.createListOfAtoms(children));
+    }
+
+    @Benchmark
+    public void insertAndDeleteAtMiddle() {
+        int position = numberOfChildren / 2;
+        parent.addChildAt(extraChild, position);
+        parent.deleteChildAt(position);
+    }
+
+    @Benchmark
+    public void insertAndDeleteAtEnd() {
+        parent.addChildAt(extraChild, numberOfChildren);
+        parent.deleteChildAt(numberOfChildren);
+    }
+
+    @Benchmark
+    public int view() {
+        int length = 0;
+        EntityList<Atom> cur = parent.getChildren();
+        while (null != cur) {
+            length += cur.getFirst().getTitle().length();
+            cur = cur.getRest();
+        }
+        return length;
+    }
+
+    private Atom createAtom(final PGTopicGraph topicGraph, final String title) {
+        Atom atom = topicGraph.createAtomWithProperties(Filter.noFilter(), null);
+        atom.setTitle(title);
+        return atom;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChildListBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,270 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.GraphChanges;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChildListStorageTest extends BrainTestBase {
+
+    private PGTopicGraph pg;
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        pg = (PGTopicGraph) createTinkerAtomGraph();
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.ORDINAL);
+        return pg;
+    }
+
+    @Test
+    public void insertionsAndDeletionsMatchLinkedStorage() throws Exception {
+        // an atom's storage is chosen when it receives its first child
+        Atom first = createAtom("first");
+        Atom ordinal = createAtom("ordinal");
+        ordinal.addChildAt(first, 0);
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom linked = createAtom("linked");
+        linked.addChildAt(first, 0);
+
+        List<Atom> expected = new LinkedList<>(Arrays.asList(first));
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            if (expected.size() < 2 || random.nextInt(3) > 0) {
+                Atom child = createAtom("child #" + i);
+                int position = random.nextInt(expected.size() + 1);
+                expected.add(position, child);
+                ordinal.addChildAt(child, position);
+                linked.addChildAt(child, position);
+            } else {
+                int position = random.nextInt(expected.size());
+                expected.remove(position);
+                ordinal.deleteChildAt(position);
+                linked.deleteChildAt(position);
+            }
+        }
+
+        assertEquals(expected, EntityList.toJavaList(ordinal.getChildren()));
+        assertEquals(expected, EntityList.toJavaList(linked.getChildren()));
+        assertTrue(((PGAtom) ordinal).asVertex().edges(Direction.OUT, SemanticSynchrony.EdgeLabels.CHILD).hasNext());
+        assertFalse(((PGAtom) ordinal).asVertex().edges(Direction.OUT, SemanticSynchrony.EdgeLabels.NOTES).hasNext());
+    }
+
+    @Test
+    public void replacedChildrenMatchInEitherStorage() throws Exception {
+        List<Atom> pool = new LinkedList<>();
+        for (int i = 0; i < 8; i++) {
+            pool.add(createAtom("child #" + i));
+        }
+        GraphChanges changes = new GraphChanges();
+        // an atom's storage is chosen when it receives its first child, and kept while it has children
+        Atom ordinal = createAtom("ordinal");
+        ordinal.replaceChildren(pool, changes);
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom linked = createAtom("linked");
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            List<Atom> expected = new LinkedList<>();
+            int size = 1 + random.nextInt(10);
+            for (int j = 0; j < size; j++) {
+                expected.add(pool.get(random.nextInt(pool.size())));
+            }
+
+            ordinal.replaceChildren(expected, changes);
+            linked.replaceChildren(expected, changes);
+            assertEquals(expected, EntityList.toJavaList(ordinal.getChildren()));
+            assertEquals(expected, EntityList.toJavaList(linked.getChildren()));
+            assertEquals(size, countListVertices());
+            for (Atom child : pool) {
+                assertEquals(2 * Collections.frequency(expected, child), child.getNumberOfParents());
+            }
+        }
+    }
+
+    @Test
+    public void replacingChildrenWritesOnlyWhatChanges() throws Exception {
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c"), d = createAtom("d");
+        Atom ordinal = createAtom("ordinal");
+        ordinal.setChildren(topicGraph.createListOfAtoms(a, b, c, d));
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom linked = createAtom("linked");
+        linked.setChildren(topicGraph.createListOfAtoms(a, b, c, d));
+
+        GraphChanges changes = new GraphChanges();
+        ordinal.replaceChildren(Arrays.asList(a, c, b, d), changes);
+        assertEquals(0, changes.getVerticesTouched());
+        assertEquals(1, changes.getEdgesChanged());
+        assertEquals(1, changes.getEdgesTouched());
+
+        changes = new GraphChanges();
+        linked.replaceChildren(Arrays.asList(a, c, b, d), changes);
+        assertEquals(0, changes.getVerticesTouched());
+        assertEquals(3, changes.getEdgesCreated());
+        assertEquals(3, changes.getEdgesRemoved());
+
+        changes = new GraphChanges();
+        linked.replaceChildren(Arrays.asList(a, c, b, d), changes);
+        assertEquals(0, changes.getVerticesTouched());
+        assertEquals(0, changes.getEdgesTouched());
+
+        changes = new GraphChanges();
+        linked.replaceChildren(Arrays.asList(a, c, d), changes);
+        // the node of b is removed together with its first, rest and incoming rest edges
+        assertEquals(1, changes.getVerticesRemoved());
+        assertEquals(1, changes.getEdgesCreated());
+        assertEquals(3, changes.getEdgesRemoved());
+        assertEquals(Arrays.asList(a, c, d), EntityList.toJavaList(linked.getChildren()));
+    }
+
+    @Test
+    public void repeatedInsertionsAtOnePositionExhaustTheGap() throws Exception {
+        Atom parent = createAtom("parent");
+        Atom first = createAtom("first"), last = createAtom("last");
+        parent.addChildAt(first, 0);
+        parent.addChildAt(last, 1);
+
+        List<Atom> expected = new LinkedList<>(Arrays.asList(first, last));
+        for (int i = 0; i < 40; i++) {
+            Atom child = createAtom("child #" + i);
+            parent.addChildAt(child, 1);
+            expected.add(1, child);
+        }
+
+        assertEquals(expected, EntityList.toJavaList(parent.getChildren()));
+    }
+
+    @Test
+    public void listsCanBeTraversedInBothDirections() throws Exception {
+        Atom parent = createAtom("parent");
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c");
+        parent.setChildren(topicGraph.createListOfAtoms(a, b, c));
+
+        EntityList<Atom> head = parent.getChildren();
+        EntityList<Atom> tail = head.getRest().getRest();
+        assertEquals(c, tail.getFirst());
+        assertNull(tail.getRest());
+        assertEquals(b, tail.getRestOf().getFirst());
+        assertEquals(a, tail.getRestOf().getRestOf().getFirst());
+        assertNull(head.getRestOf());
+        assertSame(parent, parent.getSubject(head));
+        assertNull(parent.getSubject(tail));
+    }
+
+    @Test
+    public void listNodesCanBeChangedInEitherStorage() throws Exception {
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c"), d = createAtom("d");
+        Atom ordinal = createAtom("ordinal");
+        ordinal.setChildren(topicGraph.createListOfAtoms(a, b, c));
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom linked = createAtom("linked");
+        linked.setChildren(topicGraph.createListOfAtoms(a, b, c));
+
+        for (Atom parent : Arrays.asList(ordinal, linked)) {
+            EntityList<Atom> head = parent.getChildren();
+            head.getRest().setFirst(d);
+            assertEquals(Arrays.asList(a, d, c), EntityList.toJavaList(parent.getChildren()));
+            assertEquals(Arrays.asList(a, d, c), EntityList.toJavaList(head));
+
+            // unlink the second node
+            head.setRest(head.getRest().getRest());
+            assertEquals(Arrays.asList(a, c), EntityList.toJavaList(parent.getChildren()));
+        }
+    }
+
+    @Test
+    public void createdListsAreMutableAndOwnedByTheirAtom() throws Exception {
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c");
+        Atom parent = createAtom("parent");
+        EntityList<Atom> list = topicGraph.createListOfAtoms(a, b);
+        list.getRest().setRest(topicGraph.createListOfAtoms(c));
+        list.setFirst(c);
+        assertEquals(Arrays.asList(c, b, c), EntityList.toJavaList(list));
+
+        parent.setChildren(list);
+        assertSame(parent, parent.getSubject(list));
+        list.getRest().setRest(null);
+        assertEquals(Arrays.asList(c, b), EntityList.toJavaList(parent.getChildren()));
+
+        String id = b.getId();
+        list.getRest().destroy();
+        assertEquals(Arrays.asList(c), EntityList.toJavaList(parent.getChildren()));
+        assertFalse(topicGraph.getAtomById(id).isPresent());
+    }
+
+    @Test
+    public void parentsAreFoundInEitherStorage() throws Exception {
+        Atom child = createAtom("child");
+        Atom ordinalParent = createAtom("ordinal parent");
+        ordinalParent.setChildren(topicGraph.createListOfAtoms(createAtom("sibling"), child));
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom linkedParent = createAtom("linked parent");
+        linkedParent.setChildren(topicGraph.createListOfAtoms(child));
+
+        List<Atom> parents = new LinkedList<>();
+        for (EntityList<Atom> list : child.getFirstOf()) {
+            EntityList<Atom> head = list;
+            while (null != head.getRestOf()) {
+                head = head.getRestOf();
+            }
+            parents.add(child.getSubject(head));
+        }
+
+        assertEquals(2, parents.size());
+        assertTrue(parents.contains(ordinalParent));
+        assertTrue(parents.contains(linkedParent));
+    }
+
+    @Test
+    public void childrenKeepTheirStorageWhenReplaced() throws Exception {
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom parent = createAtom("parent");
+        Atom a = createAtom("a"), b = createAtom("b");
+        parent.setChildren(topicGraph.createListOfAtoms(a));
+
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.ORDINAL);
+        parent.setChildren(topicGraph.createListOfAtoms(b, a));
+        assertEquals(Arrays.asList(b, a), EntityList.toJavaList(parent.getChildren()));
+        assertTrue(parent.getChildren() instanceof PGEntityList);
+    }
+
+    @Test
+    public void migrationPreservesOrderAndRemovesListVertices() throws Exception {
+        pg.setChildListStorage(PGTopicGraph.ChildListStorage.LINKED);
+        Atom parent = createAtom("parent");
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c");
+        parent.setChildren(topicGraph.createListOfAtoms(a, b, c));
+        a.setChildren(topicGraph.createListOfAtoms(c));
+        assertEquals(3 + 1, countListVertices());
+
+        assertEquals(2, pg.migrateChildLists(PGTopicGraph.ChildListStorage.ORDINAL));
+        assertEquals(0, countListVertices());
+        assertEquals(Arrays.asList(a, b, c), EntityList.toJavaList(parent.getChildren()));
+        assertEquals(Arrays.asList(c), EntityList.toJavaList(a.getChildren()));
+        assertEquals(PGTopicGraph.ChildListStorage.ORDINAL, pg.getChildListStorage());
+
+        assertEquals(2, pg.migrateChildLists(PGTopicGraph.ChildListStorage.LINKED));
+        assertEquals(3 + 1, countListVertices());
+        assertEquals(Arrays.asList(a, b, c), EntityList.toJavaList(parent.getChildren()));
+        assertEquals(0, pg.migrateChildLists(PGTopicGraph.ChildListStorage.LINKED));
+    }
+
+    private long countListVertices() {
+        return graph.traversal().V().hasLabel(SemanticSynchrony.VertexLabels.LIST).count().next();
+    }
+}
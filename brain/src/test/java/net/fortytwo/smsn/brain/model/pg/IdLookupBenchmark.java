@@ -0,0 +1,72 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Iterator;
+
+/**
+ * Compares the throughput of id lookups through the TinkerGraph id index with that of
+ * an equivalent Gremlin traversal, which is how ids were previously looked up.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IdLookupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int numberOfAtoms;
+
+    private TinkerGraphWrapper wrapper;
+    private String[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        wrapper = new TinkerGraphWrapper(TinkerGraph.open());
+        PGTopicGraph topicGraph = new PGTopicGraph(wrapper);
+
+        ids = new String[numberOfAtoms];
+        for (int i = 0; i < numberOfAtoms; i++) {
+            Atom atom = topicGraph.createAtomWithProperties(Filter.noFilter(), null);
+            atom.setTitle("atom #" + i);
+            ids[i] = atom.getId();
+        }
+    }
+
+    @Benchmark
+    public Vertex indexLookup() {
+        return wrapper.getVertexById(nextId());
+    }
+
+    @Benchmark
+    public Vertex traversalLookup() {
+        Iterator<Vertex> vertices = wrapper.getGraph().traversal().V().has(SemanticSynchrony.PropertyKeys.ID_V, nextId());
+        return vertices.hasNext() ? vertices.next() : null;
+    }
+
+    private String nextId() {
+        next = (next + 1) % ids.length;
+        return ids[next];
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IdLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InvertedIndexTest {
+    private InvertedIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new InvertedIndex<>();
+        index.add("arthur", "Arthur Dent");
+        index.add("flyer", "Random Frequent Flyer Dent");
+        index.add("towel", "Arthur's towel, a towel of great renown");
+    }
+
+    @Test
+    public void rarerTermsScoreHigher() {
+        Map<String, Float> results = index.search("Arthur OR Flyer");
+        assertEquals(3, results.size());
+        assertTrue(results.get("flyer") > results.get("towel"));
+    }
+
+    @Test
+    public void shorterDocumentsScoreHigher() {
+        Map<String, Float> results = index.search("dent");
+        assertEquals(2, results.size());
+        assertTrue(results.get("arthur") > results.get("flyer"));
+    }
+
+    @Test
+    public void repeatedTermsScoreHigher() {
+        index.add("towels", "towel towel towel");
+        Map<String, Float> results = index.search("towel");
+        assertTrue(results.get("towels") > results.get("towel"));
+    }
+
+    @Test
+    public void requiredAndProhibitedTermsAreRespected() {
+        assertEquals(1, index.search("+arthur +dent").size());
+        assertEquals(1, index.search("dent -arthur").size());
+        // as in Lucene, OR does not undo the AND which precedes it
+        assertEquals(1, index.search("arthur AND Dent OR towel").size());
+    }
+
+    @Test
+    public void phrasesMustBeContiguous() {
+        assertEquals(1, index.search("\"arthur dent\"").size());
+        assertEquals(0, index.search("\"dent arthur\"").size());
+        assertEquals(1, index.search("\"great renown\"").size());
+    }
+
+    @Test
+    public void wildcardsAreExpanded() {
+        assertEquals(2, index.search("art*").size());
+        assertEquals(2, index.search("*ent").size());
+        assertEquals(1, index.search("tow?l").size());
+    }
+
+    @Test
+    public void updatedAndRemovedDocumentsAreReindexed() {
+        index.add("arthur", "Arthur Philip Dent");
+        assertEquals(1, index.search("philip").size());
+
+        index.remove("arthur");
+        assertEquals(0, index.search("philip").size());
+        assertEquals(1, index.search("dent").size());
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,227 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MutationJournalTest extends BrainTestBase {
+
+    private File journalFile;
+    private MutationJournal journal;
+
+    @Override
+    protected TopicGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        journalFile = new File(createTempDirectory(), "mutations.journal");
+        journal = new MutationJournal(journalFile);
+        ((PGTopicGraph) topicGraph).setJournal(journal);
+    }
+
+    @Test
+    public void committedChangesAreReplayed() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        arthur.setSource(DefaultSources.PUBLIC);
+        arthur.setText("an ordinary Earthman");
+        ford.setAlias("http://example.org/ford");
+        ford.setPriority(0.5f);
+        arthur.addChildAt(ford, 0);
+        arthur.addChildAt(zaphod, 1);
+        topicGraph.commit();
+        long afterFirst = journal.getPosition();
+        assertTrue(afterFirst > 0);
+
+        // a transaction without changes adds nothing to the journal
+        topicGraph.commit();
+        assertEquals(afterFirst, journal.getPosition());
+
+        arthur.setText(null);
+        arthur.deleteChildAt(0);
+        ford.setShortcut("fp");
+        ford.addChildAt(arthur, 0);
+        arthur.deleteChildAt(0);
+        zaphod.destroy();
+        topicGraph.commit();
+
+        TopicGraph copy = replayIntoNewGraph();
+        assertSameAtoms(topicGraph, copy);
+        assertFalse(copy.getAtomById(ZAPHOD_ID).isPresent());
+        assertNull(copy.getAtomById(ARTHUR_ID).get().getText());
+
+        // rolled-back changes are not journaled
+        long afterSecond = journal.getPosition();
+        ford.setTitle("Ix");
+        topicGraph.rollback();
+        assertEquals(afterSecond, journal.getPosition());
+        topicGraph.commit();
+        assertEquals(afterSecond, journal.getPosition());
+    }
+
+    @Test
+    public void failedCommitsAreNotJournaled() throws Exception {
+        PGTopicGraph failing = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()) {
+            @Override
+            public void commit() {
+                throw new IllegalStateException("commit failed");
+            }
+        });
+        failing.setJournal(journal);
+        failing.createAtom(ARTHUR_ID).setTitle("Arthur Dent");
+        try {
+            failing.commit();
+            fail("commit should have failed");
+        } catch (IllegalStateException e) {
+            assertEquals("commit failed", e.getMessage());
+        }
+        assertEquals(0, journal.getPosition());
+        assertEquals(0, journalFile.length());
+    }
+
+    @Test
+    public void committedTransactionWhichCannotBeJournaledIsReported() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        journal.close();
+        try {
+            topicGraph.commit();
+            fail("commit should have reported the journal failure");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // the graph cannot be rolled back, and is not made to diverge from what has been committed
+        assertEquals("Arthur Dent", arthur.getTitle());
+        assertEquals("Arthur Dent", topicGraph.getAtomById(ARTHUR_ID).get().getTitle());
+        assertEquals(0, journal.getPosition());
+    }
+
+    @Test
+    public void incompleteEntryIsDiscarded() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        topicGraph.commit();
+        long afterFirst = journal.getPosition();
+        arthur.setTitle("Arthur Philip Dent");
+        topicGraph.commit();
+        journal.close();
+
+        // as if the process had crashed in the middle of the last write
+        try (RandomAccessFile f = new RandomAccessFile(journalFile, "rw")) {
+            f.setLength(f.length() - 3);
+        }
+
+        MutationJournal reopened = new MutationJournal(journalFile);
+        TopicGraph copy = createGraph();
+        assertEquals(1, reopened.replay(copy));
+        assertEquals("Arthur Dent", copy.getAtomById(ARTHUR_ID).get().getTitle());
+        assertEquals(afterFirst, reopened.getPosition());
+        assertEquals(afterFirst, journalFile.length());
+        reopened.close();
+    }
+
+    @Test
+    public void truncationKeepsLaterEntries() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        topicGraph.commit();
+        long checkpoint = journal.getPosition();
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        arthur.addChildAt(ford, 0);
+        topicGraph.commit();
+
+        journal.truncate(checkpoint);
+        TopicGraph copy = replayIntoNewGraph();
+
+        // arthur's earlier creation is gone from the journal, but its later state is not
+        assertEquals(2, countAtoms(copy));
+        assertSameAtoms(topicGraph, copy);
+
+        journal.truncate(journal.getPosition());
+        assertEquals(0, journalFile.length());
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        zaphod.setWeight(0.75f);
+        topicGraph.commit();
+        copy = replayIntoNewGraph();
+        assertEquals(1, countAtoms(copy));
+        assertEquals(0.75f, copy.getAtomById(ZAPHOD_ID).get().getWeight(), 0f);
+    }
+
+    @Test
+    public void changedIdsAreReadFromPosition() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        arthur.addChildAt(ford, 0);
+        topicGraph.commit();
+        long afterFirst = journal.getPosition();
+
+        ford.setAlias("http://example.org/ford");
+        ford.addChildAt(zaphod, 0);
+        topicGraph.commit();
+        zaphod.destroy();
+        topicGraph.commit();
+
+        Set<String> ids = journal.getChangedIds(afterFirst);
+        assertTrue(ids.contains(FORD_ID));
+        assertTrue(ids.contains(ZAPHOD_ID));
+        assertFalse(ids.contains(ARTHUR_ID));
+        assertEquals(3, journal.getChangedIds(0).size());
+        assertTrue(journal.getChangedIds(journal.getPosition()).isEmpty());
+    }
+
+    private TopicGraph createGraph() {
+        return new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+    }
+
+    private TopicGraph replayIntoNewGraph() throws IOException {
+        TopicGraph copy = createGraph();
+        try (MutationJournal reopened = new MutationJournal(journalFile)) {
+            reopened.replay(copy);
+        }
+        return copy;
+    }
+
+    private void assertSameAtoms(final TopicGraph expected, final TopicGraph actual) {
+        assertEquals(countAtoms(expected), countAtoms(actual));
+        for (Atom e : expected.getAllAtoms()) {
+            Atom a = actual.getAtomById(e.getId()).get();
+            assertEquals(e.getTitle(), a.getTitle());
+            assertEquals(e.getText(), a.getText());
+            assertEquals(e.getAlias(), a.getAlias());
+            assertEquals(e.getShortcut(), a.getShortcut());
+            assertEquals(e.getSource(), a.getSource());
+            assertEquals(e.getWeight(), a.getWeight());
+            assertEquals(e.getPriority(), a.getPriority());
+            assertEquals(e.getCreated(), a.getCreated());
+            assertEquals(idsOf(e.getChildren()), idsOf(a.getChildren()));
+        }
+    }
+
+    private List<String> idsOf(final EntityList<Atom> children) {
+        List<String> ids = new ArrayList<>();
+        for (Atom child : EntityList.toJavaList(children)) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+}
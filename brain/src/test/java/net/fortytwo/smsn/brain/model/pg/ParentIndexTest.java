@@ -0,0 +1,155 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.query.ViewStyle;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParentIndexTest extends BrainTestBase {
+
+    private final ViewStyle backward = ViewStyle.Basic.Backward.getStyle();
+
+    private Atom arthur, ford, zaphod, trillian;
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        ford = createAtom(FORD_ID, "Ford Prefect");
+        zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        trillian = createAtom("Trillian");
+    }
+
+    @Test
+    public void parentsAreFoundAndKeptUpToDate() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(zaphod, arthur));
+        zaphod.addChildAt(arthur, 0);
+        assertEquals(Arrays.asList(ford, zaphod), parentsOf(arthur));
+        assertEquals(2, arthur.getNumberOfParents());
+
+        // the parents of arthur are now memoized, and must be maintained
+        trillian.addChildAt(arthur, 0);
+        assertEquals(Arrays.asList(ford, zaphod, trillian), parentsOf(arthur));
+        zaphod.deleteChildAt(0);
+        assertEquals(Arrays.asList(ford, trillian), parentsOf(arthur));
+        ford.setChildren(topicGraph.createListOfAtoms(zaphod));
+        assertEquals(Collections.singletonList(trillian), parentsOf(arthur));
+        assertEquals(Collections.singletonList(ford), parentsOf(zaphod));
+        trillian.destroy();
+        assertEquals(Collections.emptyList(), parentsOf(arthur));
+        assertEquals(0, arthur.getNumberOfParents());
+    }
+
+    @Test
+    public void repeatedChildrenHaveRepeatedParents() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(arthur, zaphod, arthur));
+        assertEquals(Arrays.asList(ford, ford), parentsOf(arthur));
+
+        ford.deleteChildAt(0);
+        assertEquals(Collections.singletonList(ford), parentsOf(arthur));
+    }
+
+    @Test
+    public void parentsAreFoundInOrdinalStorage() throws Exception {
+        ((PGTopicGraph) topicGraph).setChildListStorage(PGTopicGraph.ChildListStorage.ORDINAL);
+        ford.setChildren(topicGraph.createListOfAtoms(zaphod, arthur));
+        assertEquals(Collections.singletonList(ford), parentsOf(arthur));
+
+        zaphod.addChildAt(arthur, 0);
+        ford.deleteChildAt(1);
+        assertEquals(Collections.singletonList(zaphod), parentsOf(arthur));
+    }
+
+    @Test
+    public void parentsAreCountedInViews() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(arthur));
+        zaphod.setChildren(topicGraph.createListOfAtoms(arthur));
+
+        Note view = queries.view(arthur, 1, filter, backward);
+        assertEquals(2, view.getChildren().size());
+        assertEquals(2, (int) view.getNumberOfChildren());
+        assertEquals(0, (int) view.getNumberOfParents());
+    }
+
+    @Test
+    public void rootAndIsolatedAtomsAreFound() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(arthur));
+
+        List<String> roots = idsOf(queries.findRootAtoms(filter, viewStyle, 1));
+        assertEquals(3, roots.size());
+        assertTrue(roots.containsAll(Arrays.asList(FORD_ID, ZAPHOD_ID, trillian.getId())));
+
+        List<String> isolated = idsOf(queries.findIsolatedAtoms(filter));
+        assertEquals(2, isolated.size());
+        assertTrue(isolated.containsAll(Arrays.asList(ZAPHOD_ID, trillian.getId())));
+    }
+
+    @Test
+    public void rootAndIsolatedAtomsAreKeptUpToDate() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(arthur));
+        topicGraph.commit();
+        assertEquals(3, idsOf(queries.findRootAtoms(filter, viewStyle, 1)).size());
+
+        // changes are seen both before and after they are committed
+        ford.deleteChildAt(0);
+        assertEquals(4, idsOf(queries.findRootAtoms(filter, viewStyle, 1)).size());
+        assertEquals(4, idsOf(queries.findIsolatedAtoms(filter)).size());
+        topicGraph.commit();
+        assertEquals(4, idsOf(queries.findRootAtoms(filter, viewStyle, 1)).size());
+
+        zaphod.addChildAt(trillian, 0);
+        trillian.addChildAt(arthur, 0);
+        topicGraph.commit();
+        List<String> isolated = idsOf(queries.findIsolatedAtoms(filter));
+        assertEquals(Collections.singletonList(FORD_ID), isolated);
+        List<String> leaves = idsOf(queries.findRootAtoms(filter, backward, 1));
+        assertEquals(2, leaves.size());
+        assertTrue(leaves.containsAll(Arrays.asList(FORD_ID, ARTHUR_ID)));
+
+        ford.destroy();
+        topicGraph.commit();
+        assertEquals(Collections.singletonList(ZAPHOD_ID), idsOf(queries.findRootAtoms(filter, viewStyle, 1)));
+        assertEquals(Collections.emptyList(), idsOf(queries.findIsolatedAtoms(filter)));
+    }
+
+    @Test
+    public void rollbackClearsIndex() throws Exception {
+        ford.setChildren(topicGraph.createListOfAtoms(arthur));
+        assertEquals(Collections.singletonList(ford), parentsOf(arthur));
+        ParentIndex index = ((PGTopicGraph) topicGraph).getParentIndex();
+        assertTrue(index.size() > 0);
+
+        topicGraph.rollback();
+        assertEquals(0, index.size());
+    }
+
+    private List<Atom> parentsOf(final Atom child) {
+        List<Atom> parents = new LinkedList<>();
+        backward.getLinked(child, filter).forEach(parents::add);
+        return parents;
+    }
+
+    private List<String> idsOf(final Note note) {
+        List<String> ids = new LinkedList<>();
+        for (Note child : note.getChildren()) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PropertySnapshotTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void oneHandleIsUsedPerVertexPerTransaction() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+
+        assertSame(arthur, topicGraph.getAtomById(ARTHUR_ID).get());
+
+        topicGraph.commit();
+        assertNotSame(arthur, topicGraph.getAtomById(ARTHUR_ID).get());
+    }
+
+    @Test
+    public void repeatedReadsAreServedFromSnapshot() throws Exception {
+        PGTopicGraph pg = (PGTopicGraph) topicGraph;
+        createAtom(ARTHUR_ID, "Arthur Dent");
+        topicGraph.commit();
+
+        Atom arthur = topicGraph.getAtomById(ARTHUR_ID).get();
+        long hits = pg.getSnapshotHits(), misses = pg.getSnapshotMisses();
+        arthur.getTitle();
+        arthur.getWeight();
+        arthur.getSource();
+        arthur.getCreated();
+        arthur.getPriority();
+        assertEquals(misses + 1, pg.getSnapshotMisses());
+        assertEquals(hits + 4, pg.getSnapshotHits());
+    }
+
+    @Test
+    public void settersInvalidateSnapshots() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        assertEquals("Ford Prefect", ford.getTitle());
+
+        arthur.setTitle("Arthur Philip Dent");
+        arthur.setWeight(0.75f);
+        assertEquals("Arthur Philip Dent", arthur.getTitle());
+        assertEquals(0.75f, arthur.getWeight(), 0f);
+
+        // a change made through another handle is also visible
+        Atom other = ((PGTopicGraph) topicGraph).asAtom(((PGAtom) ford).asVertex());
+        topicGraph.commit();
+        Atom fresh = topicGraph.getAtomById(FORD_ID).get();
+        assertNotSame(other, fresh);
+        fresh.setTitle("Ix");
+        assertEquals("Ix", other.getTitle());
+        assertTrue(((PGTopicGraph) topicGraph).getSnapshotMisses() > 0);
+    }
+
+    @Test
+    public void onlyTransactionsWithChangesInvalidateSnapshots() throws Exception {
+        PGTopicGraph pg = (PGTopicGraph) topicGraph;
+        createAtom(ARTHUR_ID, "Arthur Dent");
+        topicGraph.commit();
+
+        // read-only transactions, committed or rolled back, leave the snapshots of other threads valid
+        long version = pg.getPropertyVersion();
+        topicGraph.getAtomById(ARTHUR_ID).get().getTitle();
+        topicGraph.commit();
+        topicGraph.getAtomById(ARTHUR_ID).get().getTitle();
+        topicGraph.rollback();
+        assertEquals(version, pg.getPropertyVersion());
+
+        // a rolled-back change may already have been read
+        topicGraph.getAtomById(ARTHUR_ID).get().setTitle("Arthur Philip Dent");
+        version = pg.getPropertyVersion();
+        topicGraph.rollback();
+        assertTrue(pg.getPropertyVersion() > version);
+    }
+}
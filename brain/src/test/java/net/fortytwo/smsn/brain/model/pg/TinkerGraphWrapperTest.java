@@ -0,0 +1,54 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TinkerGraphWrapperTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void valuesChangedOutsideTheWrapperAreSearchedByTheirCurrentTerms() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        createAtom(FORD_ID, "Ford Prefect");
+        topicGraph.commit();
+
+        Vertex vertex = ((PGAtom) arthur).asVertex();
+        vertex.property(SemanticSynchrony.PropertyKeys.TITLE, "Zaphod Beeblebrox");
+        assertFalse(graphWrapper.getVerticesByTitle("arthur").hasNext());
+        // the stale entry found by the last search has been re-indexed with the current value
+        Iterator<Sortable<Vertex, Float>> results = graphWrapper.getVerticesByTitle("zaphod");
+        assertSame(vertex, results.next().getEntity());
+        assertFalse(results.hasNext());
+
+        vertex.remove();
+        assertFalse(graphWrapper.getVerticesByTitle("zaphod").hasNext());
+        assertTrue(graphWrapper.getVerticesByTitle("ford").hasNext());
+    }
+
+    @Test
+    public void idsChangedOutsideTheWrapperAreFoundInTheGraphIndex() throws Exception {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        topicGraph.commit();
+        assertSame(((PGAtom) arthur).asVertex(), graphWrapper.getVertexById(ARTHUR_ID));
+
+        Vertex vertex = ((PGAtom) arthur).asVertex();
+        vertex.property(SemanticSynchrony.PropertyKeys.ID_V, FORD_ID);
+        assertNull(graphWrapper.getVertexById(ARTHUR_ID));
+        assertSame(vertex, graphWrapper.getVertexById(FORD_ID));
+    }
+}
@@ -0,0 +1,88 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full class inference step over the synthetic graph of people and notes used in the brain tests,
+ * with the atoms scored by different numbers of threads.
+ * Run with <code>main</code> from the test classpath, which also prints the speedup for each number of threads.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InferenceBenchmark {
+
+    @Param({"100000"})
+    public int numberOfAtoms;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private KnowledgeBase knowledgeBase;
+
+    @Setup
+    public void setUp() throws Exception {
+        TopicGraph topicGraph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        BrainTestBase.createSyntheticGraph(topicGraph, numberOfAtoms, new Random(42));
+
+        knowledgeBase = new KnowledgeBase(topicGraph);
+        knowledgeBase.addDefaultClasses();
+        knowledgeBase.setParallelism(threads);
+        // the first step classifies atoms from scratch; later steps re-classify them
+        knowledgeBase.inferClasses(null, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        knowledgeBase.setParallelism(1);
+    }
+
+    @Benchmark
+    public long inferClasses() throws Exception {
+        knowledgeBase.inferClasses(null, null);
+        return knowledgeBase.getVersion();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(InferenceBenchmark.class.getSimpleName()).build()).run();
+
+        double sequential = 0;
+        for (RunResult result : results) {
+            if ("1".equals(result.getParams().getParam("threads"))) {
+                sequential = result.getPrimaryResult().getScore();
+            }
+        }
+        for (RunResult result : results) {
+            System.out.println(result.getParams().getParam("threads") + " thread(s): speedup of "
+                    + String.format("%.2f", sequential / result.getPrimaryResult().getScore()));
+        }
+    }
+}
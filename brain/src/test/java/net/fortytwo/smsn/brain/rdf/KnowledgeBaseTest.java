@@ -7,6 +7,8 @@ import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
 import net.fortytwo.smsn.brain.query.ViewStyle;
 import net.fortytwo.smsn.brain.rdf.classes.AKAReference;
 import net.fortytwo.smsn.brain.rdf.classes.BibtexEntry;
@@ -28,6 +30,7 @@ import net.fortytwo.smsn.brain.rdf.classes.collections.GenericCollection;
 import net.fortytwo.smsn.brain.rdf.classes.collections.PersonCollection;
 import net.fortytwo.smsn.rdf.vocab.FOAF;
 import net.fortytwo.smsn.rdf.vocab.SmSnVocabulary;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.openrdf.model.IRI;
@@ -48,18 +51,33 @@ import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.repository.util.RDFInserter;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.StatementCollector;
 import org.openrdf.sail.Sail;
 import org.openrdf.sail.memory.MemoryStore;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -481,6 +499,316 @@ public class KnowledgeBaseTest extends BrainTestBase {
         }
     }
 
+    @Test
+    public void incrementalInferenceReevaluatesOnlyChangedAtoms() throws Exception {
+        Atom people = createAtom("some people I know");
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom arthurPage = createAtom("Arthur Dent (web page)");
+        arthurPage.setAlias("http://example.org/arthur");
+        people.addChildAt(arthur, 0);
+        people.addChildAt(ford, 1);
+        arthur.addChildAt(arthurPage, 0);
+        for (int i = 0; i < 20; i++) {
+            createAtom("unrelated note #" + i);
+        }
+        topicGraph.commit();
+        topicGraph.begin();
+
+        KnowledgeBase kb = new KnowledgeBase(topicGraph);
+        kb.addDefaultClasses();
+        // the first step classifies all atoms, then settles
+        List<Integer> counts = kb.inferClassesIncrementally();
+        assertEquals(countAtoms(), (int) counts.get(0));
+        assertTrue(kb.inferClassesIncrementally().isEmpty());
+        assertTrue(kb.getClassInfo(arthur).get(0).isNonTrivial());
+
+        Atom fordPage = createAtom("Ford Prefect (web page)");
+        fordPage.setAlias("http://example.org/ford");
+        ford.addChildAt(fordPage, 0);
+        topicGraph.commit();
+        topicGraph.begin();
+
+        // only the changed atoms, and then those which depend on them, are re-evaluated
+        counts = kb.inferClassesIncrementally();
+        assertEquals(2, (int) counts.get(0));
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        assertTrue(total < countAtoms() / 2);
+        assertEquals(counts, kb.getLastPassCounts());
+        assertTrue(kb.getClassInfo(ford).get(0).isNonTrivial());
+
+        // the results are those of repeated inference over all atoms
+        KnowledgeBase reference = new KnowledgeBase(topicGraph);
+        reference.addDefaultClasses();
+        for (int i = 0; i < 4; i++) {
+            reference.inferClasses(null, null);
+        }
+        for (Atom a : topicGraph.getAllAtoms()) {
+            assertEquals(describeClasses(a, reference), describeClasses(a, kb));
+        }
+    }
+
+    @Test
+    public void classificationListenersAreNotifiedOnlyOfChanges() throws Exception {
+        Atom people = createAtom("some people I know");
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        people.addChildAt(arthur, 0);
+        people.addChildAt(ford, 1);
+        for (int i = 0; i < 20; i++) {
+            createAtom("unrelated note #" + i);
+        }
+        topicGraph.commit();
+        topicGraph.begin();
+
+        KnowledgeBase kb = new KnowledgeBase(topicGraph);
+        kb.addDefaultClasses();
+        List<Collection<String>> notifications = new LinkedList<>();
+        kb.addClassificationListener(notifications::add);
+
+        kb.inferClassesIncrementally();
+        assertEquals(1, notifications.size());
+        assertTrue(notifications.get(0).contains(ARTHUR_ID));
+        long version = kb.getVersion();
+
+        // a step which changes no classification is not published
+        kb.inferClasses(null, null);
+        assertEquals(1, notifications.size());
+        assertEquals(version, kb.getVersion());
+
+        Atom fordPage = createAtom("Ford Prefect (web page)");
+        fordPage.setAlias("http://example.org/ford");
+        ford.addChildAt(fordPage, 0);
+        topicGraph.commit();
+        topicGraph.begin();
+
+        // only the atoms whose classes or scores have changed are published
+        kb.inferClassesIncrementally();
+        assertEquals(2, notifications.size());
+        assertTrue(notifications.get(1).contains(FORD_ID));
+        assertFalse(notifications.get(1).contains(ARTHUR_ID));
+        assertTrue(kb.getVersion() > version);
+    }
+
+    @Test
+    public void parallelInferenceIsIndependentOfNumberOfThreads() throws Exception {
+        // the workers read the Neo4j graph of the test, each in a transaction of its own
+        createSyntheticGraph(topicGraph, 2000, new Random(42));
+
+        KnowledgeBase twoThreads = new KnowledgeBase(topicGraph);
+        twoThreads.addDefaultClasses();
+        twoThreads.setParallelism(2);
+        KnowledgeBase fourThreads = new KnowledgeBase(topicGraph);
+        fourThreads.addDefaultClasses();
+        fourThreads.setParallelism(4);
+        assertEquals(4, fourThreads.getParallelism());
+
+        for (int i = 0; i < 3; i++) {
+            twoThreads.inferClasses(null, null);
+            fourThreads.inferClasses(null, null);
+            for (Atom a : topicGraph.getAllAtoms()) {
+                assertEquals(describeClasses(a, twoThreads), describeClasses(a, fourThreads));
+            }
+        }
+
+        StatementCollector twoThreadStatements = new StatementCollector();
+        twoThreads.inferClasses(twoThreadStatements, null);
+        StatementCollector fourThreadStatements = new StatementCollector();
+        fourThreads.inferClasses(fourThreadStatements, null);
+        assertTrue(twoThreadStatements.getStatements().size() > 0);
+        assertEquals(new HashSet<>(twoThreadStatements.getStatements()),
+                new HashSet<>(fourThreadStatements.getStatements()));
+        twoThreads.setParallelism(1);
+        fourThreads.setParallelism(1);
+    }
+
+    @Test
+    public void parallelInferenceIsIdenticalToSequentialInference() throws Exception {
+        TopicGraph graph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        createSyntheticGraph(graph, 2000, new Random(42));
+
+        KnowledgeBase sequential = new KnowledgeBase(graph);
+        sequential.addDefaultClasses();
+        KnowledgeBase parallel = new KnowledgeBase(graph);
+        parallel.addDefaultClasses();
+        parallel.setParallelism(4);
+
+        // each single pass is identical, not only the classifications on which repeated passes settle
+        for (int i = 0; i < 3; i++) {
+            StatementCollector sequentialStatements = new StatementCollector();
+            sequential.inferClasses(sequentialStatements, null);
+            StatementCollector parallelStatements = new StatementCollector();
+            parallel.inferClasses(parallelStatements, null);
+            for (Atom a : graph.getAllAtoms()) {
+                assertEquals(describeClasses(a, sequential), describeClasses(a, parallel));
+            }
+            assertEquals(new HashSet<>(sequentialStatements.getStatements()),
+                    new HashSet<>(parallelStatements.getStatements()));
+        }
+        parallel.setParallelism(1);
+    }
+
+    @Test
+    public void exportIsStreamedToGzippedChunks() throws Exception {
+        TopicGraph graph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        createSyntheticGraph(graph, 2000, new Random(42));
+        KnowledgeBase kb = new KnowledgeBase(graph);
+        kb.addDefaultClasses();
+        for (int i = 0; i < 3; i++) {
+            kb.inferClasses(null, null);
+        }
+
+        StatementCollector expected = new StatementCollector();
+        kb.inferClasses(expected, null);
+
+        File dir = Files.createTempDirectory("smsn-export").toFile();
+        dir.deleteOnExit();
+        final int chunkSize = 1000;
+        ChunkedRDFWriter writer = new ChunkedRDFWriter(dir, "brain", RDFFormat.NTRIPLES, chunkSize, true);
+        kb.exportRDF(writer, null);
+        assertTrue(writer.getChunks() > 1);
+
+        Set<Statement> actual = new HashSet<>();
+        for (int i = 0; i < writer.getChunks(); i++) {
+            File file = writer.getChunkFile(i);
+            file.deleteOnExit();
+            assertTrue(file.getName().endsWith(".nt.gz"));
+            StatementCollector chunk = new StatementCollector();
+            RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+            parser.setRDFHandler(chunk);
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+                parser.parse(in, "");
+            }
+            if (i < writer.getChunks() - 1) {
+                assertEquals(chunkSize, chunk.getStatements().size());
+            }
+            actual.addAll(chunk.getStatements());
+        }
+        assertEquals(new HashSet<>(expected.getStatements()), actual);
+        assertFalse(writer.getChunkFile(writer.getChunks()).exists());
+    }
+
+    @Test
+    public void duplicateStatementsAreDroppedWithinWindow() throws Exception {
+        Statement a = valueFactory.createStatement(
+                valueFactory.createIRI("http://example.org/a"), RDF.TYPE, FOAF.PERSON);
+        Statement b = valueFactory.createStatement(
+                valueFactory.createIRI("http://example.org/b"), RDF.TYPE, FOAF.PERSON);
+        Statement c = valueFactory.createStatement(
+                valueFactory.createIRI("http://example.org/c"), RDF.TYPE, FOAF.PERSON);
+
+        StatementCollector collector = new StatementCollector();
+        DeduplicatingRDFHandler h = new DeduplicatingRDFHandler(collector, 2);
+        h.startRDF();
+        for (Statement s : new Statement[]{a, a, b, a, c, b, c}) {
+            h.handleStatement(s);
+        }
+        h.endRDF();
+
+        // b falls out of the window once a and c have been seen after it, and is passed on again
+        assertEquals(Arrays.asList(a, b, c, b), new ArrayList<>(collector.getStatements()));
+        assertEquals(3, h.getDuplicates());
+    }
+
+    @Test
+    public void restoredClassificationsAreReclassifiedIncrementally() throws Exception {
+        TopicGraph graph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        createSyntheticGraph(graph, 2000, new Random(42));
+        KnowledgeBase original = new KnowledgeBase(graph);
+        original.addDefaultClasses();
+        for (int i = 0; i < 4; i++) {
+            original.inferClasses(null, null);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeClassifications(bytes);
+        KnowledgeBase restored = new KnowledgeBase(graph);
+        restored.addDefaultClasses();
+        restored.readClassifications(new ByteArrayInputStream(bytes.toByteArray()));
+        restored.setChanges(Collections.emptySet());
+        assertFalse(restored.hasChanges());
+        for (Atom a : graph.getAllAtoms()) {
+            assertEquals(describeClasses(a, original), describeClasses(a, restored));
+        }
+
+        // both knowledge bases see the same change, and re-classify the same atoms in the same way
+        for (Atom a : graph.getAllAtoms()) {
+            if ("Person 0 (web page)".equals(a.getTitle())) {
+                a.setTitle("Person 0 (biography)");
+            }
+        }
+        graph.commit();
+        assertEquals(original.getChanges(), restored.getChanges());
+        List<Integer> counts = original.inferClassesIncrementally();
+        assertTrue(counts.size() > 0 && counts.get(0) < 10);
+        assertEquals(counts, restored.inferClassesIncrementally());
+        for (Atom a : graph.getAllAtoms()) {
+            assertEquals(describeClasses(a, original), describeClasses(a, restored));
+        }
+    }
+
+    @Test
+    public void restoredCollectionMemoriesAreUsedInRdfization() throws Exception {
+        TopicGraph graph = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        createSyntheticGraph(graph, 2000, new Random(42));
+        // the members of a social network collection are rdfized through its memory
+        String prefix = "some people known to ";
+        for (Atom a : graph.getAllAtoms()) {
+            if (a.getTitle().startsWith(prefix)) {
+                a.setTitle(a.getTitle().substring(prefix.length()) + "'s friends");
+            }
+        }
+        graph.commit();
+        KnowledgeBase original = new KnowledgeBase(graph);
+        original.addDefaultClasses();
+        for (int i = 0; i < 4; i++) {
+            original.inferClasses(null, null);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeClassifications(bytes);
+        KnowledgeBase restored = new KnowledgeBase(graph);
+        restored.addDefaultClasses();
+        restored.readClassifications(new ByteArrayInputStream(bytes.toByteArray()));
+
+        // in a parallel step, each person is rdfized using the collection memories of the previous step,
+        // which for the restored knowledge base are those read from the stream
+        original.setParallelism(2);
+        restored.setParallelism(2);
+        StatementCollector originalStatements = new StatementCollector();
+        original.inferClasses(originalStatements, null);
+        StatementCollector restoredStatements = new StatementCollector();
+        restored.inferClasses(restoredStatements, null);
+        original.setParallelism(1);
+        restored.setParallelism(1);
+
+        int knows = 0;
+        for (Statement st : restoredStatements.getStatements()) {
+            if (st.getPredicate().equals(FOAF.KNOWS)) {
+                knows++;
+            }
+        }
+        assertTrue(knows > 0);
+        assertEquals(new HashSet<>(originalStatements.getStatements()),
+                new HashSet<>(restoredStatements.getStatements()));
+    }
+
+    private String describeClasses(final Atom atom, final KnowledgeBase kb) {
+        List<KnowledgeBase.AtomClassEntry> entries = kb.getClassInfo(atom);
+        if (null == entries) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (KnowledgeBase.AtomClassEntry e : entries) {
+            sb.append(e.getInferredClassName()).append(":").append(e.getOutScore())
+                    .append("+").append(e.getInScore()).append(" ");
+        }
+        return sb.toString();
+    }
+
     private void assertClassEquals(final String className, final Atom atom, final KnowledgeBase kb) {
         List<KnowledgeBase.AtomClassEntry> entries = kb.getClassInfo(atom);
         assertTrue(null != entries && entries.size() > 0);
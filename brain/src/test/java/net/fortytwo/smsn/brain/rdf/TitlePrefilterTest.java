@@ -0,0 +1,144 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.rdf.classes.AKAReference;
+import net.fortytwo.smsn.brain.rdf.classes.BibtexEntry;
+import net.fortytwo.smsn.brain.rdf.classes.BibtexReference;
+import net.fortytwo.smsn.brain.rdf.classes.Date;
+import net.fortytwo.smsn.brain.rdf.classes.DatedEvent;
+import net.fortytwo.smsn.brain.rdf.classes.ISBNReference;
+import net.fortytwo.smsn.brain.rdf.classes.LinkedConcept;
+import net.fortytwo.smsn.brain.rdf.classes.Person;
+import net.fortytwo.smsn.brain.rdf.classes.QuotedValue;
+import net.fortytwo.smsn.brain.rdf.classes.RFIDReference;
+import net.fortytwo.smsn.brain.rdf.classes.TODOTask;
+import net.fortytwo.smsn.brain.rdf.classes.Tool;
+import net.fortytwo.smsn.brain.rdf.classes.URLReference;
+import net.fortytwo.smsn.brain.rdf.classes.Usage;
+import net.fortytwo.smsn.brain.rdf.classes.WebPage;
+import net.fortytwo.smsn.brain.rdf.classes.collections.GenericCollection;
+import net.fortytwo.smsn.brain.rdf.classes.collections.PersonCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TitlePrefilterTest {
+
+    private static final String[] TITLES = {
+            "Arthur Dent", "Arthur Dent (web page)", "2017-03-14", "http://example.org/arthur",
+            "aka \"Ix\", \"Ford\"", "\\cite{adams1979hitchhiker}", "@article{...}", "ISBN-13: 978-0345391803",
+            "RFID: 0123 4567 89AB CDEF 0123 4567", "TODO: find a towel", "\"Don't panic\"", "towel usage",
+            "some people I know", "Arthur Dent's stuff", "my stuff", "some books", "the Vogons poetry",
+            "Zaphod's children", "42", "", "\u00e9", "\u00c4rthur Dent", "A\ud83d\ude00", "Arthur Dent\n(web page)"
+    };
+
+    private List<AtomClass> classes;
+    private TitlePrefilter prefilter;
+
+    @Before
+    public void setUp() throws Exception {
+        classes = new ArrayList<>();
+        for (Class<? extends AtomClass> c : Arrays.asList(
+                AKAReference.class, BibtexEntry.class, BibtexReference.class, Date.class, DatedEvent.class,
+                ISBNReference.class, LinkedConcept.class, Person.class, QuotedValue.class, RFIDReference.class,
+                TODOTask.class, Tool.class, URLReference.class, Usage.class, WebPage.class,
+                GenericCollection.class, PersonCollection.class, Person.PersonalStuffCollection.class,
+                Person.SocialNetworkCollection.class)) {
+            classes.add(c.newInstance());
+        }
+        prefilter = new TitlePrefilter(classes);
+    }
+
+    @Test
+    public void everyMatchingClassIsACandidate() throws Exception {
+        for (String title : TITLES) {
+            assertCandidatesIncludeMatches(title);
+            // also try prefixes and suffixes, which match fewer patterns
+            for (int i = 1; i < title.length(); i++) {
+                assertCandidatesIncludeMatches(title.substring(0, i));
+                assertCandidatesIncludeMatches(title.substring(i));
+            }
+        }
+
+        Random random = new Random(42);
+        String alphabet = "Aaz09 -:\"'()\\{}@.sT\u00e9\n";
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertCandidatesIncludeMatches(sb.toString());
+        }
+    }
+
+    @Test
+    public void nonMatchingClassesAreExcluded() throws Exception {
+        List<AtomClass> candidates = prefilter.getCandidates("2017-03-14");
+        assertTrue(candidates.contains(get(Date.class)));
+        assertFalse(candidates.contains(get(Person.class)));
+        assertFalse(candidates.contains(get(WebPage.class)));
+
+        candidates = prefilter.getCandidates("Arthur Dent (web page)");
+        assertTrue(candidates.contains(get(WebPage.class)));
+        assertTrue(candidates.contains(get(Person.class)));
+        assertFalse(candidates.contains(get(Date.class)));
+        assertFalse(candidates.contains(get(Usage.class)));
+        assertFalse(candidates.contains(get(RFIDReference.class)));
+
+        // Person is limited to 50 characters
+        String longTitle = "Arthur Dent, who narrowly escaped the destruction of the Earth";
+        assertFalse(prefilter.getCandidates(longTitle).contains(get(Person.class)));
+
+        // only classes without a value regex are candidates for a missing title
+        assertEquals(Arrays.asList(get(DatedEvent.class)), prefilter.getCandidates(null));
+    }
+
+    @Test
+    public void candidatesAreInTheOriginalOrder() throws Exception {
+        List<AtomClass> candidates = prefilter.getCandidates("Arthur Dent");
+        List<AtomClass> expected = new ArrayList<>(classes);
+        expected.retainAll(candidates);
+        assertEquals(expected, candidates);
+    }
+
+    @Test
+    public void unsupportedRegexesAlwaysMatch() throws Exception {
+        AtomClass caseInsensitive = new SimpleAtomClass(
+                "case-insensitive", Pattern.compile("towel", Pattern.CASE_INSENSITIVE), null, null) {
+        };
+        AtomClass lookahead = new SimpleAtomClass(
+                "lookahead", Pattern.compile("(?=T)[A-Z]+"), null, null) {
+        };
+        TitlePrefilter p = new TitlePrefilter(Arrays.asList(caseInsensitive, lookahead));
+
+        assertEquals(Arrays.asList(caseInsensitive, lookahead), p.getCandidates("42"));
+        assertEquals(Arrays.asList(caseInsensitive, lookahead), p.getCandidates(""));
+    }
+
+    private void assertCandidatesIncludeMatches(final String title) {
+        List<AtomClass> candidates = prefilter.getCandidates(title);
+        for (AtomClass c : classes) {
+            if (null == c.getValueRegex() || c.getValueRegex().matcher(title).matches()) {
+                assertTrue(c.getName() + " should be a candidate for \"" + title + "\"", candidates.contains(c));
+            }
+        }
+    }
+
+    private AtomClass get(final Class<? extends AtomClass> c) {
+        for (AtomClass a : classes) {
+            if (a.getClass() == c) {
+                return a;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+}
@@ -0,0 +1,190 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the diff of two lists of children, as made when a view is saved, with the former quadratic-space LCS.
+ * Each edit script is typical of a save from Brain-mode: a few notes added, deleted or moved in a long list.
+ * As in an update, the lists are linked lists.
+ * Run with <code>main</code> from the test classpath.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ListDiffBenchmark {
+
+    @Param({"100", "1000"})
+    public int size;
+
+    @Param({"append", "delete", "move", "scattered"})
+    public String script;
+
+    private final Comparator<String> cmp = new ListDiff.StringComparator();
+    private final ListDiff.DiffEditor<String> editor = new CountingEditor();
+
+    private List<String> before;
+    private List<String> after;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        before = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            before.add("id" + i);
+        }
+        after = new LinkedList<>(before);
+
+        switch (script) {
+            case "append":
+                for (int i = 0; i < 3; i++) {
+                    after.add("new" + i);
+                }
+                break;
+            case "delete":
+                for (int i = 0; i < 3; i++) {
+                    after.remove(random.nextInt(after.size()));
+                }
+                break;
+            case "move":
+                // a block of notes is cut and pasted elsewhere in the list
+                List<String> block = new LinkedList<>(after.subList(size / 4, size / 4 + 5));
+                after.removeAll(block);
+                after.addAll(3 * size / 4, block);
+                break;
+            case "scattered":
+                for (int i = 0; i < size / 20; i++) {
+                    int position = random.nextInt(after.size());
+                    if (random.nextBoolean()) {
+                        after.add(position, "new" + i);
+                    } else {
+                        after.remove(position);
+                    }
+                }
+                Collections.swap(after, 0, after.size() - 1);
+                break;
+            default:
+                throw new IllegalArgumentException(script);
+        }
+    }
+
+    @Benchmark
+    public ListDiff.DiffEditor<String> myers() {
+        ListDiff.applyDiff(before, after, cmp, editor);
+        return editor;
+    }
+
+    @Benchmark
+    public ListDiff.DiffEditor<String> quadraticLcs() {
+        List<String> lcs = quadraticLongestCommonSubsequence(before, after, cmp);
+        quadraticApplyDiff(before, after, lcs, cmp, editor);
+        return editor;
+    }
+
+    private static class CountingEditor implements ListDiff.DiffEditor<String> {
+        private long edits;
+
+        @Override
+        public void add(int position, String letter) {
+            edits++;
+        }
+
+        @Override
+        public void delete(int position, String letter) {
+            edits++;
+        }
+
+        @Override
+        public void move(int from, int to, String letter) {
+            edits++;
+        }
+    }
+
+    // the former implementation, for comparison
+    private static <T> List<T> quadraticLongestCommonSubsequence(List<T> a, List<T> b, Comparator<T> comp) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+
+        for (int i = 0; i < a.size(); i++)
+            for (int j = 0; j < b.size(); j++)
+                if (0 == comp.compare(a.get(i), b.get(j)))
+                    lengths[i + 1][j + 1] = lengths[i][j] + 1;
+                else
+                    lengths[i + 1][j + 1] =
+                            Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+
+        List<T> result = new LinkedList<>();
+        for (int x = a.size(), y = b.size();
+             x != 0 && y != 0; ) {
+            if (lengths[x][y] == lengths[x - 1][y])
+                x--;
+            else if (lengths[x][y] == lengths[x][y - 1])
+                y--;
+            else {
+                result.add(a.get(x - 1));
+                x--;
+                y--;
+            }
+        }
+
+        Collections.reverse(result);
+
+        return result;
+    }
+
+    private static <T> void quadraticApplyDiff(final List<T> a,
+                                               final List<T> b,
+                                               final List<T> l,
+                                               final Comparator<T> cmp,
+                                               final ListDiff.DiffEditor<T> ed) {
+        int acur = 0;
+        int bcur = 0;
+        int lcur = 0;
+        int ecur = 0;
+
+        while (lcur < l.size()) {
+            if (0 != cmp.compare(l.get(lcur), a.get(acur))) {
+                ed.delete(ecur, a.get(acur));
+                acur++;
+            } else if (0 != cmp.compare(l.get(lcur), b.get(bcur))) {
+                ed.add(ecur, b.get(bcur));
+                bcur++;
+                ecur++;
+            } else {
+                lcur++;
+                acur++;
+                bcur++;
+                ecur++;
+            }
+        }
+
+        for (; acur < a.size(); acur++) {
+            ed.delete(ecur, a.get(acur));
+        }
+        for (; bcur < b.size(); bcur++) {
+            ed.add(ecur, b.get(bcur));
+            ecur++;
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ListDiffBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -237,4 +238,103 @@ public class ListDiffTest {
         assertEquals(5, additions);
         assertEquals(10, removals);
     }
+
+    private int moves;
+
+    private String applyDiffWithMoves(final String before,
+                                      final String after) {
+        additions = 0;
+        removals = 0;
+        moves = 0;
+
+        final List<String> work = new LinkedList<>(ListDiff.toList(before));
+
+        ListDiff.DiffEditor<String> ed = new ListDiff.DiffEditor<String>() {
+            public void add(int position, String letter) {
+                work.add(position, letter);
+                additions++;
+            }
+
+            public void delete(int position, String letter) {
+                work.remove(position);
+                removals++;
+            }
+
+            public void move(int from, int to, String letter) {
+                assertEquals(letter, work.remove(from));
+                work.add(to, letter);
+                moves++;
+            }
+        };
+
+        ListDiff.applyDiff(ListDiff.toList(before), ListDiff.toList(after), cmp, ed);
+
+        return ListDiff.toString(work);
+    }
+
+    @Test
+    public void swapIsASingleMove() throws Exception {
+        assertEquals("...YX..", applyDiffWithMoves("...XY..", "...YX.."));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void reverseIsTwoMoves() throws Exception {
+        assertEquals("...CBA..", applyDiffWithMoves("...ABC..", "...CBA.."));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+        assertEquals(2, moves);
+    }
+
+    @Test
+    public void movesAreCombinedWithAdditionsAndRemovals() throws Exception {
+        assertEquals("bxcdya", applyDiffWithMoves("abcdez", "bxcdya"));
+        assertEquals(2, additions);
+        assertEquals(2, removals);
+        assertEquals(1, moves);
+
+        assertEquals("cab", applyDiffWithMoves("abc", "cab"));
+        assertEquals(1, moves);
+        assertEquals("bca", applyDiffWithMoves("abc", "bca"));
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void randomEditsAreMinimal() throws Exception {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 500; trial++) {
+            String before = randomString(random), after = randomString(random);
+
+            int lcs = findDiff(before, after).length();
+            assertEquals(referenceLcsLength(before, after), lcs);
+            assertEquals(after, applyDiff(before, after, findDiff(before, after)));
+
+            assertEquals(after, applyDiffWithMoves(before, after));
+            assertEquals(before.length() - lcs, removals + moves);
+            assertEquals(after.length() - lcs, additions + moves);
+        }
+    }
+
+    private String randomString(final Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(30);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(6)));
+        }
+        return sb.toString();
+    }
+
+    private int referenceLcsLength(final String a, final String b) {
+        int[][] lengths = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i < a.length(); i++) {
+            for (int j = 0; j < b.length(); j++) {
+                lengths[i + 1][j + 1] = a.charAt(i) == b.charAt(j)
+                        ? lengths[i][j] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[a.length()][b.length()];
+    }
 }
@@ -29,6 +29,7 @@ public class SemanticSynchrony {
 
     public interface EdgeLabels {
         String
+                CHILD = "child",
                 CHILDREN = "children",
                 CONTEXT = "context",
                 FIRST = "first",
@@ -49,6 +50,7 @@ public class SemanticSynchrony {
                 FORMAT = "format",
                 ID_V = "idV",
                 LABEL = "label",
+                ORDINAL = "ordinal",
                 PRIORITY = "priority",
                 SHORTCUT = "shortcut",
                 SOURCE = "source",
@@ -11,6 +11,11 @@ public class Configuration implements Serializable {
     private Integer transactionBufferSize;
     private String thingNamespace = "http://example.org/things/";
     private String brainstream;
+    private String childLists = "linked";
+    private int viewCacheCapacity = 256;
+    private boolean incrementalExport = true;
+    private String journalDirectory;
+    private int inferenceThreads = 1;
 
     private boolean verbose = false;
 
@@ -73,6 +78,46 @@ public class Configuration implements Serializable {
         this.brainstream = brainstream;
     }
 
+    public String getChildLists() {
+        return childLists;
+    }
+
+    public void setChildLists(String childLists) {
+        this.childLists = childLists;
+    }
+
+    public int getViewCacheCapacity() {
+        return viewCacheCapacity;
+    }
+
+    public void setViewCacheCapacity(int viewCacheCapacity) {
+        this.viewCacheCapacity = viewCacheCapacity;
+    }
+
+    public boolean isIncrementalExport() {
+        return incrementalExport;
+    }
+
+    public void setIncrementalExport(boolean incrementalExport) {
+        this.incrementalExport = incrementalExport;
+    }
+
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public int getInferenceThreads() {
+        return inferenceThreads;
+    }
+
+    public void setInferenceThreads(int inferenceThreads) {
+        this.inferenceThreads = inferenceThreads;
+    }
+
     public boolean isVerbose() {
         return verbose;
     }
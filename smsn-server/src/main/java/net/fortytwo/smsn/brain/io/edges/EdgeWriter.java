@@ -24,20 +24,18 @@ public class EdgeWriter extends BrainWriter {
     public void doExport(Context context) throws IOException {
         TopicGraph sourceGraph = context.getTopicGraph();
         PrintStream p = new PrintStream(context.getDestStream());
-        Filter filter = context.getFilter();
+        Filter.Compiled filter = context.getFilter().compile();
 
         p.println("from\tto");
 
-        for (Atom fromAtom : sourceGraph.getAllAtoms()) {
-            if (null != fromAtom && filter.test(fromAtom)) {
-                EntityList<Atom> l = fromAtom.getChildren();
-                while (null != l) {
-                    Atom toAtom = l.getFirst();
-                    if (filter.test(toAtom)) {
-                        printEdge(p, fromAtom, toAtom);
-                    }
-                    l = l.getRest();
+        for (Atom fromAtom : sourceGraph.getAllAtoms(filter)) {
+            EntityList<Atom> l = fromAtom.getChildren();
+            while (null != l) {
+                Atom toAtom = l.getFirst();
+                if (sourceGraph.test(filter, toAtom)) {
+                    printEdge(p, fromAtom, toAtom);
                 }
+                l = l.getRest();
             }
         }
     }
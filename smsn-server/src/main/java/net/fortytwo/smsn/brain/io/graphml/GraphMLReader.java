@@ -26,6 +26,7 @@ public class GraphMLReader extends BrainReader {
             org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLReader r
                     = org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLReader.build().create();
             r.readGraph(context.getSourceStream(), ((PGTopicGraph) context.getTopicGraph()).getPropertyGraph());
+            ((PGTopicGraph) context.getTopicGraph()).notifyOfBulkUpdate();
         } else {
             throw new UnsupportedOperationException("GraphML I/O is not supported for this graph");
         }
@@ -2,9 +2,9 @@ package net.fortytwo.smsn.brain.io.rdf;
 
 import net.fortytwo.smsn.brain.io.BrainWriter;
 import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.brain.rdf.ChunkedRDFWriter;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.sail.SailException;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -14,6 +14,8 @@ import java.util.Map;
 
 public class RDFWriter extends BrainWriter {
 
+    private static final String CHUNK_PREFIX = "brain";
+
     private static final List<Format> formats;
     private static final Map<Format, RDFFormat> rdfFormats;
 
@@ -38,14 +40,27 @@ public class RDFWriter extends BrainWriter {
         return formats;
     }
 
+    @Override
+    public boolean supportsChunkedOutput() {
+        return true;
+    }
+
     @Override
     public void doExport(Context context) throws IOException {
 
         RDFFormat rdfFormat = toRDFFormat(context.getFormat());
 
         try {
-            context.getKnowledgeBase().exportRDF(context.getDestStream(), rdfFormat, context.getFilter());
-        } catch (SailException | RDFHandlerException e) {
+            if (context.getChunkSize() > 0) {
+                createDirectoryIfNotExists(context.getDestDirectory());
+                ChunkedRDFWriter writer = new ChunkedRDFWriter(context.getDestDirectory(), CHUNK_PREFIX,
+                        rdfFormat, context.getChunkSize(), context.isCompressed());
+                context.getKnowledgeBase().exportRDF(writer, context.getFilter());
+                logger.info("wrote " + writer.getChunks() + " file(s) to " + context.getDestDirectory());
+            } else {
+                context.getKnowledgeBase().exportRDF(context.getDestStream(), rdfFormat, context.getFilter());
+            }
+        } catch (RDFHandlerException e) {
             throw new IOException(e);
         }
     }
@@ -7,7 +7,6 @@ import net.fortytwo.smsn.brain.io.wiki.WikiParser;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.entities.Atom;
-import net.fortytwo.smsn.brain.model.entities.EntityList;
 import net.fortytwo.smsn.config.DataSource;
 import org.parboiled.common.Preconditions;
 
@@ -15,27 +14,100 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
+/**
+ * Reads atom files from the directories of all data sources in two phases.
+ * In the first phase, files are parsed on a pool of worker threads, in batches of a bounded number of files,
+ * and the atoms of each batch are created or updated while the next batch is parsed.
+ * An atom may be defined more than once, in which case its definitions are applied in the order of their files:
+ * each non-null property of a later definition overrides that of an earlier one,
+ * and the children of the last definition which has any are taken as the children of the atom.
+ * Of each parsed note, only the ids of its children are kept beyond its batch.
+ * In the second phase, all lists of children are created,
+ * resolving each reference against the atoms of the first pass rather than looking it up in the graph.
+ * The graph is written from a single thread, committing in batches as configured.
+ */
 public class VCSReader extends BrainReader {
 
-    private final WikiParser reader;
+    private static final int DEFAULT_FILES_PER_BATCH = 1000;
+
+    private final int numberOfThreads;
+    private final int filesPerBatch;
+
+    // parsers are not thread-safe, but may be reused within a thread
+    private final ThreadLocal<WikiParser> parsers = ThreadLocal.withInitial(() -> {
+        WikiParser parser = new WikiParser();
+        parser.setUseCanonicalFormat(true);
+        return parser;
+    });
 
     public VCSReader() {
-        reader = new WikiParser();
-        reader.setUseCanonicalFormat(true);
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public VCSReader(final int numberOfThreads) {
+        this(numberOfThreads, DEFAULT_FILES_PER_BATCH);
+    }
+
+    public VCSReader(final int numberOfThreads, final int filesPerBatch) {
+        Preconditions.checkArgument(numberOfThreads > 0);
+        Preconditions.checkArgument(filesPerBatch > 0);
+        this.numberOfThreads = numberOfThreads;
+        this.filesPerBatch = filesPerBatch;
     }
 
     @Override
     protected void importInternal(Context context) throws IOException {
+        Map<DataSource, List<File>> filesBySource = new LinkedHashMap<>();
         for (DataSource source : SemanticSynchrony.getConfiguration().getSources()) {
-            readDataSource(source, context);
+            filesBySource.put(source, listAtomFiles(source));
         }
+
+        importAtomFiles(filesBySource, context.getTopicGraph());
+    }
+
+    /**
+     * Reads the given atom files of a data source, as in a full import, but without reading any other files.
+     * Atoms are created or updated; none are removed.
+     *
+     * @return the number of atoms read
+     */
+    public int readAtomFiles(final DataSource source,
+                             final List<File> files,
+                             final TopicGraph graph) throws IOException {
+        return importAtomFiles(Collections.singletonMap(source, files), graph);
+    }
+
+    private int importAtomFiles(final Map<DataSource, List<File>> filesBySource,
+                                final TopicGraph graph) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Map<String, Atom> atomsById = new HashMap<>();
+        Map<String, String[]> childIdsById = new LinkedHashMap<>();
+        createAtoms(filesBySource, atomsById, childIdsById, graph);
+        long atomTime = System.currentTimeMillis();
+        int numberOfLists = createChildLists(childIdsById, atomsById, graph);
+        long listTime = System.currentTimeMillis();
+
+        logger.info("parsed " + childIdsById.size() + " atoms on " + numberOfThreads
+                + " threads and created or updated " + atomsById.size() + " atoms in "
+                + (atomTime - startTime) + " ms, and created " + numberOfLists + " lists of children in "
+                + (listTime - atomTime) + " ms");
+        return childIdsById.size();
     }
 
     @Override
@@ -43,119 +115,172 @@ public class VCSReader extends BrainReader {
         return Collections.singletonList(VCSFormat.getInstance());
     }
 
-    private void readDataSource(final DataSource dataSource, final Context context) throws IOException {
+    // creates every atom which is defined or referenced, and sets the properties of the defined atoms
+    private void createAtoms(final Map<DataSource, List<File>> filesBySource,
+                             final Map<String, Atom> atomsById,
+                             final Map<String, String[]> childIdsById,
+                             final TopicGraph graph) throws IOException {
+        List<Callable<List<Note>>> tasks = new ArrayList<>();
+        for (Map.Entry<DataSource, List<File>> e : filesBySource.entrySet()) {
+            for (File file : e.getValue()) {
+                tasks.add(() -> readAtomFile(file, e.getKey()));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<List<Note>>> batch = parseAtomFiles(tasks, 0, executor);
+            for (int i = 0; i < tasks.size(); i += filesPerBatch) {
+                // the next batch is parsed while this one is written
+                List<Future<List<Note>>> nextBatch = parseAtomFiles(tasks, i + filesPerBatch, executor);
+
+                // definitions are applied in the order of their files, as in a sequential import
+                for (Future<List<Note>> parsedFile : batch) {
+                    for (Note note : getResult(parsedFile)) {
+                        createAtom(note, atomsById, childIdsById, graph);
+                    }
+                }
+                batch = nextBatch;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Future<List<Note>>> parseAtomFiles(final List<Callable<List<Note>>> tasks,
+                                                    final int first,
+                                                    final ExecutorService executor) {
+        List<Future<List<Note>>> parsedFiles = new ArrayList<>();
+        for (int i = first; i < Math.min(first + filesPerBatch, tasks.size()); i++) {
+            parsedFiles.add(executor.submit(tasks.get(i)));
+        }
+        return parsedFiles;
+    }
+
+    private List<File> listAtomFiles(final DataSource dataSource) {
         String location = dataSource.getLocation();
         Preconditions.checkNotNull(location);
         File dir = new File(location);
         assertDirectoryExists(dir);
 
-        Helper helper = new Helper(context);
-
+        List<File> atomFiles = new ArrayList<>();
         File[] files = dir.listFiles();
         if (null != files) {
             for (File file : files) {
-                try {
-                    if (VCSFormat.isAtomFile(file)) {
-                        readAtomFile(file, helper, dataSource);
-                    }
-                } catch (IOException e) {
-                    throw new IOException("failed to load file " + file.getAbsolutePath(), e);
+                if (VCSFormat.isAtomFile(file)) {
+                    atomFiles.add(file);
                 }
             }
         }
+        return atomFiles;
     }
 
-    private void readAtomFile(final File file, final Helper helper, final DataSource source) throws IOException {
-        Note rootNote;
+    private List<Note> readAtomFile(final File file, final DataSource source) throws IOException {
         try (InputStream in = new FileInputStream(file)) {
-            rootNote = reader.parse(in);
+            Note rootNote = parsers.get().parse(in);
             for (Note note : rootNote.getChildren()) {
                 note.setSource(source.getName());
-                String id = note.getId();
-                Preconditions.checkNotNull(id);
-
-                Atom atom = helper.resolveAtomReference(id);
-                helper.setNote(note);
-                helper.setAtom(atom);
-                helper.updateAtom();
-
-                checkAndCommit(helper.context.getTopicGraph());
+                Preconditions.checkNotNull(note.getId());
             }
+            return rootNote.getChildren();
+        } catch (IOException e) {
+            throw new IOException("failed to load file " + file.getAbsolutePath(), e);
         }
     }
 
-    private class Helper {
-        private final Context context;
-        private Atom atom;
-        private Note note;
-
-        private Helper(Context context) {
-            this.context = context;
-        }
-
-        public void setAtom(Atom atom) {
-            this.atom = atom;
-        }
-
-        public void setNote(Note note) {
-            this.note = note;
+    private <T> T getResult(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while parsing atom files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
         }
+    }
 
-        private void updateAtom() {
-            updateAtomProperties();
-            updateAtomChildren();
-        }
+    private void createAtom(final Note note,
+                            final Map<String, Atom> atomsById,
+                            final Map<String, String[]> childIdsById,
+                            final TopicGraph graph) {
+        Atom atom = resolveAtomReference(note.getId(), atomsById, graph);
+        updateAtomProperties(atom, note);
+        checkAndCommit(graph);
 
-        private void updateAtomProperties() {
-            updateProperty(atom, note, Note::getAlias, Atom::setAlias);
-            updateProperty(atom, note, Note::getCreated, Atom::setCreated);
-            updateProperty(atom, note, Note::getText, Atom::setText);
-            updateProperty(atom, note, Note::getPriority, Atom::setPriority);
-            updateProperty(atom, note, Note::getSource, Atom::setSource);
-            updateProperty(atom, note, Note::getShortcut, Atom::setShortcut);
-            updateProperty(atom, note, Note::getSource, Atom::setSource);
-            updateProperty(atom, note, Note::getTitle, Atom::setTitle);
-            updateProperty(atom, note, Note::getWeight, Atom::setWeight);
+        String[] childIds = new String[note.getChildren().size()];
+        int i = 0;
+        for (Note child : note.getChildren()) {
+            resolveAtomReference(child.getId(), atomsById, graph);
+            childIds[i++] = child.getId();
         }
 
-        private void updateAtomChildren() {
-            Optional<EntityList<Atom>> newChildren = createAtomList();
-            if (newChildren.isPresent()) {
-                atom.setChildren(newChildren.get());
-            }
+        // the children of the last definition which has any are taken as the children of the atom
+        if (0 != childIds.length || !childIdsById.containsKey(note.getId())) {
+            childIdsById.put(note.getId(), childIds);
         }
+    }
 
-        private <T> void updateProperty(final Atom atom,
-                                        final Note note,
-                                        final Function<Note, T> noteGetter,
-                                        final BiConsumer<Atom, T> atomSetter) {
-            T value = noteGetter.apply(note);
-            if (null != value) {
-                atomSetter.accept(atom, value);
+    private int createChildLists(final Map<String, String[]> childIdsById,
+                                 final Map<String, Atom> atomsById,
+                                 final TopicGraph graph) {
+        int count = 0;
+        for (Map.Entry<String, String[]> e : childIdsById.entrySet()) {
+            Atom atom = atomsById.get(e.getKey());
+            if (0 == e.getValue().length) {
+                // an atom which is read again may have lost its children
+                if (null != atom.getChildren()) {
+                    atom.setChildren(null);
+                    checkAndCommit(graph);
+                }
+                continue;
             }
-        }
 
-        private Optional<EntityList<Atom>> createAtomList() {
-            if (0 == note.getChildren().size()) return Optional.empty();
-
-            Atom[] atoms = new Atom[note.getChildren().size()];
+            Atom[] children = new Atom[e.getValue().length];
             int i = 0;
-            for (Note child : note.getChildren()) {
-                atoms[i++] = resolveAtomReference(child.getId());
+            for (String childId : e.getValue()) {
+                children[i++] = atomsById.get(childId);
             }
-            return Optional.of(context.getTopicGraph().createListOfAtoms(atoms));
+            atom.setChildren(graph.createListOfAtoms(children));
+            count++;
+            checkAndCommit(graph);
         }
+        return count;
+    }
 
-        private Atom resolveAtomReference(final String id) {
-            TopicGraph graph = context.getTopicGraph();
+    private Atom resolveAtomReference(final String id, final Map<String, Atom> atomsById, final TopicGraph graph) {
+        Atom atom = atomsById.get(id);
+        if (null == atom) {
             Optional<Atom> opt = graph.getAtomById(id);
-            Atom referenced;
-            if (opt.isPresent()) {
-                referenced = opt.get();
-            } else {
-                referenced = graph.createAtom(id);
-            }
-            return referenced;
+            atom = opt.isPresent() ? opt.get() : graph.createAtom(id);
+            atomsById.put(id, atom);
+        }
+        return atom;
+    }
+
+    private void updateAtomProperties(final Atom atom, final Note note) {
+        updateProperty(atom, note, Note::getAlias, Atom::setAlias);
+        updateProperty(atom, note, Note::getCreated, Atom::setCreated);
+        updateProperty(atom, note, Note::getText, Atom::setText);
+        updateProperty(atom, note, Note::getPriority, Atom::setPriority);
+        updateProperty(atom, note, Note::getShortcut, Atom::setShortcut);
+        updateProperty(atom, note, Note::getSource, Atom::setSource);
+        updateProperty(atom, note, Note::getTitle, Atom::setTitle);
+        updateProperty(atom, note, Note::getWeight, Atom::setWeight);
+    }
+
+    private <T> void updateProperty(final Atom atom,
+                                    final Note note,
+                                    final Function<Note, T> noteGetter,
+                                    final BiConsumer<Atom, T> atomSetter) {
+        T value = noteGetter.apply(note);
+        if (null != value) {
+            atomSetter.accept(atom, value);
         }
     }
 }
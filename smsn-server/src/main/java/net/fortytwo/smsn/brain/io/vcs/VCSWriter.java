@@ -1,22 +1,43 @@
 package net.fortytwo.smsn.brain.io.vcs;
 
 import com.google.common.base.Preconditions;
+import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.io.BrainWriter;
 import net.fortytwo.smsn.brain.io.Format;
 import net.fortytwo.smsn.brain.io.wiki.WikiPrinter;
+import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.entities.EntityList;
 import net.fortytwo.smsn.brain.model.Note;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
 
+/**
+ * Writes each atom with a page to a file in the directory of its data source.
+ * After a first, full export of a graph, an export writes or deletes only the files of those atoms which have
+ * changed since the previous export, and then only if the content of a file has changed.
+ * Atoms are known to have changed through the update listeners of the graph,
+ * and files through a content hash of each file as it was last written.
+ * Files which are modified other than by this writer are not detected, except by a full export.
+ */
 public class VCSWriter extends BrainWriter {
 
     private static final List<Format> formats;
@@ -32,6 +53,8 @@ public class VCSWriter extends BrainWriter {
         formats.add(VCSFormat.getInstance());
     }
 
+    private final Map<TopicGraph, ExportState> statesByGraph = Collections.synchronizedMap(new WeakHashMap<>());
+
     @Override
     public List<Format> getFormats() {
         return formats;
@@ -39,48 +62,129 @@ public class VCSWriter extends BrainWriter {
 
     @Override
     public void doExport(Context context) throws IOException {
-        Map<String, File> dirs = initializeDirectories();
+        TopicGraph graph = context.getTopicGraph();
+        ExportState state = getExportState(graph);
+        Map<String, File> dirs = VCSFormat.getDirsBySource();
+        MessageDigest digest = createDigest();
 
-        timeAction("exported atoms as individual files", () -> doExport(context.getTopicGraph(), dirs));
+        // exports of the same graph are serialized, without blocking the update listener
+        synchronized (state.filesById) {
+            boolean success = false;
+            try {
+                if (!SemanticSynchrony.getConfiguration().isIncrementalExport()
+                        || state.isFullExportRequired(dirs)) {
+                    state.reset(dirs);
+                    initializeDirectories(dirs);
+                    timeAction("exported atoms as individual files",
+                            () -> exportAll(graph, dirs, state, digest));
+                } else {
+                    Set<String> changedIds = state.takeChangedIds();
+                    timeAction("exported " + changedIds.size() + " changed atoms as individual files",
+                            () -> exportChanged(graph, changedIds, dirs, state, digest));
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    // the files are in an unknown state
+                    state.requireFullExport();
+                }
+            }
+        }
     }
 
-    private Map<String, File> initializeDirectories() throws IOException {
-        Map<String, File> dirs = VCSFormat.getDirsBySource();
+    private ExportState getExportState(final TopicGraph graph) {
+        synchronized (statesByGraph) {
+            ExportState state = statesByGraph.get(graph);
+            if (null == state) {
+                state = new ExportState();
+                graph.addUpdateListener(state);
+                statesByGraph.put(graph, state);
+            }
+            return state;
+        }
+    }
+
+    private void initializeDirectories(final Map<String, File> dirs) throws IOException {
         for (File d : dirs.values()) {
             createDirectoryIfNotExists(d);
             timeAction("cleaned directory " + d, () -> clearDirectoryOfAtomData(d));
         }
-        return dirs;
     }
 
     private void clearDirectoryOfAtomData(final File dir) {
         for (File file : dir.listFiles()) {
             if (VCSFormat.isAtomFile(file)) {
-                if (!file.delete()) {
-                    throw new IllegalStateException("failed to delete atom file " + file.getAbsolutePath());
-                }
+                deleteFile(file);
             }
         }
     }
 
-    private void doExport(final TopicGraph graph, final Map<String, File> dirs) throws IOException {
-        for (Atom a : graph.getAllAtoms()) {
-            if (isAtomWithPage(a)) {
-                File dir = chooseDirectoryForAtom(a, dirs);
-                File atomFile = new File(dir, fileNameForAtom(a));
-                try (OutputStream out = new FileOutputStream(atomFile)) {
-                    writeAtomToStream(a, out);
+    private void exportAll(final TopicGraph graph,
+                           final Map<String, File> dirs,
+                           final ExportState state,
+                           final MessageDigest digest) throws IOException {
+        for (Atom a : graph.getAllAtoms(VCSWriter::isAtomWithPage)) {
+            AtomFile atomFile = toAtomFile(a, dirs, digest);
+            atomFile.write();
+            state.filesById.put(a.getId(), atomFile.withoutContent());
+        }
+    }
+
+    private void exportChanged(final TopicGraph graph,
+                               final Collection<String> changedIds,
+                               final Map<String, File> dirs,
+                               final ExportState state,
+                               final MessageDigest digest) throws IOException {
+        int written = 0, deleted = 0;
+        for (String id : changedIds) {
+            AtomFile previous = state.filesById.get(id);
+            Optional<Atom> atom = graph.getAtomById(id);
+
+            if (atom.isPresent() && null != atom.get().getSource()) {
+                AtomFile current = toAtomFile(atom.get(), dirs, digest);
+                if (null != previous && !previous.file.equals(current.file)) {
+                    // the atom has moved to another data source
+                    deleteFile(previous.file);
+                    deleted++;
                 }
+                if (null == previous || !previous.hasSameContentAs(current) || !current.file.exists()) {
+                    current.write();
+                    written++;
+                }
+                state.filesById.put(id, current.withoutContent());
+            } else if (null != previous) {
+                // the atom has been removed, or no longer has a page
+                deleteFile(previous.file);
+                deleted++;
+                state.filesById.remove(id);
             }
         }
+
+        logger.info("wrote " + written + " and deleted " + deleted + " atom files for "
+                + changedIds.size() + " changed atoms");
+    }
+
+    private void deleteFile(final File file) {
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException("failed to delete atom file " + file.getAbsolutePath());
+        }
+    }
+
+    private AtomFile toAtomFile(final Atom a, final Map<String, File> dirs, final MessageDigest digest) {
+        File dir = chooseDirectoryForAtom(a, dirs);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeAtomToStream(a, out);
+        byte[] content = out.toByteArray();
+        return new AtomFile(new File(dir, fileNameForAtom(a)), content, digest.digest(content));
     }
 
     private String fileNameForAtom(final Atom a) {
         return a.getId();
     }
 
-    private boolean isAtomWithPage(final Atom a) {
-        return null != a.getSource();
+    // any atom with a source has a page, regardless of its weight
+    private static boolean isAtomWithPage(final byte sourceIndex, final float weight) {
+        return Filter.NO_SOURCE != sourceIndex;
     }
 
     private File chooseDirectoryForAtom(final Atom a, Map<String, File> dirs) {
@@ -118,6 +222,14 @@ public class VCSWriter extends BrainWriter {
         return note;
     }
 
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private <E extends Exception> void timeAction(final String description,
                                                   final RunnableWithException<E> action) throws E {
         long before = System.currentTimeMillis();
@@ -130,4 +242,69 @@ public class VCSWriter extends BrainWriter {
     private interface RunnableWithException<E extends Exception> {
         void run() throws E;
     }
+
+    // the rendered file of an atom. Only the file and its hash are kept between exports
+    private static class AtomFile {
+        private final File file;
+        private final byte[] content;
+        private final byte[] hash;
+
+        private AtomFile(final File file, final byte[] content, final byte[] hash) {
+            this.file = file;
+            this.content = content;
+            this.hash = hash;
+        }
+
+        private boolean hasSameContentAs(final AtomFile other) {
+            return Arrays.equals(hash, other.hash);
+        }
+
+        private void write() throws IOException {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(content);
+            }
+        }
+
+        private AtomFile withoutContent() {
+            return new AtomFile(file, null, hash);
+        }
+    }
+
+    // the atoms changed since the last export of a graph, and the files written by previous exports
+    private static class ExportState implements TopicGraph.UpdateListener {
+        private final Map<String, AtomFile> filesById = new HashMap<>();
+        private Set<String> changedIds = new HashSet<>();
+        private boolean fullExportRequired = true;
+        private Map<String, File> dirs;
+
+        @Override
+        public synchronized void atomsChanged(final Collection<String> changedIds) {
+            if (null == changedIds) {
+                fullExportRequired = true;
+            } else {
+                this.changedIds.addAll(changedIds);
+            }
+        }
+
+        private synchronized boolean isFullExportRequired(final Map<String, File> dirs) {
+            return fullExportRequired || !dirs.equals(this.dirs);
+        }
+
+        private synchronized void requireFullExport() {
+            fullExportRequired = true;
+        }
+
+        private synchronized void reset(final Map<String, File> dirs) {
+            this.dirs = dirs;
+            filesById.clear();
+            changedIds.clear();
+            fullExportRequired = false;
+        }
+
+        private synchronized Set<String> takeChangedIds() {
+            Set<String> taken = changedIds;
+            changedIds = new HashSet<>();
+            return taken;
+        }
+    }
 }
@@ -50,6 +50,19 @@ public class RepositoryCollection implements AbstractRepository {
         forEach(AbstractRepository::pull);
     }
 
+    /**
+     * Brings changes to the atom files of each repository since its last synced commit into the graph
+     *
+     * @return the number of atom files which have been read or removed
+     */
+    public int sync() throws RepositoryException {
+        int count = 0;
+        for (SmSnGitRepository repo : repositoriesBySource.values()) {
+            count += repo.sync();
+        }
+        return count;
+    }
+
     @Override
     public void push() throws RepositoryException {
         forEach(AbstractRepository::push);
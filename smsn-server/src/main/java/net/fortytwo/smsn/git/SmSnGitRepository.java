@@ -3,22 +3,30 @@ package net.fortytwo.smsn.git;
 import com.google.common.base.Preconditions;
 import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.Brain;
+import net.fortytwo.smsn.brain.io.vcs.VCSFormat;
+import net.fortytwo.smsn.brain.io.vcs.VCSReader;
 import net.fortytwo.smsn.brain.model.AtomBase;
 import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.TopicGraph;
 import net.fortytwo.smsn.brain.model.entities.Atom;
 import net.fortytwo.smsn.brain.query.TreeViews;
 import net.fortytwo.smsn.brain.query.ViewStyle;
 import net.fortytwo.smsn.config.DataSource;
+import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.GitCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 
@@ -26,6 +34,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +45,9 @@ public class SmSnGitRepository extends AtomBase implements AbstractRepository {
 
     private static final Logger logger = Logger.getLogger(SmSnGitRepository.class.getName());
 
+    // the last synced commit is kept in the git directory, so that it is not itself under version control
+    private static final String LAST_SYNCED_FILE = "smsn-last-synced";
+
     private static final ThreadLocal<DateFormat> dateFormat = ThreadLocal.withInitial(
             () -> new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ"));
 
@@ -100,12 +112,54 @@ public class SmSnGitRepository extends AtomBase implements AbstractRepository {
                 .setAll(true));
     }
 
+    /**
+     * Pulls from the remote repository, then brings the pulled changes into the graph as in {@link #sync()}.
+     * If no commit has yet been synced, the graph is assumed to agree with the commit before the pull.
+     */
     @Override
     public void pull() throws RepositoryException {
         checkReadyForPushOrPull();
 
+        Optional<ObjectId> before = getHead();
+        if (before.isPresent() && !getLastSyncedCommit().isPresent()) {
+            setLastSyncedCommit(before.get());
+        }
+
         performOperation(getGit().pull()
                 .setStrategy(MergeStrategy.RESOLVE));
+
+        sync();
+    }
+
+    /**
+     * Brings changes to atom files between the last synced commit and the current commit into the graph,
+     * reading only those atom files which have been added, modified or removed, and records the current commit
+     * as the last synced commit.
+     * If no commit has yet been synced, nothing is read, and the current commit becomes the last synced commit;
+     * the graph is assumed to agree with it, e.g. after a full import.
+     *
+     * @return the number of atom files which have been read or removed
+     */
+    public int sync() throws RepositoryException {
+        Optional<ObjectId> head = getHead();
+        if (!head.isPresent()) {
+            return 0;
+        }
+
+        Optional<ObjectId> lastSynced = getLastSyncedCommit();
+        int count = 0;
+        if (lastSynced.isPresent() && !lastSynced.get().equals(head.get())) {
+            try {
+                count = applyChanges(getDiffs(lastSynced.get(), head.get()));
+            } catch (IOException | GitAPIException e) {
+                throw new RepositoryException(e);
+            }
+            logger.info("synced " + count + " atom files in " + directory.getAbsolutePath()
+                    + " from commit " + lastSynced.get().getName() + " to " + head.get().getName());
+        }
+
+        setLastSyncedCommit(head.get());
+        return count;
     }
 
     @Override
@@ -260,15 +314,7 @@ public class SmSnGitRepository extends AtomBase implements AbstractRepository {
                               final Limits limits)
             throws IOException, GitAPIException {
 
-        ObjectReader reader = repository.newObjectReader();
-        CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
-        oldTreeIter.reset(reader, oldCommit.getTree().getId());
-        CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
-        newTreeIter.reset(reader, newCommit.getTree().getId());
-        List<DiffEntry> diffs = git.diff()
-                .setNewTree(newTreeIter)
-                .setOldTree(oldTreeIter)
-                .call();
+        List<DiffEntry> diffs = getDiffs(oldCommit, newCommit);
 
         int count = 0;
         for (DiffEntry diffEntry : diffs) {
@@ -290,6 +336,129 @@ public class SmSnGitRepository extends AtomBase implements AbstractRepository {
         }
     }
 
+    private List<DiffEntry> getDiffs(final AnyObjectId oldCommit, final AnyObjectId newCommit)
+            throws IOException, GitAPIException {
+        try (ObjectReader reader = repository.newObjectReader(); RevWalk walk = new RevWalk(reader)) {
+            CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
+            oldTreeIter.reset(reader, walk.parseCommit(oldCommit).getTree().getId());
+            CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
+            newTreeIter.reset(reader, walk.parseCommit(newCommit).getTree().getId());
+            return git.diff()
+                    .setNewTree(newTreeIter)
+                    .setOldTree(oldTreeIter)
+                    .call();
+        }
+    }
+
+    // reads added and modified atom files, and removes the atoms of removed files
+    private int applyChanges(final List<DiffEntry> diffs) throws IOException {
+        List<File> changedFiles = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        for (DiffEntry diffEntry : diffs) {
+            DiffEntry.ChangeType changeType = diffEntry.getChangeType();
+            if (changeType == DiffEntry.ChangeType.DELETE || changeType == DiffEntry.ChangeType.RENAME) {
+                if (isAtomFile(diffEntry.getOldPath())) {
+                    removedIds.add(toId(diffEntry.getOldPath()));
+                }
+            }
+            if (changeType != DiffEntry.ChangeType.DELETE && isAtomFile(diffEntry.getNewPath())) {
+                changedFiles.add(new File(directory, diffEntry.getNewPath()));
+            }
+        }
+
+        TopicGraph graph = brain.getTopicGraph();
+        new VCSReader().readAtomFiles(dataSource, changedFiles, graph);
+        for (String id : removedIds) {
+            removeAtom(id, graph);
+        }
+        graph.commit();
+
+        return changedFiles.size() + removedIds.size();
+    }
+
+    // atoms in the top-level directory of the repository
+    private boolean isAtomFile(final String path) {
+        return !path.contains("/") && VCSFormat.isAtomFile(new File(path));
+    }
+
+    // An atom whose file has been removed is removed from the graph, unless it has moved to another data source.
+    // If it is still the child of another atom, it remains as a reference without a source, as in a full import,
+    // so that it is not written to a file again by the next export. The title is required, and is kept.
+    private void removeAtom(final String id, final TopicGraph graph) {
+        Optional<Atom> opt = graph.getAtomById(id);
+        if (!opt.isPresent() || !dataSource.getName().equals(opt.get().getSource()) || isAtomFileInAnySource(id)) {
+            return;
+        }
+
+        Atom atom = opt.get();
+        atom.setChildren(null);
+        if (0 == atom.getNumberOfParents()) {
+            atom.destroy();
+        } else {
+            atom.setSource(null);
+            atom.setText(null);
+            atom.setAlias(null);
+            atom.setShortcut(null);
+            atom.setWeight(null);
+            atom.setPriority(null);
+            atom.setCreated(null);
+        }
+    }
+
+    // The atom's file may have moved to a data source whose repository has not yet been synced,
+    // in which case the atom is left for that repository to claim.
+    private boolean isAtomFileInAnySource(final String id) {
+        if (new File(directory, id).exists()) {
+            return true;
+        }
+        for (DataSource source : SemanticSynchrony.getConfiguration().getSources()) {
+            if (null != source.getLocation() && new File(source.getLocation(), id).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Optional<ObjectId> getHead() throws RepositoryException {
+        try {
+            return Optional.ofNullable(repository.resolve(Constants.HEAD));
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    private File getLastSyncedFile() {
+        return new File(repository.getDirectory(), LAST_SYNCED_FILE);
+    }
+
+    /**
+     * @return the last commit whose atom files have been brought into the graph, if any
+     */
+    public Optional<ObjectId> getLastSyncedCommit() throws RepositoryException {
+        File file = getLastSyncedFile();
+        if (!file.exists()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(ObjectId.fromString(
+                    FileUtils.readFileToString(file, SemanticSynchrony.UTF8).trim()));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Records the commit whose atom files have been brought into the graph, e.g. after a full import
+     */
+    public void setLastSyncedCommit(final ObjectId commit) throws RepositoryException {
+        try {
+            FileUtils.writeStringToFile(getLastSyncedFile(), commit.getName(), SemanticSynchrony.UTF8);
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     private Note toAtomNote(final String id, final long timestamp, final DiffEntry.ChangeType changeType) {
         Optional<Atom> opt = brain.getTopicGraph().getAtomById(id);
 
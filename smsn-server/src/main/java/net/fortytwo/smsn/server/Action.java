@@ -6,6 +6,7 @@ import net.fortytwo.smsn.brain.Brain;
 import net.fortytwo.smsn.brain.History;
 import net.fortytwo.smsn.brain.Params;
 import net.fortytwo.smsn.brain.query.TreeViews;
+import net.fortytwo.smsn.brain.query.ViewCache;
 import net.fortytwo.smsn.brain.io.json.JsonParser;
 import net.fortytwo.smsn.brain.io.json.JsonPrinter;
 import net.fortytwo.smsn.brain.io.wiki.WikiParser;
@@ -24,7 +25,9 @@ import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.apache.tinkerpop.shaded.jackson.annotation.JsonIgnoreProperties;
 import org.apache.tinkerpop.shaded.jackson.annotation.JsonTypeInfo;
-import org.json.JSONObject;
+import org.apache.tinkerpop.shaded.jackson.core.JsonProcessingException;
+import org.apache.tinkerpop.shaded.jackson.databind.ObjectMapper;
+import org.json.JSONString;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -40,10 +43,14 @@ public abstract class Action {
 
     protected static final int MAX_VIEW_HEIGHT = 7;
 
+    // for serializing the results of actions other than views
+    private static final ObjectMapper objectMapper = SmSnScriptEngine.createObjectMapper();
+
     protected static final String CREATE_NEW_ATOM = "create-new-atom";
 
     private static final Map<Graph, Brain> brains = new HashMap<>();
     private static final Map<Graph, GraphWrapper> wrappers = new HashMap<>();
+    private static final Map<Graph, ViewCache<JSONString>> viewCaches = new HashMap<>();
 
     private static final History history = new History();
 
@@ -64,6 +71,7 @@ public abstract class Action {
             logger.info("instantiating Extend-o-Brain with base graph " + wrapper.getGraph());
             TopicGraph bg = new PGTopicGraph(wrapper);
             brain = new Brain(bg);
+            brain.recover();
             brain.startBackgroundTasks();
             brains.put(wrapper.getGraph(), brain);
         }
@@ -71,6 +79,22 @@ public abstract class Action {
         return brain;
     }
 
+    public synchronized static ViewCache<JSONString> getViewCache(final GraphWrapper wrapper)
+            throws Brain.BrainException {
+
+        ViewCache<JSONString> cache = viewCaches.get(wrapper.getGraph());
+
+        if (null == cache) {
+            cache = new ViewCache<>(SemanticSynchrony.getConfiguration().getViewCacheCapacity());
+            Brain brain = getBrain(wrapper);
+            brain.getTopicGraph().addUpdateListener(cache);
+            brain.getKnowledgeBase().addClassificationListener(cache);
+            viewCaches.put(wrapper.getGraph(), cache);
+        }
+
+        return cache;
+    }
+
     public synchronized static GraphWrapper getWrapper(final Graph graph) {
         GraphWrapper wrapper = wrappers.get(graph);
 
@@ -96,17 +120,25 @@ public abstract class Action {
 
         SemanticSynchrony.getLogger().log(Level.INFO, "completed " + getClass().getSimpleName()
                 + " action in " + (after - before) + " ms");
-
-        logActivity(context);
     }
 
     protected void addView(final Note n,
                            final ActionContext context) throws IOException {
-        JSONObject json = context.getJsonPrinter().toJson(n);
+        // the view is written directly to a string, which is embedded as it is in the response
+        JSONString json = context.getJsonPrinter().toJsonString(n);
 
         context.getMap().put(Params.VIEW, json);
     }
 
+    protected String toJsonString(final Object object) {
+        try {
+            return objectMapper.writeValueAsString(object);
+        } catch (JsonProcessingException e) {
+            throw new RequestProcessingException("failed to serialize result of "
+                    + getClass().getSimpleName() + " action", e);
+        }
+    }
+
     public static ActionContext createContext(final Graph graph) {
         ActionContext context = new ActionContext();
 
@@ -138,17 +170,10 @@ public abstract class Action {
         }
     }
 
-    private void logActivity(final ActionContext context) {
-        // Note: currently, all activities are logged, but the log is not immediately flushed
-        //       unless the transaction succeeds.
-        if (null != context.getBrain().getActivityLog()) {
-            context.getBrain().getActivityLog().flush();
-        }
-    }
-
     private static void setBrain(final ActionContext context) {
         try {
             context.setBrain(getBrain(context.getGraphWrapper()));
+            context.setViewCache(getViewCache(context.getGraphWrapper()));
         } catch (Brain.BrainException e) {
             throw new RequestProcessingException(e);
         }
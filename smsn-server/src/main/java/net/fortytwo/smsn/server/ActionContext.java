@@ -2,10 +2,12 @@ package net.fortytwo.smsn.server;
 
 import net.fortytwo.smsn.brain.Brain;
 import net.fortytwo.smsn.brain.query.TreeViews;
+import net.fortytwo.smsn.brain.query.ViewCache;
 import net.fortytwo.smsn.brain.io.json.JsonParser;
 import net.fortytwo.smsn.brain.io.json.JsonPrinter;
 import net.fortytwo.smsn.brain.io.wiki.WikiParser;
 import net.fortytwo.smsn.brain.model.pg.GraphWrapper;
+import org.json.JSONString;
 
 import java.util.Map;
 
@@ -18,6 +20,7 @@ public class ActionContext {
     private WikiParser wikiParser;
     private JsonParser jsonParser;
     private JsonPrinter jsonPrinter;
+    private ViewCache<JSONString> viewCache;
 
     public GraphWrapper getGraphWrapper() {
         return graphWrapper;
@@ -74,4 +77,12 @@ public class ActionContext {
     public void setJsonParser(JsonParser jsonParser) {
         this.jsonParser = jsonParser;
     }
+
+    public ViewCache<JSONString> getViewCache() {
+        return viewCache;
+    }
+
+    public void setViewCache(ViewCache<JSONString> viewCache) {
+        this.viewCache = viewCache;
+    }
 }
@@ -1,13 +1,19 @@
 package net.fortytwo.smsn.server.actions;
 
+import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.brain.query.ViewStyle;
 import net.fortytwo.smsn.server.errors.BadRequestException;
 
+import java.util.List;
+
 public abstract class BasicViewAction extends FilteredAction {
     protected int height;
 
     protected ViewStyle style = ViewStyle.Basic.Forward.getStyle();
 
+    // the keys of the note properties to include in the view, or null for all properties
+    protected List<String> properties;
+
     public BasicViewAction() {
         super();
     }
@@ -27,4 +33,16 @@ public abstract class BasicViewAction extends FilteredAction {
     public void setStyle(final String styleName) {
         this.style = ViewStyle.Basic.lookup(styleName);
     }
+
+    public void setProperties(final List<String> properties) {
+        if (null != properties) {
+            for (String key : properties) {
+                if (!Note.propertiesByKey.containsKey(key)) {
+                    throw new BadRequestException("no such property: " + key);
+                }
+            }
+        }
+
+        this.properties = properties;
+    }
 }
@@ -0,0 +1,36 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.ActionContext;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import java.io.IOException;
+
+/**
+ * A service for writing an Extend-o-Brain graph to a checkpoint in its journal directory,
+ * after which the journal holds only those changes made since the checkpoint
+ */
+public class Checkpoint extends Action {
+
+    @Override
+    protected void performTransaction(final ActionContext params) throws RequestProcessingException, BadRequestException {
+        try {
+            params.getBrain().checkpoint();
+        } catch (IllegalStateException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (IOException e) {
+            throw new RequestProcessingException(e);
+        }
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return false;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return false;
+    }
+}
@@ -65,36 +65,34 @@ public class FindDuplicates extends FilteredAction {
         List<List<Atom>> dups = new LinkedList<>();
         int total = 0;
 
-        for (Atom a : graph.getAllAtoms()) {
-            if (filter.test(a)) {
-                String title = a.getTitle();
-                if (null != title && 0 < title.length()) {
-                    String hash;
-                    try {
-                        hash = md5SumOf(title);
-                    } catch (UnsupportedEncodingException e) {
-                        throw new RequestProcessingException(e);
-                    }
-                    List<Atom> atoms = m.get(hash);
-                    if (null == atoms) {
-                        atoms = new LinkedList<>();
-                        m.put(hash, atoms);
-                    } else {
-                        if (1 == atoms.size()) {
-                            total++;
-                            dups.add(atoms);
-                        }
-
+        for (Atom a : graph.getAllAtoms(filter.compile())) {
+            String title = a.getTitle();
+            if (null != title && 0 < title.length()) {
+                String hash;
+                try {
+                    hash = md5SumOf(title);
+                } catch (UnsupportedEncodingException e) {
+                    throw new RequestProcessingException(e);
+                }
+                List<Atom> atoms = m.get(hash);
+                if (null == atoms) {
+                    atoms = new LinkedList<>();
+                    m.put(hash, atoms);
+                } else {
+                    if (1 == atoms.size()) {
                         total++;
-                        if (total > MAX_DUPLICATES) {
-                            SemanticSynchrony.getLogger().log(Level.INFO, "showing only the first "
-                                    + MAX_DUPLICATES + " duplicates");
-                            break;
-                        }
+                        dups.add(atoms);
                     }
 
-                    atoms.add(a);
+                    total++;
+                    if (total > MAX_DUPLICATES) {
+                        SemanticSynchrony.getLogger().log(Level.INFO, "showing only the first "
+                                + MAX_DUPLICATES + " duplicates");
+                        break;
+                    }
                 }
+
+                atoms.add(a);
             }
         }
 
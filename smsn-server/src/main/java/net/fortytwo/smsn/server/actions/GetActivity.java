@@ -0,0 +1,84 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.ActivityIndex;
+import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.ActionContext;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A service for retrieving summaries of the activity log:
+ * the most viewed atoms over a number of days and, given an atom,
+ * the time of its most recent activity and the atoms most often edited together with it
+ */
+public class GetActivity extends Action {
+    private static final long DAY = 1000L * 60 * 60 * 24;
+
+    // edits within this many milliseconds of each other are considered to be made together
+    private static final long CO_EDIT_WINDOW = 1000L * 60 * 5;
+
+    private int days = 7;
+    private int maxResults = 10;
+
+    // note: may be null
+    private String id;
+
+    public void setDays(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("days parameter must be a positive integer");
+        }
+
+        this.days = days;
+    }
+
+    public void setMaxResults(int maxResults) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException(Params.MAX_RESULTS + " parameter must be a positive integer");
+        }
+
+        this.maxResults = maxResults;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Override
+    protected void performTransaction(final ActionContext context)
+            throws RequestProcessingException, BadRequestException {
+        ActivityIndex index;
+        try {
+            index = context.getBrain().getActivityIndex();
+        } catch (IOException e) {
+            throw new RequestProcessingException(e);
+        }
+        if (null == index) {
+            throw new BadRequestException("no activity log");
+        }
+
+        Map<String, Object> activity = new HashMap<>();
+        long since = System.currentTimeMillis() - days * DAY;
+        activity.put("mostViewed", index.getMostViewed(since, maxResults));
+        if (null != id) {
+            activity.put("lastActivity", index.getLastActivity(id));
+            activity.put("coEdited", index.getCoEdited(id, CO_EDIT_WINDOW, maxResults));
+        }
+
+        context.getMap().put(Params.ACTIVITY, toJsonString(activity));
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return true;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.ActionContext;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A service for retrieving runtime statistics of the server, such as the hit rate of the view cache
+ * and the number of activity log events which have been dropped
+ */
+public class GetStatistics extends Action {
+    @Override
+    protected void performTransaction(final ActionContext context)
+            throws RequestProcessingException, BadRequestException {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("viewCache", context.getViewCache().getStatistics());
+        if (null != context.getBrain().getActivityLog()) {
+            statistics.put("activityLog", context.getBrain().getActivityLog().getStatistics());
+        }
+
+        context.getMap().put(Params.STATISTICS, toJsonString(statistics));
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return true;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return false;
+    }
+}
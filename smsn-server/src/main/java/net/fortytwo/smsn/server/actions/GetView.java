@@ -1,14 +1,21 @@
 package net.fortytwo.smsn.server.actions;
 
+import net.fortytwo.smsn.brain.Params;
 import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.query.ViewCache;
 import net.fortytwo.smsn.server.ActionContext;
 import net.fortytwo.smsn.server.errors.BadRequestException;
 import net.fortytwo.smsn.server.errors.RequestProcessingException;
+import org.json.JSONString;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
- * A service for retrieving hierarchical views of Extend-o-Brain graphs
+ * A service for retrieving hierarchical views of Extend-o-Brain graphs.
+ * Rendered views are cached until any atom they depend on is changed.
+ * If a list of properties is given, only those properties are read and rendered.
  */
 public class GetView extends RootedViewAction {
 
@@ -17,13 +24,26 @@ public class GetView extends RootedViewAction {
             throws RequestProcessingException, BadRequestException {
         super.performTransaction(context);
 
-        Note note = context.getQueries().view(getRoot(), height, getFilter(), style);
-        try {
-            addView(note, context);
-        } catch (IOException e) {
-            throw new RequestProcessingException(e);
+        ViewCache<JSONString> cache = context.getViewCache();
+        ViewCache.Key key = new ViewCache.Key(getRoot().getId(), height, getFilter(), style, properties);
+        JSONString view = cache.get(key);
+
+        if (null == view) {
+            long generation = cache.getGeneration();
+            Set<String> dependencies = new HashSet<>();
+            Note note = context.getQueries().view(getRoot(), height, getFilter(), style, properties, dependencies);
+            try {
+                view = context.getJsonPrinter().toJsonString(note);
+            } catch (IOException e) {
+                throw new RequestProcessingException(e);
+            }
+            cache.put(key, view, dependencies, generation);
+        } else if (null != context.getBrain().getActivityLog()) {
+            context.getBrain().getActivityLog().logView(getRoot());
         }
 
+        context.getMap().put(Params.VIEW, view);
+
         addToHistory(getRoot().getId());
     }
 
@@ -0,0 +1,49 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.ActionContext;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A service for converting the children of all atoms in an Extend-o-Brain graph
+ * between linked storage (a chain of list vertices) and ordinal storage (one ordered edge per child)
+ */
+public class MigrateChildLists extends Action {
+
+    @NotNull
+    private PGTopicGraph.ChildListStorage storage;
+
+    private PGTopicGraph.ChildListStorage getStorage() {
+        return notNull(storage);
+    }
+
+    public void setStorage(PGTopicGraph.ChildListStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    protected void performTransaction(final ActionContext params) throws RequestProcessingException, BadRequestException {
+        PGTopicGraph graph = (PGTopicGraph) params.getBrain().getTopicGraph();
+
+        long timeBefore = System.currentTimeMillis();
+        int count = graph.migrateChildLists(getStorage());
+        long timeAfter = System.currentTimeMillis();
+
+        logger.info("migrated the children of " + count + " atoms to " + getStorage() + " storage in "
+                + (timeAfter - timeBefore) + "ms");
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return false;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return true;
+    }
+}
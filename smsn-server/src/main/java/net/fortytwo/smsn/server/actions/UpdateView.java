@@ -1,6 +1,8 @@
 package net.fortytwo.smsn.server.actions;
 
+import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.brain.model.GraphChanges;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.server.ActionContext;
 import net.fortytwo.smsn.server.errors.BadRequestException;
@@ -57,7 +59,8 @@ public class UpdateView extends RootedViewAction {
         rootNote.setId(getRoot().getId());
 
         // Apply the update
-        context.getQueries().update(rootNote, height, getFilter(), style);
+        GraphChanges changes = context.getQueries().update(rootNote, height, getFilter(), style);
+        SemanticSynchrony.getLogger().fine("updated lists of children: " + changes);
 
         // TODO: produce an appropriate view (e.g. a search) if the root is null
         Note n = null == getRoot()
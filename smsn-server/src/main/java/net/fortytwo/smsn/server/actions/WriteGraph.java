@@ -9,6 +9,7 @@ import net.fortytwo.smsn.server.errors.RequestProcessingException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A service for exporting an Extend-o-Brain graph to the file system
@@ -26,6 +27,28 @@ public class WriteGraph extends IOAction {
         this.rootId = rootId;
     }
 
+    // if positive, output is split into files of at most this many records, in a directory named by the file
+    private long chunkSize;
+
+    // note: output to a file whose name ends in .gz is compressed in any case
+    private boolean compressed;
+
+    private long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    private boolean isCompressed() {
+        return compressed || getFile().getName().endsWith(".gz");
+    }
+
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
     @Override
     protected void performTransaction(final ActionContext params) throws RequestProcessingException, BadRequestException {
 
@@ -35,11 +58,19 @@ public class WriteGraph extends IOAction {
         context.setRootId(getRootId());
         context.setFilter(getFilter());
         context.setFormat(getFormat());
+        context.setChunkSize(getChunkSize());
+        context.setCompressed(isCompressed());
         BrainWriter writer = Format.getWriter(getFormat());
 
+        if (getChunkSize() > 0 && !writer.supportsChunkedOutput()) {
+            throw new BadRequestException("chunked output is not supported for format " + getFormat().getName());
+        }
+
         try {
-            if (getFormat().getType().equals(Format.Type.FileBased)) {
-                try (OutputStream destStream = new FileOutputStream(getFile())) {
+            if (getFormat().getType().equals(Format.Type.FileBased) && 0 >= getChunkSize()) {
+                try (OutputStream destStream = isCompressed()
+                        ? new GZIPOutputStream(new FileOutputStream(getFile()))
+                        : new FileOutputStream(getFile())) {
                     context.setDestStream(destStream);
                     writer.doExport(context);
                 }
@@ -5,6 +5,10 @@ public class RequestProcessingException extends RuntimeException {
         super(message);
     }
 
+    public RequestProcessingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public RequestProcessingException(Throwable cause) {
         super(cause);
     }
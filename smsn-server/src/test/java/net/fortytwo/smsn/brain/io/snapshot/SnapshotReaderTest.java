@@ -0,0 +1,140 @@
+package net.fortytwo.smsn.brain.io.snapshot;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.io.BrainReader;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.io.vcs.VCSFormat;
+import net.fortytwo.smsn.brain.io.vcs.VCSWriter;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import net.fortytwo.smsn.config.DataSource;
+import org.apache.commons.io.FileUtils;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SnapshotReaderTest extends BrainTestBase {
+
+    @Override
+    protected TopicGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void snapshotRoundTripIsEquivalentToVCSRoundTrip() throws Exception {
+        createAtoms();
+        File snapshot = writeSnapshot();
+
+        TopicGraph copy = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        try (InputStream in = new FileInputStream(snapshot)) {
+            readSnapshot(in, copy);
+        }
+        assertEquals(countAtoms(topicGraph), countAtoms(copy));
+
+        Atom zaphod = copy.getAtomById(ZAPHOD_ID).get();
+        assertNull(zaphod.getChildren());
+        assertNull(zaphod.getAlias());
+
+        File originalDir = exportAsVCS(topicGraph);
+        File copyDir = exportAsVCS(copy);
+        for (String source : new String[]{DefaultSources.PUBLIC, DefaultSources.PRIVATE}) {
+            File[] files = new File(originalDir, source).listFiles();
+            assertEquals(2, files.length);
+            for (File file : files) {
+                File copyFile = new File(new File(copyDir, source), file.getName());
+                assertArrayEquals(FileUtils.readFileToByteArray(file), FileUtils.readFileToByteArray(copyFile));
+            }
+        }
+    }
+
+    @Test
+    public void corruptedSnapshotIsRejected() throws Exception {
+        createAtoms();
+        byte[] bytes = FileUtils.readFileToByteArray(writeSnapshot());
+        bytes[bytes.length / 2] ^= 1;
+
+        TopicGraph copy = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        try {
+            readSnapshot(new ByteArrayInputStream(bytes), copy);
+            fail("corrupted snapshot was read");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, countAtoms(copy));
+    }
+
+    private void createAtoms() {
+        Atom arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        Atom ford = createAtom(FORD_ID, "Ford Prefect");
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        Atom trillian = createAtom("Trillian");
+        arthur.setSource(DefaultSources.PUBLIC);
+        ford.setSource(DefaultSources.PUBLIC);
+        zaphod.setSource(DefaultSources.PRIVATE);
+        trillian.setSource(DefaultSources.PRIVATE);
+        arthur.setText("an ordinary Earthman\nwith a towel");
+        arthur.setAlias("http://example.org/arthur");
+        ford.setShortcut("fp");
+        ford.setPriority(0.75f);
+        trillian.setWeight(0.25f);
+        trillian.setTitle("Trillian (été)");
+
+        arthur.addChildAt(ford, 0);
+        arthur.addChildAt(zaphod, 1);
+        arthur.addChildAt(ford, 2);
+        trillian.addChildAt(arthur, 0);
+        zaphod.addChildAt(zaphod, 0);
+        zaphod.setChildren(null);
+        topicGraph.commit();
+    }
+
+    private File writeSnapshot() throws IOException {
+        File file = new File(createTempDirectory(), "brain.snapshot");
+        BrainWriter.Context context = new BrainWriter.Context();
+        context.setFormat(SnapshotFormat.getInstance());
+        context.setTopicGraph(topicGraph);
+        try (OutputStream out = new FileOutputStream(file)) {
+            context.setDestStream(out);
+            new SnapshotWriter().doExport(context);
+        }
+        return file;
+    }
+
+    private void readSnapshot(final InputStream in, final TopicGraph graph) throws IOException {
+        BrainReader.Context context = new BrainReader.Context();
+        context.setFormat(SnapshotFormat.getInstance());
+        context.setTopicGraph(graph);
+        context.setSourceStream(in);
+        new SnapshotReader().doImport(context);
+    }
+
+    private File exportAsVCS(final TopicGraph graph) throws IOException {
+        File dir = createTempDirectory();
+        List<DataSource> sources = SemanticSynchrony.getConfiguration().getSources();
+        for (DataSource source : sources) {
+            source.setLocation(new File(dir, source.getName()).getAbsolutePath());
+        }
+
+        BrainWriter.Context context = new BrainWriter.Context();
+        context.setFormat(VCSFormat.getInstance());
+        context.setTopicGraph(graph);
+        new VCSWriter().doExport(context);
+        return dir;
+    }
+}
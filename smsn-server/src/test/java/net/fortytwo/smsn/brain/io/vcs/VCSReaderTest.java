@@ -16,9 +16,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class VCSReaderTest extends BrainTestBase {
 
@@ -53,6 +58,94 @@ public class VCSReaderTest extends BrainTestBase {
         assertEquals("Ford Prefect (character)", arthur.getChildren().getFirst().getTitle());
     }
 
+    @Test
+    public void manyInterconnectedFilesAreReadInParallel() throws IOException {
+        File dir = createTestDirectory();
+        List<DataSource> sources = SemanticSynchrony.getConfiguration().getSources();
+
+        Random random = new Random(42);
+        String[] ids = new String[200];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = SemanticSynchrony.createRandomId();
+        }
+        // one atom is referenced but never defined
+        String undefinedId = SemanticSynchrony.createRandomId();
+        Map<String, List<String>> childrenById = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            List<String> children = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                children.add(ids[random.nextInt(ids.length)]);
+            }
+            if (0 == i) {
+                children.add(undefinedId);
+            }
+            childrenById.put(ids[i], children);
+
+            StringBuilder sb = new StringBuilder("* :" + ids[i] + ": atom " + i + "\n");
+            sb.append("    @weight 0.5\n");
+            for (String child : children) {
+                sb.append("    * :").append(child).append(":\n");
+            }
+            DataSource source = sources.get(i % sources.size());
+            try (OutputStream out = new FileOutputStream(new File(source.getLocation(), ids[i]))) {
+                out.write(sb.toString().getBytes(SemanticSynchrony.UTF8));
+            }
+        }
+
+        BrainReader.Context context = new BrainReader.Context();
+        context.setFormat(VCSFormat.getInstance());
+        context.setSourceDirectory(dir);
+        context.setTopicGraph(topicGraph);
+        // batches much smaller than the number of files
+        new VCSReader(4, 7).doImport(context);
+
+        assertEquals(2 + ids.length + 1, countAtoms());
+        for (int i = 0; i < ids.length; i++) {
+            Atom atom = topicGraph.getAtomById(ids[i]).get();
+            assertEquals("atom " + i, atom.getTitle());
+            assertEquals(sources.get(i % sources.size()).getName(), atom.getSource());
+            List<String> children = new ArrayList<>();
+            for (Atom child : EntityList.toJavaList(atom.getChildren())) {
+                children.add(child.getId());
+            }
+            assertEquals(childrenById.get(ids[i]), children);
+        }
+        assertNull(topicGraph.getAtomById(undefinedId).get().getTitle());
+    }
+
+    @Test
+    public void repeatedDefinitionsAreMerged() throws IOException {
+        File dir = createTestDirectory();
+        List<DataSource> sources = SemanticSynchrony.getConfiguration().getSources();
+
+        String id = SemanticSynchrony.createRandomId();
+        writeAtomFile(sources.get(0), id, "* :" + id + ": first title\n"
+                + "    @alias http://example.org/first\n"
+                + "    * :" + ARTHUR_ID + ":\n");
+        writeAtomFile(sources.get(1), id, "* :" + id + ": second title\n");
+
+        BrainReader.Context context = new BrainReader.Context();
+        context.setFormat(VCSFormat.getInstance());
+        context.setSourceDirectory(dir);
+        context.setTopicGraph(topicGraph);
+        // one file per batch, so that the definitions are applied in different batches
+        new VCSReader(2, 1).doImport(context);
+
+        // the later definition overrides only those properties it defines, and does not remove any children
+        Atom atom = topicGraph.getAtomById(id).get();
+        assertEquals("second title", atom.getTitle());
+        assertEquals("http://example.org/first", atom.getAlias());
+        assertEquals(sources.get(1).getName(), atom.getSource());
+        assertEquals(1, countChildren(atom));
+        assertEquals(ARTHUR_ID, atom.getChildren().getFirst().getId());
+    }
+
+    private void writeAtomFile(final DataSource source, final String id, final String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(source.getLocation(), id))) {
+            out.write(content.getBytes(SemanticSynchrony.UTF8));
+        }
+    }
+
     private long countChildren(final Atom a) {
         EntityList<Atom> children = a.getChildren();
         return null == children ? 0 : EntityList.toJavaList(children).size();
@@ -0,0 +1,136 @@
+package net.fortytwo.smsn.brain.io.vcs;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.config.DataSource;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VCSWriterTest extends BrainTestBase {
+
+    private final VCSWriter writer = new VCSWriter();
+
+    private File privateDir;
+    private File publicDir;
+    private Atom arthur;
+    private Atom ford;
+
+    @Override
+    protected TopicGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void onlyChangedAtomsAreWrittenAfterTheFirstExport() throws Exception {
+        createAtomsAndDirectories();
+        File arthurFile = new File(publicDir, ARTHUR_ID);
+        File fordFile = new File(publicDir, FORD_ID);
+
+        export();
+        assertTrue(contentOf(arthurFile).contains("Arthur Dent"));
+        assertTrue(contentOf(arthurFile).contains(FORD_ID));
+        assertTrue(contentOf(fordFile).contains("Ford Prefect"));
+
+        // an unchanged atom is not written again, so that a change to its file by other means survives
+        FileUtils.writeStringToFile(fordFile, "modified", SemanticSynchrony.UTF8);
+        arthur.setTitle("Arthur Philip Dent");
+        topicGraph.commit();
+        export();
+        assertTrue(contentOf(arthurFile).contains("Arthur Philip Dent"));
+        assertEquals("modified", contentOf(fordFile));
+
+        // an atom which is changed back and forth has the same content as before, and is not written again
+        FileUtils.writeStringToFile(arthurFile, "modified", SemanticSynchrony.UTF8);
+        arthur.setTitle("Arthur Dent");
+        arthur.setTitle("Arthur Philip Dent");
+        topicGraph.commit();
+        export();
+        assertEquals("modified", contentOf(arthurFile));
+
+        // an atom which moves to another data source moves to another directory
+        ford.setSource(DefaultSources.PRIVATE);
+        topicGraph.commit();
+        export();
+        assertFalse(fordFile.exists());
+        assertTrue(contentOf(new File(privateDir, FORD_ID)).contains("Ford Prefect"));
+
+        // the file of a removed atom is deleted
+        Atom zaphod = createAtom(ZAPHOD_ID, "Zaphod Beeblebrox");
+        zaphod.setSource(DefaultSources.PUBLIC);
+        topicGraph.commit();
+        export();
+        File zaphodFile = new File(publicDir, ZAPHOD_ID);
+        assertTrue(zaphodFile.exists());
+        zaphod.destroy();
+        topicGraph.commit();
+        export();
+        assertFalse(zaphodFile.exists());
+    }
+
+    @Test
+    public void everyFileIsWrittenInAFullExport() throws Exception {
+        createAtomsAndDirectories();
+        File fordFile = new File(publicDir, FORD_ID);
+        File strayFile = new File(publicDir, "Abcdefghijklmnop");
+
+        export();
+        FileUtils.writeStringToFile(fordFile, "modified", SemanticSynchrony.UTF8);
+        FileUtils.writeStringToFile(strayFile, "modified", SemanticSynchrony.UTF8);
+
+        // after an update of unknown atoms, all files are written again
+        topicGraph.notifyOfUpdate(null);
+        export();
+        assertTrue(contentOf(fordFile).contains("Ford Prefect"));
+        assertFalse(strayFile.exists());
+
+        FileUtils.writeStringToFile(fordFile, "modified", SemanticSynchrony.UTF8);
+        SemanticSynchrony.getConfiguration().setIncrementalExport(false);
+        try {
+            export();
+        } finally {
+            SemanticSynchrony.getConfiguration().setIncrementalExport(true);
+        }
+        assertTrue(contentOf(fordFile).contains("Ford Prefect"));
+    }
+
+    private void createAtomsAndDirectories() throws IOException {
+        File dir = createTempDirectory();
+        privateDir = new File(dir, "private");
+        publicDir = new File(dir, "public");
+
+        List<DataSource> sources = SemanticSynchrony.getConfiguration().getSources();
+        sources.get(0).setLocation(privateDir.getAbsolutePath());
+        sources.get(1).setLocation(new File(dir, "personal").getAbsolutePath());
+        sources.get(2).setLocation(publicDir.getAbsolutePath());
+        sources.get(3).setLocation(new File(dir, "universal").getAbsolutePath());
+
+        arthur = createAtom(ARTHUR_ID, "Arthur Dent");
+        ford = createAtom(FORD_ID, "Ford Prefect");
+        arthur.setSource(DefaultSources.PUBLIC);
+        ford.setSource(DefaultSources.PUBLIC);
+        arthur.addChildAt(ford, 0);
+        topicGraph.commit();
+    }
+
+    private void export() throws IOException {
+        BrainWriter.Context context = new BrainWriter.Context();
+        context.setFormat(VCSFormat.getInstance());
+        context.setTopicGraph(topicGraph);
+        writer.doExport(context);
+    }
+
+    private String contentOf(final File file) throws IOException {
+        return FileUtils.readFileToString(file, SemanticSynchrony.UTF8);
+    }
+}
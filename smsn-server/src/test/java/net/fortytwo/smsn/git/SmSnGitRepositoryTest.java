@@ -2,9 +2,14 @@ package net.fortytwo.smsn.git;
 
 import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.io.vcs.VCSFormat;
+import net.fortytwo.smsn.brain.io.vcs.VCSWriter;
 import net.fortytwo.smsn.brain.io.wiki.WikiPrinter;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
 import net.fortytwo.smsn.config.DataSource;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.RemoteAddCommand;
@@ -21,15 +26,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class SmSnGitRepositoryTest extends BrainTestBase {
     private final WikiPrinter printer = new WikiPrinter();
     private File repoDir;
+    private DataSource dataSource;
     private SmSnGitRepository repo;
     private Git git;
 
@@ -37,10 +48,13 @@ public class SmSnGitRepositoryTest extends BrainTestBase {
     public void setUp() throws Exception {
         super.setUp();
 
+        // atom files are written as they are exported
+        printer.setUseCanonicalFormat(true);
+
         repoDir = createTempDirectory();
         init();
 
-        DataSource dataSource = new DataSource();
+        dataSource = new DataSource();
         dataSource.setName(DefaultSources.PUBLIC);
         dataSource.setLocation(repoDir.getAbsolutePath());
 
@@ -117,6 +131,126 @@ public class SmSnGitRepositoryTest extends BrainTestBase {
         */
     }
 
+    @Test
+    public void changedAtomFilesAreSynced() throws Exception {
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        assertEquals(0, repo.sync());
+        assertTrue(repo.getLastSyncedCommit().isPresent());
+
+        Note arthur = testNote(ARTHUR_ID, "Arthur Dent");
+        arthur.addChild(referenceTo(FORD_ID));
+        addFile(arthur);
+        addFile(testNote(FORD_ID, "Ford Prefect"));
+        addFile(testNote(ZAPHOD_ID, "Zaphod Beeblebrox"));
+        repo.addAll();
+        repo.commitAll("first commit");
+        assertEquals(3, repo.sync());
+        Atom arthurAtom = topicGraph.getAtomById(ARTHUR_ID).get();
+        assertEquals("Arthur Dent", arthurAtom.getTitle());
+        assertEquals(DefaultSources.PUBLIC, arthurAtom.getSource());
+        assertEquals(Collections.singletonList(FORD_ID), childIdsOf(arthurAtom));
+
+        arthur = testNote(ARTHUR_ID, "Arthur Philip Dent");
+        arthur.addChild(referenceTo(ZAPHOD_ID));
+        addFile(arthur);
+        assertTrue(new File(repoDir, FORD_ID).delete());
+        repo.commitAll("second commit");
+        // only the modified and the removed file are read
+        assertEquals(2, repo.sync());
+        arthurAtom = topicGraph.getAtomById(ARTHUR_ID).get();
+        assertEquals("Arthur Philip Dent", arthurAtom.getTitle());
+        assertEquals(Collections.singletonList(ZAPHOD_ID), childIdsOf(arthurAtom));
+        assertFalse(topicGraph.getAtomById(FORD_ID).isPresent());
+
+        // a repository which is opened again, e.g. after a restart, catches up from the last synced commit
+        addFile(testNote(ZAPHOD_ID, "Zaphod"));
+        repo.commitAll("third commit");
+        SmSnGitRepository reopened = new SmSnGitRepository(brain, dataSource);
+        try {
+            assertEquals(1, reopened.sync());
+        } finally {
+            reopened.close();
+        }
+        assertEquals("Zaphod", topicGraph.getAtomById(ZAPHOD_ID).get().getTitle());
+        assertEquals(0, repo.sync());
+    }
+
+    @Test
+    public void atomsMovedToAnotherSourceAreNotRemoved() throws Exception {
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        assertEquals(0, repo.sync());
+
+        addFile(testNote(FORD_ID, "Ford Prefect"));
+        repo.addAll();
+        repo.commitAll("first commit");
+        assertEquals(1, repo.sync());
+
+        // the file moves to another data source, whose repository has not yet been synced
+        File otherDir = createTempDirectory();
+        DataSource other = SemanticSynchrony.getConfiguration().getSources().get(0);
+        other.setLocation(otherDir.getAbsolutePath());
+        assertTrue(new File(repoDir, FORD_ID).renameTo(new File(otherDir, FORD_ID)));
+        repo.commitAll("second commit");
+        assertEquals(1, repo.sync());
+
+        Atom fordAtom = topicGraph.getAtomById(FORD_ID).get();
+        assertEquals("Ford Prefect", fordAtom.getTitle());
+    }
+
+    @Test
+    public void referencedAtomsWhoseFilesAreRemovedAreNotExportedAgain() throws Exception {
+        SemanticSynchrony.getConfiguration().getSources().get(2).setLocation(repoDir.getAbsolutePath());
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        assertEquals(0, repo.sync());
+
+        Note arthur = testNote(ARTHUR_ID, "Arthur Dent");
+        arthur.addChild(referenceTo(FORD_ID));
+        addFile(arthur);
+        addFile(testNote(FORD_ID, "Ford Prefect"));
+        repo.addAll();
+        repo.commitAll("first commit");
+        assertEquals(2, repo.sync());
+        // files are written in the canonical format of the exporter
+        export();
+        repo.commitAll("export");
+        repo.sync();
+
+        // the file of an atom which is still a child of another atom is removed upstream
+        File fordFile = new File(repoDir, FORD_ID);
+        assertTrue(fordFile.delete());
+        repo.commitAll("removal");
+        assertEquals(1, repo.sync());
+        Atom fordAtom = topicGraph.getAtomById(FORD_ID).get();
+        assertNull(fordAtom.getSource());
+        assertNull(fordAtom.getWeight());
+        assertEquals(Collections.singletonList(FORD_ID), childIdsOf(topicGraph.getAtomById(ARTHUR_ID).get()));
+
+        export();
+        assertFalse(fordFile.exists());
+        assertTrue(new File(repoDir, ARTHUR_ID).exists());
+    }
+
+    private List<String> childIdsOf(final Atom atom) {
+        List<String> ids = new ArrayList<>();
+        for (Atom child : EntityList.toJavaList(atom.getChildren())) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+
+    private void export() throws IOException {
+        BrainWriter.Context context = new BrainWriter.Context();
+        context.setFormat(VCSFormat.getInstance());
+        context.setTopicGraph(topicGraph);
+        new VCSWriter().doExport(context);
+    }
+
+    private Note referenceTo(final String id) {
+        Note note = new Note();
+        note.setId(id);
+        return note;
+    }
+
     private int countUntracked() throws GitAPIException {
         return git.status().call().getUntracked().size();
     }
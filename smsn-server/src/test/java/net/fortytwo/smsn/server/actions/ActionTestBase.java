@@ -1,5 +1,6 @@
 package net.fortytwo.smsn.server.actions;
 
+import net.fortytwo.smsn.brain.Brain;
 import net.fortytwo.smsn.brain.BrainTestBase;
 import net.fortytwo.smsn.brain.Params;
 import net.fortytwo.smsn.brain.model.Filter;
@@ -9,7 +10,9 @@ import net.fortytwo.smsn.server.Action;
 import net.fortytwo.smsn.server.ActionContext;
 import net.fortytwo.smsn.server.SmSnScriptEngine;
 import net.fortytwo.smsn.server.SmSnScriptEngineFactory;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONString;
 
 import java.io.IOException;
 
@@ -19,8 +22,15 @@ public abstract class ActionTestBase extends BrainTestBase {
 
     @Override
     protected TopicGraph createAtomGraph() throws IOException {
-        //return createNeo4jAtomGraph();
-        return createTinkerAtomGraph();
+        //createNeo4jAtomGraph();
+        createTinkerAtomGraph();
+
+        // share the topic graph through which actions are performed, along with its caches
+        try {
+            return Action.getBrain(Action.getWrapper(graph)).getTopicGraph();
+        } catch (Brain.BrainException e) {
+            throw new IOException(e);
+        }
     }
 
     protected ActionContext perform(final Action action) throws IOException {
@@ -28,8 +38,8 @@ public abstract class ActionTestBase extends BrainTestBase {
         return performer.perform(action);
     }
 
-    protected JSONObject getView(final ActionContext context) {
-        return (JSONObject) context.getMap().get(Params.VIEW);
+    protected JSONObject getView(final ActionContext context) throws JSONException {
+        return new JSONObject(((JSONString) context.getMap().get(Params.VIEW)).toJSONString());
     }
 
     protected Atom createAtomWithTitle(final String title) {
@@ -0,0 +1,146 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.Brain;
+import net.fortytwo.smsn.brain.model.TopicGraph;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import net.fortytwo.smsn.brain.rdf.KnowledgeBase;
+import net.fortytwo.smsn.server.Action;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointTest extends ActionTestBase {
+
+    private File dir;
+
+    @Override
+    public void setUp() throws Exception {
+        // the journal is configured before the brain is created
+        dir = createTempDirectory();
+        SemanticSynchrony.getConfiguration().setJournalDirectory(dir.getAbsolutePath());
+        super.setUp();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        SemanticSynchrony.getConfiguration().setJournalDirectory(null);
+        super.tearDown();
+    }
+
+    @Test
+    public void graphIsRestoredFromCheckpointAndJournal() throws Exception {
+        File journalFile = new File(dir, "mutations.journal");
+        TopicGraph journaled = Action.getBrain(Action.getWrapper(graph)).getTopicGraph();
+        Atom arthur = journaled.createAtom(ARTHUR_ID);
+        arthur.setTitle("Arthur Dent");
+        Atom ford = journaled.createAtom(FORD_ID);
+        ford.setTitle("Ford Prefect");
+        arthur.addChildAt(ford, 0);
+        journaled.commit();
+        assertTrue(journalFile.length() > 0);
+
+        perform(new Checkpoint());
+        assertTrue(new File(dir, "checkpoint.snapshot").exists());
+        assertEquals(0, journalFile.length());
+
+        // changes after the checkpoint are found only in the journal
+        arthur.setTitle("Arthur Philip Dent");
+        Atom zaphod = journaled.createAtom(ZAPHOD_ID);
+        zaphod.setTitle("Zaphod Beeblebrox");
+        ford.addChildAt(zaphod, 0);
+        journaled.commit();
+        assertTrue(journalFile.length() > 0);
+
+        TopicGraph restarted = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        new Brain(restarted).recover();
+        assertEquals(3, countAtoms(restarted));
+        Atom restoredArthur = restarted.getAtomById(ARTHUR_ID).get();
+        assertEquals("Arthur Philip Dent", restoredArthur.getTitle());
+        Atom restoredFord = EntityList.toJavaList(restoredArthur.getChildren()).get(0);
+        assertEquals("Ford Prefect", restoredFord.getTitle());
+        assertEquals(ZAPHOD_ID, restoredFord.getChildren().getFirst().getId());
+
+        // the restored graph is journaled in turn
+        restoredArthur.setTitle("Arthur");
+        restarted.commit();
+        TopicGraph restartedAgain = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        new Brain(restartedAgain).recover();
+        assertEquals("Arthur", restartedAgain.getAtomById(ARTHUR_ID).get().getTitle());
+        assertFalse(new File(dir, "checkpoint.snapshot.tmp").exists());
+    }
+
+    @Test
+    public void classificationsAreRestoredAfterRestart() throws Exception {
+        Brain brain = Action.getBrain(Action.getWrapper(graph));
+        TopicGraph journaled = brain.getTopicGraph();
+        Atom arthur = journaled.createAtom(ARTHUR_ID);
+        arthur.setTitle("Arthur Dent");
+        Atom ford = journaled.createAtom(FORD_ID);
+        ford.setTitle("Ford Prefect");
+        arthur.addChildAt(ford, 0);
+        journaled.commit();
+        for (int i = 0; i < 2; i++) {
+            brain.getKnowledgeBase().inferClasses(null, null);
+        }
+        assertNotNull(brain.getKnowledgeBase().getClassInfo(arthur));
+
+        perform(new Checkpoint());
+        assertTrue(new File(dir, "classifications.sidecar").exists());
+
+        // changes after the checkpoint remain to be re-classified after a restart
+        ford.setTitle("Ford Prefect (web page)");
+        Atom zaphod = journaled.createAtom(ZAPHOD_ID);
+        zaphod.setTitle("Zaphod Beeblebrox");
+        ford.addChildAt(zaphod, 0);
+        journaled.commit();
+
+        TopicGraph restarted = new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        Brain restartedBrain = new Brain(restarted);
+        KnowledgeBase kb = restartedBrain.getKnowledgeBase();
+        assertEquals(describeClasses(brain.getKnowledgeBase().getClassInfo(arthur)),
+                describeClasses(kb.getClassInfo(arthur)));
+
+        restartedBrain.recover();
+        assertEquals(new HashSet<>(Arrays.asList(FORD_ID, ZAPHOD_ID)), kb.getChanges());
+        assertEquals(describeClasses(brain.getKnowledgeBase().getClassInfo(arthur)),
+                describeClasses(kb.getClassInfo(restarted.getAtomById(ARTHUR_ID).get())));
+
+        // the sidecar is matched to the checkpoint by content, not by file time
+        File sidecar = new File(dir, "classifications.sidecar");
+        assertTrue(new File(dir, "checkpoint.snapshot").setLastModified(0));
+        assertNotNull(new Brain(new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open())))
+                .getKnowledgeBase().getClassInfo(arthur));
+
+        // a sidecar which does not match the checkpoint is ignored
+        byte[] oldSidecar = Files.readAllBytes(sidecar.toPath());
+        perform(new Checkpoint());
+        Files.write(sidecar.toPath(), oldSidecar);
+        Brain mismatched = new Brain(new PGTopicGraph(new TinkerGraphWrapper(TinkerGraph.open())));
+        assertNull(mismatched.getKnowledgeBase().getClassInfo(arthur));
+        assertNull(mismatched.getKnowledgeBase().getChanges());
+    }
+
+    private String describeClasses(final List<KnowledgeBase.AtomClassEntry> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (KnowledgeBase.AtomClassEntry e : entries) {
+            sb.append(e.getInferredClassName()).append(":").append(e.getOutScore())
+                    .append("+").append(e.getInScore()).append(" ");
+        }
+        return sb.toString();
+    }
+}
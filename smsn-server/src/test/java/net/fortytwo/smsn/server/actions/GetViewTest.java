@@ -0,0 +1,85 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.brain.io.json.JsonFormat;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.query.ViewCache;
+import net.fortytwo.smsn.brain.query.ViewStyle;
+import net.fortytwo.smsn.server.ActionContext;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class GetViewTest extends ActionTestBase {
+
+    @Test
+    public void viewIsCachedUntilAnAtomInItChanges() throws Exception {
+        Atom parent = createAtomWithTitle("parent");
+        Atom child = createAtomWithTitle("child");
+        Atom grandchild = createAtomWithTitle("grandchild");
+        Atom unrelated = createAtomWithTitle("unrelated");
+        parent.setChildren(topicGraph.createListOfAtoms(child));
+        child.setChildren(topicGraph.createListOfAtoms(grandchild));
+        topicGraph.commit();
+
+        ActionContext context = perform(createAction(parent));
+        Object first = context.getMap().get(Params.VIEW);
+        assertSame(first, perform(createAction(parent)).getMap().get(Params.VIEW));
+
+        unrelated.setTitle("still unrelated");
+        topicGraph.commit();
+        assertSame(first, perform(createAction(parent)).getMap().get(Params.VIEW));
+
+        // the grandchild is not in the view, but it is counted
+        grandchild.setWeight(0f);
+        topicGraph.commit();
+        context = perform(createAction(parent));
+        assertNotSame(first, context.getMap().get(Params.VIEW));
+        JSONObject second = getView(context);
+        assertEquals("child", second.getJSONArray(JsonFormat.Keys.CHILDREN).getJSONObject(0)
+                .getString(SemanticSynchrony.PropertyKeys.TITLE));
+
+        ViewCache.Statistics stats = context.getViewCache().getStatistics();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getInvalidations());
+    }
+
+    @Test
+    public void projectedViewsAreCachedSeparately() throws Exception {
+        Atom root = createAtomWithTitle("root");
+        root.setText("some text");
+        topicGraph.commit();
+
+        JSONObject full = getView(perform(createAction(root)));
+        assertEquals("some text", full.getString(SemanticSynchrony.PropertyKeys.TEXT));
+
+        GetView action = createAction(root);
+        action.setProperties(Collections.singletonList(SemanticSynchrony.PropertyKeys.TITLE));
+        JSONObject projected = getView(perform(action));
+        assertEquals("root", projected.getString(SemanticSynchrony.PropertyKeys.TITLE));
+        assertFalse(projected.has(SemanticSynchrony.PropertyKeys.TEXT));
+        assertFalse(projected.has(SemanticSynchrony.PropertyKeys.WEIGHT));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void unknownPropertiesAreRejected() {
+        new GetView().setProperties(Collections.singletonList("color"));
+    }
+
+    private GetView createAction(final Atom root) {
+        GetView action = new GetView();
+        action.setRoot(root.getId());
+        action.setHeight(1);
+        action.setStyle(ViewStyle.Basic.Forward.getStyle().getName());
+        return action;
+    }
+}
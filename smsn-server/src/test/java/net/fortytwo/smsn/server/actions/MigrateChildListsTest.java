@@ -0,0 +1,41 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.entities.Atom;
+import net.fortytwo.smsn.brain.model.entities.EntityList;
+import net.fortytwo.smsn.brain.model.pg.PGTopicGraph;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MigrateChildListsTest extends ActionTestBase {
+
+    @Test
+    public void childrenAreMigratedInOrder() throws Exception {
+        Atom parent = createAtomWithTitle("parent");
+        Atom a = createAtomWithTitle("a"), b = createAtomWithTitle("b"), c = createAtomWithTitle("c");
+        parent.setChildren(topicGraph.createListOfAtoms(a, b, c));
+        topicGraph.commit();
+        assertEquals(3, countListVertices());
+
+        perform(createAction(PGTopicGraph.ChildListStorage.ORDINAL));
+        assertEquals(0, countListVertices());
+        assertEquals(Arrays.asList(a, b, c), EntityList.toJavaList(parent.getChildren()));
+
+        perform(createAction(PGTopicGraph.ChildListStorage.LINKED));
+        assertEquals(3, countListVertices());
+        assertEquals(Arrays.asList(a, b, c), EntityList.toJavaList(parent.getChildren()));
+    }
+
+    private long countListVertices() {
+        return graph.traversal().V().hasLabel(SemanticSynchrony.VertexLabels.LIST).count().next();
+    }
+
+    private MigrateChildLists createAction(final PGTopicGraph.ChildListStorage storage) {
+        MigrateChildLists action = new MigrateChildLists();
+        action.setStorage(storage);
+        return action;
+    }
+}